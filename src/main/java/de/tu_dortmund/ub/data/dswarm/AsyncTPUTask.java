@@ -0,0 +1,807 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+
+import de.tu_dortmund.ub.data.TPUException;
+import de.tu_dortmund.ub.data.util.GzipRequestEntity;
+import de.tu_dortmund.ub.data.util.MultipartFileEntity;
+import de.tu_dortmund.ub.data.util.ResultFileConsumer;
+import de.tu_dortmund.ub.data.util.TPUAsyncHttpClient;
+import de.tu_dortmund.ub.data.util.TPUConcurrencyLimiter;
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+import de.tu_dortmund.ub.data.util.TPUMetadataCache;
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import de.tu_dortmund.ub.data.util.TaskRequestEntity;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NFileEntity;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous variant of {@link TPUTask} (for engine.mode=async), i.e., the init, transform and clean-up requests for a source file are executed
+ * with the shared non-blocking HTTP client ({@link TPUAsyncHttpClient}) and composed via {@link CompletableFuture}s. Hence, no thread is blocked
+ * while waiting for the d:swarm backend. Only reading the configuration and the (CPU-bound) enhancement of the input data resource will be
+ * executed at the given executor; the processing of the responses (e.g. JSON parsing or task creation) will be executed at the given callback
+ * executor, i.e., never at the I/O dispatcher threads of the HTTP client. The responses (except the task execution result) will be read while
+ * they are received (streaming).
+ *
+ * @author tgaengler
+ */
+public class AsyncTPUTask {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncTPUTask.class);
+
+	private static final String NO_FILE_NAME_AVAILABLE  = "[no file name available]";
+	private static final String COMPRESSED_UPLOAD_PREFIX = "tpu-upload-";
+
+	private final Properties       config;
+	private final String           watchFolderFile;
+	private final String           resourceWatchFolder;
+	private final Optional<String> optionalOutputDataModelID;
+	private final Optional<String> optionalExportMimeType;
+	private final Optional<String> optionalExportFileExtension;
+	private final String           serviceName;
+	private final int              cnt;
+	private final Executor         executor;
+	private final Executor         callbackExecutor;
+	private final String           engineDswarmAPI;
+
+	public AsyncTPUTask(final Properties config,
+	                    final String watchFolderFile,
+	                    final String resourceWatchFolder,
+	                    final Optional<String> optionalOutputDataModelID,
+	                    final Optional<String> optionalExportMimeType,
+	                    final Optional<String> optionalExportFileExtension,
+	                    final String serviceName,
+	                    final int cnt,
+	                    final Executor executor,
+	                    final Executor callbackExecutor) {
+
+		this.config = config;
+		this.watchFolderFile = watchFolderFile;
+		this.resourceWatchFolder = resourceWatchFolder;
+		this.optionalOutputDataModelID = optionalOutputDataModelID;
+		this.optionalExportMimeType = optionalExportMimeType;
+		this.optionalExportFileExtension = optionalExportFileExtension;
+		this.serviceName = serviceName;
+		this.cnt = cnt;
+		this.executor = executor;
+		this.callbackExecutor = callbackExecutor;
+
+		engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+	}
+
+	/**
+	 * starts the execution of this TPU task, i.e., init (resource + configuration + data model creation), transform (task execution incl. writing
+	 * the result) and clean-up (removal of the created metadata objects; will be executed in any case)
+	 *
+	 * @return a future of the task execution result
+	 */
+	public CompletableFuture<String> execute() {
+
+		LOG.info(String.format("[%s][%d] Starting 'Async TPU Task' for source file '%s' ...", serviceName, cnt, watchFolderFile));
+
+		TPUSchedule.started(watchFolderFile);
+
+		final String initResourceFile = resourceWatchFolder + File.separatorChar + watchFolderFile;
+		final boolean doIngest = Init.doDataModelIngest(config);
+
+		final CompletableFuture<Void> schemaIndicesFuture;
+
+		if (doIngest) {
+
+			LOG.debug("[{}][{}] do data model creation with data ingest", serviceName, cnt);
+
+			schemaIndicesFuture = initSchemaIndices();
+		} else {
+
+			schemaIndicesFuture = CompletableFuture.completedFuture(null);
+		}
+
+		final CompletableFuture<String> configurationJSONStringFuture = CompletableFuture.supplyAsync(this::readConfiguration, executor);
+
+		// init: the upload of the input data resource, the configuration creation and the input schema retrieval are independent of each other
+		final CompletableFuture<JsonObject> resourceFuture = configurationJSONStringFuture
+				.thenApplyAsync(configurationJSONString -> enhanceInputDataResource(initResourceFile, configurationJSONString), executor)
+				.thenCompose(finalInputResourceFile -> uploadFileAndCreateResource(initResourceFile, finalInputResourceFile));
+		final boolean shareConfiguration = TPUSharedConfigurations.isEnabled(config);
+		final CompletableFuture<JsonObject> configurationFuture;
+
+		if (shareConfiguration) {
+
+			configurationFuture = configurationJSONStringFuture.thenCompose(configurationJSONString -> TPUSharedConfigurations
+					.getOrCreateAsync(configurationJSONString, () -> createConfiguration(configurationJSONString)));
+		} else {
+
+			configurationFuture = configurationJSONStringFuture.thenCompose(this::createConfiguration);
+		}
+
+		final CompletableFuture<Optional<JsonObject>> inputSchemaFuture = getInputSchema();
+
+		final CompletableFuture<JsonObject> dataModelFuture = CompletableFuture
+				.allOf(schemaIndicesFuture, resourceFuture, configurationFuture, inputSchemaFuture)
+				.thenCompose(ignored -> createDataModel(resourceFuture.join(), configurationFuture.join(), inputSchemaFuture.join(), doIngest));
+
+		// transform
+		final CompletableFuture<String> transformFuture = dataModelFuture
+				.thenCompose(dataModelJSON -> transform(dataModelJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER)));
+
+		// clean-up (in any case)
+		return transformFuture
+				.handle((result, throwable) -> Optional.ofNullable(throwable))
+				.thenCompose(optionalThrowable -> cleanUp(dataModelFuture, resourceFuture, shareConfiguration ? null : configurationFuture)
+						.thenApply(ignored -> createResult(transformFuture, dataModelFuture, optionalThrowable)));
+	}
+
+	private String createResult(final CompletableFuture<String> transformFuture, final CompletableFuture<JsonObject> dataModelFuture,
+	                            final Optional<Throwable> optionalThrowable) {
+
+		if (optionalThrowable.isPresent()) {
+
+			final String message = String
+					.format("[%s][%d] TPU task execution '%d' failed for source file '%s'", serviceName, cnt, cnt, watchFolderFile);
+
+			throw new CompletionException(new TPUException(message, unwrap(optionalThrowable.get())));
+		}
+
+		final String inputDataModelID = getUUID(dataModelFuture);
+		final String outputDataModelID = optionalOutputDataModelID.orElse(inputDataModelID);
+
+		TPUManifest.record(resourceWatchFolder, watchFolderFile,
+				Transform.determineResultFileName(config, inputDataModelID, outputDataModelID, optionalExportFileExtension, cnt));
+		TPUSchedule.finished(resourceWatchFolder, watchFolderFile);
+
+		return String.format("[%s][%d] TPU task execution '%d' result = '%s' for source file '%s' and data model '%s'", serviceName, cnt, cnt,
+				transformFuture.join(), watchFolderFile, inputDataModelID);
+	}
+
+	private String readConfiguration() {
+
+		final String configurationFileName = config.getProperty(TPUStatics.CONFIGURATION_NAME_IDENTIFIER);
+
+		try {
+
+			return Init.readFile(configurationFileName, Charsets.UTF_8);
+		} catch (final IOException e) {
+
+			throw new CompletionException(e);
+		}
+	}
+
+	private String enhanceInputDataResource(final String initResourceFile, final String configurationJSONString) {
+
+		try {
+
+			final JsonObject configurationJSON = TPUUtil.getJsonObject(configurationJSONString);
+
+			return Init.prepareInputDataResource(initResourceFile, configurationJSON, config);
+		} catch (final Exception e) {
+
+			throw new CompletionException(e);
+		}
+	}
+
+	private CompletableFuture<Void> initSchemaIndices() {
+
+		final String uri = TPUUtil.getSchemaIndicesURI(config);
+
+		if (TPUUtil.forceSchemaIndicesRefresh(config)) {
+
+			return executeSchemaIndicesInitialisation(uri).thenApply(response -> null);
+		}
+
+		// will only be executed once per TPU run and graph endpoint
+		return TPUMetadataCache.getAsync(uri, () -> executeSchemaIndicesInitialisation(uri)).thenApply(response -> null);
+	}
+
+	private CompletableFuture<String> executeSchemaIndicesInitialisation(final String uri) {
+
+		final HttpPost httpPost = new HttpPost(uri);
+		httpPost.setEntity(new NStringEntity("", ContentType.create(TPUUtil.TEXT_PLAIN_MIMETYPE, Charsets.UTF_8)));
+
+		return execute(httpPost, 200, "schema indices initialisation");
+	}
+
+	private CompletableFuture<JsonObject> uploadFileAndCreateResource(final String initResourceFile, final String finalInputResourceFile) {
+
+		final String name = String.format("resource for project '%s'", initResourceFile);
+		final String description = String.format("'resource does not belong to a project' - case %d", cnt);
+
+		final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.RESOURCES_ENDPOINT);
+		final HttpEntity multipartEntity = MultipartFileEntity.create(DswarmBackendStatics.NAME_IDENTIFIER, name,
+				DswarmBackendStatics.DESCRIPTION_IDENTIFIER, description, Init.FILE_IDENTIFIER, new File(finalInputResourceFile));
+		final Optional<Path> optionalCompressedUpload;
+
+		if (TPUAsyncHttpClient.isCompressUploads()) {
+
+			// note: will be compressed at the current (executor) thread, i.e., the I/O threads only send the compressed file
+			try {
+
+				optionalCompressedUpload = Optional.of(compressUpload(multipartEntity, httpPost));
+			} catch (final IOException e) {
+
+				Init.removePreparedInputDataResource(initResourceFile, finalInputResourceFile);
+
+				final CompletableFuture<JsonObject> failedFuture = new CompletableFuture<>();
+				failedFuture.completeExceptionally(e);
+
+				return failedFuture;
+			}
+		} else {
+
+			optionalCompressedUpload = Optional.empty();
+
+			httpPost.setEntity(multipartEntity);
+		}
+
+		return executeForJSON(httpPost, 201, "resource upload")
+				.whenComplete((resourceJSON, throwable) -> {
+
+					Init.removePreparedInputDataResource(initResourceFile, finalInputResourceFile);
+					optionalCompressedUpload.ifPresent(compressedUpload -> FileUtils.deleteQuietly(compressedUpload.toFile()));
+				})
+				.thenApply(resourceJSON -> checkUUID(resourceJSON, "input resource", "resource creation"));
+	}
+
+	/**
+	 * compresses the given (multipart) upload into a temporary file and sets it as entity of the given request
+	 *
+	 * @return the temporary file (needs to be removed after the upload)
+	 */
+	private Path compressUpload(final HttpEntity multipartEntity, final HttpPost httpPost) throws IOException {
+
+		final Path compressedUpload = Files.createTempFile(COMPRESSED_UPLOAD_PREFIX, TPUUtil.GZIP_FILE_ENDING);
+
+		try {
+
+			GzipRequestEntity.compressToFile(multipartEntity, compressedUpload, httpPost.getRequestLine().toString());
+		} catch (final IOException e) {
+
+			FileUtils.deleteQuietly(compressedUpload.toFile());
+
+			throw e;
+		}
+
+		final NFileEntity compressedEntity = new NFileEntity(compressedUpload.toFile());
+		compressedEntity.setContentType(multipartEntity.getContentType());
+		compressedEntity.setContentEncoding(GzipRequestEntity.GZIP_CONTENT_ENCODING);
+
+		httpPost.setEntity(compressedEntity);
+
+		return compressedUpload;
+	}
+
+	private CompletableFuture<JsonObject> createConfiguration(final String configurationJSONString) {
+
+		final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.CONFIGURATIONS_ENDPOINT);
+		httpPost.setEntity(new NStringEntity(configurationJSONString, ContentType.create(APIStatics.APPLICATION_JSON_MIMETYPE, Charsets.UTF_8)));
+
+		return executeForJSON(httpPost, 201, "configuration creation")
+				.thenApply(configurationJSON -> checkUUID(configurationJSON, "configuration", "configuration creation"));
+	}
+
+	private CompletableFuture<Optional<JsonObject>> getInputSchema() {
+
+		final Optional<String> optionalInputSchemaID = TPUUtil.getStringConfigValue(TPUStatics.PROTOTYPE_INPUT_SCHEMA_ID_IDENTIFIER, config);
+
+		if (!optionalInputSchemaID.isPresent()) {
+
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+
+		final String uri = engineDswarmAPI + DswarmBackendStatics.SCHEMAS_ENDPOINT + APIStatics.SLASH + optionalInputSchemaID.get();
+
+		return TPUMetadataCache.getAsync(uri, () -> executeForJSON(new HttpGet(uri), 200, "input schema retrieval").thenApply(Optional::ofNullable));
+	}
+
+	private CompletableFuture<JsonObject> createDataModel(final JsonObject resourceJSON, final JsonObject configurationJSON,
+	                                                      final Optional<JsonObject> optionalInputSchema, final boolean doIngest) {
+
+		final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.QUESTION_MARK
+				+ DswarmBackendStatics.DO_DATA_MODEL_INGEST_IDENTIFIER + APIStatics.EQUALS + doIngest;
+
+		final String dataModelName = String.format("data model %d", cnt);
+		final String dataModelDescription = String.format("data model description %d", cnt);
+		final String dataModelRequestJSON = Init.createDataModelRequestJSON(resourceJSON, configurationJSON, optionalInputSchema, dataModelName,
+				dataModelDescription, serviceName, cnt);
+
+		final HttpPost httpPost = new HttpPost(uri);
+		httpPost.setEntity(new NStringEntity(dataModelRequestJSON, ContentType.create(APIStatics.APPLICATION_JSON_MIMETYPE, Charsets.UTF_8)));
+
+		return executeForJSON(httpPost, 201, "data model creation")
+				.thenApply(dataModelJSON -> checkUUID(dataModelJSON, "data model", "data model creation"));
+	}
+
+	private CompletableFuture<String> transform(final String inputDataModelID) {
+
+		final String outputDataModelID;
+
+		if (optionalOutputDataModelID.isPresent()) {
+
+			outputDataModelID = optionalOutputDataModelID.get();
+		} else {
+
+			LOG.info(
+					"[{}[{}] couldn't find output data model ID, will take input data model id instead for processing the task on source file '{}' and data model '{}' (note: this might cause wrong behaviour!)",
+					serviceName, cnt, watchFolderFile, inputDataModelID);
+
+			outputDataModelID = inputDataModelID;
+		}
+
+		final CompletableFuture<JsonArray> mappingsFuture = getMappingsFromProjects();
+		final CompletableFuture<JsonObject> inputDataModelFuture = getDataModel(inputDataModelID);
+		final CompletableFuture<JsonObject> outputDataModelFuture;
+
+		if (outputDataModelID.equals(inputDataModelID)) {
+
+			outputDataModelFuture = inputDataModelFuture;
+		} else {
+
+			// the output data model is the same for all tasks of a run
+			final String outputDataModelURI = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + outputDataModelID;
+
+			outputDataModelFuture = TPUMetadataCache.getAsync(outputDataModelURI, () -> getDataModel(outputDataModelID));
+		}
+		final CompletableFuture<Optional<JsonObject>> skipFilterFuture = getSkipFilter();
+
+		return CompletableFuture.allOf(mappingsFuture, inputDataModelFuture, outputDataModelFuture, skipFilterFuture)
+				.thenCompose(ignored -> executeTask(inputDataModelID, outputDataModelID, mappingsFuture.join(), inputDataModelFuture.join(),
+						outputDataModelFuture.join(), skipFilterFuture.join()));
+	}
+
+	private CompletableFuture<JsonArray> getMappingsFromProjects() {
+
+		final Collection<String> projectIDs = Transform.determineProjectIDs(config);
+
+		return TPUMetadataCache.getAsync(Transform.determineMappingsKey(projectIDs, engineDswarmAPI), () -> retrieveMappingsFromProjects(projectIDs));
+	}
+
+	private CompletableFuture<JsonArray> retrieveMappingsFromProjects(final Collection<String> projectIDs) {
+
+		final List<CompletableFuture<Optional<JsonArray>>> projectMappingsFutures = new ArrayList<>();
+
+		for (final String projectID : projectIDs) {
+
+			final String uri = engineDswarmAPI + DswarmBackendStatics.PROJECTS_ENDPOINT + APIStatics.SLASH + projectID;
+
+			projectMappingsFutures.add(executeForResponse(new HttpGet(uri), 200, "mappings retrieval").thenApply(httpResponse -> {
+
+				final HttpEntity httpEntity = httpResponse.getEntity();
+
+				if (httpEntity == null) {
+
+					return Optional.empty();
+				}
+
+				// extract only the mappings, i.e., the remaining project object won't be built
+				try (final Reader reader = new InputStreamReader(httpEntity.getContent(), StandardCharsets.UTF_8)) {
+
+					return TPUUtil.readJsonArray(reader, DswarmBackendStatics.MAPPINGS_IDENTIFIER);
+				} catch (final IOException e) {
+
+					throw new CompletionException(e);
+				}
+			}));
+		}
+
+		return CompletableFuture.allOf(projectMappingsFutures.toArray(new CompletableFuture[projectMappingsFutures.size()]))
+				.thenApply(ignored -> {
+
+					if (projectIDs.size() == 1 && projectMappingsFutures.get(0).join().isPresent()) {
+
+						// no need to copy the mappings of a single project
+						final JsonArray projectMappings = projectMappingsFutures.get(0).join().get();
+
+						LOG.info(String.format("[%s][%d] retrieved '%d' mappings from project '%s'", serviceName, cnt, projectMappings.size(),
+								projectIDs.iterator().next()));
+
+						return projectMappings;
+					}
+
+					final JsonArrayBuilder mappingArrayBuilder = Json.createArrayBuilder();
+
+					int i = 0;
+
+					for (final String projectID : projectIDs) {
+
+						final Optional<JsonArray> optionalProjectMappings = projectMappingsFutures.get(i++).join();
+
+						if (!optionalProjectMappings.isPresent()) {
+
+							LOG.error(String.format("[%s][%d] couldn't determine mappings from project '%s'", serviceName, cnt, projectID));
+
+							continue;
+						}
+
+						final JsonArray projectMappings = optionalProjectMappings.get();
+
+						LOG.info(String.format("[%s][%d] retrieved '%d' mappings from project '%s'", serviceName, cnt, projectMappings.size(),
+								projectID));
+
+						projectMappings.forEach(mappingArrayBuilder::add);
+					}
+
+					final JsonArray mappingsArray = mappingArrayBuilder.build();
+
+					LOG.info(String.format("[%s][%d] accumulated '%d' mappings from all projects", serviceName, cnt, mappingsArray.size()));
+
+					return mappingsArray;
+				});
+	}
+
+	private CompletableFuture<JsonObject> getDataModel(final String dataModelID) {
+
+		final HttpGet httpGet = new HttpGet(engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + dataModelID);
+
+		return executeForJSON(httpGet, 200, "data model retrieval");
+	}
+
+	private CompletableFuture<Optional<JsonObject>> getSkipFilter() {
+
+		final Optional<String> optionalSkipFilterId = TPUUtil.getStringConfigValue(TPUStatics.PROTOTYPE_SKIP_FILTER_IDENTIFIER, config);
+
+		if (!optionalSkipFilterId.isPresent()) {
+
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+
+		final String uri = engineDswarmAPI + DswarmBackendStatics.FILTERS_ENDPOINT + APIStatics.SLASH + optionalSkipFilterId.get();
+
+		return TPUMetadataCache.getAsync(uri, () -> executeForJSON(new HttpGet(uri), 200, "skip filter retrieval").thenApply(Optional::ofNullable));
+	}
+
+	private CompletableFuture<String> executeTask(final String inputDataModelID,
+	                                              final String outputDataModelID,
+	                                              final JsonArray mappings,
+	                                              final JsonObject inputDataModel,
+	                                              final JsonObject outputDataModel,
+	                                              final Optional<JsonObject> optionalSkipFilter) {
+
+		// TPU tasks are always executed with ingest + export on-the-fly
+		final Optional<Boolean> optionalDoIngestOnTheFly = Optional.of(Boolean.TRUE);
+		final Optional<Boolean> optionalDoExportOnTheFly = Optional.of(Boolean.TRUE);
+
+		final boolean persist = Transform.doPersistInDMP(config);
+		final Optional<JsonObject> optionalOutputDataModel = outputDataModelID.equals(inputDataModelID) ? Optional.empty() : Optional.of(outputDataModel);
+		final String taskTemplateKey = Transform.determineTaskTemplateKey(engineDswarmAPI, Transform.determineProjectIDs(config),
+				optionalOutputDataModel.map(ignored -> outputDataModelID), TPUUtil.getStringConfigValue(TPUStatics.PROTOTYPE_SKIP_FILTER_IDENTIFIER, config),
+				persist, optionalDoIngestOnTheFly, optionalDoExportOnTheFly);
+		final TaskRequestEntity taskRequestEntity;
+
+		try {
+
+			final TaskRequestEntity.Template taskTemplate = Transform.getTaskTemplate(persist, optionalDoIngestOnTheFly, optionalDoExportOnTheFly,
+					mappings, optionalOutputDataModel, optionalSkipFilter, taskTemplateKey, serviceName, cnt);
+
+			// only the job UUID and the input data model will be serialised per task
+			taskRequestEntity = new TaskRequestEntity(taskTemplate, inputDataModel);
+
+			if (LOG.isDebugEnabled()) {
+
+				LOG.debug(String.format("[%s][%d] task : %s", serviceName, cnt, TPUUtil.getResponseMessage(taskRequestEntity)));
+			}
+		} catch (final Exception e) {
+
+			final CompletableFuture<String> failedFuture = new CompletableFuture<>();
+			failedFuture.completeExceptionally(e);
+
+			return failedFuture;
+		}
+
+		// POST /dmp/tasks/
+		final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.TASKS_ENDPOINT);
+		httpPost.setHeader(HttpHeaders.ACCEPT, Transform.determineAcceptMimeType(optionalDoExportOnTheFly, optionalExportMimeType));
+		// the task will be written directly to the connection
+		httpPost.setEntity(taskRequestEntity);
+
+		final Optional<String> optionalFileName = Transform
+				.determineResultFileName(config, inputDataModelID, outputDataModelID, optionalExportFileExtension, cnt);
+		final String fileName;
+		final Optional<Path> optionalResultFile;
+
+		if (optionalFileName.isPresent()) {
+
+			fileName = optionalFileName.get();
+			optionalResultFile = Optional.of(Paths.get(fileName));
+
+			LOG.info(String.format("[%s][%d] result will be written to file '%s'", serviceName, cnt, fileName));
+		} else {
+
+			fileName = NO_FILE_NAME_AVAILABLE;
+			optionalResultFile = Optional.empty();
+		}
+
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
+
+		// the number of task executions in flight might be limited adaptively (see TPUConcurrencyLimiter)
+		return TPUConcurrencyLimiter.acquireAsync(TPUUtil.determineFileSize(resourceWatchFolder, watchFolderFile))
+				.thenCompose(permit -> TPUAsyncHttpClient.execute(httpPost, () -> new ResultFileConsumer(optionalResultFile, 200,
+						TPUUtil.getResultsCompressionLevel(config)))
+						.whenCompleteAsync((httpResponse, throwable) -> reportTaskExecutionOutcome(permit, httpResponse, throwable), callbackExecutor))
+				.thenApply(httpResponse -> {
+
+					final int statusCode = httpResponse.getStatusLine().getStatusCode();
+					final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+							.getReasonPhrase());
+
+					switch (statusCode) {
+
+						case 204: {
+
+							LOG.info(message);
+
+							return "success";
+						}
+						case 200: {
+
+							// note: the result file was already checked for an error message by the result file consumer
+							LOG.info(message);
+
+							return "success - exported XML to '" + fileName + "'";
+						}
+						default: {
+
+							LOG.error(message);
+
+							final String response = getErrorMessage(httpResponse);
+
+							throw new CompletionException(new TPUException("something went wrong at task execution" + response));
+						}
+					}
+				});
+	}
+
+	private static void reportTaskExecutionOutcome(final TPUConcurrencyLimiter.Permit permit, final HttpResponse httpResponse,
+	                                               final Throwable throwable) {
+
+		if (throwable != null) {
+
+			final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+
+			if (cause instanceof IOException) {
+
+				permit.onError();
+			}
+		} else {
+
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+			if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR || statusCode == TPUHttpClient.TOO_MANY_REQUESTS) {
+
+				permit.onError();
+			} else if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_NO_CONTENT) {
+
+				permit.onSuccess();
+			}
+		}
+
+		permit.close();
+	}
+
+	private CompletableFuture<Void> cleanUp(final CompletableFuture<JsonObject> dataModelFuture, final CompletableFuture<JsonObject> resourceFuture,
+	                                        final CompletableFuture<JsonObject> configurationFuture) {
+
+		LOG.debug("[{}][{}] try to clean-up metadata repository from temp entities", serviceName, cnt);
+
+		// note: a shared configuration (i.e. no configuration future) will be removed at the end of the TPU run
+		final String configurationID = configurationFuture != null ? getUUID(configurationFuture) : null;
+
+		return deleteObject(getUUID(dataModelFuture), DswarmBackendStatics.DATAMODELS_ENDPOINT)
+				.thenCompose(ignored -> deleteObject(getUUID(resourceFuture), DswarmBackendStatics.RESOURCES_ENDPOINT))
+				.thenCompose(ignored -> deleteObject(configurationID, DswarmBackendStatics.CONFIGURATIONS_ENDPOINT))
+				.thenRun(() -> LOG.debug("[{}][{}] finished cleaning-up metadata repository from temp entities", serviceName, cnt));
+	}
+
+	private CompletableFuture<Void> deleteObject(final String objectId, final String objectType) {
+
+		if (objectId == null) {
+
+			LOG.debug("[{}][{}] there's no identifier given; cannot remove any '{}'", serviceName, cnt, objectType);
+
+			return CompletableFuture.completedFuture(null);
+		}
+
+		final HttpDelete httpDelete = new HttpDelete(engineDswarmAPI + objectType + APIStatics.SLASH + objectId);
+
+		// note: a failed clean-up shouldn't fail the TPU task
+		return execute(httpDelete, 204, "metadata repository clean-up")
+				.handle((response, throwable) -> {
+
+					if (throwable != null) {
+
+						LOG.error("[{}][{}] couldn't clean-up metadata repository from temp {}: id = '{}'", serviceName, cnt, objectType, objectId,
+								unwrap(throwable));
+					}
+
+					return null;
+				});
+	}
+
+	private CompletableFuture<JsonObject> executeForJSON(final HttpUriRequest request, final int expectedStatusCode, final String activity) {
+
+		return executeForResponse(request, expectedStatusCode, activity).thenApply(httpResponse -> {
+
+			try {
+
+				// parse directly from the response entity
+				final JsonObject jsonObject = TPUUtil.getJsonObject(httpResponse.getEntity());
+
+				if (LOG.isDebugEnabled() && jsonObject != null) {
+
+					LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, jsonObject.toString()));
+				}
+
+				return jsonObject;
+			} catch (final IOException e) {
+
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	private CompletableFuture<String> execute(final HttpUriRequest request, final int expectedStatusCode, final String activity) {
+
+		return executeForResponse(request, expectedStatusCode, activity).thenApply(httpResponse -> {
+
+			final String response = getResponseMessage(httpResponse);
+
+			LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
+
+			return response;
+		});
+	}
+
+	/**
+	 * executes the request and checks the status code of its response; the response body of an unexpected status code will be read only up to
+	 * {@link TPUUtil#MAX_ERROR_MESSAGE_LENGTH} characters. The (streaming) response entity of the returned response must be consumed or closed.
+	 */
+	private CompletableFuture<HttpResponse> executeForResponse(final HttpUriRequest request, final int expectedStatusCode, final String activity) {
+
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, request.getRequestLine()));
+
+		// note: the response content will be read at the callback executor
+		return TPUAsyncHttpClient.executeStreaming(request).thenApplyAsync(httpResponse -> {
+
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
+			final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase());
+
+			if (statusCode != expectedStatusCode) {
+
+				LOG.error(message);
+
+				try {
+
+					final String response = getErrorMessage(httpResponse);
+
+					throw new CompletionException(new TPUException("something went wrong at " + activity + ": " + message + " " + response));
+				} finally {
+
+					EntityUtils.consumeQuietly(httpResponse.getEntity());
+				}
+			}
+
+			LOG.info(message);
+
+			return httpResponse;
+		}, callbackExecutor);
+	}
+
+	private static String getResponseMessage(final HttpResponse httpResponse) {
+
+		final HttpEntity httpEntity = httpResponse.getEntity();
+
+		if (httpEntity == null) {
+
+			return "";
+		}
+
+		try {
+
+			return TPUUtil.getResponseMessage(httpEntity);
+		} catch (final IOException e) {
+
+			throw new CompletionException(e);
+		} finally {
+
+			EntityUtils.consumeQuietly(httpEntity);
+		}
+	}
+
+	private static String getErrorMessage(final HttpResponse httpResponse) {
+
+		try {
+
+			return TPUUtil.getErrorMessage(httpResponse);
+		} catch (final IOException e) {
+
+			throw new CompletionException(e);
+		}
+	}
+
+	private JsonObject checkUUID(final JsonObject jsonObject, final String objectName, final String activity) {
+
+		final String uuid = jsonObject.getString(DswarmBackendStatics.UUID_IDENTIFIER, null);
+
+		if (uuid == null) {
+
+			final String message = String.format("something went wrong at %s, no %s uuid available", activity, objectName);
+
+			LOG.error(message);
+
+			throw new CompletionException(new TPUException(message));
+		}
+
+		LOG.info(String.format("[%s][%d] %s id = %s", serviceName, cnt, objectName, uuid));
+
+		return jsonObject;
+	}
+
+	private static String getUUID(final CompletableFuture<JsonObject> future) {
+
+		if (!future.isDone() || future.isCompletedExceptionally()) {
+
+			return null;
+		}
+
+		return future.join().getString(DswarmBackendStatics.UUID_IDENTIFIER, null);
+	}
+
+	private static Throwable unwrap(final Throwable throwable) {
+
+		Throwable cause = throwable;
+
+		while (cause instanceof CompletionException && cause.getCause() != null) {
+
+			cause = cause.getCause();
+		}
+
+		return cause;
+	}
+}
@@ -15,6 +15,10 @@
  */
 package de.tu_dortmund.ub.data.dswarm;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author tgaengler
  */
@@ -28,6 +32,12 @@ public final class DswarmBackendStatics {
 	public static final String TASKS_ENDPOINT          = "tasks";
 	public static final String FILTERS_ENDPOINT        = "filters";
 
+	/**
+	 * all endpoints, e.g., to determine the retry policy of a request (see {@link de.tu_dortmund.ub.data.util.BackendRetryStrategy})
+	 */
+	public static final List<String> ENDPOINTS = Collections.unmodifiableList(Arrays.asList(DATAMODELS_ENDPOINT, RESOURCES_ENDPOINT,
+			CONFIGURATIONS_ENDPOINT, PROJECTS_ENDPOINT, SCHEMAS_ENDPOINT, TASKS_ENDPOINT, FILTERS_ENDPOINT));
+
 	public static final String UUID_IDENTIFIER              = "uuid";
 	public static final String MAPPINGS_IDENTIFIER          = "mappings";
 	public static final String DATA_RESOURCE_IDENTIFIER     = "data_resource";
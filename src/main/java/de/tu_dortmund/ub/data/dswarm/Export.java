@@ -39,11 +39,11 @@ SOFTWARE.
 
 package de.tu_dortmund.ub.data.dswarm;
 
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
 import de.tu_dortmund.ub.data.util.TPUUtil;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -115,67 +115,66 @@ public class Export implements Callable<String> {
 	                             final Optional<String> optionalExportFileExtension,
 	                             final String serviceName) throws Exception {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+		final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
 
-			final String exportMimeType;
+		final String exportMimeType;
 
-			if (optionalExportMimeType.isPresent()) {
+		if (optionalExportMimeType.isPresent()) {
 
-				exportMimeType = optionalExportMimeType.get();
-			} else {
+			exportMimeType = optionalExportMimeType.get();
+		} else {
 
-				// application/xml as default mime type
-				exportMimeType = APIStatics.APPLICATION_XML_MIMETYPE;
-			}
+			// application/xml as default mime type
+			exportMimeType = APIStatics.APPLICATION_XML_MIMETYPE;
+		}
 
-			final String uri =
-					engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + dataModelID + APIStatics.SLASH + EXPORT_IDENTIFIER
-							+ APIStatics.QUESTION_MARK + DswarmBackendStatics.FORMAT_IDENTIFIER + APIStatics.EQUALS
-							+ exportMimeType;
-			final HttpGet httpGet = new HttpGet(uri);
+		final String uri =
+				engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + dataModelID + APIStatics.SLASH + EXPORT_IDENTIFIER
+						+ APIStatics.QUESTION_MARK + DswarmBackendStatics.FORMAT_IDENTIFIER + APIStatics.EQUALS
+						+ exportMimeType;
+		final HttpGet httpGet = new HttpGet(uri);
 
-			//			httpGet.setHeader(name, value);
+		//			httpGet.setHeader(name, value);
 
-			LOG.info(String.format("[%s] dataModelID : %s", serviceName, dataModelID));
-			LOG.info(String.format("[%s] request : %s", serviceName, httpGet.getRequestLine()));
+		LOG.info(String.format("[%s] dataModelID : %s", serviceName, dataModelID));
+		LOG.info(String.format("[%s] request : %s", serviceName, httpGet.getRequestLine()));
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				switch (statusCode) {
+			switch (statusCode) {
 
-					case 200: {
+				case 200: {
 
-						LOG.info(String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+					LOG.info(String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
 
-						break;
-					}
-					default: {
+					break;
+				}
+				default: {
 
-						LOG.error(String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+					LOG.error(String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
 
-						final String response = TPUUtil.getResponseMessage(httpResponse);
+					final String response = TPUUtil.getErrorMessage(httpResponse);
 
-						throw new Exception("something went wrong at data model export: " + response);
-					}
+					throw new Exception("something went wrong at data model export: " + response);
 				}
+			}
 
-				final String exportFileExtension;
-
-				if (optionalExportFileExtension.isPresent()) {
+			final String exportFileExtension;
 
-					exportFileExtension = optionalExportFileExtension.get();
-				} else {
+			if (optionalExportFileExtension.isPresent()) {
 
-					// xml as default file extension
-					exportFileExtension = TaskProcessingUnit.XML_FILE_ENDING;
-				}
+				exportFileExtension = optionalExportFileExtension.get();
+			} else {
 
-				TPUUtil.writeResultToFile(httpResponse, config, exportDataModelID, exportFileExtension);
+				// xml as default file extension
+				exportFileExtension = TaskProcessingUnit.XML_FILE_ENDING;
 			}
+
+			TPUUtil.writeResultToFile(httpResponse, config, exportDataModelID, exportFileExtension);
 		}
 	}
 }
@@ -46,6 +46,7 @@ import java.util.concurrent.Callable;
 import javax.json.Json;
 import javax.json.JsonReader;
 
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
 import de.tu_dortmund.ub.data.util.TPUUtil;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
@@ -57,7 +58,6 @@ import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -163,41 +163,41 @@ public class Ingest implements Callable<String> {
 	 */
 	private String updateDataModelContent(final String inputDataModelID, final String serviceName, final String engineDswarmAPI) throws Exception {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
-			// Update the existing input Data Model (we are simply using the example data model here ... TODO !)
-			// note: format=delta query parameter must be set to ensure that existing records won't be deprecated in the datahub
-			// note: enableVersioning=false to speed up ingest (however this requires unique resources)
-			final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + inputDataModelID + APIStatics.SLASH
-					+ DATA_ENDPOINT + APIStatics.QUESTION_MARK + DswarmBackendStatics.FORMAT_IDENTIFIER
-					+ APIStatics.EQUALS + DELTA_UPDATE_FORMAT_IDENTIFIER + AMBERSENT + ENABLE_VERSIONING_IDENTIFIER + APIStatics.EQUALS + FALSE;
-			final HttpPost httpPost = new HttpPost(uri);
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			LOG.info(String.format("[%s] inputDataModelID : %s", serviceName, inputDataModelID));
-			LOG.info(String.format("[%s] request : %s", serviceName, httpPost.getRequestLine()));
+		// Update the existing input Data Model (we are simply using the example data model here ... TODO !)
+		// note: format=delta query parameter must be set to ensure that existing records won't be deprecated in the datahub
+		// note: enableVersioning=false to speed up ingest (however this requires unique resources)
+		final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + inputDataModelID + APIStatics.SLASH
+				+ DATA_ENDPOINT + APIStatics.QUESTION_MARK + DswarmBackendStatics.FORMAT_IDENTIFIER
+				+ APIStatics.EQUALS + DELTA_UPDATE_FORMAT_IDENTIFIER + AMBERSENT + ENABLE_VERSIONING_IDENTIFIER + APIStatics.EQUALS + FALSE;
+		final HttpPost httpPost = new HttpPost(uri);
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+		LOG.info(String.format("[%s] inputDataModelID : %s", serviceName, inputDataModelID));
+		LOG.info(String.format("[%s] request : %s", serviceName, httpPost.getRequestLine()));
 
-				int statusCode = httpResponse.getStatusLine().getStatusCode();
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
 
-				final String message = String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+			int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				switch (statusCode) {
+			final String message = String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
 
-					case 200: {
+			switch (statusCode) {
 
-						LOG.info(message);
+				case 200: {
 
-						break;
-					}
-					default: {
+					LOG.info(message);
 
-						LOG.error(message);
+					break;
+				}
+				default: {
+
+					LOG.error(message);
 
-						final String response = TPUUtil.getResponseMessage(httpResponse);
+					final String response = TPUUtil.getErrorMessage(httpResponse);
 
-						throw new Exception("something went wrong at data model export: " + message + " " + response);
-					}
+					throw new Exception("something went wrong at data model export: " + message + " " + response);
 				}
 			}
 		}
@@ -224,50 +224,51 @@ public class Ingest implements Callable<String> {
 		final String resourceWatchFolder = config.getProperty(TPUStatics.RESOURCE_WATCHFOLDER_IDENTIFIER);
 		final String completeFileName = resourceWatchFolder + File.separatorChar + filename;
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			final HttpPut httpPut = new HttpPut(engineDswarmAPI + DswarmBackendStatics.RESOURCES_ENDPOINT + APIStatics.SLASH + resourceUUID);
+		final HttpPut httpPut = new HttpPut(engineDswarmAPI + DswarmBackendStatics.RESOURCES_ENDPOINT + APIStatics.SLASH + resourceUUID);
 
-			final File file1 = new File(completeFileName);
-			final FileBody fileBody = new FileBody(file1);
-			final StringBody stringBodyForName = new StringBody(name, ContentType.TEXT_PLAIN);
-			final StringBody stringBodyForDescription = new StringBody(description, ContentType.TEXT_PLAIN);
+		final File file1 = new File(completeFileName);
+		final FileBody fileBody = new FileBody(file1);
+		final StringBody stringBodyForName = new StringBody(name, ContentType.TEXT_PLAIN);
+		final StringBody stringBodyForDescription = new StringBody(description, ContentType.TEXT_PLAIN);
 
-			final HttpEntity reqEntity = MultipartEntityBuilder.create()
-					.addPart(DswarmBackendStatics.NAME_IDENTIFIER, stringBodyForName)
-					.addPart(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, stringBodyForDescription)
-					.addPart(FILE_IDENTIFIER, fileBody)
-					.build();
+		final HttpEntity reqEntity = MultipartEntityBuilder.create()
+				.addPart(DswarmBackendStatics.NAME_IDENTIFIER, stringBodyForName)
+				.addPart(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, stringBodyForDescription)
+				.addPart(FILE_IDENTIFIER, fileBody)
+				.build();
 
-			httpPut.setEntity(reqEntity);
+		httpPut.setEntity(reqEntity);
 
-			LOG.info(String.format("[%s] request : %s", serviceName, httpPut.getRequestLine()));
+		LOG.info(String.format("[%s] request : %s", serviceName, httpPut.getRequestLine()));
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPut)) {
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPut)) {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				final String message = String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+			final String message = String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
 
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+			switch (statusCode) {
 
-				switch (statusCode) {
+				case 200: {
 
-					case 200: {
+					final String response = TPUUtil.getResponseMessage(httpResponse);
 
-						LOG.info(message);
+					LOG.info(message);
 
-						LOG.debug(String.format("[%s] responseJson : %s", serviceName, response));
+					LOG.debug(String.format("[%s] responseJson : %s", serviceName, response));
+
+					return response;
+				}
+				default: {
 
-						return response;
-					}
-					default: {
+					final String response = TPUUtil.getErrorMessage(httpResponse);
 
-						LOG.error(message);
+					LOG.error(message);
 
-						throw new Exception("something went wrong at data model export: " + message + " " + response);
-					}
+					throw new Exception("something went wrong at data model export: " + message + " " + response);
 				}
 			}
 		}
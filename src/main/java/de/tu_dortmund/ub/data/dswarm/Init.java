@@ -41,6 +41,7 @@ package de.tu_dortmund.ub.data.dswarm;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
@@ -49,11 +50,23 @@ import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.stream.JsonGenerator;
 
+import de.tu_dortmund.ub.data.util.GrowingFileInputStream;
+import de.tu_dortmund.ub.data.util.MultipartStreamEntity;
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+import de.tu_dortmund.ub.data.util.TPUMetadataCache;
 import de.tu_dortmund.ub.data.util.TPUUtil;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
@@ -68,7 +81,6 @@ import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,7 +89,8 @@ import org.dswarm.xmlenhancer.XMLEnhancer;
 
 /**
  * Init-Task for Task Processing Unit for d:swarm<br/>
- * creates a resource + configuration + data model
+ * creates a resource + configuration + data model, whereby the configuration creation and the input schema retrieval run at the same time as the
+ * upload of the input data resource (only the data model creation depends on all of them)
  *
  * @author Dipl.-Math. Hans-Georg Becker (M.L.I.S.)
  * @author Jan Polowinski (SLUB Dresden)
@@ -94,76 +107,172 @@ public class Init implements Callable<String> {
 	public static final String RESOURCE_ID              = "resource_id";
 	public static final String CONFIGURATION_ID         = "configuration_id";
 
-	private static final String JAVA_IO_TMPDIR = "java.io.tmpdir";
-	private static final String OS_TEMP_DIR    = System.getProperty(JAVA_IO_TMPDIR);
+	private static final String ENHANCED_INPUT_DATA_RESOURCE_FOLDER_PREFIX = "tpu-enhanced-";
 
-	private final Properties config;
-	private final String     initResourceFile;
-	private final int        cnt;
+	private static final AtomicInteger ENHANCER_THREAD_COUNTER  = new AtomicInteger(0);
+	private static final AtomicInteger INIT_STEP_THREAD_COUNTER = new AtomicInteger(0);
+
+	// the max. number of init steps of an init that are executed concurrently (configuration creation, input schema retrieval, schema indices)
+	private static final int  INIT_STEPS_PER_INIT = 3;
+	// in seconds
+	private static final long EXECUTOR_KEEP_ALIVE = 60;
+
+	// enhances input data resources while they are uploaded (init.enhance_data_resource.stream); one thread per init thread
+	private static volatile ExecutorService enhancerExecutor = createExecutor("tpu-enhancer-", TPUHttpClient.DEFAULT_ENGINE_THREADS,
+			ENHANCER_THREAD_COUNTER);
+	// executes the init steps that are independent of the resource creation; INIT_STEPS_PER_INIT threads per init thread
+	private static volatile ExecutorService initStepExecutor = createExecutor("tpu-init-step-",
+			INIT_STEPS_PER_INIT * TPUHttpClient.DEFAULT_ENGINE_THREADS, INIT_STEP_THREAD_COUNTER);
+
+	private final Properties       config;
+	private final String           initResourceFile;
+	private final Optional<String> optionalPreparedInputResourceFile;
+	private final int              cnt;
 
 	public Init(final String initResourceFile, final Properties config, final int cnt) {
 
+		this(initResourceFile, Optional.empty(), config, cnt);
+	}
+
+	/**
+	 * @param optionalPreparedInputResourceFile the input data resource file, if it was already prepared (e.g. enhanced) before, e.g., at a separate
+	 *                                          stage of the TPU pipeline
+	 */
+	public Init(final String initResourceFile, final Optional<String> optionalPreparedInputResourceFile, final Properties config, final int cnt) {
+
 		this.initResourceFile = initResourceFile;
+		this.optionalPreparedInputResourceFile = optionalPreparedInputResourceFile;
 		this.config = config;
 		this.cnt = cnt;
 	}
 
+	/**
+	 * (re-)initialises the executors of the init steps and the input data resource enhancement for a new TPU run, i.e., they are bounded by the
+	 * number of init threads (init.threads (pipeline mode) or engine.threads): INIT_STEPS_PER_INIT (= 3) init step threads and one enhancer
+	 * thread per init thread
+	 *
+	 * @param config the TPU configuration
+	 */
+	public static synchronized void initExecutors(final Properties config) {
+
+		final int engineThreads = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_THREADS_IDENTIFIER, config)
+				.orElse(TPUHttpClient.DEFAULT_ENGINE_THREADS);
+		final int initThreads = TPUStatics.PIPELINE_ENGINE_MODE.equals(config.getProperty(TPUStatics.ENGINE_MODE_IDENTIFIER)) ?
+				TPUUtil.getIntegerConfigValue(TPUStatics.INIT_THREADS_IDENTIFIER, config).orElse(engineThreads) :
+				engineThreads;
+
+		// note: already submitted tasks of the previous executors will still be executed
+		enhancerExecutor.shutdown();
+		initStepExecutor.shutdown();
+
+		enhancerExecutor = createExecutor("tpu-enhancer-", initThreads, ENHANCER_THREAD_COUNTER);
+		initStepExecutor = createExecutor("tpu-init-step-", INIT_STEPS_PER_INIT * initThreads, INIT_STEP_THREAD_COUNTER);
+
+		LOG.info("initialise init executors with max. '{}' init step threads and max. '{}' enhancer threads", INIT_STEPS_PER_INIT * initThreads,
+				initThreads);
+	}
+
+	private static ExecutorService createExecutor(final String threadNamePrefix, final int threads, final AtomicInteger threadCounter) {
+
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, EXECUTOR_KEEP_ALIVE, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+
+			final Thread thread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		// idle threads won't be kept between TPU runs
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
 	//    @Override
 	public String call() {
 
 		final String serviceName = config.getProperty(TPUStatics.SERVICE_NAME_IDENTIFIER);
 		final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
-		final Optional<Boolean> optionalEnhanceInputDataResource = TPUUtil.getBooleanConfigValue(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE, config);
 
 		LOG.info(String.format("[%s][%d] Starting 'Init (Task)' ...", serviceName, cnt));
 
-		try {
-
-			final boolean doIngest;
+		final boolean shareConfiguration = TPUSharedConfigurations.isEnabled(config);
 
-			final String doIngestString = config.getProperty(TPUStatics.DO_INITIAL_DATA_MODEL_INGEST_IDENTIFIER);
+		// note: the init steps that are independent of the resource creation run at the same time as the upload of the input data resource
+		// (that will be done in this thread); only the data model creation depends on all of them
+		Optional<CompletableFuture<JsonObject>> optionalConfigurationFuture = Optional.empty();
+		String inputResourceID = null;
 
-			if (doIngestString != null && !doIngestString.trim().isEmpty()) {
+		try {
 
-				doIngest = Boolean.valueOf(doIngestString);
-			} else {
+			final boolean doIngest = doDataModelIngest(config);
 
-				// default = true
-				doIngest = true;
-			}
+			final CompletableFuture<Void> schemaIndicesFuture;
 
 			if (doIngest) {
 
 				LOG.debug("[{}][{}] do data model creation with data ingest", serviceName, cnt);
 
-				TPUUtil.initSchemaIndices(serviceName, config);
+				schemaIndicesFuture = executeInitStep(() -> {
+
+					TPUUtil.initSchemaIndices(serviceName, config);
+
+					return null;
+				});
+			} else {
+
+				schemaIndicesFuture = CompletableFuture.completedFuture(null);
 			}
 
 			final String configurationFileName = config.getProperty(TPUStatics.CONFIGURATION_NAME_IDENTIFIER);
 			final String configurationJSONString = readFile(configurationFileName, Charsets.UTF_8);
 			final JsonObject configurationJSON = TPUUtil.getJsonObject(configurationJSONString);
 
-			final String finalInputResourceFile;
+			// create configuration (or utilise the one that was already created for this TPU run)
+			final CompletableFuture<JsonObject> configurationFuture;
+
+			if (shareConfiguration) {
+
+				configurationFuture = executeInitStep(() -> TPUSharedConfigurations.getOrCreate(configurationJSONString,
+						() -> createConfigurationJSON(configurationJSONString, serviceName, engineDswarmAPI)));
+			} else {
 
-			if (optionalEnhanceInputDataResource.isPresent() && Boolean.TRUE.equals(optionalEnhanceInputDataResource.get())) {
+				configurationFuture = executeInitStep(() -> createConfigurationJSON(configurationJSONString, serviceName, engineDswarmAPI));
+			}
 
-				final Optional<String> optionalUpdatedInputResourceFile = enhanceInputDataResource(initResourceFile, configurationJSON);
+			optionalConfigurationFuture = Optional.of(configurationFuture);
 
-				if (optionalUpdatedInputResourceFile.isPresent()) {
+			// check for existing input schema
+			final CompletableFuture<Optional<JsonObject>> inputSchemaFuture = executeInitStep(() -> getInputSchema(serviceName, engineDswarmAPI));
 
-					finalInputResourceFile = optionalUpdatedInputResourceFile.get();
+			final String name = String.format("resource for project '%s'", initResourceFile);
+			final String description = String.format("'resource does not belong to a project' - case %d", cnt);
+			final String inputResourceJson;
+
+			if (!optionalPreparedInputResourceFile.isPresent() && doStreamingEnhancement(initResourceFile, configurationJSON, config)) {
+
+				inputResourceJson = enhanceAndUploadFileAndCreateResource(initResourceFile, name, description, serviceName, engineDswarmAPI);
+			} else {
+
+				final String finalInputResourceFile;
+
+				if (optionalPreparedInputResourceFile.isPresent()) {
+
+					finalInputResourceFile = optionalPreparedInputResourceFile.get();
 				} else {
 
-					finalInputResourceFile = initResourceFile;
+					finalInputResourceFile = prepareInputDataResource(initResourceFile, configurationJSON, config);
 				}
-			} else {
 
-				finalInputResourceFile = initResourceFile;
-			}
+				try {
 
-			final String name = String.format("resource for project '%s'", initResourceFile);
-			final String description = String.format("'resource does not belong to a project' - case %d", cnt);
-			final String inputResourceJson = uploadFileAndCreateResource(finalInputResourceFile, name, description, serviceName, engineDswarmAPI);
+					inputResourceJson = uploadFileAndCreateResource(finalInputResourceFile, name, description, serviceName, engineDswarmAPI);
+				} finally {
+
+					removePreparedInputDataResource(initResourceFile, finalInputResourceFile);
+				}
+			}
 
 			if (inputResourceJson == null) {
 
@@ -175,7 +284,7 @@ public class Init implements Callable<String> {
 			}
 
 			final JsonObject inputResourceJSON = TPUUtil.getJsonObject(inputResourceJson);
-			final String inputResourceID = inputResourceJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER);
+			inputResourceID = inputResourceJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER);
 			LOG.info(String.format("[%s][%d] input resource id = %s", serviceName, cnt, inputResourceID));
 
 			if (inputResourceID == null) {
@@ -187,43 +296,23 @@ public class Init implements Callable<String> {
 				throw new RuntimeException(message);
 			}
 
-			// TODO: refactor this, so that a configuration only needs to be create once per TPU task
-			// create configuration
-			final String finalConfigurationJSONString = createConfiguration(configurationJSONString, serviceName, engineDswarmAPI);
-
-			if (finalConfigurationJSONString == null) {
-
-				final String message = "something went wrong at configuration creation";
-
-				LOG.error(message);
-
-				throw new RuntimeException(message);
-			}
+			final JsonObject finalConfigurationJSON = join(configurationFuture);
 
-			final JsonObject finalConfigurationJSON = TPUUtil.getJsonObject(finalConfigurationJSONString);
 			final String configurationID = finalConfigurationJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER);
 			LOG.info(String.format("[%s][%d] configuration id = %s", serviceName, cnt, configurationID));
 
-			if (configurationID == null) {
+			final Optional<JsonObject> optionalInputSchema = join(inputSchemaFuture);
 
-				final String message = "something went wrong at configuration creation, no configuration uuid available";
-
-				LOG.error(message);
-
-				throw new RuntimeException(message);
-			}
-
-			// check for existing input schema
-			final Optional<JsonObject> optionalInputSchema = getInputSchema(serviceName, engineDswarmAPI);
+			join(schemaIndicesFuture);
 
 			// create the datamodel (will use it's resource)
 			final String dataModelName = String.format("data model %d", cnt);
 			final String dataModelDescription = String.format("data model description %d", cnt);
-			final String dataModelJSONString = createDataModel(inputResourceJSON, finalConfigurationJSON, optionalInputSchema, dataModelName,
+			final JsonObject dataModelJSON = createDataModel(inputResourceJSON, finalConfigurationJSON, optionalInputSchema, dataModelName,
 					dataModelDescription, serviceName,
 					engineDswarmAPI, doIngest);
 
-			if (dataModelJSONString == null) {
+			if (dataModelJSON == null) {
 
 				final String message = "something went wrong at data model creation";
 
@@ -232,7 +321,6 @@ public class Init implements Callable<String> {
 				throw new RuntimeException(message);
 			}
 
-			final JsonObject dataModelJSON = TPUUtil.getJsonObject(dataModelJSONString);
 			final String dataModelID = dataModelJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER);
 			LOG.info(String.format("[%s][%d] data model id = %s", serviceName, cnt, dataModelID));
 
@@ -249,24 +337,10 @@ public class Init implements Callable<String> {
 			// so transform and export will be done separately
 			LOG.info(String.format("[%s][%d] (Note: Only ingest, but no transformation or export done.)", serviceName, cnt));
 
-			final StringWriter stringWriter = new StringWriter();
-			final JsonGenerator jp = Json.createGenerator(stringWriter);
-
-			jp.writeStartObject();
-			jp.write(DATA_MODEL_ID, dataModelID);
-			jp.write(RESOURCE_ID, inputResourceID);
-			jp.write(CONFIGURATION_ID, configurationID);
-			jp.writeEnd();
-
-			jp.flush();
-			jp.close();
+			// a shared configuration will be removed at the end of the TPU run (and not together with the data model + resource)
+			final String initResultConfigurationID = shareConfiguration ? null : configurationID;
 
-			final String result = stringWriter.toString();
-
-			stringWriter.flush();
-			stringWriter.close();
-
-			return result;
+			return createInitResultJSON(dataModelID, inputResourceID, initResultConfigurationID);
 		} catch (final Exception e) {
 
 			final String message = String.format("[%s][%d] Processing resource '%s' failed with a %s", serviceName, cnt, initResourceFile,
@@ -274,10 +348,77 @@ public class Init implements Callable<String> {
 
 			LOG.error(message, e);
 
+			cleanUp(inputResourceID, shareConfiguration ? Optional.empty() : optionalConfigurationFuture, serviceName, engineDswarmAPI);
+
 			throw new RuntimeException(message, e);
 		}
 	}
 
+	/**
+	 * executes an init step that is independent of the resource creation at the init step executor
+	 */
+	private static <T> CompletableFuture<T> executeInitStep(final Callable<T> initStep) {
+
+		return CompletableFuture.supplyAsync(() -> {
+
+			try {
+
+				return initStep.call();
+			} catch (final Exception e) {
+
+				throw new CompletionException(e);
+			}
+		}, initStepExecutor);
+	}
+
+	/**
+	 * waits for the result of an init step
+	 *
+	 * @throws Exception the failure of the init step
+	 */
+	private static <T> T join(final CompletableFuture<T> initStepFuture) throws Exception {
+
+		try {
+
+			return initStepFuture.join();
+		} catch (final CompletionException e) {
+
+			if (e.getCause() instanceof Exception) {
+
+				throw (Exception) e.getCause();
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * removes the metadata objects that were already created by a failed init (since the init steps run at the same time, e.g., the configuration
+	 * might have been created, although the upload failed)
+	 *
+	 * @param optionalConfigurationFuture the configuration creation (if the configuration isn't shared)
+	 */
+	private void cleanUp(final String inputResourceID, final Optional<CompletableFuture<JsonObject>> optionalConfigurationFuture,
+			final String serviceName, final String engineDswarmAPI) {
+
+		try {
+
+			TPUUtil.deleteObject(inputResourceID, DswarmBackendStatics.RESOURCES_ENDPOINT, serviceName, engineDswarmAPI, cnt);
+
+			if (optionalConfigurationFuture.isPresent()) {
+
+				final JsonObject configurationJSON = join(optionalConfigurationFuture.get());
+
+				TPUUtil.deleteObject(configurationJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER, null),
+						DswarmBackendStatics.CONFIGURATIONS_ENDPOINT, serviceName, engineDswarmAPI, cnt);
+			}
+		} catch (final Exception e) {
+
+			// e.g. the configuration creation failed, too
+			LOG.debug("[{}][{}] couldn't clean-up metadata repository after failed init: {}", serviceName, cnt, e.getMessage());
+		}
+	}
+
 	/**
 	 * uploads a file and creates a data resource with it
 	 *
@@ -290,56 +431,141 @@ public class Init implements Callable<String> {
 	private String uploadFileAndCreateResource(final String filename, final String name, final String description, final String serviceName,
 			final String engineDswarmAPI) throws Exception {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final File file1 = new File(filename);
+		final FileBody fileBody = new FileBody(file1);
+		final StringBody stringBodyForName = new StringBody(name, ContentType.TEXT_PLAIN);
+		final StringBody stringBodyForDescription = new StringBody(description, ContentType.TEXT_PLAIN);
 
-			final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.RESOURCES_ENDPOINT);
+		final HttpEntity reqEntity = MultipartEntityBuilder.create()
+				.addPart(DswarmBackendStatics.NAME_IDENTIFIER, stringBodyForName)
+				.addPart(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, stringBodyForDescription)
+				.addPart(FILE_IDENTIFIER, fileBody)
+				.build();
 
-			final File file1 = new File(filename);
-			final FileBody fileBody = new FileBody(file1);
-			final StringBody stringBodyForName = new StringBody(name, ContentType.TEXT_PLAIN);
-			final StringBody stringBodyForDescription = new StringBody(description, ContentType.TEXT_PLAIN);
+		return uploadAndCreateResource(reqEntity, serviceName, engineDswarmAPI);
+	}
 
-			final HttpEntity reqEntity = MultipartEntityBuilder.create()
-					.addPart(DswarmBackendStatics.NAME_IDENTIFIER, stringBodyForName)
-					.addPart(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, stringBodyForDescription)
-					.addPart(FILE_IDENTIFIER, fileBody)
-					.build();
+	/**
+	 * enhances the input data resource and uploads it (while it's enhanced) to create a data resource with it, i.e., the enhanced input data
+	 * resource will be streamed (chunked) to the d:swarm backend and removed afterwards
+	 *
+	 * @param initResourceFile
+	 * @param name
+	 * @param description
+	 * @return responseJson
+	 * @throws Exception
+	 */
+	private String enhanceAndUploadFileAndCreateResource(final String initResourceFile, final String name, final String description,
+			final String serviceName, final String engineDswarmAPI) throws Exception {
 
-			httpPost.setEntity(reqEntity);
+		// note: with enhancement cache, the enhanced input data resource will be put into the cache after the upload
+		final boolean cache = TPUEnhancementCache.isEnabled();
+		final Path enhancedInputDataResourcePath;
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
+		if (cache) {
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+			enhancedInputDataResourcePath = TPUEnhancementCache.createTempFolder().resolve(Paths.get(initResourceFile).getFileName().toString());
+		} else {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
-				final HttpEntity httpEntity = httpResponse.getEntity();
+			enhancedInputDataResourcePath = createEnhancedInputDataResourcePath(initResourceFile);
+		}
 
-				final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+		LOG.debug("[{}][{}] enhance input data resource '{}' while uploading it", serviceName, cnt, initResourceFile);
 
-				switch (statusCode) {
+		final Future<?> enhancement = enhancerExecutor.submit(() -> {
 
-					case 201: {
+			XMLEnhancer.enhanceXML(initResourceFile, enhancedInputDataResourcePath.toString());
 
-						LOG.info(message);
-						final StringWriter writer = new StringWriter();
-						IOUtils.copy(httpEntity.getContent(), writer, APIStatics.UTF_8);
-						final String responseJson = writer.toString();
-						writer.flush();
-						writer.close();
+			return null;
+		});
 
-						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, responseJson));
+		try (final InputStream enhancedInputDataResourceStream = new GrowingFileInputStream(enhancedInputDataResourcePath, enhancement)) {
 
-						return responseJson;
-					}
-					default: {
+			final HttpEntity reqEntity = MultipartStreamEntity.create(DswarmBackendStatics.NAME_IDENTIFIER, name,
+					DswarmBackendStatics.DESCRIPTION_IDENTIFIER, description, FILE_IDENTIFIER,
+					enhancedInputDataResourcePath.getFileName().toString(), enhancedInputDataResourceStream);
 
-						LOG.error(message);
+			final String responseJson = uploadAndCreateResource(reqEntity, serviceName, engineDswarmAPI);
 
-						EntityUtils.consume(httpEntity);
+			if (cache) {
 
-						throw new Exception("something went wrong at resource upload: " + message);
-					}
+				// the enhancement is done, when the enhanced input data resource was uploaded completely
+				enhancement.get();
+
+				putIntoEnhancementCache(initResourceFile, enhancedInputDataResourcePath);
+			}
+
+			return responseJson;
+		} finally {
+
+			if (cache) {
+
+				// note: this temp folder doesn't exist anymore, if the enhanced input data resource was put into the cache
+				if (Files.exists(enhancedInputDataResourcePath.getParent())) {
+
+					TPUEnhancementCache.discard(enhancedInputDataResourcePath.getParent());
+				}
+			} else {
+
+				removePreparedInputDataResource(initResourceFile, enhancedInputDataResourcePath.toString());
+			}
+		}
+	}
+
+	private void putIntoEnhancementCache(final String initResourceFile, final Path enhancedInputDataResourcePath) {
+
+		try {
+
+			// the resource was already uploaded, i.e., the cached enhanced input data resource isn't in use anymore
+			TPUEnhancementCache.release(TPUEnhancementCache.put(Paths.get(initResourceFile), enhancedInputDataResourcePath.getParent()));
+		} catch (final IOException e) {
+
+			// the resource was already uploaded
+			LOG.error("[{}][{}] couldn't put enhanced input data resource for '{}' into the cache", config.getProperty(TPUStatics.SERVICE_NAME_IDENTIFIER),
+					cnt, initResourceFile, e);
+		}
+	}
+
+	private String uploadAndCreateResource(final HttpEntity reqEntity, final String serviceName, final String engineDswarmAPI) throws Exception {
+
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
+
+		final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.RESOURCES_ENDPOINT);
+
+		httpPost.setEntity(reqEntity);
+
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
+
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
+			final HttpEntity httpEntity = httpResponse.getEntity();
+
+			final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
+
+			switch (statusCode) {
+
+				case 201: {
+
+					LOG.info(message);
+					final StringWriter writer = new StringWriter();
+					IOUtils.copy(httpEntity.getContent(), writer, APIStatics.UTF_8);
+					final String responseJson = writer.toString();
+					writer.flush();
+					writer.close();
+
+					LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, responseJson));
+
+					return responseJson;
+				}
+				default: {
+
+					LOG.error(message);
+
+					EntityUtils.consume(httpEntity);
+
+					throw new Exception("something went wrong at resource upload: " + message);
 				}
 			}
 		}
@@ -355,47 +581,77 @@ public class Init implements Callable<String> {
 	private String createConfiguration(final String configurationJSONString, final String serviceName,
 			final String engineDswarmAPI) throws Exception {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.CONFIGURATIONS_ENDPOINT);
+		final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.CONFIGURATIONS_ENDPOINT);
 
-			final StringEntity reqEntity = new StringEntity(configurationJSONString,
-					ContentType.create(APIStatics.APPLICATION_JSON_MIMETYPE, Consts.UTF_8));
+		final StringEntity reqEntity = new StringEntity(configurationJSONString,
+				ContentType.create(APIStatics.APPLICATION_JSON_MIMETYPE, Consts.UTF_8));
 
-			httpPost.setEntity(reqEntity);
+		httpPost.setEntity(reqEntity);
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+			final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
 
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+			switch (statusCode) {
 
-				switch (statusCode) {
+				case 201: {
 
-					case 201: {
+					final String response = TPUUtil.getResponseMessage(httpResponse);
 
-						LOG.info(message);
+					LOG.info(message);
 
-						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
+					LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
 
-						return response;
-					}
-					default: {
+					return response;
+				}
+				default: {
 
-						LOG.error(message);
+					final String response = TPUUtil.getErrorMessage(httpResponse);
 
-						throw new Exception("something went wrong at configuration creation: " + message + " " + response);
-					}
+					LOG.error(message);
+
+					throw new Exception("something went wrong at configuration creation: " + message + " " + response);
 				}
 			}
 		}
 	}
 
+	private JsonObject createConfigurationJSON(final String configurationJSONString, final String serviceName, final String engineDswarmAPI)
+			throws Exception {
+
+		final String finalConfigurationJSONString = createConfiguration(configurationJSONString, serviceName, engineDswarmAPI);
+
+		if (finalConfigurationJSONString == null) {
+
+			final String message = "something went wrong at configuration creation";
+
+			LOG.error(message);
+
+			throw new RuntimeException(message);
+		}
+
+		final JsonObject finalConfigurationJSON = TPUUtil.getJsonObject(finalConfigurationJSONString);
+		final String configurationID = finalConfigurationJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER, null);
+
+		if (configurationID == null) {
+
+			final String message = "something went wrong at configuration creation, no configuration uuid available";
+
+			LOG.error(message);
+
+			throw new RuntimeException(message);
+		}
+
+		return finalConfigurationJSON;
+	}
+
 	/**
 	 * retrieves an existing input schema from a given schema identifier
 	 *
@@ -412,38 +668,50 @@ public class Init implements Callable<String> {
 		}
 
 		final String inputSchemaID = optionalInputSchemaID.get();
+		final String uri = engineDswarmAPI + DswarmBackendStatics.SCHEMAS_ENDPOINT + APIStatics.SLASH + inputSchemaID;
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		// the input schema is the same for all init tasks of a run
+		return TPUMetadataCache.get(uri, () -> retrieveInputSchema(uri, serviceName));
+	}
 
-			final HttpGet httpGet = new HttpGet(engineDswarmAPI + DswarmBackendStatics.SCHEMAS_ENDPOINT + APIStatics.SLASH + inputSchemaID);
+	private Optional<JsonObject> retrieveInputSchema(final String uri, final String serviceName) throws Exception {
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
+		final HttpGet httpGet = new HttpGet(uri);
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
 
-				final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
 
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				switch (statusCode) {
+			final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
 
-					case 200: {
+			switch (statusCode) {
 
-						LOG.info(message);
+				case 200: {
 
-						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
+					LOG.info(message);
 
-						return Optional.ofNullable(TPUUtil.getJsonObject(response));
-					}
-					default: {
+					// parse directly from the response stream
+					final JsonObject inputSchemaJSON = TPUUtil.getJsonObject(httpResponse.getEntity());
 
-						LOG.error(message);
+					if (inputSchemaJSON != null) {
 
-						throw new Exception("something went wrong at input schema retrieval: " + message + " " + message);
+						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, inputSchemaJSON.toString()));
 					}
+
+					return Optional.ofNullable(inputSchemaJSON);
+				}
+				default: {
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					LOG.error(message);
+
+					throw new Exception("something went wrong at input schema retrieval: " + message + " " + response);
 				}
 			}
 		}
@@ -457,89 +725,297 @@ public class Init implements Callable<String> {
 	 * @param optionalInputSchema
 	 * @param name
 	 * @param description
-	 * @return responseJson
+	 * @return the created data model
 	 * @throws Exception
 	 */
-	private String createDataModel(final JsonObject resourceJSON, final JsonObject configurationJSON, final Optional<JsonObject> optionalInputSchema,
+	private JsonObject createDataModel(final JsonObject resourceJSON, final JsonObject configurationJSON, final Optional<JsonObject> optionalInputSchema,
 			final String name, final String description, final String serviceName, final String engineDswarmAPI, final boolean doIngest)
 			throws Exception {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
+
+		final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.QUESTION_MARK
+				+ DswarmBackendStatics.DO_DATA_MODEL_INGEST_IDENTIFIER + APIStatics.EQUALS + doIngest;
+
+		final HttpPost httpPost = new HttpPost(uri);
+
+		final String dataModelRequestJSON = createDataModelRequestJSON(resourceJSON, configurationJSON, optionalInputSchema, name, description,
+				serviceName, cnt);
+
+		final StringEntity reqEntity = new StringEntity(dataModelRequestJSON, ContentType.create(APIStatics.APPLICATION_JSON_MIMETYPE, Consts.UTF_8));
+
+		httpPost.setEntity(reqEntity);
+
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
+
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
 
-			final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.QUESTION_MARK
-					+ DswarmBackendStatics.DO_DATA_MODEL_INGEST_IDENTIFIER + APIStatics.EQUALS + doIngest;
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-			final HttpPost httpPost = new HttpPost(uri);
+			final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
 
-			final StringWriter stringWriter = new StringWriter();
-			final JsonGenerator jp = Json.createGenerator(stringWriter);
+			switch (statusCode) {
 
-			jp.writeStartObject();
-			jp.write(DswarmBackendStatics.NAME_IDENTIFIER, name);
-			jp.write(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, description);
-			jp.write(CONFIGURATION_IDENTIFIER, configurationJSON);
-			jp.write(DswarmBackendStatics.DATA_RESOURCE_IDENTIFIER, resourceJSON);
+				case 201: {
 
-			if (optionalInputSchema.isPresent()) {
+					LOG.info(message);
 
-				LOG.info("[{}][{}] add existing input schema to input data model", serviceName, cnt);
+					// parse directly from the response stream (the data model might be large, e.g., incl. its schema)
+					final JsonObject dataModelJSON = TPUUtil.getJsonObject(httpResponse.getEntity());
 
-				jp.write(DswarmBackendStatics.SCHEMA_IDENTIFIER, optionalInputSchema.get());
+					if (dataModelJSON != null) {
+
+						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, dataModelJSON.toString()));
+					}
+
+					return dataModelJSON;
+				}
+				default: {
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					LOG.error(message);
+
+					throw new Exception("something went wrong at data model creation: " + message + " " + response);
+				}
 			}
+		}
+	}
 
-			jp.writeEnd();
+	/**
+	 * determines whether the data of the data resource should be ingested at data model creation (default = true)
+	 *
+	 * @param config the TPU configuration
+	 * @return true, if the data should be ingested at data model creation
+	 */
+	static boolean doDataModelIngest(final Properties config) {
 
-			jp.flush();
-			jp.close();
+		final String doIngestString = config.getProperty(TPUStatics.DO_INITIAL_DATA_MODEL_INGEST_IDENTIFIER);
 
-			final StringEntity reqEntity = new StringEntity(stringWriter.toString(),
-					ContentType.create(APIStatics.APPLICATION_JSON_MIMETYPE, Consts.UTF_8));
+		if (doIngestString != null && !doIngestString.trim().isEmpty()) {
 
-			stringWriter.flush();
-			stringWriter.close();
+			return Boolean.valueOf(doIngestString);
+		}
 
-			httpPost.setEntity(reqEntity);
+		// default = true
+		return true;
+	}
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPost.getRequestLine()));
+	/**
+	 * creates the request JSON for data model creation from given resource + configuration JSON (+ optional input schema)
+	 */
+	static String createDataModelRequestJSON(final JsonObject resourceJSON, final JsonObject configurationJSON,
+			final Optional<JsonObject> optionalInputSchema, final String name, final String description, final String serviceName, final int cnt) {
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+		final StringWriter stringWriter = new StringWriter();
+		final JsonGenerator jp = Json.createGenerator(stringWriter);
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+		jp.writeStartObject();
+		jp.write(DswarmBackendStatics.NAME_IDENTIFIER, name);
+		jp.write(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, description);
+		jp.write(CONFIGURATION_IDENTIFIER, configurationJSON);
+		jp.write(DswarmBackendStatics.DATA_RESOURCE_IDENTIFIER, resourceJSON);
 
-				final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+		if (optionalInputSchema.isPresent()) {
 
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+			LOG.info("[{}][{}] add existing input schema to input data model", serviceName, cnt);
 
-				switch (statusCode) {
+			jp.write(DswarmBackendStatics.SCHEMA_IDENTIFIER, optionalInputSchema.get());
+		}
 
-					case 201: {
+		jp.writeEnd();
 
-						LOG.info(message);
+		jp.flush();
+		jp.close();
 
-						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
+		return stringWriter.toString();
+	}
 
-						return response;
-					}
-					default: {
+	/**
+	 * creates the result JSON of an init task, i.e., the identifiers of the created data model, resource and configuration (the configuration
+	 * identifier is optional, i.e., it can be null)
+	 */
+	static String createInitResultJSON(final String dataModelID, final String resourceID, final String configurationID) {
 
-						LOG.error(message);
+		final StringWriter stringWriter = new StringWriter();
+		final JsonGenerator jp = Json.createGenerator(stringWriter);
 
-						throw new Exception("something went wrong at data model creation: " + message + " " + response);
-					}
-				}
-			}
+		jp.writeStartObject();
+		jp.write(DATA_MODEL_ID, dataModelID);
+		jp.write(RESOURCE_ID, resourceID);
+
+		if (configurationID != null) {
+
+			jp.write(CONFIGURATION_ID, configurationID);
+		}
+
+		jp.writeEnd();
+
+		jp.flush();
+		jp.close();
+
+		return stringWriter.toString();
+	}
+
+	/**
+	 * prepares the input data resource for the upload, i.e., enhances it, if this is configured (otherwise, the input data resource file will be
+	 * taken as it is)
+	 *
+	 * @param initResourceFile the input data resource file
+	 * @param config           the TPU configuration
+	 * @return the file that should be uploaded
+	 * @throws Exception
+	 */
+	public static String prepareInputDataResource(final String initResourceFile, final Properties config) throws Exception {
+
+		final String configurationFileName = config.getProperty(TPUStatics.CONFIGURATION_NAME_IDENTIFIER);
+		final String configurationJSONString = readFile(configurationFileName, Charsets.UTF_8);
+		final JsonObject configurationJSON = TPUUtil.getJsonObject(configurationJSONString);
+
+		return prepareInputDataResource(initResourceFile, configurationJSON, config);
+	}
+
+	static String prepareInputDataResource(final String initResourceFile, final JsonObject configurationJSON, final Properties config)
+			throws Exception {
+
+		final Optional<Boolean> optionalEnhanceInputDataResource = TPUUtil.getBooleanConfigValue(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE, config);
+
+		if (!optionalEnhanceInputDataResource.isPresent() || !Boolean.TRUE.equals(optionalEnhanceInputDataResource.get())) {
+
+			return initResourceFile;
 		}
+
+		return enhanceInputDataResource(initResourceFile, configurationJSON).orElse(initResourceFile);
 	}
 
-	private static String readFile(String path, Charset encoding) throws IOException {
+	static String readFile(String path, Charset encoding) throws IOException {
 
 		final byte[] encoded = Files.readAllBytes(Paths.get(path));
 
 		return new String(encoded, encoding);
 	}
 
-	private Optional<String> enhanceInputDataResource(final String inputDataResourceFile, final JsonObject configurationJSON) throws Exception {
+	static Optional<String> enhanceInputDataResource(final String inputDataResourceFile, final JsonObject configurationJSON) throws Exception {
+
+		if (!isEnhanceable(configurationJSON)) {
+
+			return Optional.empty();
+		}
+
+		if (TPUEnhancementCache.isEnabled()) {
+
+			return Optional.of(enhanceInputDataResourceViaCache(inputDataResourceFile).toString());
+		}
+
+		final String newInputDataResourcePath = createEnhancedInputDataResourcePath(inputDataResourceFile).toString();
+
+		LOG.debug("try to enhance input data resource '{}'", inputDataResourceFile);
+
+		XMLEnhancer.enhanceXML(inputDataResourceFile, newInputDataResourcePath);
+
+		LOG.debug("enhanced input data resource for '{}' can be found at ''{}", inputDataResourceFile, newInputDataResourcePath);
+
+		return Optional.of(newInputDataResourcePath);
+	}
+
+	private static Path enhanceInputDataResourceViaCache(final String inputDataResourceFile) throws Exception {
+
+		final Path inputDataResourcePath = Paths.get(inputDataResourceFile);
+		final Optional<Path> optionalCachedInputDataResource = TPUEnhancementCache.get(inputDataResourcePath);
+
+		if (optionalCachedInputDataResource.isPresent()) {
+
+			LOG.debug("enhanced input data resource for '{}' can be found in the enhancement cache at '{}'", inputDataResourceFile,
+					optionalCachedInputDataResource.get());
+
+			return optionalCachedInputDataResource.get();
+		}
+
+		final Path tempFolder = TPUEnhancementCache.createTempFolder();
+
+		try {
+
+			LOG.debug("try to enhance input data resource '{}'", inputDataResourceFile);
+
+			XMLEnhancer.enhanceXML(inputDataResourceFile, tempFolder.resolve(inputDataResourcePath.getFileName().toString()).toString());
+		} catch (final Exception e) {
+
+			TPUEnhancementCache.discard(tempFolder);
+
+			throw e;
+		}
+
+		final Path cachedInputDataResource = TPUEnhancementCache.put(inputDataResourcePath, tempFolder);
+
+		LOG.debug("enhanced input data resource for '{}' was put into the enhancement cache at '{}'", inputDataResourceFile, cachedInputDataResource);
+
+		return cachedInputDataResource;
+	}
+
+	/**
+	 * removes the given prepared (i.e. enhanced) input data resource, if it's not the input data resource itself (note: only enhanced input data
+	 * resources in their own temp folder will be removed, i.e., cached ones will be kept (but released, see {@link TPUEnhancementCache}))
+	 *
+	 * @param initResourceFile          the input data resource file
+	 * @param preparedInputResourceFile the prepared input data resource file
+	 */
+	static void removePreparedInputDataResource(final String initResourceFile, final String preparedInputResourceFile) {
+
+		if (initResourceFile.equals(preparedInputResourceFile)) {
+
+			return;
+		}
+
+		final Path preparedInputResourcePath = Paths.get(preparedInputResourceFile);
+
+		if (TPUEnhancementCache.isPinned(preparedInputResourcePath)) {
+
+			TPUEnhancementCache.release(preparedInputResourcePath);
+
+			return;
+		}
+
+		final Path preparedInputResourceFolder = preparedInputResourcePath.getParent();
+
+		if (preparedInputResourceFolder == null || !preparedInputResourceFolder.getFileName().toString()
+				.startsWith(ENHANCED_INPUT_DATA_RESOURCE_FOLDER_PREFIX)) {
+
+			return;
+		}
+
+		try {
+
+			Files.deleteIfExists(preparedInputResourcePath);
+			Files.deleteIfExists(preparedInputResourceFolder);
+		} catch (final IOException e) {
+
+			LOG.error("couldn't remove prepared input data resource '{}'", preparedInputResourceFile, e);
+		}
+	}
+
+	private static boolean doStreamingEnhancement(final String initResourceFile, final JsonObject configurationJSON, final Properties config)
+			throws IOException {
+
+		final boolean enhance = TPUUtil.getBooleanConfigValue(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE, config).orElse(Boolean.FALSE);
+		final boolean stream = TPUUtil.getBooleanConfigValue(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE_STREAM, config).orElse(Boolean.FALSE);
+
+		// cached enhanced input data resources will be uploaded as they are
+		return enhance && stream && isEnhanceable(configurationJSON) && !TPUEnhancementCache.contains(Paths.get(initResourceFile));
+	}
+
+	/**
+	 * note: every TPU task gets its own temp folder for the enhanced input data resource (i.e. input data resources with the same file name
+	 * won't collide), while the file name of the input data resource will be kept
+	 */
+	private static Path createEnhancedInputDataResourcePath(final String inputDataResourceFile) throws IOException {
+
+		final Path inputDataResourceFileNamePath = Paths.get(inputDataResourceFile).getFileName();
+
+		return Files.createTempDirectory(ENHANCED_INPUT_DATA_RESOURCE_FOLDER_PREFIX).resolve(inputDataResourceFileNamePath.toString());
+	}
+
+	private static boolean isEnhanceable(final JsonObject configurationJSON) {
 
 		final JsonObject parameters = configurationJSON.getJsonObject(DswarmBackendStatics.PARAMETERS_IDENTIFIER);
 
@@ -547,7 +1023,7 @@ public class Init implements Callable<String> {
 
 			LOG.debug("could not find parameters in configuration '{}'", configurationJSON.toString());
 
-			return Optional.empty();
+			return false;
 		}
 
 		final String storageType = parameters.getString(DswarmBackendStatics.STORAGE_TYPE_IDENTIFIER);
@@ -556,7 +1032,7 @@ public class Init implements Callable<String> {
 
 			LOG.debug("could not find storage in parameters of configuration '{}'", configurationJSON.toString());
 
-			return Optional.empty();
+			return false;
 		}
 
 		switch (storageType) {
@@ -577,21 +1053,9 @@ public class Init implements Callable<String> {
 
 				LOG.debug("storage type '{}' is currently not supported for input data resource enhancement", storageType);
 
-				return Optional.empty();
+				return false;
 		}
 
-		final Path inputDataResourcePath = Paths.get(inputDataResourceFile);
-
-		final Path inputDataResourceFileNamePath = inputDataResourcePath.getFileName();
-		final String inputDataResourceFileName = inputDataResourceFileNamePath.toString();
-		final String newInputDataResourcePath = OS_TEMP_DIR + File.separator + inputDataResourceFileName;
-
-		LOG.debug("try to enhance input data resource '{}'", inputDataResourceFile);
-
-		XMLEnhancer.enhanceXML(inputDataResourceFile, newInputDataResourcePath);
-
-		LOG.debug("enhanced input data resource for '{}' can be found at ''{}", inputDataResourceFile, newInputDataResourcePath);
-
-		return Optional.of(newInputDataResourcePath);
+		return true;
 	}
 }
@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.json.JsonObject;
+
+import de.tu_dortmund.ub.data.TPUException;
+import de.tu_dortmund.ub.data.util.ResultFileMerger;
+import de.tu_dortmund.ub.data.util.TPURunLog;
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import de.tu_dortmund.ub.data.util.XMLRecordSplitter;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TPU task execution for a (huge) XML source file that will be split into record-aligned chunks (init.split.records and/or init.split.size), i.e.,
+ * each chunk will be processed by its own TPU task (in parallel) and their results will be concatenated (in chunk order) into one result file
+ * afterwards. The splitting and the merging will be done by a separate executor, i.e., neither the submitting thread nor the threads of the TPU
+ * tasks wait for them. The first failed chunk TPU task fails the TPU task of the source file, i.e., the chunk TPU tasks that haven't been started
+ * yet will be skipped then (as well as all chunk TPU tasks that will be started after the run was aborted (engine.fail_fast)).
+ *
+ * @author tgaengler
+ */
+public class TPUChunkedTask {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUChunkedTask.class);
+
+	private static final String RECORD_TAG_IDENTIFIER  = "record_tag";
+	private static final String DEFAULT_RECORD_TAG     = "record";
+	private static final String MABXML_RECORD_TAG      = "datensatz";
+	private static final String CHUNK_FOLDER_PREFIX    = "tpu-chunks-";
+
+	private final Properties            config;
+	private final String                watchFolderFile;
+	private final String                resourceWatchFolder;
+	private final Optional<String>      optionalOutputDataModelID;
+	private final Optional<String>      optionalExportMimeType;
+	private final Optional<String>      optionalExportFileExtension;
+	private final String                serviceName;
+	private final int                   cnt;
+	private final String                recordTag;
+	private final Optional<TPUSlotPool> optionalSlotPool;
+	private final Executor              pool;
+	private final TPURunLog             runLog;
+
+	// note: will only be modified by the splitting thread (before the merging)
+	private final List<TPUTask>                   chunkTasks   = new ArrayList<>();
+	private final List<CompletableFuture<String>> chunkResults = new ArrayList<>();
+
+	private Path      chunkFolder;
+	private Exception splitFailure;
+	private boolean   splitCompleted;
+
+	private volatile boolean chunkFailed;
+
+	private TPUChunkedTask(final Properties config,
+	                       final String watchFolderFile,
+	                       final String resourceWatchFolder,
+	                       final Optional<String> optionalOutputDataModelID,
+	                       final Optional<String> optionalExportMimeType,
+	                       final Optional<String> optionalExportFileExtension,
+	                       final String serviceName,
+	                       final int cnt,
+	                       final String recordTag,
+	                       final Optional<TPUSlotPool> optionalSlotPool,
+	                       final Executor pool,
+	                       final TPURunLog runLog) {
+
+		this.config = config;
+		this.watchFolderFile = watchFolderFile;
+		this.resourceWatchFolder = resourceWatchFolder;
+		this.optionalOutputDataModelID = optionalOutputDataModelID;
+		this.optionalExportMimeType = optionalExportMimeType;
+		this.optionalExportFileExtension = optionalExportFileExtension;
+		this.serviceName = serviceName;
+		this.cnt = cnt;
+		this.recordTag = recordTag;
+		this.optionalSlotPool = optionalSlotPool;
+		this.pool = pool;
+		this.runLog = runLog;
+	}
+
+	/**
+	 * @param config the TPU configuration
+	 * @return true, if the source files should be split (init.split.records and/or init.split.size)
+	 */
+	static boolean isEnabled(final Properties config) {
+
+		return getMaxRecords(config) > 0 || getMaxBytes(config) > 0;
+	}
+
+	/**
+	 * determines the (local) name of the record element for splitting the source files, i.e., init.split.record_tag, the record tag of the
+	 * configuration or the default record tag of the storage type of the configuration
+	 *
+	 * @param config                      the TPU configuration
+	 * @param optionalExportFileExtension the file extension of the results (only XML results can be merged, see {@link ResultFileMerger})
+	 * @return the record tag or nothing, if the source files shouldn't (or can't) be split
+	 * @throws Exception
+	 */
+	static Optional<String> determineRecordTag(final Properties config, final Optional<String> optionalExportFileExtension) throws Exception {
+
+		if (!isEnabled(config)) {
+
+			return Optional.empty();
+		}
+
+		final String exportFileExtension = Transform.determineExportFileExtension(optionalExportFileExtension);
+
+		if (!TaskProcessingUnit.XML_FILE_ENDING.equals(exportFileExtension)) {
+
+			LOG.warn("results with file extension '{}' can't be merged (only '{}'); won't split source files", exportFileExtension,
+					TaskProcessingUnit.XML_FILE_ENDING);
+
+			return Optional.empty();
+		}
+
+		final Optional<String> optionalRecordTag = TPUUtil.getStringConfigValue(TPUStatics.INIT_SPLIT_RECORD_TAG_IDENTIFIER, config);
+
+		if (optionalRecordTag.isPresent()) {
+
+			return optionalRecordTag;
+		}
+
+		final String configurationFileName = config.getProperty(TPUStatics.CONFIGURATION_NAME_IDENTIFIER);
+		final JsonObject configurationJSON = TPUUtil.getJsonObject(Init.readFile(configurationFileName, StandardCharsets.UTF_8));
+		final JsonObject parameters = configurationJSON.getJsonObject(DswarmBackendStatics.PARAMETERS_IDENTIFIER);
+
+		if (parameters == null) {
+
+			LOG.warn("could not find parameters in configuration '{}'; won't split source files", configurationFileName);
+
+			return Optional.empty();
+		}
+
+		final String recordTag = parameters.getString(RECORD_TAG_IDENTIFIER, null);
+
+		if (recordTag != null && !recordTag.trim().isEmpty()) {
+
+			return Optional.of(recordTag);
+		}
+
+		final String storageType = parameters.getString(DswarmBackendStatics.STORAGE_TYPE_IDENTIFIER, null);
+
+		if (storageType == null) {
+
+			LOG.warn("could not find storage type in configuration '{}'; won't split source files", configurationFileName);
+
+			return Optional.empty();
+		}
+
+		switch (storageType) {
+
+			case DswarmBackendStatics.MABXML_STORAGE_TYPE:
+
+				return Optional.of(MABXML_RECORD_TAG);
+			case DswarmBackendStatics.MARCXML_STORAGE_TYPE:
+			case DswarmBackendStatics.PNX_STORAGE_TYPE:
+			case DswarmBackendStatics.OAI_PMH_DC_ELEMENTS_STORAGE_TYPE:
+			case DswarmBackendStatics.OAI_PMH_DCE_AND_EDM_ELEMENTS_STORAGE_TYPE:
+			case DswarmBackendStatics.OAIPMH_DC_TERMS_STORAGE_TYPE:
+			case DswarmBackendStatics.OAIPMH_MARCXML_STORAGE_TYPE:
+
+				return Optional.of(DEFAULT_RECORD_TAG);
+			default:
+
+				LOG.warn("storage type '{}' is currently not supported for source file splitting (please set init.split.record_tag)", storageType);
+
+				return Optional.empty();
+		}
+	}
+
+	/**
+	 * @return true, if the given source file should be split (i.e. it's larger than init.split.size, if this is set)
+	 */
+	static boolean shouldSplit(final Properties config, final String resourceWatchFolder, final String watchFolderFile) throws IOException {
+
+		final long maxBytes = getMaxBytes(config);
+
+		return maxBytes <= 0 || Files.size(Paths.get(resourceWatchFolder, watchFolderFile)) > maxBytes;
+	}
+
+	/**
+	 * splits the given source file (by the given split executor) and submits a TPU task for each chunk to the given pool; the chunk results will be
+	 * merged (by the given split executor) after all chunk TPU tasks are finished
+	 *
+	 * @return the (future) result of the TPU task execution for the source file
+	 */
+	static CompletableFuture<String> submit(final Executor pool,
+	                                        final Executor splitExecutor,
+	                                        final TPURunLog runLog,
+	                                        final String recordTag,
+	                                        final Properties config,
+	                                        final String watchFolderFile,
+	                                        final String resourceWatchFolder,
+	                                        final Optional<String> optionalOutputDataModelID,
+	                                        final Optional<String> optionalExportMimeType,
+	                                        final Optional<String> optionalExportFileExtension,
+	                                        final String serviceName,
+	                                        final int cnt,
+	                                        final Optional<TPUSlotPool> optionalSlotPool) {
+
+		TPUSchedule.started(watchFolderFile);
+
+		final TPUChunkedTask chunkedTask = new TPUChunkedTask(config, watchFolderFile, resourceWatchFolder, optionalOutputDataModelID,
+				optionalExportMimeType, optionalExportFileExtension, serviceName, cnt, recordTag, optionalSlotPool, pool, runLog);
+
+		// note: the merging will always be executed (incl. the clean-up), i.e., also after a failed splitting
+		return CompletableFuture.runAsync(chunkedTask::split, splitExecutor)
+				.thenCompose(ignored -> CompletableFuture.allOf(chunkedTask.chunkResults.toArray(new CompletableFuture<?>[0])))
+				.handleAsync((ignored, throwable) -> chunkedTask.merge(), splitExecutor);
+	}
+
+	private void split() {
+
+		if (runLog.isAborted()) {
+
+			return;
+		}
+
+		try {
+
+			chunkFolder = Files.createTempDirectory(CHUNK_FOLDER_PREFIX);
+
+			LOG.info("[{}][{}] split source file '{}' into chunks in '{}'", serviceName, cnt, watchFolderFile, chunkFolder);
+
+			// the chunk results will be written to the chunk folder, since they are named like the merged result (i.e. with the same counter)
+			final Properties chunkConfig = new Properties();
+			chunkConfig.putAll(config);
+			chunkConfig.setProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER, chunkFolder.toString());
+
+			try (final XMLRecordSplitter splitter = new XMLRecordSplitter(Paths.get(resourceWatchFolder, watchFolderFile), chunkFolder, recordTag,
+					getMaxRecords(config), getMaxBytes(config))) {
+
+				while (splitter.hasNext()) {
+
+					if (chunkFailed || runLog.isAborted()) {
+
+						LOG.info("[{}][{}] stop splitting source file '{}' after '{}' chunks", serviceName, cnt, watchFolderFile,
+								splitter.getChunkCount());
+
+						return;
+					}
+
+					final Path chunkFile = splitter.next();
+
+					final TPUTask chunkTask = new TPUTask(chunkConfig, chunkFile.getFileName().toString(), chunkFolder.toString(),
+							optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension, serviceName, cnt, optionalSlotPool, true);
+
+					chunkTasks.add(chunkTask);
+					chunkResults.add(submitChunk(chunkTask));
+				}
+
+				splitCompleted = true;
+
+				LOG.info("[{}][{}] split source file '{}' into '{}' chunks", serviceName, cnt, watchFolderFile, splitter.getChunkCount());
+			}
+		} catch (final IOException | RuntimeException e) {
+
+			// the already submitted chunks need to be finished before the clean-up
+			splitFailure = e;
+		}
+	}
+
+	/**
+	 * note: the chunk TPU task will be skipped, if another chunk TPU task of the source file already failed (i.e. the result of the source file
+	 * can't be complete anymore) or the run was aborted
+	 */
+	private CompletableFuture<String> submitChunk(final TPUTask chunkTask) {
+
+		final Callable<String> task = runLog.skipIfAborted(chunkTask);
+
+		final CompletableFuture<String> chunkResult = CompletableFuture.supplyAsync(() -> {
+
+			if (chunkFailed) {
+
+				throw new CancellationException(String.format("another chunk of source file '%s' failed", watchFolderFile));
+			}
+
+			try {
+
+				return task.call();
+			} catch (final RuntimeException e) {
+
+				throw e;
+			} catch (final Exception e) {
+
+				throw new CompletionException(e);
+			}
+		}, pool);
+
+		chunkResult.whenComplete((result, throwable) -> {
+
+			if (throwable != null) {
+
+				chunkFailed = true;
+			}
+		});
+
+		return chunkResult;
+	}
+
+	private String merge() {
+
+		Throwable failure = splitFailure;
+		boolean cancelled = !splitCompleted;
+
+		final List<Path> chunkResultFiles = new ArrayList<>();
+
+		try {
+
+			// note: all chunk TPU tasks are finished at this point
+			for (int i = 0; i < chunkResults.size(); i++) {
+
+				try {
+
+					chunkResults.get(i).join();
+
+					final Optional<String> optionalChunkResultFileName = chunkTasks.get(i).getResultFileName();
+
+					optionalChunkResultFileName.ifPresent(chunkResultFileName -> chunkResultFiles.add(Paths.get(chunkResultFileName)));
+				} catch (final CompletionException e) {
+
+					if (e.getCause() instanceof CancellationException) {
+
+						cancelled = true;
+					} else if (failure == null) {
+
+						failure = e.getCause();
+					}
+				}
+			}
+
+			if (failure != null) {
+
+				final String message = String
+						.format("[%s][%d] TPU task execution '%d' failed for source file '%s'", serviceName, cnt, cnt, watchFolderFile);
+
+				throw new CompletionException(new TPUException(message, failure));
+			}
+
+			if (cancelled) {
+
+				// i.e. the run was aborted
+				throw new CancellationException(String.format("TPU run was aborted before source file '%s' was processed", watchFolderFile));
+			}
+
+			final Optional<String> optionalResultFileName = mergeChunkResults(chunkResultFiles);
+
+			TPUManifest.record(resourceWatchFolder, watchFolderFile, optionalResultFileName);
+			TPUSchedule.finished(resourceWatchFolder, watchFolderFile);
+
+			return String.format("[%s][%d] TPU task execution '%d' result = '%s' for source file '%s' ('%d' chunks)", serviceName, cnt, cnt,
+					optionalResultFileName.map(resultFileName -> "success - exported XML to '" + resultFileName + "'").orElse("success"),
+					watchFolderFile, chunkResults.size());
+		} catch (final IOException e) {
+
+			throw new CompletionException(e);
+		} finally {
+
+			cleanUp();
+		}
+	}
+
+	private Optional<String> mergeChunkResults(final List<Path> chunkResultFiles) throws IOException {
+
+		if (chunkResultFiles.isEmpty() || chunkResultFiles.size() < chunkResults.size()) {
+
+			// results weren't persisted in the results folder
+			return Optional.empty();
+		}
+
+		// the same naming scheme as for the results of all other TPU tasks (with the input data model of the first chunk)
+		final String inputDataModelID = chunkTasks.get(0).getInputDataModelID().get();
+		final Optional<String> optionalResultFileName = Transform
+				.determineResultFileName(config, inputDataModelID, optionalOutputDataModelID.orElse(inputDataModelID), optionalExportFileExtension, cnt);
+
+		if (optionalResultFileName.isPresent()) {
+
+			ResultFileMerger.merge(chunkResultFiles, Paths.get(optionalResultFileName.get()));
+		}
+
+		return optionalResultFileName;
+	}
+
+	/**
+	 * removes the chunks and their results
+	 */
+	private void cleanUp() {
+
+		if (chunkFolder == null) {
+
+			return;
+		}
+
+		try {
+
+			FileUtils.deleteDirectory(chunkFolder.toFile());
+		} catch (final IOException e) {
+
+			LOG.error("[{}][{}] couldn't remove chunks of source file '{}'", serviceName, cnt, watchFolderFile, e);
+		}
+	}
+
+	private static long getMaxRecords(final Properties config) {
+
+		return TPUUtil.getLongConfigValue(TPUStatics.INIT_SPLIT_RECORDS_IDENTIFIER, config).orElse(0L);
+	}
+
+	private static long getMaxBytes(final Properties config) {
+
+		return TPUUtil.getLongConfigValue(TPUStatics.INIT_SPLIT_SIZE_IDENTIFIER, config).orElse(0L);
+	}
+}
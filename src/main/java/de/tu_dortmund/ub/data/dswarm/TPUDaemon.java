@@ -0,0 +1,414 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.tu_dortmund.ub.data.TPUException;
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-running TPU mode (engine.daemon=true): watches the resource watch folder via a {@link WatchService} and processes new (or modified) files
+ * in batches, whereby the HTTP connection pool, the metadata cache, the shared configurations and the slot pool stay warm between the batches.
+ * <br/>
+ * A file will only be processed after its size and modification time didn't change for the debounce interval (engine.daemon.debounce), i.e.,
+ * partially written files will be skipped until they are complete. The daemon runs until the JVM shuts down (or {@link #stop()} is called).
+ *
+ * @author tgaengler
+ */
+public class TPUDaemon {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUDaemon.class);
+
+	// in ms
+	public static final long DEFAULT_DEBOUNCE = 5000;
+
+	private static final long MAX_POLL_INTERVAL = 1000;
+	private static final long STOP_TIMEOUT      = 60;
+
+	/**
+	 * executes the TPU tasks for a batch of (settled) files
+	 */
+	@FunctionalInterface
+	public interface BatchExecutor {
+
+		/**
+		 * @param watchFolderFiles the (settled) files of the batch
+		 * @param optionalSlotPool the slot pool of the daemon run (if any)
+		 * @param taskCounter      the counter of the TPU task executions of the daemon run, i.e., it continues across the batches (the result
+		 *                         file name is derived from the (recycled) input data model and the counter of a TPU task execution)
+		 */
+		String execute(final List<String> watchFolderFiles, final Optional<TPUSlotPool> optionalSlotPool, final AtomicInteger taskCounter)
+				throws Exception;
+	}
+
+	private final Properties    config;
+	private final Path          resourceWatchFolderPath;
+	private final String        serviceName;
+	private final BatchExecutor batchExecutor;
+	private final long          debounce;
+
+	// files that were seen, but are not settled yet
+	private final Map<String, FileState> pendingFiles   = new HashMap<>();
+	// files that were already processed (with their state at processing)
+	private final Map<String, FileState> processedFiles = new HashMap<>();
+
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	private volatile boolean      running = true;
+	private volatile WatchService watchService;
+
+	private Optional<TPUSlotPool> optionalSlotPool = Optional.empty();
+
+	private final AtomicInteger taskCounter = new AtomicInteger();
+
+	public TPUDaemon(final Properties config, final Path resourceWatchFolderPath, final String serviceName, final BatchExecutor batchExecutor) {
+
+		this.config = config;
+		this.resourceWatchFolderPath = resourceWatchFolderPath;
+		this.serviceName = serviceName;
+		this.batchExecutor = batchExecutor;
+
+		debounce = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_DAEMON_DEBOUNCE_IDENTIFIER, config).orElse(DEFAULT_DEBOUNCE);
+	}
+
+	/**
+	 * @param config the TPU configuration
+	 * @return true, if the TPU should run in daemon mode (default = false)
+	 */
+	public static boolean isEnabled(final Properties config) {
+
+		return TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_DAEMON_IDENTIFIER, config).orElse(Boolean.FALSE);
+	}
+
+	/**
+	 * watches the resource watch folder and processes its files until the daemon will be stopped
+	 *
+	 * @return a summary of the daemon run
+	 * @throws Exception
+	 */
+	public String run() throws Exception {
+
+		final Thread shutdownHook = new Thread(this::stop, "tpu-daemon-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+		LOG.info("[{}] start TPU daemon for resource watch folder '{}' with a debounce interval of '{}' ms", serviceName, resourceWatchFolderPath,
+				debounce);
+
+		try {
+
+			watchService = resourceWatchFolderPath.getFileSystem().newWatchService();
+			resourceWatchFolderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+			// the files that are already in the folder
+			scan();
+
+			final long pollInterval = Math.min(debounce, MAX_POLL_INTERVAL);
+
+			while (running) {
+
+				final WatchKey watchKey = watchService.poll(pollInterval, TimeUnit.MILLISECONDS);
+
+				if (watchKey != null) {
+
+					for (final WatchEvent<?> event : watchKey.pollEvents()) {
+
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+							LOG.debug("[{}] watch service overflow; re-scan resource watch folder", serviceName);
+
+							scan();
+
+							continue;
+						}
+
+						observe(resourceWatchFolderPath.resolve((Path) event.context()));
+					}
+
+					if (!watchKey.reset()) {
+
+						final String message = String
+								.format("[%s] resource watch folder '%s' is not accessible anymore", serviceName, resourceWatchFolderPath);
+
+						LOG.error(message);
+
+						throw new TPUException(message);
+					}
+				}
+
+				processSettledFiles();
+			}
+		} catch (final ClosedWatchServiceException e) {
+
+			LOG.debug("[{}] watch service was closed", serviceName);
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+		} finally {
+
+			closeWatchService();
+
+			optionalSlotPool.ifPresent(TPUSlotPool::drain);
+
+			try {
+
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (final IllegalStateException e) {
+
+				// JVM is already shutting down
+			}
+
+			stopped.countDown();
+		}
+
+		final String message = String.format("[%s] TPU daemon stopped after processing '%d' files", serviceName, processedFiles.size());
+
+		LOG.info(message);
+
+		return message;
+	}
+
+	/**
+	 * stops the daemon and waits (a bit) for the completion of the current batch
+	 */
+	public void stop() {
+
+		if (!running) {
+
+			return;
+		}
+
+		LOG.info("[{}] stop TPU daemon", serviceName);
+
+		running = false;
+
+		closeWatchService();
+
+		try {
+
+			stopped.await(STOP_TIMEOUT, TimeUnit.SECONDS);
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void scan() throws IOException {
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(resourceWatchFolderPath)) {
+
+			for (final Path file : directoryStream) {
+
+				observe(file);
+			}
+		}
+	}
+
+	private void observe(final Path file) throws IOException {
+
+		final Optional<FileState> optionalFileState = FileState.of(file);
+
+		if (!optionalFileState.isPresent()) {
+
+			return;
+		}
+
+		final String fileName = file.getFileName().toString();
+		final FileState fileState = optionalFileState.get();
+
+		if (fileState.equals(processedFiles.get(fileName))) {
+
+			// nothing changed since processing
+			return;
+		}
+
+		// note: the observation time of an unchanged pending file will be kept
+		if (!fileState.equals(pendingFiles.get(fileName))) {
+
+			pendingFiles.put(fileName, fileState);
+		}
+	}
+
+	private void processSettledFiles() throws IOException {
+
+		if (pendingFiles.isEmpty()) {
+
+			return;
+		}
+
+		final long now = System.currentTimeMillis();
+		final List<String> settledFiles = new ArrayList<>();
+		final Iterator<Map.Entry<String, FileState>> iterator = pendingFiles.entrySet().iterator();
+
+		while (iterator.hasNext()) {
+
+			final Map.Entry<String, FileState> entry = iterator.next();
+			final Optional<FileState> optionalCurrentFileState = FileState.of(resourceWatchFolderPath.resolve(entry.getKey()));
+
+			if (!optionalCurrentFileState.isPresent()) {
+
+				// file was removed in the meantime
+				iterator.remove();
+
+				continue;
+			}
+
+			final FileState currentFileState = optionalCurrentFileState.get();
+
+			if (!currentFileState.equals(entry.getValue())) {
+
+				// file is still being written
+				entry.setValue(currentFileState);
+
+				continue;
+			}
+
+			if (now - entry.getValue().observed >= debounce) {
+
+				settledFiles.add(entry.getKey());
+			}
+		}
+
+		if (settledFiles.isEmpty()) {
+
+			return;
+		}
+
+		settledFiles.sort(TPUSchedule.comparator(resourceWatchFolderPath));
+
+		LOG.info("[{}] process '{}' new files from resource watch folder '{}'", serviceName, settledFiles.size(), resourceWatchFolderPath);
+
+		if (!optionalSlotPool.isPresent()) {
+
+			optionalSlotPool = TPUSlotPool.create(config, serviceName);
+		}
+
+		for (final String settledFile : settledFiles) {
+
+			// note: a failed file won't be processed again until it will be modified
+			processedFiles.put(settledFile, pendingFiles.remove(settledFile));
+		}
+
+		try {
+
+			final String result = batchExecutor.execute(settledFiles, optionalSlotPool, taskCounter);
+
+			LOG.info(result);
+		} catch (final Exception e) {
+
+			// the daemon keeps running
+			LOG.error("[{}] something went wrong at processing a batch of '{}' files", serviceName, settledFiles.size(), e);
+		}
+	}
+
+	private void closeWatchService() {
+
+		final WatchService currentWatchService = watchService;
+
+		if (currentWatchService == null) {
+
+			return;
+		}
+
+		try {
+
+			currentWatchService.close();
+		} catch (final IOException e) {
+
+			LOG.error("[{}] couldn't close watch service", serviceName, e);
+		}
+	}
+
+	/**
+	 * size + modification time of a file (+ the time of its observation)
+	 */
+	private static final class FileState {
+
+		private final long size;
+		private final long lastModified;
+		private final long observed = System.currentTimeMillis();
+
+		private FileState(final long size, final long lastModified) {
+
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		private static Optional<FileState> of(final Path file) throws IOException {
+
+			try {
+
+				final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+				if (!attributes.isRegularFile()) {
+
+					return Optional.empty();
+				}
+
+				return Optional.of(new FileState(attributes.size(), attributes.lastModifiedTime().toMillis()));
+			} catch (final NoSuchFileException e) {
+
+				return Optional.empty();
+			}
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+
+			if (this == o) {
+
+				return true;
+			}
+
+			if (!(o instanceof FileState)) {
+
+				return false;
+			}
+
+			final FileState fileState = (FileState) o;
+
+			return size == fileState.size && lastModified == fileState.lastModified;
+		}
+
+		@Override
+		public int hashCode() {
+
+			return 31 * Long.hashCode(size) + Long.hashCode(lastModified);
+		}
+	}
+}
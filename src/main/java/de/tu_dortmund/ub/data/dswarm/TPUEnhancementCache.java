@@ -0,0 +1,539 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.dswarm.xmlenhancer.XMLEnhancer;
+
+/**
+ * Content-addressed on-disk cache for enhanced input data resources (init.enhance_data_resource.cache), i.e., input data resources with the same
+ * content (and the same XML enhancer version) will only be enhanced once (across TPU runs).<br/>
+ * Each entry is a folder (named by the SHA-256 of enhancer version + content digest) that contains the enhanced input data resource. Entries will
+ * be written into a temp folder in the cache folder first and published via an atomic rename afterwards, i.e., several TPU workers can share the
+ * cache folder. The least recently used entries will be evicted, if the cache exceeds its max. size (init.enhance_data_resource.cache.max_size).<br/>
+ * An entry that was handed out (see {@link #get(Path)} and {@link #put(Path, Path)}) is pinned until it will be released (see
+ * {@link #release(Path)}), i.e., it's hard-linked into an own pin folder (in the cache folder), so that its upload can't fail, if the entry will be
+ * evicted in the meantime (by this or another TPU worker).
+ *
+ * @author tgaengler
+ */
+public final class TPUEnhancementCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUEnhancementCache.class);
+
+	// 10 GB
+	public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+
+	private static final String TEMP_FOLDER_PREFIX = ".tmp-";
+	private static final String PIN_FOLDER_PREFIX  = ".pin-";
+
+	// in ms; temp folders of crashed runs
+	private static final long STALE_TEMP_FOLDER_AGE = 60 * 60 * 1000;
+	// in ms; pin folders of crashed runs (note: a pinned entry might wait a long time for its upload)
+	private static final long STALE_PIN_FOLDER_AGE  = 24 * 60 * 60 * 1000;
+
+	// source file -> (size, modification time, key)
+	private static final ConcurrentMap<Path, CacheKey> KEYS = new ConcurrentHashMap<>();
+
+	private static final AtomicLong HITS      = new AtomicLong();
+	private static final AtomicLong MISSES    = new AtomicLong();
+	private static final AtomicLong EVICTIONS = new AtomicLong();
+
+	private static volatile boolean enabled = false;
+	private static volatile Path    cacheFolder;
+	private static volatile long    maxSize;
+	private static volatile String  enhancerVersion;
+
+	private TPUEnhancementCache() {
+
+	}
+
+	/**
+	 * (re-)initialises the cache for a new run
+	 *
+	 * @param config      the TPU configuration
+	 * @param serviceName the name of the TPU service
+	 * @throws IOException
+	 */
+	public static synchronized void init(final Properties config, final String serviceName) throws IOException {
+
+		close();
+
+		KEYS.clear();
+		HITS.set(0);
+		MISSES.set(0);
+		EVICTIONS.set(0);
+
+		final Optional<String> optionalCacheFolder = TPUUtil.getStringConfigValue(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE_CACHE_IDENTIFIER, config);
+
+		if (!optionalCacheFolder.isPresent()) {
+
+			return;
+		}
+
+		cacheFolder = Files.createDirectories(Paths.get(optionalCacheFolder.get()));
+		maxSize = TPUUtil.getLongConfigValue(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE_CACHE_MAX_SIZE_IDENTIFIER, config).orElse(DEFAULT_MAX_SIZE);
+		enhancerVersion = determineEnhancerVersion();
+
+		removeStaleTempFolders();
+
+		enabled = true;
+
+		LOG.info("[{}] initialised enhancement cache '{}' with max. size '{}' bytes (enhancer version = '{}')", serviceName, cacheFolder, maxSize,
+				enhancerVersion);
+	}
+
+	public static boolean isEnabled() {
+
+		return enabled;
+	}
+
+	/**
+	 * note: a cache miss will be counted, while a cache hit will only be counted at {@link #get(Path)}
+	 *
+	 * @param inputFile the input data resource
+	 * @return true, if the cache contains the enhanced input data resource
+	 * @throws IOException
+	 */
+	static boolean contains(final Path inputFile) throws IOException {
+
+		if (!enabled) {
+
+			return false;
+		}
+
+		final boolean contains = lookUp(cacheFolder.resolve(key(inputFile))).isPresent();
+
+		if (!contains) {
+
+			MISSES.incrementAndGet();
+		}
+
+		return contains;
+	}
+
+	/**
+	 * @param inputFile the input data resource
+	 * @return the (pinned) cached enhanced input data resource (if available), which needs to be released after its usage (see
+	 * {@link #release(Path)})
+	 * @throws IOException
+	 */
+	static Optional<Path> get(final Path inputFile) throws IOException {
+
+		if (!enabled) {
+
+			return Optional.empty();
+		}
+
+		final Path entryFolder = cacheFolder.resolve(key(inputFile));
+		final Optional<Path> optionalCachedFile = lookUp(entryFolder);
+		final Optional<Path> optionalPinnedFile = optionalCachedFile.isPresent() ? pin(optionalCachedFile.get()) : Optional.empty();
+
+		if (!optionalPinnedFile.isPresent()) {
+
+			MISSES.incrementAndGet();
+
+			return Optional.empty();
+		}
+
+		HITS.incrementAndGet();
+
+		try {
+
+			// LRU
+			Files.setLastModifiedTime(entryFolder, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (final NoSuchFileException e) {
+
+			LOG.debug("entry '{}' was evicted from the enhancement cache in the meantime", entryFolder);
+		}
+
+		return optionalPinnedFile;
+	}
+
+	/**
+	 * @return a new temp folder (in the cache folder) for an enhanced input data resource that should be put into the cache afterwards
+	 * @throws IOException
+	 */
+	static Path createTempFolder() throws IOException {
+
+		return Files.createDirectory(cacheFolder.resolve(TEMP_FOLDER_PREFIX + UUID.randomUUID()));
+	}
+
+	/**
+	 * puts the enhanced input data resource of the given temp folder into the cache (via atomic rename)
+	 *
+	 * @param inputFile  the input data resource
+	 * @param tempFolder the temp folder that contains the enhanced input data resource
+	 * @return the (pinned) cached enhanced input data resource, which needs to be released after its usage (see {@link #release(Path)})
+	 * @throws IOException
+	 */
+	static Path put(final Path inputFile, final Path tempFolder) throws IOException {
+
+		final String key = key(inputFile);
+		final Path entryFolder = cacheFolder.resolve(key);
+
+		try {
+
+			Files.move(tempFolder, entryFolder, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+
+			if (!lookUp(entryFolder).isPresent()) {
+
+				discard(tempFolder);
+
+				throw e;
+			}
+
+			// another worker was faster
+			LOG.debug("enhanced input data resource for '{}' was already put into the cache", inputFile);
+
+			discard(tempFolder);
+		}
+
+		final Optional<Path> optionalCachedFile = lookUp(entryFolder);
+		final Optional<Path> optionalPinnedFile = optionalCachedFile.isPresent() ? pin(optionalCachedFile.get()) : Optional.empty();
+
+		if (!optionalPinnedFile.isPresent()) {
+
+			throw new IOException(String.format("couldn't put enhanced input data resource for '%s' into the cache", inputFile));
+		}
+
+		evict(key);
+
+		return optionalPinnedFile.get();
+	}
+
+	/**
+	 * @param file a file
+	 * @return true, if the given file is a pinned cached enhanced input data resource
+	 */
+	static boolean isPinned(final Path file) {
+
+		final Path currentCacheFolder = cacheFolder;
+		final Path folder = file.toAbsolutePath().getParent();
+
+		return currentCacheFolder != null && folder != null && folder.getFileName().toString().startsWith(PIN_FOLDER_PREFIX)
+				&& currentCacheFolder.toAbsolutePath().equals(folder.getParent());
+	}
+
+	/**
+	 * releases the given pinned cached enhanced input data resource, i.e., its entry can be evicted again
+	 *
+	 * @param pinnedFile a pinned cached enhanced input data resource
+	 */
+	static void release(final Path pinnedFile) {
+
+		if (!isPinned(pinnedFile)) {
+
+			LOG.warn("'{}' is not a pinned entry of the enhancement cache", pinnedFile);
+
+			return;
+		}
+
+		discard(pinnedFile.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * removes the given temp folder (e.g. after a failed enhancement)
+	 *
+	 * @param tempFolder a temp folder of the cache
+	 */
+	static void discard(final Path tempFolder) {
+
+		try {
+
+			FileUtils.deleteDirectory(tempFolder.toFile());
+		} catch (final IOException e) {
+
+			LOG.error("couldn't remove temp folder '{}' of the enhancement cache", tempFolder, e);
+		}
+	}
+
+	/**
+	 * @return the current statistics of the cache (hits, misses, evictions)
+	 */
+	public static String getStatistics() {
+
+		return String.format("hits = %d, misses = %d, evictions = %d", HITS.get(), MISSES.get(), EVICTIONS.get());
+	}
+
+	/**
+	 * disables the cache
+	 */
+	public static synchronized void close() {
+
+		enabled = false;
+	}
+
+	private static String key(final Path inputFile) throws IOException {
+
+		final BasicFileAttributes attributes = Files.readAttributes(inputFile, BasicFileAttributes.class);
+		final long size = attributes.size();
+		final long lastModified = attributes.lastModifiedTime().toMillis();
+		final Path absoluteInputFile = inputFile.toAbsolutePath();
+		final CacheKey cacheKey = KEYS.get(absoluteInputFile);
+
+		// the content digest will only be calculated once per source file version
+		if (cacheKey != null && cacheKey.size == size && cacheKey.lastModified == lastModified) {
+
+			return cacheKey.key;
+		}
+
+		final MessageDigest messageDigest = TPUUtil.createMessageDigest();
+		messageDigest.update((enhancerVersion + "\n" + TPUUtil.digest(inputFile)).getBytes(StandardCharsets.UTF_8));
+
+		final String key = TPUUtil.toHex(messageDigest.digest());
+
+		KEYS.put(absoluteInputFile, new CacheKey(size, lastModified, key));
+
+		return key;
+	}
+
+	/**
+	 * hard-links (or, if not possible, copies) the given cached file into a new pin folder
+	 *
+	 * @return the pinned file or nothing, if the entry was evicted in the meantime
+	 */
+	private static Optional<Path> pin(final Path cachedFile) throws IOException {
+
+		final Path pinFolder = Files.createDirectory(cacheFolder.resolve(PIN_FOLDER_PREFIX + UUID.randomUUID()));
+		final Path pinnedFile = pinFolder.resolve(cachedFile.getFileName().toString());
+
+		try {
+
+			try {
+
+				Files.createLink(pinnedFile, cachedFile);
+			} catch (final NoSuchFileException e) {
+
+				throw e;
+			} catch (final UnsupportedOperationException | IOException e) {
+
+				LOG.debug("couldn't hard-link entry '{}' of the enhancement cache; will copy it instead", cachedFile, e);
+
+				Files.copy(cachedFile, pinnedFile);
+			}
+		} catch (final NoSuchFileException e) {
+
+			discard(pinFolder);
+
+			return Optional.empty();
+		} catch (final IOException | RuntimeException e) {
+
+			discard(pinFolder);
+
+			throw e;
+		}
+
+		return Optional.of(pinnedFile);
+	}
+
+	private static Optional<Path> lookUp(final Path entryFolder) throws IOException {
+
+		if (!Files.isDirectory(entryFolder)) {
+
+			return Optional.empty();
+		}
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(entryFolder)) {
+
+			for (final Path file : directoryStream) {
+
+				if (Files.isRegularFile(file)) {
+
+					return Optional.of(file);
+				}
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	private static synchronized void evict(final String currentKey) throws IOException {
+
+		final List<CacheEntry> entries = new ArrayList<>();
+		long size = 0;
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheFolder)) {
+
+			for (final Path entryFolder : directoryStream) {
+
+				final String entryFolderName = entryFolder.getFileName().toString();
+
+				if (entryFolderName.startsWith(TEMP_FOLDER_PREFIX) || entryFolderName.startsWith(PIN_FOLDER_PREFIX) || !Files.isDirectory(entryFolder)) {
+
+					continue;
+				}
+
+				final Optional<Path> optionalCachedFile = lookUp(entryFolder);
+
+				if (!optionalCachedFile.isPresent()) {
+
+					continue;
+				}
+
+				final CacheEntry entry = new CacheEntry(entryFolder, Files.size(optionalCachedFile.get()),
+						Files.getLastModifiedTime(entryFolder).toMillis());
+
+				entries.add(entry);
+				size += entry.size;
+			}
+		}
+
+		if (size <= maxSize) {
+
+			return;
+		}
+
+		entries.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+
+		for (final CacheEntry entry : entries) {
+
+			if (size <= maxSize) {
+
+				break;
+			}
+
+			// note: entries that are in use are pinned, i.e., they can be evicted as well
+			if (entry.folder.getFileName().toString().equals(currentKey)) {
+
+				continue;
+			}
+
+			FileUtils.deleteDirectory(entry.folder.toFile());
+
+			size -= entry.size;
+
+			EVICTIONS.incrementAndGet();
+
+			LOG.debug("evicted entry '{}' ('{}' bytes) from the enhancement cache", entry.folder, entry.size);
+		}
+
+		if (size > maxSize) {
+
+			LOG.debug("enhancement cache exceeds its max. size temporarily ('{}' bytes), since the current entry is larger than the max. size", size);
+		}
+	}
+
+	private static void removeStaleTempFolders() throws IOException {
+
+		removeStaleFolders(TEMP_FOLDER_PREFIX, STALE_TEMP_FOLDER_AGE);
+		removeStaleFolders(PIN_FOLDER_PREFIX, STALE_PIN_FOLDER_AGE);
+	}
+
+	private static void removeStaleFolders(final String folderPrefix, final long staleFolderAge) throws IOException {
+
+		final long now = System.currentTimeMillis();
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheFolder, folderPrefix + "*")) {
+
+			for (final Path folder : directoryStream) {
+
+				if (now - Files.getLastModifiedTime(folder).toMillis() > staleFolderAge) {
+
+					discard(folder);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the implementation version of the XML enhancer or (if not available) the digest of its class
+	 */
+	private static String determineEnhancerVersion() throws IOException {
+
+		final Package enhancerPackage = XMLEnhancer.class.getPackage();
+
+		if (enhancerPackage != null && enhancerPackage.getImplementationVersion() != null) {
+
+			return enhancerPackage.getImplementationVersion();
+		}
+
+		final MessageDigest messageDigest = TPUUtil.createMessageDigest();
+
+		try (final InputStream classStream = XMLEnhancer.class.getResourceAsStream(XMLEnhancer.class.getSimpleName() + ".class")) {
+
+			if (classStream == null) {
+
+				return "unknown";
+			}
+
+			final byte[] buffer = new byte[8192];
+			int read;
+
+			while ((read = classStream.read(buffer)) != -1) {
+
+				messageDigest.update(buffer, 0, read);
+			}
+		}
+
+		return TPUUtil.toHex(messageDigest.digest());
+	}
+
+	private static final class CacheKey {
+
+		private final long   size;
+		private final long   lastModified;
+		private final String key;
+
+		private CacheKey(final long size, final long lastModified, final String key) {
+
+			this.size = size;
+			this.lastModified = lastModified;
+			this.key = key;
+		}
+	}
+
+	private static final class CacheEntry {
+
+		private final Path folder;
+		private final long size;
+		private final long lastUsed;
+
+		private CacheEntry(final Path folder, final long size, final long lastUsed) {
+
+			this.folder = folder;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent manifest of the processed input files in the results folder (results.manifest=true), i.e., for each input file its size, modification
+ * time, content digest, the fingerprint of the TPU configuration + mappings and the produced output file will be recorded.<br/>
+ * Files whose content digest and fingerprint already have a (still existing) result will be skipped in later TPU runs (unless results.manifest.force
+ * = true or the TPU was started with -force). The content digest will only be calculated, if size or modification time of a file changed; it'll be
+ * calculated with a large (direct) buffer, i.e., without loading the file.<br/>
+ * Only available for on-the-fly transform (incl. daemon mode).
+ *
+ * @author tgaengler
+ */
+public final class TPUManifest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUManifest.class);
+
+	public static final String MANIFEST_FILE_NAME = ".tpu-manifest";
+
+	private static final String FILE_IDENTIFIER          = "file";
+	private static final String SIZE_IDENTIFIER          = "size";
+	private static final String LAST_MODIFIED_IDENTIFIER = "last_modified";
+	private static final String DIGEST_IDENTIFIER        = "digest";
+	private static final String FINGERPRINT_IDENTIFIER   = "fingerprint";
+	private static final String OUTPUT_IDENTIFIER        = "output";
+
+	// the configuration properties that influence the result of a TPU task
+	private static final String[] FINGERPRINT_CONFIG_KEYS = {
+			TPUStatics.CONFIGURATION_NAME_IDENTIFIER,
+			TPUStatics.PROTOTYPE_PROJECT_ID_INDENTIFIER,
+			TPUStatics.PROTOTYPE_PROJECT_IDS_INDENTIFIER,
+			TPUStatics.PROTOTYPE_INPUT_SCHEMA_ID_IDENTIFIER,
+			TPUStatics.PROTOTYPE_OUTPUT_DATA_MODEL_ID_IDENTIFIER,
+			TPUStatics.PROTOTYPE_SKIP_FILTER_IDENTIFIER,
+			TPUStatics.ENHANCE_INPUT_DATA_RESOURCE,
+			TPUStatics.EXPORT_MIME_TYPE
+	};
+
+	// keys = input file names
+	private static final ConcurrentMap<String, JsonObject> ENTRIES = new ConcurrentHashMap<>();
+	private static final AtomicLong                        SKIPPED = new AtomicLong();
+
+	private static volatile boolean        enabled = false;
+	private static volatile boolean        force   = false;
+	private static volatile String         fingerprint;
+	private static volatile BufferedWriter writer;
+
+	private TPUManifest() {
+
+	}
+
+	/**
+	 * (re-)initialises the manifest for a new run, i.e., the manifest will be read from the results folder and the fingerprint of the TPU
+	 * configuration + mappings will be calculated (note: the mappings will be retrieved via the metadata cache)
+	 *
+	 * @param config      the TPU configuration
+	 * @param serviceName the name of the TPU service
+	 * @throws Exception
+	 */
+	public static synchronized void init(final Properties config, final String serviceName) throws Exception {
+
+		close();
+
+		ENTRIES.clear();
+		SKIPPED.set(0);
+
+		enabled = TPUUtil.getBooleanConfigValue(TPUStatics.RESULTS_MANIFEST_IDENTIFIER, config).orElse(Boolean.FALSE);
+
+		if (!enabled) {
+
+			return;
+		}
+
+		force = TPUUtil.getBooleanConfigValue(TPUStatics.RESULTS_MANIFEST_FORCE_IDENTIFIER, config).orElse(Boolean.FALSE);
+		fingerprint = calculateFingerprint(config, serviceName);
+
+		final Path manifestFile = Paths.get(config.getProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER), MANIFEST_FILE_NAME);
+
+		final long lines = read(manifestFile);
+
+		if (lines > ENTRIES.size()) {
+
+			compact(manifestFile);
+		}
+
+		writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+		LOG.info("[{}] initialised manifest '{}' with '{}' entries (fingerprint = '{}'; force = '{}')", serviceName, manifestFile, ENTRIES.size(),
+				fingerprint, force);
+	}
+
+	/**
+	 * @param watchFolderFiles    the files of the resource watch folder
+	 * @param resourceWatchFolder the resource watch folder
+	 * @return the files that need to be processed, i.e., all files without an up-to-date result (the files will be checked lazily while iterating)
+	 */
+	public static Iterable<String> filter(final Iterable<String> watchFolderFiles, final String resourceWatchFolder) {
+
+		if (!enabled || force) {
+
+			return watchFolderFiles;
+		}
+
+		return () -> new Iterator<String>() {
+
+			private final Iterator<String> iterator = watchFolderFiles.iterator();
+
+			private String next;
+
+			@Override
+			public boolean hasNext() {
+
+				while (next == null && iterator.hasNext()) {
+
+					final String watchFolderFile = iterator.next();
+
+					if (isUpToDate(resourceWatchFolder, watchFolderFile)) {
+
+						SKIPPED.incrementAndGet();
+
+						LOG.info("skip source file '{}'; there's already an up-to-date result", watchFolderFile);
+					} else {
+
+						next = watchFolderFile;
+					}
+				}
+
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+
+				if (!hasNext()) {
+
+					throw new NoSuchElementException();
+				}
+
+				final String watchFolderFile = next;
+				next = null;
+
+				return watchFolderFile;
+			}
+		};
+	}
+
+	/**
+	 * records the result of the successful processing of the given file
+	 *
+	 * @param resourceWatchFolder the resource watch folder
+	 * @param watchFolderFile     the processed file
+	 * @param optionalOutputFile  the result file (if the result was persisted in the results folder)
+	 */
+	public static void record(final String resourceWatchFolder, final String watchFolderFile, final Optional<String> optionalOutputFile) {
+
+		if (!enabled) {
+
+			return;
+		}
+
+		try {
+
+			final Path file = Paths.get(resourceWatchFolder, watchFolderFile);
+			final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+			final JsonObjectBuilder entryBuilder = Json.createObjectBuilder()
+					.add(FILE_IDENTIFIER, watchFolderFile)
+					.add(SIZE_IDENTIFIER, attributes.size())
+					.add(LAST_MODIFIED_IDENTIFIER, attributes.lastModifiedTime().toMillis())
+					.add(DIGEST_IDENTIFIER, TPUUtil.digest(file))
+					.add(FINGERPRINT_IDENTIFIER, fingerprint);
+
+			optionalOutputFile.ifPresent(outputFile -> entryBuilder.add(OUTPUT_IDENTIFIER, outputFile));
+
+			write(entryBuilder.build());
+		} catch (final IOException e) {
+
+			LOG.error("couldn't record source file '{}' in manifest", watchFolderFile, e);
+		}
+	}
+
+	/**
+	 * @return the current statistics of the manifest (entries, skipped files)
+	 */
+	public static String getStatistics() {
+
+		return String.format("entries = %d, skipped = %d", ENTRIES.size(), SKIPPED.get());
+	}
+
+	/**
+	 * closes the manifest file (if any) and disables the manifest
+	 */
+	public static synchronized void close() throws IOException {
+
+		enabled = false;
+
+		if (writer != null) {
+
+			writer.close();
+			writer = null;
+		}
+	}
+
+	private static boolean isUpToDate(final String resourceWatchFolder, final String watchFolderFile) {
+
+		final JsonObject entry = ENTRIES.get(watchFolderFile);
+
+		if (entry == null || !fingerprint.equals(entry.getString(FINGERPRINT_IDENTIFIER, null))) {
+
+			return false;
+		}
+
+		final String outputFile = entry.getString(OUTPUT_IDENTIFIER, null);
+
+		if (outputFile != null && !Files.exists(Paths.get(outputFile))) {
+
+			return false;
+		}
+
+		try {
+
+			final Path file = Paths.get(resourceWatchFolder, watchFolderFile);
+			final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			final long size = attributes.size();
+			final long lastModified = attributes.lastModifiedTime().toMillis();
+
+			if (size != entry.getJsonNumber(SIZE_IDENTIFIER).longValue()) {
+
+				return false;
+			}
+
+			if (lastModified == entry.getJsonNumber(LAST_MODIFIED_IDENTIFIER).longValue()) {
+
+				return true;
+			}
+
+			// same size, but touched; the content decides
+			if (!TPUUtil.digest(file).equals(entry.getString(DIGEST_IDENTIFIER))) {
+
+				return false;
+			}
+
+			// remember the new modification time to avoid re-calculating the digest next time
+			final JsonObjectBuilder entryBuilder = Json.createObjectBuilder();
+			entry.forEach(entryBuilder::add);
+			entryBuilder.add(LAST_MODIFIED_IDENTIFIER, lastModified);
+
+			write(entryBuilder.build());
+
+			return true;
+		} catch (final NoSuchFileException e) {
+
+			return false;
+		} catch (final IOException e) {
+
+			LOG.error("couldn't check source file '{}' against manifest; will process it", watchFolderFile, e);
+
+			return false;
+		}
+	}
+
+	private static String calculateFingerprint(final Properties config, final String serviceName) throws Exception {
+
+		final MessageDigest messageDigest = TPUUtil.createMessageDigest();
+
+		for (final String configKey : FINGERPRINT_CONFIG_KEYS) {
+
+			messageDigest.update((configKey + "=" + config.getProperty(configKey, "") + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		final String configurationFileName = config.getProperty(TPUStatics.CONFIGURATION_NAME_IDENTIFIER);
+
+		if (configurationFileName != null) {
+
+			messageDigest.update(Files.readAllBytes(Paths.get(configurationFileName)));
+		}
+
+		final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+		final JsonArray mappings = Transform.getMappingsFromProjects(Transform.determineProjectIDs(config), serviceName, engineDswarmAPI, config, 0);
+
+		messageDigest.update(mappings.toString().getBytes(StandardCharsets.UTF_8));
+
+		return TPUUtil.toHex(messageDigest.digest());
+	}
+
+	private static long read(final Path manifestFile) throws IOException {
+
+		if (!Files.exists(manifestFile)) {
+
+			return 0;
+		}
+
+		long lines = 0;
+
+		try (final BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+
+				if (line.trim().isEmpty()) {
+
+					continue;
+				}
+
+				lines++;
+
+				try (final JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+
+					final JsonObject entry = jsonReader.readObject();
+
+					// later entries supersede earlier ones
+					ENTRIES.put(entry.getString(FILE_IDENTIFIER), entry);
+				} catch (final RuntimeException e) {
+
+					LOG.warn("skip broken manifest entry '{}'", line);
+				}
+			}
+		}
+
+		return lines;
+	}
+
+	/**
+	 * rewrites the manifest with the current entries only (atomically)
+	 */
+	private static void compact(final Path manifestFile) throws IOException {
+
+		final Path tempFile = manifestFile.resolveSibling(MANIFEST_FILE_NAME + ".tmp");
+
+		try (final BufferedWriter tempWriter = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+
+			for (final JsonObject entry : ENTRIES.values()) {
+
+				tempWriter.write(entry.toString());
+				tempWriter.newLine();
+			}
+		}
+
+		Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static synchronized void write(final JsonObject entry) throws IOException {
+
+		ENTRIES.put(entry.getString(FILE_IDENTIFIER), entry);
+
+		if (writer == null) {
+
+			return;
+		}
+
+		writer.write(entry.toString());
+		writer.newLine();
+		writer.flush();
+	}
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.JsonObject;
+
+import de.tu_dortmund.ub.data.TPUException;
+import de.tu_dortmund.ub.data.util.BlockingSubmissionHandler;
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+import de.tu_dortmund.ub.data.util.TPURunLog;
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staged execution of TPU tasks (for engine.mode=pipeline): enhance -> init (upload + data model creation) -> transform (task execution incl.
+ * writing the result) -> clean-up.<br/>
+ * Each stage has its own (fixed) number of threads and its own bounded queue, i.e., the CPU-bound enhancement (engine.threads), the uploads
+ * (init.threads), the task executions at the backend (transform.threads) and the clean-up (cleanup.threads) can be saturated independently. If
+ * the queue of a stage is full, the submitting (upstream) thread waits, i.e., the pipeline is back-pressured.
+ *
+ * @author tgaengler
+ */
+public class TPUPipeline {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUPipeline.class);
+
+	public static final int QUEUE_SIZE_FACTOR = 2;
+
+	private static final String ENHANCE_STAGE   = "enhance";
+	private static final String INIT_STAGE      = "init";
+	private static final String TRANSFORM_STAGE = "transform";
+	private static final String CLEANUP_STAGE   = "cleanup";
+
+	private final Properties       config;
+	private final String           resourceWatchFolder;
+	private final Optional<String> optionalOutputDataModelID;
+	private final Optional<String> optionalExportMimeType;
+	private final Optional<String> optionalExportFileExtension;
+	private final String           serviceName;
+	private final String           engineDswarmAPI;
+
+	private final ThreadPoolExecutor enhanceStage;
+	private final ThreadPoolExecutor initStage;
+	private final ThreadPoolExecutor transformStage;
+	private final ThreadPoolExecutor cleanupStage;
+
+	// max. number of TPU tasks in the pipeline (i.e. the sum of the capacities of all stages)
+	private int capacity = 0;
+
+	public TPUPipeline(final Properties config,
+	                   final String resourceWatchFolder,
+	                   final Optional<String> optionalOutputDataModelID,
+	                   final Optional<String> optionalExportMimeType,
+	                   final Optional<String> optionalExportFileExtension,
+	                   final Integer engineThreads,
+	                   final String serviceName) {
+
+		this.config = config;
+		this.resourceWatchFolder = resourceWatchFolder;
+		this.optionalOutputDataModelID = optionalOutputDataModelID;
+		this.optionalExportMimeType = optionalExportMimeType;
+		this.optionalExportFileExtension = optionalExportFileExtension;
+		this.serviceName = serviceName;
+
+		engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+
+		final int initThreads = TPUUtil.getIntegerConfigValue(TPUStatics.INIT_THREADS_IDENTIFIER, config).orElse(engineThreads);
+		final int transformThreads = TPUUtil.getIntegerConfigValue(TPUStatics.TRANSFORM_THREADS_IDENTIFIER, config).orElse(engineThreads);
+		final int cleanupThreads = TPUUtil.getIntegerConfigValue(TPUStatics.CLEANUP_THREADS_IDENTIFIER, config)
+				.orElse(TPUHttpClient.DEFAULT_CLEANUP_THREADS);
+		final Optional<Integer> optionalQueueSize = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_PIPELINE_QUEUE_SIZE_IDENTIFIER, config);
+
+		enhanceStage = createStage(ENHANCE_STAGE, engineThreads, optionalQueueSize);
+		initStage = createStage(INIT_STAGE, initThreads, optionalQueueSize);
+		transformStage = createStage(TRANSFORM_STAGE, transformThreads, optionalQueueSize);
+		cleanupStage = createStage(CLEANUP_STAGE, cleanupThreads, optionalQueueSize);
+	}
+
+	/**
+	 * feeds the given files into the pipeline and waits until all of them went through all stages
+	 *
+	 * @param watchFolderFiles the files that should be processed
+	 * @return a summary of the TPU tasks (the result of each TPU task is written to the run log)
+	 * @throws Exception the failure of the first failed TPU task (in file order)
+	 */
+	public String execute(final Iterable<String> watchFolderFiles) throws Exception {
+
+		try (final TPURunLog runLog = TPURunLog.open(config, serviceName, capacity)) {
+
+			int cnt = 1;
+
+			for (final String watchFolderFile : watchFolderFiles) {
+
+				if (runLog.isAborted()) {
+
+					break;
+				}
+
+				LOG.info("[{}][{}] do TPU task execution '{}' for file '{}' in pipeline", serviceName, cnt, cnt, watchFolderFile);
+
+				runLog.add(submit(watchFolderFile, cnt));
+
+				cnt++;
+			}
+
+			// the result of a TPU task is only available after its clean-up
+			return runLog.finish();
+		} catch (final Exception e) {
+
+			LOG.error("something went wrong", e);
+
+			throw e;
+		} finally {
+
+			shutdown();
+		}
+	}
+
+	private CompletableFuture<String> submit(final String watchFolderFile, final int cnt) {
+
+		final CompletableFuture<JsonObject> initFuture = CompletableFuture
+				.supplyAsync(() -> enhance(watchFolderFile, cnt), enhanceStage)
+				.thenApplyAsync(preparedInputResourceFile -> init(watchFolderFile, preparedInputResourceFile, cnt), initStage);
+
+		final CompletableFuture<String> transformFuture = initFuture
+				.thenApplyAsync(initResultJSON -> transform(watchFolderFile, initResultJSON, cnt), transformStage);
+
+		// clean-up (of the created metadata objects) will be done in any case
+		return transformFuture
+				.handle((result, throwable) -> result)
+				.thenApplyAsync(result -> cleanUp(watchFolderFile, initFuture, transformFuture, cnt), cleanupStage);
+	}
+
+	private String enhance(final String watchFolderFile, final int cnt) {
+
+		final String initResourceFile = resourceWatchFolder + File.separatorChar + watchFolderFile;
+
+		TPUSchedule.started(watchFolderFile);
+
+		LOG.debug("[{}][{}] prepare input data resource '{}'", serviceName, cnt, initResourceFile);
+
+		try {
+
+			return Init.prepareInputDataResource(initResourceFile, config);
+		} catch (final Exception e) {
+
+			throw new CompletionException(e);
+		}
+	}
+
+	private JsonObject init(final String watchFolderFile, final String preparedInputResourceFile, final int cnt) {
+
+		try {
+
+			return TPUUtil.doInit(resourceWatchFolder, watchFolderFile, Optional.of(preparedInputResourceFile), serviceName, config, cnt);
+		} catch (final Exception e) {
+
+			throw new CompletionException(e);
+		}
+	}
+
+	private String transform(final String watchFolderFile, final JsonObject initResultJSON, final int cnt) {
+
+		final String inputDataModelID = initResultJSON.getString(Init.DATA_MODEL_ID);
+
+		final String outputDataModelID;
+
+		if (optionalOutputDataModelID.isPresent()) {
+
+			outputDataModelID = optionalOutputDataModelID.get();
+		} else {
+
+			LOG.info(
+					"[{}[{}] couldn't find output data model ID, will take input data model id instead for processing the task on source file '{}' and data model '{}' (note: this might cause wrong behaviour!)",
+					serviceName, cnt, watchFolderFile, inputDataModelID);
+
+			outputDataModelID = inputDataModelID;
+		}
+
+		try {
+
+			return TPUTask.executeTransformation(inputDataModelID, outputDataModelID, optionalExportMimeType, optionalExportFileExtension,
+					TPUUtil.determineFileSize(resourceWatchFolder, watchFolderFile), config, serviceName, cnt);
+		} catch (final Exception e) {
+
+			throw new CompletionException(e);
+		}
+	}
+
+	private String cleanUp(final String watchFolderFile, final CompletableFuture<JsonObject> initFuture,
+	                       final CompletableFuture<String> transformFuture, final int cnt) {
+
+		if (initFuture.isDone() && !initFuture.isCompletedExceptionally()) {
+
+			try {
+
+				TPUUtil.cleanUpMetadataRepository(initFuture.join(), serviceName, engineDswarmAPI, cnt);
+			} catch (final Exception e) {
+
+				LOG.error("[{}][{}] couldn't clean-up metadata repository for source file '{}'", serviceName, cnt, watchFolderFile, e);
+			}
+		}
+
+		if (transformFuture.isCompletedExceptionally()) {
+
+			final String message = String
+					.format("[%s][%d] TPU task execution '%d' failed for source file '%s'", serviceName, cnt, cnt, watchFolderFile);
+
+			throw new CompletionException(new TPUException(message, getCause(transformFuture)));
+		}
+
+		final String inputDataModelID = initFuture.join().getString(Init.DATA_MODEL_ID);
+		final String outputDataModelID = optionalOutputDataModelID.orElse(inputDataModelID);
+
+		TPUManifest.record(resourceWatchFolder, watchFolderFile,
+				Transform.determineResultFileName(config, inputDataModelID, outputDataModelID, optionalExportFileExtension, cnt));
+		TPUSchedule.finished(resourceWatchFolder, watchFolderFile);
+
+		return String.format("[%s][%d] TPU task execution '%d' result = '%s' for source file '%s' and data model '%s'", serviceName, cnt, cnt,
+				transformFuture.join(), watchFolderFile, inputDataModelID);
+	}
+
+	private void shutdown() {
+
+		enhanceStage.shutdown();
+		initStage.shutdown();
+		transformStage.shutdown();
+		cleanupStage.shutdown();
+	}
+
+	private static Throwable getCause(final CompletableFuture<?> future) {
+
+		try {
+
+			future.join();
+
+			return null;
+		} catch (final CompletionException e) {
+
+			Throwable cause = e;
+
+			while (cause instanceof CompletionException && cause.getCause() != null) {
+
+				cause = cause.getCause();
+			}
+
+			return cause;
+		}
+	}
+
+	private ThreadPoolExecutor createStage(final String stageName, final int threads, final Optional<Integer> optionalQueueSize) {
+
+		final int queueSize = optionalQueueSize.orElse(threads * QUEUE_SIZE_FACTOR);
+
+		LOG.info("[{}] create pipeline stage '{}' with '{}' threads and a queue size of '{}'", serviceName, stageName, threads, queueSize);
+
+		capacity += threads + queueSize;
+
+		final AtomicInteger threadCounter = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> new Thread(runnable, "tpu-" + stageName + "-" + threadCounter.incrementAndGet());
+
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), threadFactory,
+				new BlockingSubmissionHandler());
+	}
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines the order in which the files of the resource watch folder will be fed into the TPU task flow (resource.watchfolder.schedule), i.e.,
+ * <br/>
+ * - name: lexicographical order (default)<br/>
+ * - size: largest file first (longest-processing-time-first), so that a huge file doesn't start last while all other threads are idle at the end
+ * of a TPU run<br/>
+ * - predicted: longest predicted duration first, whereby the duration of a file will be predicted from the durations of the former TPU runs (a
+ * schedule history in the results folder), i.e., from the last duration of the same file (scaled by its current size) or from the throughput
+ * (bytes per ms) of files with the same file extension (or of all files); without any history, the files will be ordered by size<br/>
+ * Only available for on-the-fly transform (incl. daemon mode).
+ *
+ * @author tgaengler
+ */
+public final class TPUSchedule {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUSchedule.class);
+
+	public static final String HISTORY_FILE_NAME = ".tpu-schedule-history";
+
+	private static final String FILE_IDENTIFIER     = "file";
+	private static final String SIZE_IDENTIFIER     = "size";
+	private static final String DURATION_IDENTIFIER = "duration";
+
+	private static final String NO_FILE_EXTENSION = "";
+
+	// keys = input file names
+	private static final ConcurrentMap<String, JsonObject> HISTORY  = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Long>       STARTS   = new ConcurrentHashMap<>();
+	private static final AtomicLong                        RECORDED = new AtomicLong();
+
+	private static volatile String         policy = TPUStatics.NAME_SCHEDULE;
+	private static volatile BufferedWriter writer;
+
+	private TPUSchedule() {
+
+	}
+
+	/**
+	 * (re-)initialises the schedule for a new run, i.e., (for the predicted schedule) the schedule history will be read from the results folder
+	 *
+	 * @param config      the TPU configuration
+	 * @param serviceName the name of the TPU service
+	 * @throws IOException
+	 */
+	public static synchronized void init(final Properties config, final String serviceName) throws IOException {
+
+		close();
+
+		HISTORY.clear();
+		STARTS.clear();
+		RECORDED.set(0);
+
+		final String configuredPolicy = TPUUtil.getStringConfigValue(TPUStatics.RESOURCE_WATCHFOLDER_SCHEDULE_IDENTIFIER, config)
+				.orElse(TPUStatics.NAME_SCHEDULE);
+
+		switch (configuredPolicy) {
+
+			case TPUStatics.NAME_SCHEDULE:
+			case TPUStatics.SIZE_SCHEDULE:
+			case TPUStatics.PREDICTED_SCHEDULE:
+
+				policy = configuredPolicy;
+
+				break;
+			default:
+
+				LOG.warn("[{}] unsupported schedule '{}' (supported: '{}', '{}', '{}'); will process the files in lexicographical order", serviceName,
+						configuredPolicy, TPUStatics.NAME_SCHEDULE, TPUStatics.SIZE_SCHEDULE, TPUStatics.PREDICTED_SCHEDULE);
+
+				policy = TPUStatics.NAME_SCHEDULE;
+		}
+
+		if (!TPUStatics.PREDICTED_SCHEDULE.equals(policy)) {
+
+			return;
+		}
+
+		final Optional<String> optionalResultsFolder = TPUUtil.getStringConfigValue(TPUStatics.RESULTS_FOLDER_IDENTIFIER, config);
+
+		if (!optionalResultsFolder.isPresent()) {
+
+			LOG.warn("[{}] no results folder configured; the schedule history will only be kept for this TPU run", serviceName);
+
+			return;
+		}
+
+		final Path historyFile = Paths.get(optionalResultsFolder.get(), HISTORY_FILE_NAME);
+
+		final long lines = read(historyFile);
+
+		if (lines > HISTORY.size()) {
+
+			compact(historyFile);
+		}
+
+		writer = Files.newBufferedWriter(historyFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+		LOG.info("[{}] initialised schedule history '{}' with '{}' entries", serviceName, historyFile, HISTORY.size());
+	}
+
+	/**
+	 * @return true, if the files shouldn't be processed in lexicographical order (i.e. all file names need to be read upfront)
+	 */
+	public static boolean isEnabled() {
+
+		return !TPUStatics.NAME_SCHEDULE.equals(policy);
+	}
+
+	/**
+	 * @param resourceWatchFolder the resource watch folder
+	 * @return the order of the files of the resource watch folder according to the configured schedule (note: file sizes and predicted durations
+	 * will be determined once per file and comparator)
+	 */
+	public static Comparator<String> comparator(final Path resourceWatchFolder) {
+
+		if (!isEnabled()) {
+
+			return Comparator.naturalOrder();
+		}
+
+		final Optional<Throughputs> optionalThroughputs = TPUStatics.PREDICTED_SCHEDULE.equals(policy) ? Throughputs.of(HISTORY) : Optional.empty();
+		final Map<String, Double> keys = new HashMap<>();
+
+		final Comparator<String> longestFirst = Comparator
+				.comparing((String watchFolderFile) -> keys.computeIfAbsent(watchFolderFile,
+						fileName -> determineKey(resourceWatchFolder, fileName, optionalThroughputs)));
+
+		return longestFirst.reversed().thenComparing(Comparator.naturalOrder());
+	}
+
+	/**
+	 * marks the start of the processing of a source file (for the schedule history)
+	 *
+	 * @param watchFolderFile the source file
+	 */
+	public static void started(final String watchFolderFile) {
+
+		if (!TPUStatics.PREDICTED_SCHEDULE.equals(policy)) {
+
+			return;
+		}
+
+		STARTS.put(watchFolderFile, System.currentTimeMillis());
+	}
+
+	/**
+	 * records the duration of the (successful) processing of a source file in the schedule history
+	 *
+	 * @param resourceWatchFolder the resource watch folder
+	 * @param watchFolderFile     the source file
+	 */
+	public static void finished(final String resourceWatchFolder, final String watchFolderFile) {
+
+		final Long start = STARTS.remove(watchFolderFile);
+
+		if (start == null || !TPUStatics.PREDICTED_SCHEDULE.equals(policy)) {
+
+			return;
+		}
+
+		try {
+
+			final long size = Files.size(Paths.get(resourceWatchFolder, watchFolderFile));
+			final long duration = System.currentTimeMillis() - start;
+
+			write(Json.createObjectBuilder()
+					.add(FILE_IDENTIFIER, watchFolderFile)
+					.add(SIZE_IDENTIFIER, size)
+					.add(DURATION_IDENTIFIER, duration)
+					.build());
+
+			RECORDED.incrementAndGet();
+		} catch (final IOException e) {
+
+			LOG.error("couldn't record source file '{}' in schedule history", watchFolderFile, e);
+		}
+	}
+
+	/**
+	 * @return the current statistics of the schedule (policy, history entries, recorded durations)
+	 */
+	public static String getStatistics() {
+
+		return String.format("policy = %s, history entries = %d, recorded = %d", policy, HISTORY.size(), RECORDED.get());
+	}
+
+	/**
+	 * closes the schedule history file (if any) and resets the schedule to lexicographical order
+	 */
+	public static synchronized void close() throws IOException {
+
+		policy = TPUStatics.NAME_SCHEDULE;
+
+		if (writer != null) {
+
+			writer.close();
+			writer = null;
+		}
+	}
+
+	/**
+	 * @return the size of the file (size schedule or no history available) or its predicted duration in ms (predicted schedule)
+	 */
+	private static double determineKey(final Path resourceWatchFolder, final String watchFolderFile, final Optional<Throughputs> optionalThroughputs) {
+
+		final long size;
+
+		try {
+
+			size = Files.size(resourceWatchFolder.resolve(watchFolderFile));
+		} catch (final IOException e) {
+
+			LOG.warn("couldn't determine size of source file '{}'; will schedule it last", watchFolderFile);
+
+			return -1;
+		}
+
+		if (!optionalThroughputs.isPresent()) {
+
+			return size;
+		}
+
+		final JsonObject entry = HISTORY.get(watchFolderFile);
+
+		if (entry != null && entry.getJsonNumber(SIZE_IDENTIFIER).longValue() > 0) {
+
+			// same file as in a former TPU run (maybe with other content)
+			return entry.getJsonNumber(DURATION_IDENTIFIER).longValue() * ((double) size / entry.getJsonNumber(SIZE_IDENTIFIER).longValue());
+		}
+
+		return size / optionalThroughputs.get().get(determineFileExtension(watchFolderFile));
+	}
+
+	private static String determineFileExtension(final String watchFolderFile) {
+
+		final int extensionStart = watchFolderFile.lastIndexOf('.');
+
+		return extensionStart > 0 ? watchFolderFile.substring(extensionStart + 1).toLowerCase(Locale.ENGLISH) : NO_FILE_EXTENSION;
+	}
+
+	private static long read(final Path historyFile) throws IOException {
+
+		if (!Files.exists(historyFile)) {
+
+			return 0;
+		}
+
+		long lines = 0;
+
+		try (final BufferedReader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+
+				if (line.trim().isEmpty()) {
+
+					continue;
+				}
+
+				lines++;
+
+				try (final JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+
+					final JsonObject entry = jsonReader.readObject();
+
+					// check the entry upfront
+					entry.getJsonNumber(SIZE_IDENTIFIER).longValue();
+					entry.getJsonNumber(DURATION_IDENTIFIER).longValue();
+
+					// later entries supersede earlier ones
+					HISTORY.put(entry.getString(FILE_IDENTIFIER), entry);
+				} catch (final RuntimeException e) {
+
+					LOG.warn("skip broken schedule history entry '{}'", line);
+				}
+			}
+		}
+
+		return lines;
+	}
+
+	/**
+	 * rewrites the schedule history with the current entries only (atomically)
+	 */
+	private static void compact(final Path historyFile) throws IOException {
+
+		final Path tempFile = historyFile.resolveSibling(HISTORY_FILE_NAME + ".tmp");
+
+		try (final BufferedWriter tempWriter = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+
+			for (final JsonObject entry : HISTORY.values()) {
+
+				tempWriter.write(entry.toString());
+				tempWriter.newLine();
+			}
+		}
+
+		Files.move(tempFile, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static synchronized void write(final JsonObject entry) throws IOException {
+
+		HISTORY.put(entry.getString(FILE_IDENTIFIER), entry);
+
+		if (writer == null) {
+
+			return;
+		}
+
+		writer.write(entry.toString());
+		writer.newLine();
+		writer.flush();
+	}
+
+	/**
+	 * The throughput (bytes per ms) of the recorded files per file extension and of all recorded files.
+	 */
+	private static final class Throughputs {
+
+		private final Map<String, Double> throughputs;
+		private final double              overallThroughput;
+
+		private Throughputs(final Map<String, Double> throughputs, final double overallThroughput) {
+
+			this.throughputs = throughputs;
+			this.overallThroughput = overallThroughput;
+		}
+
+		/**
+		 * @return the throughputs of the given history, if there is any entry with a size and duration
+		 */
+		static Optional<Throughputs> of(final Map<String, JsonObject> history) {
+
+			final Map<String, long[]> totals = new HashMap<>();
+
+			long overallSize = 0;
+			long overallDuration = 0;
+
+			for (final JsonObject entry : history.values()) {
+
+				final long size = entry.getJsonNumber(SIZE_IDENTIFIER).longValue();
+				final long duration = entry.getJsonNumber(DURATION_IDENTIFIER).longValue();
+
+				if (size <= 0 || duration <= 0) {
+
+					continue;
+				}
+
+				final long[] total = totals.computeIfAbsent(determineFileExtension(entry.getString(FILE_IDENTIFIER)), fileExtension -> new long[2]);
+
+				total[0] += size;
+				total[1] += duration;
+
+				overallSize += size;
+				overallDuration += duration;
+			}
+
+			if (overallDuration == 0) {
+
+				return Optional.empty();
+			}
+
+			final Map<String, Double> throughputs = new HashMap<>();
+
+			totals.forEach((fileExtension, total) -> throughputs.put(fileExtension, (double) total[0] / total[1]));
+
+			return Optional.of(new Throughputs(throughputs, (double) overallSize / overallDuration));
+		}
+
+		double get(final String fileExtension) {
+
+			return throughputs.getOrDefault(fileExtension, overallThroughput);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import javax.json.JsonObject;
+
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the d:swarm configurations that are shared by all init tasks of a TPU run (init.share_configuration=true), i.e., a configuration
+ * will only be created once per run (and configuration content) and removed at the end of the run.<br/>
+ * The configurations are keyed by a content hash of their JSON; concurrent init tasks wait for the same configuration creation.
+ *
+ * @author tgaengler
+ */
+public final class TPUSharedConfigurations {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUSharedConfigurations.class);
+
+	private static final ConcurrentMap<String, CompletableFuture<JsonObject>> CONFIGURATIONS = new ConcurrentHashMap<>();
+
+	private TPUSharedConfigurations() {
+
+	}
+
+	/**
+	 * @param config the TPU configuration
+	 * @return true, if the configuration should be shared by all init tasks of a TPU run (default = false)
+	 */
+	public static boolean isEnabled(final Properties config) {
+
+		return TPUUtil.getBooleanConfigValue(TPUStatics.SHARE_CONFIGURATION_IDENTIFIER, config).orElse(Boolean.FALSE);
+	}
+
+	/**
+	 * delivers the shared configuration for the given configuration content or creates it (in the calling thread) with the given creator
+	 *
+	 * @param configurationJSONString the content of the configuration
+	 * @param creator                 creates the configuration (at the d:swarm backend)
+	 * @return the (created) configuration
+	 * @throws Exception the failure of the configuration creation
+	 */
+	public static JsonObject getOrCreate(final String configurationJSONString, final Callable<JsonObject> creator) throws Exception {
+
+		final String key = hash(configurationJSONString);
+		final CompletableFuture<JsonObject> newConfigurationFuture = new CompletableFuture<>();
+		final CompletableFuture<JsonObject> configurationFuture = CONFIGURATIONS.putIfAbsent(key, newConfigurationFuture);
+
+		if (configurationFuture != null) {
+
+			LOG.debug("utilise shared configuration for content hash '{}'", key);
+
+			try {
+
+				return configurationFuture.join();
+			} catch (final CompletionException e) {
+
+				final Throwable cause = e.getCause();
+
+				if (cause instanceof Exception) {
+
+					throw (Exception) cause;
+				}
+
+				throw e;
+			}
+		}
+
+		try {
+
+			final JsonObject configurationJSON = creator.call();
+
+			LOG.info("created shared configuration '{}' for content hash '{}'", configurationJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER),
+					key);
+
+			newConfigurationFuture.complete(configurationJSON);
+
+			return configurationJSON;
+		} catch (final Exception e) {
+
+			CONFIGURATIONS.remove(key, newConfigurationFuture);
+			newConfigurationFuture.completeExceptionally(e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * delivers the shared configuration for the given configuration content or creates it with the given (asynchronous) creator
+	 *
+	 * @param configurationJSONString the content of the configuration
+	 * @param creator                 creates the configuration (at the d:swarm backend)
+	 * @return a future of the (created) configuration
+	 */
+	public static CompletableFuture<JsonObject> getOrCreateAsync(final String configurationJSONString,
+	                                                             final Supplier<CompletableFuture<JsonObject>> creator) {
+
+		final String key = hash(configurationJSONString);
+		final CompletableFuture<JsonObject> newConfigurationFuture = new CompletableFuture<>();
+		final CompletableFuture<JsonObject> configurationFuture = CONFIGURATIONS.putIfAbsent(key, newConfigurationFuture);
+
+		if (configurationFuture != null) {
+
+			LOG.debug("utilise shared configuration for content hash '{}'", key);
+
+			return configurationFuture;
+		}
+
+		creator.get().whenComplete((configurationJSON, throwable) -> {
+
+			if (throwable != null) {
+
+				CONFIGURATIONS.remove(key, newConfigurationFuture);
+				newConfigurationFuture.completeExceptionally(throwable);
+			} else {
+
+				LOG.info("created shared configuration '{}' for content hash '{}'",
+						configurationJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER), key);
+
+				newConfigurationFuture.complete(configurationJSON);
+			}
+		});
+
+		return newConfigurationFuture;
+	}
+
+	/**
+	 * removes all shared configurations (from the d:swarm backend) that were created in this TPU run
+	 *
+	 * @param serviceName the name of the TPU service
+	 * @param config      the TPU configuration
+	 */
+	public static void deleteAll(final String serviceName, final Properties config) {
+
+		final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+
+		for (final CompletableFuture<JsonObject> configurationFuture : CONFIGURATIONS.values()) {
+
+			if (!configurationFuture.isDone() || configurationFuture.isCompletedExceptionally()) {
+
+				continue;
+			}
+
+			final String configurationID = configurationFuture.join().getString(DswarmBackendStatics.UUID_IDENTIFIER, null);
+
+			try {
+
+				TPUUtil.deleteObject(configurationID, DswarmBackendStatics.CONFIGURATIONS_ENDPOINT, serviceName, engineDswarmAPI, 0);
+			} catch (final Exception e) {
+
+				LOG.error("[{}] couldn't remove shared configuration '{}'", serviceName, configurationID, e);
+			}
+		}
+
+		CONFIGURATIONS.clear();
+	}
+
+	private static String hash(final String configurationJSONString) {
+
+		return TPUUtil.toHex(TPUUtil.createMessageDigest().digest(configurationJSONString.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.json.JsonObject;
+
+import de.tu_dortmund.ub.data.util.MultipartFileEntity;
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+import de.tu_dortmund.ub.data.util.TPUUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of pre-initialised slots (resource + configuration + data model) for the multi-threaded TPU task mode (init.slot_pool.size > 0).<br/>
+ * Instead of creating and removing these metadata objects for every source file, a TPU task acquires a slot, re-uploads the content of its source
+ * file into the resource of the slot and returns the slot to the pool afterwards. The slots are created lazily, i.e., if no idle slot is available,
+ * a TPU task creates a new slot for its source file (with a regular init) and returns it to the pool afterwards (there is no warm-up, since it would
+ * need to upload a (potentially huge) source file for each slot, which would be replaced at acquisition anyway). The pool is drained at
+ * shutdown, i.e., the idle slots will be removed immediately and the slots that are still in use when they will be released.<br/>
+ * Note: this only works for data models without initial data ingest (init.data_model.do_ingest=false), since the data will be ingested on-the-fly
+ * at task execution then.
+ *
+ * @author tgaengler
+ */
+public class TPUSlotPool {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUSlotPool.class);
+
+	private final Properties config;
+	private final String     serviceName;
+	private final String     engineDswarmAPI;
+	private final int        size;
+
+	// all slots that currently exist (idle or in use)
+	private final Set<JsonObject>           slots     = ConcurrentHashMap.newKeySet();
+	private final BlockingQueue<JsonObject> idleSlots = new LinkedBlockingQueue<>();
+
+	private volatile boolean drained = false;
+
+	public TPUSlotPool(final Properties config, final String serviceName, final int size) {
+
+		this.config = config;
+		this.serviceName = serviceName;
+		this.size = size;
+
+		engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+	}
+
+	/**
+	 * @param config the TPU configuration
+	 * @return the configured size of the slot pool (0 = no slot pool)
+	 */
+	public static int determineSize(final Properties config) {
+
+		final int size = TPUUtil.getIntegerConfigValue(TPUStatics.INIT_SLOT_POOL_SIZE_IDENTIFIER, config).orElse(0);
+
+		if (size > 0 && Init.doDataModelIngest(config)) {
+
+			LOG.warn("slot pool is only available for data models without initial data ingest (init.data_model.do_ingest=false); won't utilise it");
+
+			return 0;
+		}
+
+		return size;
+	}
+
+	/**
+	 * creates a slot pool of the configured size (if any); its slots will be created lazily by the TPU tasks
+	 *
+	 * @param config      the TPU configuration
+	 * @param serviceName the name of the TPU service
+	 * @return the slot pool or nothing, if no slot pool is configured
+	 */
+	public static Optional<TPUSlotPool> create(final Properties config, final String serviceName) {
+
+		final int size = determineSize(config);
+
+		if (size <= 0) {
+
+			return Optional.empty();
+		}
+
+		LOG.info("[{}] utilise slot pool with max. '{}' idle slots", serviceName, size);
+
+		return Optional.of(new TPUSlotPool(config, serviceName, size));
+	}
+
+	/**
+	 * acquires an idle slot and re-uploads the content of the given source file into its resource; if no idle slot is available, a new slot will
+	 * be created for the given source file
+	 *
+	 * @return the init result JSON of the slot (data model + resource (+ configuration) identifiers)
+	 */
+	public JsonObject acquire(final String resourceWatchFolder, final String watchFolderFile, final int cnt) throws Exception {
+
+		final JsonObject idleSlot = idleSlots.poll();
+
+		if (idleSlot == null) {
+
+			LOG.debug("[{}][{}] no idle slot available; create a new one", serviceName, cnt);
+
+			final JsonObject slot = TPUUtil.doInit(resourceWatchFolder, watchFolderFile, serviceName, config, cnt);
+
+			slots.add(slot);
+
+			return slot;
+		}
+
+		try {
+
+			final String initResourceFile = resourceWatchFolder + File.separatorChar + watchFolderFile;
+			final String finalInputResourceFile = Init.prepareInputDataResource(initResourceFile, config);
+
+			try {
+
+				reuploadResource(idleSlot.getString(Init.RESOURCE_ID), initResourceFile, finalInputResourceFile, cnt);
+			} finally {
+
+				Init.removePreparedInputDataResource(initResourceFile, finalInputResourceFile);
+			}
+
+			LOG.info("[{}][{}] recycled slot with data model '{}' for source file '{}'", serviceName, cnt, idleSlot.getString(Init.DATA_MODEL_ID),
+					watchFolderFile);
+
+			return idleSlot;
+		} catch (final Exception e) {
+
+			discard(idleSlot, cnt);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * returns the given slot to the pool (if the pool is already full or drained, the slot will be removed)
+	 */
+	public void release(final JsonObject slot, final int cnt) {
+
+		// note: synchronised with drain(), so that no slot can be returned to an already drained pool
+		synchronized (idleSlots) {
+
+			if (!drained && idleSlots.size() < size) {
+
+				idleSlots.offer(slot);
+
+				return;
+			}
+		}
+
+		discard(slot, cnt);
+	}
+
+	/**
+	 * removes the given slot (e.g. since its state is unknown after a failed task execution)
+	 */
+	public void discard(final JsonObject slot, final int cnt) {
+
+		slots.remove(slot);
+
+		try {
+
+			TPUUtil.cleanUpMetadataRepository(slot, serviceName, engineDswarmAPI, cnt);
+		} catch (final Exception e) {
+
+			LOG.error("[{}][{}] couldn't remove slot", serviceName, cnt, e);
+		}
+	}
+
+	/**
+	 * removes all idle slots; slots that are still in use (e.g. by TPU tasks that are still running) will be removed, when
+	 * they will be released
+	 */
+	public void drain() {
+
+		final List<JsonObject> slotsToDiscard = new ArrayList<>();
+
+		synchronized (idleSlots) {
+
+			drained = true;
+
+			idleSlots.drainTo(slotsToDiscard);
+		}
+
+		LOG.info("[{}] drain slot pool with '{}' idle slots ('{}' slots are still in use)", serviceName, slotsToDiscard.size(),
+				slots.size() - slotsToDiscard.size());
+
+		for (final JsonObject slot : slotsToDiscard) {
+
+			discard(slot, 0);
+		}
+	}
+
+	private void reuploadResource(final String resourceID, final String initResourceFile, final String finalInputResourceFile, final int cnt)
+			throws Exception {
+
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
+
+		final String name = String.format("resource for project '%s'", initResourceFile);
+		final String description = String.format("'resource does not belong to a project' - case %d", cnt);
+
+		// PUT /dmp/resources/{id}
+		final HttpPut httpPut = new HttpPut(engineDswarmAPI + DswarmBackendStatics.RESOURCES_ENDPOINT + APIStatics.SLASH + resourceID);
+		httpPut.setEntity(MultipartFileEntity.create(DswarmBackendStatics.NAME_IDENTIFIER, name, DswarmBackendStatics.DESCRIPTION_IDENTIFIER,
+				description, Init.FILE_IDENTIFIER, new File(finalInputResourceFile)));
+
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpPut.getRequestLine()));
+
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPut)) {
+
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+			final String message = String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
+
+			switch (statusCode) {
+
+				case 200: {
+
+					final String response = TPUUtil.getResponseMessage(httpResponse);
+
+					LOG.info(message);
+
+					LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
+
+					return;
+				}
+				default: {
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					LOG.error(message);
+
+					throw new Exception("something went wrong at resource re-upload: " + message + " " + response);
+				}
+			}
+		}
+	}
+}
@@ -21,8 +21,15 @@ package de.tu_dortmund.ub.data.dswarm;
 public final class TPUStatics {
 
 	public static final String RESOURCE_WATCHFOLDER_IDENTIFIER = "resource.watchfolder";
+	public static final String RESOURCE_WATCHFOLDER_SORT_IDENTIFIER = "resource.watchfolder.sort";
+	public static final String RESOURCE_WATCHFOLDER_SCHEDULE_IDENTIFIER = "resource.watchfolder.schedule";
 	public static final String SERVICE_NAME_IDENTIFIER = "service.name";
 	public static final String ENGINE_THREADS_IDENTIFIER = "engine.threads";
+	public static final String ENGINE_QUEUE_SIZE_IDENTIFIER = "engine.queue_size";
+	public static final String ENGINE_RUN_LOG_IDENTIFIER = "engine.run_log";
+	public static final String ENGINE_FAIL_FAST_IDENTIFIER = "engine.fail_fast";
+	public static final String ENGINE_DAEMON_IDENTIFIER = "engine.daemon";
+	public static final String ENGINE_DAEMON_DEBOUNCE_IDENTIFIER = "engine.daemon.debounce";
 	public static final String PROTOTYPE_INPUT_DATA_MODEL_ID_IDENTIFIER = "prototype.dataModelID";
 	public static final String PROTOTYPE_INPUT_SCHEMA_ID_IDENTIFIER = "prototype.inputSchemaID";
 	public static final String PROJECT_NAME_IDENTIFIER = "project.name";
@@ -32,6 +39,10 @@ public final class TPUStatics {
 	public static final String DO_EXPORT_IDENTIFIER = "export.do";
 	public static final String PERSIST_IN_FOLDER_IDENTIFIER = "results.persistInFolder";
 	public static final String RESULTS_FOLDER_IDENTIFIER = "results.folder";
+	public static final String RESULTS_MANIFEST_IDENTIFIER = "results.manifest";
+	public static final String RESULTS_MANIFEST_FORCE_IDENTIFIER = "results.manifest.force";
+	public static final String RESULTS_COMPRESSION_IDENTIFIER = "results.compression";
+	public static final String RESULTS_COMPRESSION_LEVEL_IDENTIFIER = "results.compression.level";
 	public static final String PROTOTYPE_OUTPUT_DATA_MODEL_ID_IDENTIFIER = "prototype.outputDataModelID";
 	public static final String DO_TRANSFORMATIONS_IDENTIFIER = "transform.do";
 	public static final String DO_INGEST_IDENTIFIER = "ingest.do";
@@ -46,5 +57,55 @@ public final class TPUStatics {
 	public static final String DO_INITIAL_DATA_MODEL_INGEST_IDENTIFIER = "init.data_model.do_ingest";
 	public static final String ALLOW_MULTIPLE_DATA_MODELS_IDENTIFIER = "init.multiple_data_models";
 	public static final String ENHANCE_INPUT_DATA_RESOURCE = "init.enhance_data_resource";
+	public static final String ENHANCE_INPUT_DATA_RESOURCE_STREAM = "init.enhance_data_resource.stream";
+	public static final String ENHANCE_INPUT_DATA_RESOURCE_CACHE_IDENTIFIER = "init.enhance_data_resource.cache";
+	public static final String ENHANCE_INPUT_DATA_RESOURCE_CACHE_MAX_SIZE_IDENTIFIER = "init.enhance_data_resource.cache.max_size";
+	public static final String SHARE_CONFIGURATION_IDENTIFIER = "init.share_configuration";
+	public static final String INIT_SLOT_POOL_SIZE_IDENTIFIER = "init.slot_pool.size";
+	public static final String INIT_SPLIT_RECORDS_IDENTIFIER = "init.split.records";
+	public static final String INIT_SPLIT_SIZE_IDENTIFIER = "init.split.size";
+	public static final String INIT_SPLIT_RECORD_TAG_IDENTIFIER = "init.split.record_tag";
 	public static final String PROTOTYPE_SKIP_FILTER_IDENTIFIER = "prototype.skipFilterID";
+	public static final String ENGINE_HTTP_MAX_CONNECTIONS_IDENTIFIER = "engine.http.max_connections";
+	public static final String ENGINE_HTTP_MAX_CONNECTIONS_PER_ROUTE_IDENTIFIER = "engine.http.max_connections_per_route";
+	public static final String ENGINE_HTTP_CONNECT_TIMEOUT_IDENTIFIER = "engine.http.connect_timeout";
+	public static final String ENGINE_HTTP_SOCKET_TIMEOUT_IDENTIFIER = "engine.http.socket_timeout";
+	public static final String ENGINE_HTTP_KEEP_ALIVE_IDENTIFIER = "engine.http.keep_alive";
+	public static final String ENGINE_HTTP_IDLE_TIMEOUT_IDENTIFIER = "engine.http.idle_timeout";
+	public static final String ENGINE_HTTP_ACCEPT_GZIP_IDENTIFIER = "engine.http.accept_gzip";
+	public static final String ENGINE_HTTP_COMPRESS_UPLOADS_IDENTIFIER = "engine.http.compress_uploads";
+	public static final String ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER = "engine.http.retry.max_retries";
+	public static final String ENGINE_HTTP_RETRY_POST_IDENTIFIER = "engine.http.retry.post";
+	public static final String ENGINE_HTTP_RETRY_INITIAL_BACKOFF_IDENTIFIER = "engine.http.retry.initial_backoff";
+	public static final String ENGINE_HTTP_RETRY_MAX_BACKOFF_IDENTIFIER = "engine.http.retry.max_backoff";
+	public static final String ENGINE_HTTP_CIRCUIT_BREAKER_IDENTIFIER = "engine.http.circuit_breaker";
+	public static final String ENGINE_HTTP_CIRCUIT_BREAKER_FAILURE_RATE_IDENTIFIER = "engine.http.circuit_breaker.failure_rate";
+	public static final String ENGINE_HTTP_CIRCUIT_BREAKER_WINDOW_IDENTIFIER = "engine.http.circuit_breaker.window";
+	public static final String ENGINE_HTTP_CIRCUIT_BREAKER_OPEN_DURATION_IDENTIFIER = "engine.http.circuit_breaker.open_duration";
+	public static final String ENGINE_MODE_IDENTIFIER = "engine.mode";
+	public static final String ENGINE_ASYNC_IO_THREADS_IDENTIFIER = "engine.async.io_threads";
+	public static final String ENGINE_ASYNC_MAX_TASKS_IDENTIFIER = "engine.async.max_tasks";
+	public static final String ENGINE_ASYNC_CALLBACK_THREADS_IDENTIFIER = "engine.async.callback_threads";
+	public static final String ENGINE_PIPELINE_QUEUE_SIZE_IDENTIFIER = "engine.pipeline.queue_size";
+	public static final String ENGINE_CONCURRENCY_ADAPTIVE_IDENTIFIER = "engine.concurrency.adaptive";
+	public static final String ENGINE_CONCURRENCY_INITIAL_LIMIT_IDENTIFIER = "engine.concurrency.initial_limit";
+	public static final String ENGINE_CONCURRENCY_MIN_LIMIT_IDENTIFIER = "engine.concurrency.min_limit";
+	public static final String ENGINE_CONCURRENCY_MAX_LIMIT_IDENTIFIER = "engine.concurrency.max_limit";
+	public static final String INIT_THREADS_IDENTIFIER = "init.threads";
+	public static final String TRANSFORM_THREADS_IDENTIFIER = "transform.threads";
+	public static final String CLEANUP_THREADS_IDENTIFIER = "cleanup.threads";
+	public static final String ENGINE_MAPPINGS_PARALLELISM_IDENTIFIER = "engine.mappings.parallelism";
+	public static final String ENGINE_METADATA_CACHE_TTL_IDENTIFIER = "engine.metadata_cache.ttl";
+	public static final String ENGINE_DSWARM_GRAPH_SCHEMA_INDICES_FORCE_REFRESH_IDENTIFIER = "engine.dswarm.graph.schema_indices.force_refresh";
+
+	public static final String THREADED_ENGINE_MODE = "threaded";
+	public static final String ASYNC_ENGINE_MODE = "async";
+	public static final String PIPELINE_ENGINE_MODE = "pipeline";
+
+	public static final String NO_RESULTS_COMPRESSION = "none";
+	public static final String GZIP_RESULTS_COMPRESSION = "gzip";
+
+	public static final String NAME_SCHEDULE = "name";
+	public static final String SIZE_SCHEDULE = "size";
+	public static final String PREDICTED_SCHEDULE = "predicted";
 }
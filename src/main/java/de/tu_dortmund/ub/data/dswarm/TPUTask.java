@@ -15,16 +15,9 @@
  */
 package de.tu_dortmund.ub.data.dswarm;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import javax.json.JsonObject;
 
@@ -48,6 +41,13 @@ public class TPUTask implements Callable<String> {
 	private final Optional<String> optionalExportFileExtension;
 	private final String serviceName;
 	private final int cnt;
+	private final Optional<TPUSlotPool> optionalSlotPool;
+	private final boolean chunk;
+
+	// the result file of the (successful) TPU task execution (if the result was persisted in the results folder)
+	private volatile Optional<String> optionalResultFileName = Optional.empty();
+	// the input data model of the TPU task execution
+	private volatile Optional<String> optionalInputDataModelID = Optional.empty();
 
 	public TPUTask(final Properties config,
 	               final String watchFolderFile,
@@ -58,6 +58,41 @@ public class TPUTask implements Callable<String> {
 	               final String serviceName,
 	               final int cnt) {
 
+		this(config, watchFolderFile, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension,
+				serviceName, cnt, Optional.empty());
+	}
+
+	/**
+	 * @param optionalSlotPool the pool of pre-initialised slots (resource + configuration + data model), if the metadata objects should be recycled
+	 */
+	public TPUTask(final Properties config,
+	               final String watchFolderFile,
+	               final String resourceWatchFolder,
+	               final Optional<String> optionalOutputDataModelID,
+	               final Optional<String> optionalExportMimeType,
+	               final Optional<String> optionalExportFileExtension,
+	               final String serviceName,
+	               final int cnt,
+	               final Optional<TPUSlotPool> optionalSlotPool) {
+
+		this(config, watchFolderFile, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension,
+				serviceName, cnt, optionalSlotPool, false);
+	}
+
+	/**
+	 * @param chunk true, if the source file is a chunk of a split source file (i.e. it won't be recorded in the manifest)
+	 */
+	TPUTask(final Properties config,
+	        final String watchFolderFile,
+	        final String resourceWatchFolder,
+	        final Optional<String> optionalOutputDataModelID,
+	        final Optional<String> optionalExportMimeType,
+	        final Optional<String> optionalExportFileExtension,
+	        final String serviceName,
+	        final int cnt,
+	        final Optional<TPUSlotPool> optionalSlotPool,
+	        final boolean chunk) {
+
 		this.config = config;
 		this.watchFolderFile = watchFolderFile;
 		this.resourceWatchFolder = resourceWatchFolder;
@@ -66,18 +101,34 @@ public class TPUTask implements Callable<String> {
 		this.optionalExportFileExtension = optionalExportFileExtension;
 		this.serviceName = serviceName;
 		this.cnt = cnt;
+		this.optionalSlotPool = optionalSlotPool;
+		this.chunk = chunk;
 	}
 
 	@Override
 	public String call() throws Exception {
 
+		JsonObject initResultJSON = null;
+
+		if (!chunk) {
+
+			TPUSchedule.started(watchFolderFile);
+		}
+
 		try {
 
-			final Integer engineThreads = 1;
-			final JsonObject initResultJSON = TPUUtil.doInit(resourceWatchFolder, watchFolderFile, serviceName, engineThreads, config, cnt);
+			if (optionalSlotPool.isPresent()) {
+
+				initResultJSON = optionalSlotPool.get().acquire(resourceWatchFolder, watchFolderFile, cnt);
+			} else {
+
+				initResultJSON = TPUUtil.doInit(resourceWatchFolder, watchFolderFile, serviceName, config, cnt);
+			}
 
 			final String inputDataModelID = initResultJSON.getString(Init.DATA_MODEL_ID);
 
+			optionalInputDataModelID = Optional.of(inputDataModelID);
+
 			final String outputDataModelID;
 
 			if (optionalOutputDataModelID.isPresent()) {
@@ -92,17 +143,39 @@ public class TPUTask implements Callable<String> {
 				outputDataModelID = inputDataModelID;
 			}
 
-			final String result = executeTransformation(inputDataModelID, outputDataModelID, optionalExportMimeType, optionalExportFileExtension, engineThreads, config, serviceName, cnt);
+			final String result = executeTransformation(inputDataModelID, outputDataModelID, optionalExportMimeType, optionalExportFileExtension,
+					TPUUtil.determineFileSize(resourceWatchFolder, watchFolderFile), config, serviceName, cnt);
+
+			if (optionalSlotPool.isPresent()) {
 
-			final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
+				optionalSlotPool.get().release(initResultJSON, cnt);
+			} else {
+
+				final String engineDswarmAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER);
 
-			TPUUtil.cleanUpMetadataRepository(initResultJSON, serviceName, engineDswarmAPI, cnt);
+				TPUUtil.cleanUpMetadataRepository(initResultJSON, serviceName, engineDswarmAPI, cnt);
+			}
+
+			optionalResultFileName = Transform
+					.determineResultFileName(config, inputDataModelID, outputDataModelID, optionalExportFileExtension, cnt);
+
+			if (!chunk) {
+
+				TPUManifest.record(resourceWatchFolder, watchFolderFile, optionalResultFileName);
+				TPUSchedule.finished(resourceWatchFolder, watchFolderFile);
+			}
 
 			return String
 					.format("[%s][%d] TPU task execution '%d' result = '%s' for source file '%s' and data model '%s'", serviceName, cnt, cnt, result,
 							watchFolderFile, inputDataModelID);
 		} catch (final Exception e) {
 
+			if (optionalSlotPool.isPresent() && initResultJSON != null) {
+
+				// the state of the slot is unknown now
+				optionalSlotPool.get().discard(initResultJSON, cnt);
+			}
+
 			final String message = String
 					.format("[%s][%d] TPU task execution '%d' failed for source file '%s'", serviceName, cnt, cnt, watchFolderFile);
 
@@ -110,52 +183,44 @@ public class TPUTask implements Callable<String> {
 		}
 	}
 
-	private static String executeTransformation(final String inputDataModelID,
-	                                            final String outputDataModelID,
-	                                            final Optional<String> optionalExportMimeType,
-	                                            final Optional<String> optionalExportFileExtension,
-	                                            final Integer engineThreads,
-	                                            final Properties config,
-	                                            final String serviceName, final int cnt) throws Exception {
-
-		// create job
-		final Optional<Boolean> optionalDoExportOnTheFly = Optional.of(Boolean.TRUE);
-		final Optional<Boolean> optionalDoIngestOnTheFly = Optional.of(Boolean.TRUE);
-		final Callable<String> transformTask = new Transform(config, inputDataModelID, outputDataModelID, optionalDoIngestOnTheFly,
-				optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, cnt);
-
-		// work on jobs
-		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<>());
+	/**
+	 * @return the result file of the TPU task execution (only available after a successful TPU task execution, if the result was persisted in the
+	 * results folder)
+	 */
+	Optional<String> getResultFileName() {
 
-		try {
-
-			final List<Callable<String>> tasks = new LinkedList<>();
-			tasks.add(transformTask);
-
-			final List<Future<String>> futureList = pool.invokeAll(tasks);
-			final Iterator<Future<String>> iterator = futureList.iterator();
-
-			if (!iterator.hasNext()) {
+		return optionalResultFileName;
+	}
 
-				return "no result";
-			}
+	/**
+	 * @return the input data model of the TPU task execution (only available after the init of the TPU task execution)
+	 */
+	Optional<String> getInputDataModelID() {
 
-			final Future<String> f = iterator.next();
+		return optionalInputDataModelID;
+	}
 
-			final String message = f.get();
+	static String executeTransformation(final String inputDataModelID,
+	                                    final String outputDataModelID,
+	                                    final Optional<String> optionalExportMimeType,
+	                                    final Optional<String> optionalExportFileExtension,
+	                                    final long inputSize,
+	                                    final Properties config,
+	                                    final String serviceName, final int cnt) throws Exception {
 
-			final String message1 = String.format("[%s][%d] %s", serviceName, cnt, message);
+		// create job
+		final Optional<Boolean> optionalDoExportOnTheFly = Optional.of(Boolean.TRUE);
+		final Optional<Boolean> optionalDoIngestOnTheFly = Optional.of(Boolean.TRUE);
+		final Callable<String> transformTask = new Transform(config, inputDataModelID, outputDataModelID, optionalDoIngestOnTheFly,
+				optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, inputSize, cnt);
 
-			LOG.info(message1);
+		// work on job (in the calling thread, i.e., a worker of the TPU engine)
+		final String message = transformTask.call();
 
-			return message;
-		} catch (final Exception e) {
+		final String message1 = String.format("[%s][%d] %s", serviceName, cnt, message);
 
-			throw e;
-		} finally {
+		LOG.info(message1);
 
-			pool.shutdown();
-		}
+		return message;
 	}
 }
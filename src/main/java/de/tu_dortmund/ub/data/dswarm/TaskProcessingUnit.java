@@ -40,7 +40,14 @@ SOFTWARE.
 package de.tu_dortmund.ub.data.dswarm;
 
 import de.tu_dortmund.ub.data.TPUException;
+import de.tu_dortmund.ub.data.util.BlockingSubmissionHandler;
+import de.tu_dortmund.ub.data.util.TPUAsyncHttpClient;
+import de.tu_dortmund.ub.data.util.TPUConcurrencyLimiter;
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+import de.tu_dortmund.ub.data.util.TPUMetadataCache;
+import de.tu_dortmund.ub.data.util.TPURunLog;
 import de.tu_dortmund.ub.data.util.TPUUtil;
+import de.tu_dortmund.ub.data.util.WatchFolder;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Triple;
 import org.dswarm.common.DSWARMException;
@@ -50,8 +57,12 @@ import org.slf4j.LoggerFactory;
 
 import javax.json.JsonObject;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Task Processing Unit for d:swarm
@@ -68,10 +79,16 @@ public final class TaskProcessingUnit {
 
 	public static final String XML_FILE_ENDING = "xml";
 
+	private static final String FORCE_ARG = "-force";
+
+	// in seconds
+	private static final long POOL_TERMINATION_LOG_INTERVAL = 60;
+
 	public static void main(final String[] args) throws Exception {
 
 		// default config
 		String configFile = DEFAULT_CONF_FOLDER_NAME + File.separatorChar + DEFAULT_CONFIG_PROPERTIES_FILE_NAME;
+		boolean force = false;
 
 		// read program parameters
 		if (args.length > 0) {
@@ -83,6 +100,10 @@ public final class TaskProcessingUnit {
 				if (arg.startsWith("-conf=")) {
 
 					configFile = arg.split("=")[1];
+				} else if (FORCE_ARG.equals(arg) || ("-" + FORCE_ARG).equals(arg)) {
+
+					// process all files (regardless of the manifest)
+					force = true;
 				}
 			}
 		}
@@ -108,7 +129,18 @@ public final class TaskProcessingUnit {
 			throw e;
 		}
 
-		startTPU(configFile, config);
+		if (force) {
+
+			config.setProperty(TPUStatics.RESULTS_MANIFEST_FORCE_IDENTIFIER, Boolean.TRUE.toString());
+		}
+
+		try {
+
+			startTPU(configFile, config);
+		} finally {
+
+			TPUHttpClient.shutdown();
+		}
 	}
 
 	public static String startTPU(final String confFile, final Properties config) throws Exception {
@@ -119,9 +151,9 @@ public final class TaskProcessingUnit {
 		LOG.info(String.format("[%s] conf-file = %s", serviceName, confFile));
 
 		final String resourceWatchFolder = config.getProperty(TPUStatics.RESOURCE_WATCHFOLDER_IDENTIFIER);
-		String[] watchFolderFiles = new File(resourceWatchFolder).list();
+		final Path resourceWatchFolderPath = Paths.get(resourceWatchFolder);
 
-		if (watchFolderFiles == null) {
+		if (!Files.isDirectory(resourceWatchFolderPath)) {
 
 			final String message = String
 					.format("could not determine files from watchfolder '%s'; watch folder file list does not exist", resourceWatchFolder);
@@ -131,7 +163,11 @@ public final class TaskProcessingUnit {
 			throw new TPUException(message);
 		}
 
-		if (watchFolderFiles.length == 0) {
+		final boolean daemonMode = TPUDaemon.isEnabled(config);
+		final Optional<String> optionalFirstWatchFolderFile = WatchFolder.getAnyFileName(resourceWatchFolderPath);
+
+		// note: in daemon mode, the watch folder can be empty at start
+		if (!daemonMode && !optionalFirstWatchFolderFile.isPresent()) {
 
 			final String message = String
 					.format("could not determine files from watchfolder; there are no files in folder '%s'", resourceWatchFolder);
@@ -141,13 +177,9 @@ public final class TaskProcessingUnit {
 			throw new TPUException(message);
 		}
 
-		Arrays.sort(watchFolderFiles);
-
-		final String filesMessage = String
-				.format("[%s] '%s' files in resource watch folder '%s'", serviceName, watchFolderFiles.length, resourceWatchFolder);
-
-		LOG.info(filesMessage);
-		LOG.info("\tfile names: '" + Arrays.toString(watchFolderFiles) + "'");
+		// note: sorting requires to read all file names upfront; unsorted file names will be read lazily while submitting the TPU tasks
+		final boolean sortWatchFolderFiles = TPUUtil.getBooleanConfigValue(TPUStatics.RESOURCE_WATCHFOLDER_SORT_IDENTIFIER, config)
+				.orElse(Boolean.TRUE);
 
 		// Init time counter
 		final long global = System.currentTimeMillis();
@@ -193,18 +225,124 @@ public final class TaskProcessingUnit {
 			optionalExportFileExtension = Optional.empty();
 		}
 
+		if (daemonMode && !goMultiThreaded(optionalDoInit, optionalDoTransformations, optionalAllowMultipleDataModels, optionalDoIngestOnTheFly,
+				optionalDoExportOnTheFly)) {
+
+			final String message = String
+					.format("[%s] daemon mode is only available for on-the-fly transform (see engine.threads)", serviceName);
+
+			TaskProcessingUnit.LOG.error(message);
+
+			throw new TPUException(message);
+		}
+
+		// one (pooled) HTTP client for all backend calls of this TPU run
+		TPUHttpClient.init(config);
+		// metadata that is identical for all tasks of this TPU run will only be retrieved once
+		TPUMetadataCache.init(config);
+		// (optionally) adapt the number of task executions in flight to the latency of the d:swarm backend
+		TPUConcurrencyLimiter.init(config, determineMaxConcurrencyLimit(engineThreads, config));
+		// the concurrent init steps are bounded by the number of init threads
+		Init.initExecutors(config);
+
 		final String result;
 
-		if (goMultiThreaded(optionalDoInit, optionalDoTransformations, optionalAllowMultipleDataModels, optionalDoIngestOnTheFly,
-				optionalDoExportOnTheFly)) {
+		try {
 
-			result = executeTPUTask(watchFolderFiles, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension, engineThreads, serviceName, config);
-		} else {
+			// (optionally) enhance identical input data resources only once (across TPU runs)
+			TPUEnhancementCache.init(config, serviceName);
+
+			if (goMultiThreaded(optionalDoInit, optionalDoTransformations, optionalAllowMultipleDataModels, optionalDoIngestOnTheFly,
+					optionalDoExportOnTheFly)) {
+
+				// (optionally) skip files that already have an up-to-date result
+				TPUManifest.init(config, serviceName);
+				// (optionally) feed the longest files into the TPU task flow first
+				TPUSchedule.init(config, serviceName);
+			}
+
+			if (daemonMode) {
+
+				// new files will be fed into the TPU task flow batch by batch, while the pools + caches stay warm
+				result = new TPUDaemon(config, resourceWatchFolderPath, serviceName,
+						(watchFolderFiles, optionalSlotPool, taskCounter) -> executeTPUTask(TPUManifest.filter(watchFolderFiles, resourceWatchFolder),
+								optionalSlotPool, taskCounter, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension,
+								engineThreads, serviceName, config))
+						.run();
+			} else {
+
+				try (final WatchFolder watchFolder = TPUSchedule.isEnabled() ?
+						WatchFolder.open(resourceWatchFolderPath, TPUSchedule.comparator(resourceWatchFolderPath)) :
+						WatchFolder.open(resourceWatchFolderPath, sortWatchFolderFiles)) {
+
+					final String filesMessage = String.format("[%s] '%s' files in resource watch folder '%s'", serviceName,
+							watchFolder.getSize().map(String::valueOf).orElse("unknown number of"), resourceWatchFolder);
 
-			executeTPUPartsOnDemand(optionalDoInit, optionalAllowMultipleDataModels, watchFolderFiles, resourceWatchFolder, optionalOutputDataModelID,
-					serviceName, engineThreads, optionalDoTransformations, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, config);
+					LOG.info(filesMessage);
 
-			result = "[no result available]";
+					if (goMultiThreaded(optionalDoInit, optionalDoTransformations, optionalAllowMultipleDataModels, optionalDoIngestOnTheFly,
+							optionalDoExportOnTheFly)) {
+
+						final Iterable<String> watchFolderFiles = TPUManifest.filter(watchFolder, resourceWatchFolder);
+
+						final String engineMode = TPUUtil.getStringConfigValue(TPUStatics.ENGINE_MODE_IDENTIFIER, config)
+								.orElse(TPUStatics.THREADED_ENGINE_MODE);
+
+						if ((TPUStatics.ASYNC_ENGINE_MODE.equals(engineMode) || TPUStatics.PIPELINE_ENGINE_MODE.equals(engineMode)) && TPUChunkedTask
+								.isEnabled(config)) {
+
+							LOG.warn("[{}] source file splitting (init.split.*) is only available in '{}' mode; won't split source files in '{}' mode",
+									serviceName, TPUStatics.THREADED_ENGINE_MODE, engineMode);
+						}
+
+						if (TPUStatics.ASYNC_ENGINE_MODE.equals(engineMode)) {
+
+							result = executeAsyncTPUTask(watchFolderFiles, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType,
+									optionalExportFileExtension, engineThreads, serviceName, config);
+						} else if (TPUStatics.PIPELINE_ENGINE_MODE.equals(engineMode)) {
+
+							result = new TPUPipeline(config, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension,
+									engineThreads, serviceName).execute(watchFolderFiles);
+						} else {
+
+							// (optionally) recycle resources + data models between the TPU tasks
+							final Optional<TPUSlotPool> optionalSlotPool = TPUSlotPool.create(config, serviceName);
+
+							try {
+
+								result = executeTPUTask(watchFolderFiles, optionalSlotPool, new AtomicInteger(), resourceWatchFolder, optionalOutputDataModelID,
+										optionalExportMimeType, optionalExportFileExtension, engineThreads, serviceName, config);
+							} finally {
+
+								optionalSlotPool.ifPresent(TPUSlotPool::drain);
+							}
+						}
+					} else {
+
+						executeTPUPartsOnDemand(optionalDoInit, optionalAllowMultipleDataModels, watchFolder.toArray(), resourceWatchFolder, optionalOutputDataModelID,
+								serviceName, engineThreads, optionalDoTransformations, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, config);
+
+						result = "[no result available]";
+					}
+				}
+			}
+		} finally {
+
+			// remove the configurations that were shared by the init tasks of this TPU run (if any)
+			TPUSharedConfigurations.deleteAll(serviceName, config);
+
+			LOG.info(String.format("[%s] HTTP connection pool statistics: %s", serviceName, TPUHttpClient.getPoolStatistics()));
+			LOG.info(String.format("[%s] HTTP transfer statistics: %s", serviceName, TPUHttpClient.getTransferStatistics()));
+			LOG.info(String.format("[%s] HTTP retry statistics: %s", serviceName, TPUHttpClient.getRetryStatistics()));
+			LOG.info(String.format("[%s] adaptive concurrency limit statistics: %s", serviceName, TPUConcurrencyLimiter.getStatistics()));
+			LOG.info(String.format("[%s] metadata cache statistics: %s", serviceName, TPUMetadataCache.getStatistics()));
+			LOG.info(String.format("[%s] manifest statistics: %s", serviceName, TPUManifest.getStatistics()));
+			LOG.info(String.format("[%s] enhancement cache statistics: %s", serviceName, TPUEnhancementCache.getStatistics()));
+			LOG.info(String.format("[%s] schedule statistics: %s", serviceName, TPUSchedule.getStatistics()));
+
+			TPUManifest.close();
+			TPUSchedule.close();
+			TPUEnhancementCache.close();
 		}
 
 		final String tasksExecutedMessage = String
@@ -227,7 +365,16 @@ public final class TaskProcessingUnit {
 				optionalDoExportOnTheFly.isPresent() && optionalDoExportOnTheFly.get();
 	}
 
-	private static String executeTPUTask(final String[] watchFolderFiles,
+	/**
+	 * submits the TPU tasks lazily (i.e. the submitting thread waits, if the bounded queue (engine.queue_size) is full) and streams the results
+	 * of the TPU tasks to the run log (in completion order)
+	 *
+	 * @param taskCounter the counter of the TPU task executions, which must not restart for TPU tasks that might recycle the same slot (e.g. in
+	 *                    daemon mode), since the result file names would clash otherwise
+	 */
+	private static String executeTPUTask(final Iterable<String> watchFolderFiles,
+	                                     final Optional<TPUSlotPool> optionalSlotPool,
+	                                     final AtomicInteger taskCounter,
 	                                     final String resourceWatchFolder,
 	                                     final Optional<String> optionalOutputDataModelID,
 	                                     final Optional<String> optionalExportMimeType,
@@ -236,40 +383,138 @@ public final class TaskProcessingUnit {
 	                                     final String serviceName,
 	                                     final Properties config) throws Exception {
 
-		// create job list
-		final LinkedList<Callable<String>> transforms = new LinkedList<>();
+		final int queueSize = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_QUEUE_SIZE_IDENTIFIER, config)
+				.orElse(engineThreads * TPUPipeline.QUEUE_SIZE_FACTOR);
 
-		int cnt = 1;
+		// work on jobs
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), new BlockingSubmissionHandler());
 
-		for (final String watchFolderFile : watchFolderFiles) {
+		// (optionally) split huge source files into record chunks (init.split.records + init.split.size)
+		final Optional<String> optionalRecordTag = TPUChunkedTask.determineRecordTag(config, optionalExportFileExtension);
+		// the splitting of the source files and the merging of their chunk results won't block the submitting thread or the TPU task threads
+		final ExecutorService splitPool = Executors.newFixedThreadPool(engineThreads);
 
-			LOG.info("[{}][{}] do TPU task execution '{}' for file '{}'", serviceName, cnt, cnt, watchFolderFile);
+		try (final TPURunLog runLog = TPURunLog.open(config, serviceName, engineThreads + queueSize)) {
 
-			transforms.add(new TPUTask(config, watchFolderFile, resourceWatchFolder, optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension, serviceName, cnt));
+			final CompletionService<String> completionService = runLog.newCompletionService(pool);
 
-			cnt++;
+			for (final String watchFolderFile : watchFolderFiles) {
+
+				if (runLog.isAborted()) {
+
+					break;
+				}
+
+				final int cnt = taskCounter.incrementAndGet();
+
+				LOG.info("[{}][{}] do TPU task execution '{}' for file '{}'", serviceName, cnt, cnt, watchFolderFile);
+
+				if (optionalRecordTag.isPresent() && TPUChunkedTask.shouldSplit(config, resourceWatchFolder, watchFolderFile)) {
+
+					// note: the chunk TPU tasks will be submitted to the same pool
+					runLog.add(TPUChunkedTask.submit(pool, splitPool, runLog, optionalRecordTag.get(), config, watchFolderFile, resourceWatchFolder,
+							optionalOutputDataModelID, optionalExportMimeType, optionalExportFileExtension, serviceName, cnt, optionalSlotPool));
+				} else {
+
+					runLog.add(completionService.submit(new TPUTask(config, watchFolderFile, resourceWatchFolder, optionalOutputDataModelID,
+							optionalExportMimeType, optionalExportFileExtension, serviceName, cnt, optionalSlotPool)));
+				}
+			}
+
+			return runLog.finish();
+		} catch (final Exception e) {
+
+			LOG.error("something went wrong", e);
+
+			throw e;
+		} finally {
+
+			splitPool.shutdown();
+
+			shutdownAndAwaitTermination(pool, serviceName);
 		}
+	}
 
-		// work on jobs
-		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<>());
+	/**
+	 * determines the max. number of task executions that can be in flight in the configured engine mode, i.e. engine.async.max_tasks (async),
+	 * transform.threads (pipeline) or engine.threads
+	 */
+	private static int determineMaxConcurrencyLimit(final Integer engineThreads, final Properties config) {
 
-		try {
+		final String engineMode = TPUUtil.getStringConfigValue(TPUStatics.ENGINE_MODE_IDENTIFIER, config).orElse(TPUStatics.THREADED_ENGINE_MODE);
+
+		if (TPUStatics.ASYNC_ENGINE_MODE.equals(engineMode)) {
+
+			return TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_ASYNC_MAX_TASKS_IDENTIFIER, config).orElse(TPUAsyncHttpClient.DEFAULT_MAX_TASKS);
+		}
+
+		if (TPUStatics.PIPELINE_ENGINE_MODE.equals(engineMode)) {
 
-			final List<Future<String>> futureList = pool.invokeAll(transforms);
+			return TPUUtil.getIntegerConfigValue(TPUStatics.TRANSFORM_THREADS_IDENTIFIER, config).orElse(engineThreads);
+		}
+
+		return engineThreads;
+	}
+
+	/**
+	 * executes the TPU tasks with the non-blocking HTTP client, i.e., the number of TPU tasks in flight is bounded by engine.async.max_tasks
+	 * (instead of engine.threads); engine.threads only determines the number of threads for the (CPU-bound) enhancement of the input data
+	 * resources and engine.async.callback_threads the number of threads for the processing of the responses
+	 */
+	private static String executeAsyncTPUTask(final Iterable<String> watchFolderFiles,
+	                                          final String resourceWatchFolder,
+	                                          final Optional<String> optionalOutputDataModelID,
+	                                          final Optional<String> optionalExportMimeType,
+	                                          final Optional<String> optionalExportFileExtension,
+	                                          final Integer engineThreads,
+	                                          final String serviceName,
+	                                          final Properties config) throws Exception {
+
+		TPUAsyncHttpClient.init(config);
+
+		final int maxTasks = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_ASYNC_MAX_TASKS_IDENTIFIER, config)
+				.orElse(TPUAsyncHttpClient.DEFAULT_MAX_TASKS);
+
+		final int callbackThreads = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_ASYNC_CALLBACK_THREADS_IDENTIFIER, config)
+				.orElse(Runtime.getRuntime().availableProcessors());
+
+		LOG.info("[{}] execute TPU tasks asynchronously with max. '{}' tasks in flight and '{}' callback threads", serviceName, maxTasks,
+				callbackThreads);
+
+		final Semaphore tasksInFlight = new Semaphore(maxTasks);
+		final ExecutorService pool = Executors.newFixedThreadPool(engineThreads);
+		// the responses will be processed here (instead of at the I/O dispatcher threads)
+		final ExecutorService callbackPool = Executors.newFixedThreadPool(callbackThreads);
 
-			final StringBuilder resultSB = new StringBuilder();
+		try (final TPURunLog runLog = TPURunLog.open(config, serviceName, maxTasks)) {
 
-			for (final Future<String> f : futureList) {
+			int cnt = 1;
 
-				final String message = f.get();
+			for (final String watchFolderFile : watchFolderFiles) {
 
-				LOG.info(message);
+				tasksInFlight.acquire();
 
-				resultSB.append(message).append("\n");
+				if (runLog.isAborted()) {
+
+					tasksInFlight.release();
+
+					break;
+				}
+
+				LOG.info("[{}][{}] do async TPU task execution '{}' for file '{}'", serviceName, cnt, cnt, watchFolderFile);
+
+				final CompletableFuture<String> future = new AsyncTPUTask(config, watchFolderFile, resourceWatchFolder, optionalOutputDataModelID,
+						optionalExportMimeType, optionalExportFileExtension, serviceName, cnt, pool, callbackPool).execute();
+				future.whenComplete((message, throwable) -> tasksInFlight.release());
+
+				// note: the result of a TPU task is only available after its clean-up
+				runLog.add(future);
+
+				cnt++;
 			}
 
-			return resultSB.toString();
+			return runLog.finish();
 		} catch (final Exception e) {
 
 			LOG.error("something went wrong", e);
@@ -278,6 +523,11 @@ public final class TaskProcessingUnit {
 		} finally {
 
 			pool.shutdown();
+			callbackPool.shutdown();
+
+			LOG.info(String.format("[%s] asynchronous HTTP connection pool statistics: %s", serviceName, TPUAsyncHttpClient.getPoolStatistics()));
+
+			TPUAsyncHttpClient.shutdown();
 		}
 	}
 
@@ -296,31 +546,40 @@ public final class TaskProcessingUnit {
 	                                            final Properties config) throws Exception {
 
 		// keys = input data models; values = related data resources
-		final Map<String, Triple<String, String, String>> inputDataModelsAndResources = new HashMap<>();
+		final Map<String, Triple<String, String, String>> inputDataModelsAndResources = new ConcurrentHashMap<>();
+
+		final boolean doTransformations = optionalDoTransformations.isPresent() && optionalDoTransformations.get();
+
+		// true, if the input data models were already transformed right after their init
+		boolean transformationsExecuted = false;
 
 		// init
 		if (optionalDoInit.isPresent() && optionalDoInit.get()) {
 
 			if (optionalAllowMultipleDataModels.isPresent() && optionalAllowMultipleDataModels.get()) {
 
-				for (int i = 0; i < watchFolderFiles.length; i++) {
+				if (doTransformations && !optionalOutputDataModelID.isPresent()) {
 
-					final String initResourceFileName = watchFolderFiles[i];
+					throw new Exception("please set an output data model ('prototype.outputDataModelID') for this TPU task");
+				}
 
-					doInit(resourceWatchFolder, initResourceFileName, serviceName, engineThreads, config, inputDataModelsAndResources);
+				executeInitsAndTransforms(watchFolderFiles, resourceWatchFolder, doTransformations ? optionalOutputDataModelID : Optional.empty(),
+						optionalDoIngestOnTheFly, optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, engineThreads, serviceName,
+						config, inputDataModelsAndResources);
 
-					// remove the file already processed during init from the files list to avoid duplicates
-					watchFolderFiles = ArrayUtils.removeElement(watchFolderFiles, initResourceFileName);
-				}
+				transformationsExecuted = doTransformations;
+
+				// all files were already processed during init; clear the files list to avoid duplicates
+				watchFolderFiles = ArrayUtils.EMPTY_STRING_ARRAY;
 			} else {
 
 				// use the first file in the folder for init
 				final String initResourceFileName = watchFolderFiles[0];
 
-				doInit(resourceWatchFolder, initResourceFileName, serviceName, engineThreads, config, inputDataModelsAndResources);
+				doInit(resourceWatchFolder, initResourceFileName, serviceName, config, inputDataModelsAndResources);
 
 				// remove the file already processed during init from the files list to avoid duplicates
-				watchFolderFiles = ArrayUtils.removeElement(watchFolderFiles, initResourceFileName);
+				watchFolderFiles = ArrayUtils.remove(watchFolderFiles, 0);
 			}
 		} else {
 
@@ -364,7 +623,10 @@ public final class TaskProcessingUnit {
 		final String outputDataModelID = optionalOutputDataModelID.get();
 
 		// task execution
-		if (optionalDoTransformations.isPresent() && optionalDoTransformations.get()) {
+		if (transformationsExecuted) {
+
+			LOG.info("transformations were already executed right after the inits");
+		} else if (doTransformations) {
 
 			if (optionalAllowMultipleDataModels.isPresent() && optionalAllowMultipleDataModels.get()) {
 
@@ -444,6 +706,49 @@ public final class TaskProcessingUnit {
 		}
 	}
 
+	/**
+	 * executes the init of each source file (i.e. one input data model per source file) and (optionally) the transform of its input data model right
+	 * after its init, i.e., all inits + transforms share one pool (engine.threads)
+	 *
+	 * @param optionalOutputDataModelID the output data model, if the input data models should be transformed
+	 */
+	private static void executeInitsAndTransforms(final String[] files,
+	                                              final String resourceWatchFolder,
+	                                              final Optional<String> optionalOutputDataModelID,
+	                                              final Optional<Boolean> optionalDoIngestOnTheFly,
+	                                              final Optional<Boolean> optionalDoExportOnTheFly,
+	                                              final Optional<String> optionalExportMimeType,
+	                                              final Optional<String> optionalExportFileExtension,
+	                                              final Integer engineThreads,
+	                                              final String serviceName,
+	                                              final Properties config,
+	                                              final Map<String, Triple<String, String, String>> inputDataModelsAndResources) throws Exception {
+
+		// create job list
+		final LinkedList<Callable<String>> initsAndTransforms = new LinkedList<>();
+
+		for (final String file : files) {
+
+			initsAndTransforms.add(() -> {
+
+				final String inputDataModelID = doInit(resourceWatchFolder, file, serviceName, config, inputDataModelsAndResources);
+
+				if (!optionalOutputDataModelID.isPresent()) {
+
+					return String.format("init of source file '%s' created input data model '%s'", file, inputDataModelID);
+				}
+
+				return new Transform(config, inputDataModelID, optionalOutputDataModelID.get(), optionalDoIngestOnTheFly, optionalDoExportOnTheFly,
+						optionalExportMimeType, optionalExportFileExtension, TPUUtil.determineFileSize(resourceWatchFolder, file), 0).call();
+			});
+		}
+
+		// work on jobs
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+		execute(serviceName, initsAndTransforms, pool, config);
+	}
+
 	private static void executeIngests(final String[] files, final String dataModelID, final String resourceID, final String projectName,
 	                                   final String serviceName, final Integer engineThreads, final Properties config) throws Exception {
 
@@ -461,7 +766,7 @@ public final class TaskProcessingUnit {
 		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS,
 				new LinkedBlockingQueue<>());
 
-		execute(serviceName, filesToPush, pool);
+		execute(serviceName, filesToPush, pool, config);
 	}
 
 
@@ -477,12 +782,12 @@ public final class TaskProcessingUnit {
 
 		// create job list
 		final LinkedList<Callable<String>> transforms = new LinkedList<>();
-		transforms.add(new Transform(config, inputDataModelID, outputDataModelID, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, 0));
+		transforms.add(new Transform(config, inputDataModelID, outputDataModelID, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, optionalExportMimeType, optionalExportFileExtension, 0, 0));
 
 		// work on jobs
 		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
-		execute(serviceName, transforms, pool);
+		execute(serviceName, transforms, pool, config);
 	}
 
 	private static void executeExport(final String exportDataModelID,
@@ -500,39 +805,51 @@ public final class TaskProcessingUnit {
 		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS,
 				new LinkedBlockingQueue<>());
 
-		execute(serviceName, exports, pool);
+		execute(serviceName, exports, pool, config);
 	}
 
-	private static void doInit(final String resourceWatchFolder, final String initResourceFileName, final String serviceName,
-	                           final Integer engineThreads, final Properties config, final Map<String, Triple<String, String, String>> inputDataModelsAndResources)
+	/**
+	 * @return the ID of the created input data model
+	 */
+	private static String doInit(final String resourceWatchFolder, final String initResourceFileName, final String serviceName,
+	                             final Properties config, final Map<String, Triple<String, String, String>> inputDataModelsAndResources)
 			throws Exception {
 
-		final JsonObject initResultJSON = TPUUtil.doInit(resourceWatchFolder, initResourceFileName, serviceName, engineThreads, config, 0);
+		final JsonObject initResultJSON = TPUUtil.doInit(resourceWatchFolder, initResourceFileName, serviceName, config, 0);
 
 		final String inputDataModelID = initResultJSON.getString(Init.DATA_MODEL_ID);
 		final String resourceID = initResultJSON.getString(Init.RESOURCE_ID);
-		final String configurationID = initResultJSON.getString(Init.CONFIGURATION_ID);
+		// note: a shared configuration won't be part of the init result
+		final String configurationID = initResultJSON.getString(Init.CONFIGURATION_ID, null);
 
 		inputDataModelsAndResources.put(inputDataModelID, Triple.of(inputDataModelID, resourceID, configurationID));
+
+		return inputDataModelID;
 	}
 
+	/**
+	 * executes the given jobs and streams their results to the run log (in completion order)
+	 */
 	private static void execute(final String serviceName,
 	                            final LinkedList<Callable<String>> threads,
-	                            final ThreadPoolExecutor pool) throws InterruptedException, java.util.concurrent.ExecutionException {
+	                            final ThreadPoolExecutor pool,
+	                            final Properties config) throws Exception {
 
-		try {
+		try (final TPURunLog runLog = TPURunLog.open(config, serviceName, threads.size())) {
 
-			final List<Future<String>> futureList = pool.invokeAll(threads);
+			final CompletionService<String> completionService = runLog.newCompletionService(pool);
 
-			for (final Future<String> f : futureList) {
+			for (final Callable<String> thread : threads) {
 
-				final String message = f.get();
+				if (runLog.isAborted()) {
 
-				final String message1 = String.format("[%s] %s", serviceName, message);
+					break;
+				}
 
-				LOG.info(message1);
+				runLog.add(completionService.submit(thread));
 			}
 
+			runLog.finish();
 		} catch (final Exception e) {
 
 			LOG.error("something went wrong", e);
@@ -541,7 +858,21 @@ public final class TaskProcessingUnit {
 
 		} finally {
 
-			pool.shutdown();
+			shutdownAndAwaitTermination(pool, serviceName);
+		}
+	}
+
+	/**
+	 * shuts the given pool down and waits for its running TPU tasks, e.g., after a fail-fast abort, so that no TPU task is still running (or
+	 * cleaning up) when the run will be closed (shared configurations, slot pool, HTTP client etc.)
+	 */
+	private static void shutdownAndAwaitTermination(final ExecutorService pool, final String serviceName) throws InterruptedException {
+
+		pool.shutdown();
+
+		while (!pool.awaitTermination(POOL_TERMINATION_LOG_INTERVAL, TimeUnit.SECONDS)) {
+
+			LOG.info("[{}] wait for the running TPU tasks to be finished", serviceName);
 		}
 	}
 }
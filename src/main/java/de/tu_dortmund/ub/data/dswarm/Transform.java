@@ -39,16 +39,19 @@ SOFTWARE.
 
 package de.tu_dortmund.ub.data.dswarm;
 
+import de.tu_dortmund.ub.data.util.TPUConcurrencyLimiter;
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+import de.tu_dortmund.ub.data.util.TPUMetadataCache;
 import de.tu_dortmund.ub.data.util.TPUUtil;
+import de.tu_dortmund.ub.data.util.TaskRequestEntity;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,10 +60,19 @@ import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
 import javax.json.stream.JsonGenerator;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Export Task for Task Processing Unit for d:swarm
@@ -74,6 +86,8 @@ public class Transform implements Callable<String> {
 
 	public static final String CHUNKED_TRANSFER_ENCODING = "chunked";
 
+	private static final int DEFAULT_MAPPINGS_PARALLELISM = 4;
+
 	private final Properties config;
 	private final String inputDataModelID;
 	private final String outputDataModelID;
@@ -82,6 +96,7 @@ public class Transform implements Callable<String> {
 	private final Optional<Boolean> optionalDoExportOnTheFly;
 	private final Optional<String> optionalExportMimeType;
 	private final Optional<String> optionalExportFileExtension;
+	private final long inputSize;
 	private final int cnt;
 
 	public Transform(final Properties config,
@@ -91,6 +106,7 @@ public class Transform implements Callable<String> {
 	                 final Optional<Boolean> optionalDoExportOnTheFly,
 	                 final Optional<String> optionalExportMimeType,
 	                 final Optional<String> optionalExportFileExtension,
+	                 final long inputSize,
 	                 final int cnt) {
 
 		this.config = config;
@@ -98,7 +114,7 @@ public class Transform implements Callable<String> {
 		this.optionalDoExportOnTheFly = optionalDoExportOnTheFly;
 		this.optionalExportMimeType = optionalExportMimeType;
 		this.optionalExportFileExtension = optionalExportFileExtension;
-
+		this.inputSize = inputSize;
 
 		this.cnt = cnt;
 
@@ -112,7 +128,7 @@ public class Transform implements Callable<String> {
 			this.inputDataModelID = config.getProperty(TPUStatics.PROTOTYPE_INPUT_DATA_MODEL_ID_IDENTIFIER);
 		}
 
-		this.projectIDs = determineProjectIDs();
+		this.projectIDs = determineProjectIDs(config);
 		this.outputDataModelID = outputDataModelID;
 	}
 
@@ -159,25 +175,215 @@ public class Transform implements Callable<String> {
 	                           final Optional<String> optionalExportMimeType,
 	                           final Optional<String> optionalExportFileExtension) throws Exception {
 
-		final JsonArray mappings = getMappingsFromProjects(projectIDs, serviceName, engineDswarmAPI);
+		final JsonArray mappings = getMappingsFromProjects(projectIDs, serviceName, engineDswarmAPI, config, cnt);
 		final JsonObject inputDataModel = getDataModel(inputDataModelID, serviceName, engineDswarmAPI);
-		final JsonObject outputDataModel = getDataModel(outputDataModelID, serviceName, engineDswarmAPI);
+		final JsonObject outputDataModel;
+
+		if (outputDataModelID.equals(inputDataModelID)) {
+
+			outputDataModel = inputDataModel;
+		} else {
+
+			// the output data model is the same for all tasks of a run
+			final String outputDataModelURI = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + outputDataModelID;
+
+			outputDataModel = TPUMetadataCache.get(outputDataModelURI, () -> getDataModel(outputDataModelID, serviceName, engineDswarmAPI));
+		}
+
 		final Optional<JsonObject> optionalSkipFilter = getSkipFilter(serviceName, engineDswarmAPI);
 
 		// erzeuge Task-JSON
-		final String persistString = config.getProperty(TPUStatics.PERSIST_IN_DMP_IDENTIFIER);
+		final boolean persist = doPersistInDMP(config);
+		final Optional<JsonObject> optionalOutputDataModel = outputDataModelID.equals(inputDataModelID) ? Optional.empty() : Optional.of(outputDataModel);
 
-		final boolean persist;
+		final String taskTemplateKey = determineTaskTemplateKey(engineDswarmAPI, projectIDs, optionalOutputDataModel.map(ignored -> outputDataModelID),
+				TPUUtil.getStringConfigValue(TPUStatics.PROTOTYPE_SKIP_FILTER_IDENTIFIER, config), persist, optionalDoIngestOnTheFly,
+				optionalDoExportOnTheFly);
+		final TaskRequestEntity.Template taskTemplate = getTaskTemplate(persist, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, mappings,
+				optionalOutputDataModel, optionalSkipFilter, taskTemplateKey, serviceName, cnt);
 
-		if (persistString != null && !persistString.trim().isEmpty()) {
+		// only the job UUID and the input data model will be serialised per task
+		final TaskRequestEntity taskRequestEntity = new TaskRequestEntity(taskTemplate, inputDataModel);
 
-			persist = Boolean.valueOf(persistString);
-		} else {
+		if (LOG.isDebugEnabled()) {
 
-			// default is false
-			persist = false;
+			LOG.debug(String.format("[%s][%d] task : %s", serviceName, cnt, EntityUtils.toString(taskRequestEntity, StandardCharsets.UTF_8)));
 		}
 
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
+
+		// POST /dmp/tasks/
+		final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.TASKS_ENDPOINT);
+
+		final String mimetype = determineAcceptMimeType(optionalDoExportOnTheFly, optionalExportMimeType);
+
+		httpPost.setHeader(HttpHeaders.ACCEPT, mimetype);
+		//httpPost.setHeader(HttpHeaders.TRANSFER_ENCODING, CHUNKED_TRANSFER_ENCODING);
+
+		// the task will be written directly to the connection
+		httpPost.setEntity(taskRequestEntity);
+
+		final Header[] requestHeaders = httpPost.getAllHeaders();
+
+		final String printedRequestHeaders = printHeaders(requestHeaders);
+
+		LOG.info(String.format("[%s][%d] request : %s :: request headers : \n'%s' :: body : '%s'", serviceName, cnt, httpPost.getRequestLine(),
+				printedRequestHeaders, taskRequestEntity));
+
+		// the number of task executions in flight might be limited adaptively (see TPUConcurrencyLimiter)
+		final TPUConcurrencyLimiter.Permit permit = TPUConcurrencyLimiter.acquire(inputSize);
+
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+
+			final Header[] responseHeaders = httpResponse.getAllHeaders();
+
+			final String printedResponseHeaders = printHeaders(responseHeaders);
+
+			LOG.info(String.format("[%s][%d]  response headers : \n'%s'", serviceName, cnt, printedResponseHeaders));
+
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+			switch (statusCode) {
+
+				case 204: {
+
+					LOG.info(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+
+					EntityUtils.consume(httpResponse.getEntity());
+
+					permit.onSuccess();
+
+					return "success";
+				}
+				case 200: {
+
+					if (optionalDoExportOnTheFly.isPresent() && optionalDoExportOnTheFly.get()) {
+
+						LOG.info(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+
+						final String exportFileExtension = determineExportFileExtension(optionalExportFileExtension);
+
+						// write result to file
+						final String fileName = TPUUtil
+								.writeResultToFile(httpResponse, config, determineExportDataModelID(inputDataModelID, outputDataModelID, cnt),
+										exportFileExtension);
+
+						permit.onSuccess();
+
+						return "success - exported XML to '" + fileName + "'";
+					}
+				}
+				default: {
+
+					LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+
+					if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR || statusCode == TPUHttpClient.TOO_MANY_REQUESTS) {
+
+						// the backend couldn't handle the task execution
+						permit.onError();
+					}
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					throw new Exception("something went wrong at task execution" + response);
+				}
+			}
+		} catch (final IOException e) {
+
+			permit.onError();
+
+			throw e;
+		} finally {
+
+			permit.close();
+		}
+	}
+
+	/**
+	 * determines whether the task execution result should be persisted in the data hub (default = false)
+	 *
+	 * @param config the TPU configuration
+	 * @return true, if the task execution result should be persisted in the data hub
+	 */
+	static boolean doPersistInDMP(final Properties config) {
+
+		final String persistString = config.getProperty(TPUStatics.PERSIST_IN_DMP_IDENTIFIER);
+
+		if (persistString != null && !persistString.trim().isEmpty()) {
+
+			return Boolean.valueOf(persistString);
+		}
+
+		// default is false
+		return false;
+	}
+
+	/**
+	 * delivers the template of the task (request) JSON, i.e., the parts that are identical for all tasks of a run (mappings, output data model
+	 * (if it's not the same as the input data model), optional skip filter) will be serialised only once per run (see {@link TPUMetadataCache})
+	 *
+	 * @param optionalOutputDataModel the output data model or empty, if it's the same as the input data model (of each task)
+	 * @param templateKey             the cache key of the template (see {@link #determineTaskTemplateKey})
+	 */
+	static TaskRequestEntity.Template getTaskTemplate(final boolean persist,
+	                                                  final Optional<Boolean> optionalDoIngestOnTheFly,
+	                                                  final Optional<Boolean> optionalDoExportOnTheFly,
+	                                                  final JsonArray mappings,
+	                                                  final Optional<JsonObject> optionalOutputDataModel,
+	                                                  final Optional<JsonObject> optionalSkipFilter,
+	                                                  final String templateKey,
+	                                                  final String serviceName,
+	                                                  final int cnt) throws Exception {
+
+		return TPUMetadataCache.get(templateKey, () -> {
+
+			final String jobUUIDMarker = UUID.randomUUID().toString();
+			final String inputDataModelMarker = UUID.randomUUID().toString();
+			final JsonValue inputDataModelPlaceholder = Json.createArrayBuilder().add(inputDataModelMarker).build().get(0);
+
+			final String taskJSON = createTaskJSON(persist, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, jobUUIDMarker, mappings,
+					inputDataModelPlaceholder, optionalOutputDataModel.isPresent() ? optionalOutputDataModel.get() : inputDataModelPlaceholder,
+					optionalSkipFilter, serviceName, cnt);
+
+			final TaskRequestEntity.Template template = TaskRequestEntity.Template.create(taskJSON, jobUUIDMarker, inputDataModelMarker);
+
+			LOG.info(String.format("[%s][%d] serialised task template with '%d' bytes", serviceName, cnt, template.size()));
+
+			return template;
+		});
+	}
+
+	/**
+	 * @return the cache key of the task template, i.e., all settings the task template depends on
+	 */
+	static String determineTaskTemplateKey(final String engineDswarmAPI,
+	                                       final Collection<String> projectIDs,
+	                                       final Optional<String> optionalOutputDataModelID,
+	                                       final Optional<String> optionalSkipFilterID,
+	                                       final boolean persist,
+	                                       final Optional<Boolean> optionalDoIngestOnTheFly,
+	                                       final Optional<Boolean> optionalDoExportOnTheFly) {
+
+		return engineDswarmAPI + DswarmBackendStatics.TASKS_ENDPOINT + TPUMetadataCache.KEY_SEPARATOR + String.join(",", projectIDs)
+				+ TPUMetadataCache.KEY_SEPARATOR + optionalOutputDataModelID.orElse("") + TPUMetadataCache.KEY_SEPARATOR + optionalSkipFilterID.orElse("")
+				+ TPUMetadataCache.KEY_SEPARATOR + persist + TPUMetadataCache.KEY_SEPARATOR + optionalDoIngestOnTheFly.orElse(null)
+				+ TPUMetadataCache.KEY_SEPARATOR + optionalDoExportOnTheFly.orElse(null);
+	}
+
+	/**
+	 * creates the JSON of the task (request) from the given mappings, input and output data model (+ optional skip filter)
+	 */
+	private static String createTaskJSON(final boolean persist,
+	                                     final Optional<Boolean> optionalDoIngestOnTheFly,
+	                                     final Optional<Boolean> optionalDoExportOnTheFly,
+	                                     final String jobUUID,
+	                                     final JsonArray mappings,
+	                                     final JsonValue inputDataModel,
+	                                     final JsonValue outputDataModel,
+	                                     final Optional<JsonObject> optionalSkipFilter,
+	                                     final String serviceName,
+	                                     final int cnt) {
+
 		final StringWriter stringWriter = new StringWriter();
 		final JsonGenerator jp = Json.createGenerator(stringWriter);
 
@@ -221,7 +427,7 @@ public class Transform implements Callable<String> {
 
 		// job
 		jp.writeStartObject(DswarmBackendStatics.JOB_IDENTIFIER);
-		jp.write(DswarmBackendStatics.UUID_IDENTIFIER, UUID.randomUUID().toString());
+		jp.write(DswarmBackendStatics.UUID_IDENTIFIER, jobUUID);
 		jp.write(DswarmBackendStatics.MAPPINGS_IDENTIFIER, mappings);
 
 		if (optionalSkipFilter.isPresent()) {
@@ -243,184 +449,202 @@ public class Transform implements Callable<String> {
 		jp.flush();
 		jp.close();
 
-		final String task = stringWriter.toString();
-		stringWriter.flush();
-		stringWriter.close();
-
-		LOG.debug(String.format("[%s][%d] task : %s", serviceName, cnt, task));
-
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		return stringWriter.toString();
+	}
 
-			// POST /dmp/tasks/
-			final HttpPost httpPost = new HttpPost(engineDswarmAPI + DswarmBackendStatics.TASKS_ENDPOINT);
-			final StringEntity stringEntity = new StringEntity(task, ContentType.APPLICATION_JSON);
-			stringEntity.setChunked(true);
+	static String determineAcceptMimeType(final Optional<Boolean> optionalDoExportOnTheFly, final Optional<String> optionalExportMimeType) {
 
-			final String mimetype;
+		if (optionalDoExportOnTheFly.isPresent() && optionalDoExportOnTheFly.get()) {
 
-			if (optionalDoExportOnTheFly.isPresent() && optionalDoExportOnTheFly.get()) {
+			if (optionalExportMimeType.isPresent()) {
 
-				if (optionalExportMimeType.isPresent()) {
+				return optionalExportMimeType.get();
+			}
 
-					mimetype = optionalExportMimeType.get();
-				} else {
+			// default export mime type is XML
+			return APIStatics.APPLICATION_XML_MIMETYPE;
+		}
 
-					// default export mime type is XML
-					mimetype = APIStatics.APPLICATION_XML_MIMETYPE;
-				}
-			} else {
+		return APIStatics.APPLICATION_JSON_MIMETYPE;
+	}
 
-				mimetype = APIStatics.APPLICATION_JSON_MIMETYPE;
-			}
+	static String determineExportFileExtension(final Optional<String> optionalExportFileExtension) {
 
-			httpPost.setHeader(HttpHeaders.ACCEPT, mimetype);
-			//httpPost.setHeader(HttpHeaders.TRANSFER_ENCODING, CHUNKED_TRANSFER_ENCODING);
+		if (optionalExportFileExtension.isPresent()) {
 
-			httpPost.setEntity(stringEntity);
+			return optionalExportFileExtension.get();
+		}
 
-			final Header[] requestHeaders = httpPost.getAllHeaders();
+		// XML as default file ending
+		return TaskProcessingUnit.XML_FILE_ENDING;
+	}
 
-			final String printedRequestHeaders = printHeaders(requestHeaders);
+	private String printHeaders(final Header[] headers) {
 
-			LOG.info(String.format("[%s][%d] request : %s :: request headers : \n'%s' :: body : '%s'", serviceName, cnt, httpPost.getRequestLine(),
-					printedRequestHeaders, stringEntity));
+		final StringBuilder sb = new StringBuilder();
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+		for (final Header header : headers) {
 
-				final Header[] responseHeaders = httpResponse.getAllHeaders();
+			final String name = header.getName();
+			final String value = header.getValue();
 
-				final String printedResponseHeaders = printHeaders(responseHeaders);
+			sb.append("\t\'").append(name).append("\' = \'").append(value).append("\'\n");
+		}
 
-				LOG.info(String.format("[%s][%d]  response headers : \n'%s'", serviceName, cnt, printedResponseHeaders));
+		return sb.toString();
+	}
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+	/**
+	 * retrieves the mappings of the given projects (concurrently, with at most engine.mappings.parallelism requests at once) and merges them in
+	 * the order of the given project IDs; the merged mappings will be retrieved only once per TPU run (see {@link TPUMetadataCache})
+	 */
+	static JsonArray getMappingsFromProjects(final Collection<String> projectIDs, final String serviceName, final String engineDswarmAPI,
+	                                         final Properties config, final int cnt) throws Exception {
 
-				switch (statusCode) {
+		return TPUMetadataCache.get(determineMappingsKey(projectIDs, engineDswarmAPI),
+				() -> retrieveMappingsFromProjects(projectIDs, serviceName, engineDswarmAPI, config, cnt));
+	}
 
-					case 204: {
+	static String determineMappingsKey(final Collection<String> projectIDs, final String engineDswarmAPI) {
 
-						LOG.info(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+		return engineDswarmAPI + DswarmBackendStatics.PROJECTS_ENDPOINT + APIStatics.SLASH + String.join(",", projectIDs)
+				+ TPUMetadataCache.KEY_SEPARATOR + DswarmBackendStatics.MAPPINGS_IDENTIFIER;
+	}
 
-						EntityUtils.consume(httpResponse.getEntity());
+	private static JsonArray retrieveMappingsFromProjects(final Collection<String> projectIDs, final String serviceName,
+	                                                      final String engineDswarmAPI, final Properties config, final int cnt) throws Exception {
 
-						return "success";
-					}
-					case 200: {
+		if (projectIDs.size() == 1) {
 
-						if (optionalDoExportOnTheFly.isPresent() && optionalDoExportOnTheFly.get()) {
+			// no need to copy the mappings of a single project
+			final String projectID = projectIDs.iterator().next();
+			final Optional<JsonArray> optionalProjectMappings = getMappingsFromProject(projectID, serviceName, engineDswarmAPI, cnt);
 
-							LOG.info(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+			if (!optionalProjectMappings.isPresent()) {
 
-							final String exportFileExtension;
+				LOG.error(String.format("[%s][%d] couldn't determine mappings from project '%s'", serviceName, cnt, projectID));
 
-							if (optionalExportFileExtension.isPresent()) {
+				return Json.createArrayBuilder().build();
+			}
 
-								exportFileExtension = optionalExportFileExtension.get();
-							} else {
+			LOG.info(String.format("[%s][%d] retrieved '%d' mappings from project '%s'", serviceName, cnt, optionalProjectMappings.get().size(),
+					projectID));
 
-								// XML as default file ending
-								exportFileExtension = TaskProcessingUnit.XML_FILE_ENDING;
-							}
+			return optionalProjectMappings.get();
+		}
 
-							// write result to file
-							final String fileName = TPUUtil
-									.writeResultToFile(httpResponse, config, outputDataModelID + "-" + inputDataModelID + "-" + cnt, exportFileExtension);
+		final int parallelism = Math.max(1, Math.min(projectIDs.size(),
+				TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_MAPPINGS_PARALLELISM_IDENTIFIER, config).orElse(DEFAULT_MAPPINGS_PARALLELISM)));
+		final ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
 
-							return "success - exported XML to '" + fileName + "'";
-						}
-					}
-					default: {
+		try {
 
-						LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase()));
+			final Map<String, Future<Optional<JsonArray>>> projectMappingsFutures = new LinkedHashMap<>();
 
-						final String response = TPUUtil.getResponseMessage(httpResponse);
+			for (final String projectID : projectIDs) {
 
-						throw new Exception("something went wrong at task execution" + response);
-					}
-				}
+				projectMappingsFutures.put(projectID, executorService.submit(() -> getMappingsFromProject(projectID, serviceName, engineDswarmAPI, cnt)));
 			}
-		}
-	}
 
-	private String printHeaders(final Header[] headers) {
+			final JsonArrayBuilder mappingArrayBuilder = Json.createArrayBuilder();
 
-		final StringBuilder sb = new StringBuilder();
+			for (final Map.Entry<String, Future<Optional<JsonArray>>> projectMappingsFutureEntry : projectMappingsFutures.entrySet()) {
 
-		for (final Header header : headers) {
+				final String projectID = projectMappingsFutureEntry.getKey();
+				final Optional<JsonArray> optionalProjectMappings;
 
-			final String name = header.getName();
-			final String value = header.getValue();
+				try {
 
-			sb.append("\t\'").append(name).append("\' = \'").append(value).append("\'\n");
-		}
+					optionalProjectMappings = projectMappingsFutureEntry.getValue().get();
+				} catch (final ExecutionException e) {
 
-		return sb.toString();
-	}
+					if (e.getCause() instanceof Exception) {
+
+						throw (Exception) e.getCause();
+					}
 
-	private JsonArray getMappingsFromProjects(final Collection<String> projectIDs, final String serviceName, final String engineDswarmAPI)
-			throws Exception {
+					throw e;
+				}
 
-		final JsonArrayBuilder mappingArrayBuilder = Json.createArrayBuilder();
+				if (!optionalProjectMappings.isPresent()) {
 
-		for (final String projectID : projectIDs) {
+					LOG.error(String.format("[%s][%d] couldn't determine mappings from project '%s'", serviceName, cnt, projectID));
 
-			final JsonArray projectMappings = getMappingsFromProject(projectID, serviceName, engineDswarmAPI);
+					continue;
+				}
 
-			if (projectMappings == null) {
+				final JsonArray projectMappings = optionalProjectMappings.get();
 
-				LOG.error(String.format("[%s][%d] couldn't determine mappings from project '%s'", serviceName, cnt, projectID));
+				LOG.info(String.format("[%s][%d] retrieved '%d' mappings from project '%s'", serviceName, cnt, projectMappings.size(), projectID));
 
-				continue;
+				projectMappings.forEach(mappingArrayBuilder::add);
 			}
 
-			LOG.info(String.format("[%s][%d] retrieved '%d' mappings from project '%s'", serviceName, cnt, projectMappings.size(), projectID));
-
-			projectMappings.forEach(mappingArrayBuilder::add);
-		}
+			final JsonArray mappingsArray = mappingArrayBuilder.build();
 
-		final JsonArray mappingsArray = mappingArrayBuilder.build();
+			LOG.info(String.format("[%s][%d] accumulated '%d' mappings from all projects", serviceName, cnt, mappingsArray.size()));
 
-		LOG.info(String.format("[%s][%d] accumulated '%d' mappings from all projects", serviceName, cnt, mappingsArray.size()));
+			return mappingsArray;
+		} finally {
 
-		return mappingsArray;
+			executorService.shutdownNow();
+		}
 	}
 
-	private JsonArray getMappingsFromProject(final String projectID, final String serviceName, final String engineDswarmAPI) throws Exception {
+	/**
+	 * extracts only the mappings from the project response (while parsing), i.e., the remaining project object won't be built
+	 */
+	private static Optional<JsonArray> getMappingsFromProject(final String projectID, final String serviceName, final String engineDswarmAPI,
+	                                                          final int cnt) throws Exception {
+
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
+
+		// Hole Mappings aus dem Projekt mit 'projectID'
+		final String uri = engineDswarmAPI + DswarmBackendStatics.PROJECTS_ENDPOINT + APIStatics.SLASH + projectID;
+		final HttpGet httpGet = new HttpGet(uri);
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
 
-			// Hole Mappings aus dem Projekt mit 'projectID'
-			final String uri = engineDswarmAPI + DswarmBackendStatics.PROJECTS_ENDPOINT + APIStatics.SLASH + projectID;
-			final HttpGet httpGet = new HttpGet(uri);
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
+			switch (statusCode) {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+				case 200: {
 
-				switch (statusCode) {
+					final HttpEntity httpEntity = httpResponse.getEntity();
 
-					case 200: {
+					if (httpEntity == null) {
 
-						LOG.debug(String.format("[%s][%d] responseJson : %s", serviceName, cnt, response));
+						return Optional.empty();
+					}
 
-						final JsonObject jsonObject = TPUUtil.getJsonObject(response);
+					final Optional<JsonArray> optionalMappings;
 
-						final JsonArray mappings = jsonObject.getJsonArray(DswarmBackendStatics.MAPPINGS_IDENTIFIER);
+					try (final Reader reader = new InputStreamReader(httpEntity.getContent(), StandardCharsets.UTF_8)) {
 
-						LOG.debug(String.format("[%s][%d] mappings : %s", serviceName, cnt, mappings.toString()));
+						optionalMappings = TPUUtil.readJsonArray(reader, DswarmBackendStatics.MAPPINGS_IDENTIFIER);
+					} finally {
 
-						return mappings;
+						EntityUtils.consumeQuietly(httpEntity);
 					}
-					default: {
 
-						LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-								.getReasonPhrase()));
+					if (optionalMappings.isPresent()) {
 
-						throw new Exception("something went wrong at mappings retrieval: " + response);
+						LOG.debug(String.format("[%s][%d] mappings : %s", serviceName, cnt, optionalMappings.get().toString()));
 					}
+
+					return optionalMappings;
+				}
+				default: {
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+							.getReasonPhrase()));
+
+					throw new Exception("something went wrong at mappings retrieval: " + response);
 				}
 			}
 		}
@@ -428,45 +652,46 @@ public class Transform implements Callable<String> {
 
 	private JsonObject getDataModel(final String dataModelID, final String serviceName, final String engineDswarmAPI) throws Exception {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			// Hole Mappings aus dem Projekt mit 'projectID'
-			final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + dataModelID;
-			final HttpGet httpGet = new HttpGet(uri);
+		// Hole Mappings aus dem Projekt mit 'projectID'
+		final String uri = engineDswarmAPI + DswarmBackendStatics.DATAMODELS_ENDPOINT + APIStatics.SLASH + dataModelID;
+		final HttpGet httpGet = new HttpGet(uri);
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
 
-			try (CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
+		try (CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				switch (statusCode) {
+			switch (statusCode) {
 
-					case 200: {
+				case 200: {
 
-						final JsonObject jsonObject = TPUUtil.getJsonObject(response);
+					// parse directly from the response stream
+					final JsonObject jsonObject = TPUUtil.getJsonObject(httpResponse.getEntity());
 
-						LOG.debug(String.format("[%s][%d] inputDataModel : %s", serviceName, cnt, jsonObject.toString()));
+					LOG.debug(String.format("[%s][%d] inputDataModel : %s", serviceName, cnt, jsonObject.toString()));
 
-						final JsonObject dataResourceJSON = jsonObject.getJsonObject(DswarmBackendStatics.DATA_RESOURCE_IDENTIFIER);
+					final JsonObject dataResourceJSON = jsonObject.getJsonObject(DswarmBackendStatics.DATA_RESOURCE_IDENTIFIER);
 
-						if (dataResourceJSON != null) {
+					if (dataResourceJSON != null) {
 
-							final String inputResourceID = dataResourceJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER);
+						final String inputResourceID = dataResourceJSON.getString(DswarmBackendStatics.UUID_IDENTIFIER);
 
-							LOG.info(String.format("[%s][%d] inout resource ID : %s", serviceName, cnt, inputResourceID));
-						}
-
-						return jsonObject;
+						LOG.info(String.format("[%s][%d] inout resource ID : %s", serviceName, cnt, inputResourceID));
 					}
-					default: {
 
-						LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-								.getReasonPhrase()));
+					return jsonObject;
+				}
+				default: {
 
-						throw new Exception("something went wrong at data model retrieval: " + response);
-					}
+					LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+							.getReasonPhrase()));
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					throw new Exception("something went wrong at data model retrieval: " + response);
 				}
 			}
 		}
@@ -482,49 +707,84 @@ public class Transform implements Callable<String> {
 		}
 
 		final String skipFilterId = optionalSkipFilterId.get();
+		final String uri = engineDswarmAPI + DswarmBackendStatics.FILTERS_ENDPOINT + APIStatics.SLASH + skipFilterId;
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		// the skip filter is the same for all tasks of a run
+		return TPUMetadataCache.get(uri, () -> retrieveSkipFilter(uri, skipFilterId, serviceName));
+	}
+
+	private Optional<JsonObject> retrieveSkipFilter(final String uri, final String skipFilterId, final String serviceName) throws Exception {
 
-			final String uri = engineDswarmAPI + DswarmBackendStatics.FILTERS_ENDPOINT + APIStatics.SLASH + skipFilterId;
-			final HttpGet httpGet = new HttpGet(uri);
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
+		final HttpGet httpGet = new HttpGet(uri);
 
-			try (CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpGet.getRequestLine()));
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+		try (CloseableHttpResponse httpResponse = httpclient.execute(httpGet)) {
 
-				switch (statusCode) {
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-					case 200: {
+			switch (statusCode) {
 
-						final JsonObject jsonObject = TPUUtil.getJsonObject(response);
+				case 200: {
 
-						if (jsonObject != null) {
+					// parse directly from the response stream
+					final JsonObject jsonObject = TPUUtil.getJsonObject(httpResponse.getEntity());
 
-							LOG.debug(String.format("[%s][%d] skip filter : %s", serviceName, cnt, jsonObject.toString()));
-						} else {
+					if (jsonObject != null) {
 
-							LOG.error(String.format("[%s][%d] skip filter : something went wrong at retrieval of skip filter %s", serviceName, cnt,
-									skipFilterId));
-						}
+						LOG.debug(String.format("[%s][%d] skip filter : %s", serviceName, cnt, jsonObject.toString()));
+					} else {
 
-						return Optional.ofNullable(jsonObject);
+						LOG.error(String.format("[%s][%d] skip filter : something went wrong at retrieval of skip filter %s", serviceName, cnt,
+								skipFilterId));
 					}
-					default: {
 
-						LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
-								.getReasonPhrase()));
+					return Optional.ofNullable(jsonObject);
+				}
+				default: {
+
+					LOG.error(String.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine()
+							.getReasonPhrase()));
 
-						throw new Exception("something went wrong at skip filter retrieval: " + response);
-					}
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					throw new Exception("something went wrong at skip filter retrieval: " + response);
 				}
 			}
 		}
 	}
 
-	private Collection<String> determineProjectIDs() {
+	/**
+	 * @return the identifier that is utilised for the result file name of the task execution
+	 */
+	static String determineExportDataModelID(final String inputDataModelID, final String outputDataModelID, final int cnt) {
+
+		return outputDataModelID + "-" + inputDataModelID + "-" + cnt;
+	}
+
+	/**
+	 * @return the name of the result file of the task execution, if the result should be persisted in the results folder
+	 */
+	static Optional<String> determineResultFileName(final Properties config,
+	                                                final String inputDataModelID,
+	                                                final String outputDataModelID,
+	                                                final Optional<String> optionalExportFileExtension,
+	                                                final int cnt) {
+
+		final boolean persistInFolder = Boolean.parseBoolean(config.getProperty(TPUStatics.PERSIST_IN_FOLDER_IDENTIFIER));
+
+		if (!persistInFolder) {
+
+			return Optional.empty();
+		}
+
+		return Optional.of(TPUUtil.getResultFileName(config, determineExportDataModelID(inputDataModelID, outputDataModelID, cnt),
+				determineExportFileExtension(optionalExportFileExtension)));
+	}
+
+	static Collection<String> determineProjectIDs(final Properties config) {
 
 		final List<String> projectIDs = new ArrayList<>();
 
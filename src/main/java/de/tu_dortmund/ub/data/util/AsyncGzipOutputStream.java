@@ -0,0 +1,271 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip output stream that compresses on a separate thread, i.e., the writing thread (e.g. the one that reads the response from the socket)
+ * only copies the content into one of a fixed number of buffers, while the (CPU-bound) compression will be done by the compressor thread. The
+ * writing thread will only wait, if all buffers are full (bounded buffer).
+ *
+ * @author tgaengler
+ */
+public class AsyncGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BUFFERS     = 8;
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int        OUTPUT_BUFFER_SIZE = 65536;
+	private static final ByteBuffer END_OF_STREAM      = ByteBuffer.allocate(0);
+
+	private static final AtomicInteger COMPRESSOR_THREAD_COUNTER = new AtomicInteger(0);
+
+	private static final ExecutorService COMPRESSOR_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+
+		final Thread thread = new Thread(runnable, "tpu-compressor-" + COMPRESSOR_THREAD_COUNTER.incrementAndGet());
+		thread.setDaemon(true);
+
+		return thread;
+	});
+
+	// filled buffers (to be compressed)
+	private final BlockingQueue<ByteBuffer> fullBuffers;
+	// empty buffers (to be filled)
+	private final BlockingQueue<ByteBuffer> emptyBuffers;
+	private final Future<?>                 compressor;
+
+	private ByteBuffer currentBuffer;
+	private boolean    closed = false;
+
+	/**
+	 * @param outputStream the target of the compressed content
+	 * @param level        the compression level (1 - 9 or -1 for the default level)
+	 */
+	public AsyncGzipOutputStream(final OutputStream outputStream, final int level) {
+
+		this(outputStream, level, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param outputStream the target of the compressed content
+	 * @param level        the compression level (1 - 9 or -1 for the default level)
+	 * @param buffers      the number of buffers
+	 * @param bufferSize   the size of a buffer
+	 */
+	public AsyncGzipOutputStream(final OutputStream outputStream, final int level, final int buffers, final int bufferSize) {
+
+		fullBuffers = new ArrayBlockingQueue<>(buffers + 1);
+		emptyBuffers = new ArrayBlockingQueue<>(buffers);
+
+		for (int i = 0; i < buffers; i++) {
+
+			emptyBuffers.add(ByteBuffer.allocate(bufferSize));
+		}
+
+		compressor = COMPRESSOR_EXECUTOR.submit(() -> {
+
+			compress(outputStream, level);
+
+			return null;
+		});
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+
+		if (closed) {
+
+			throw new IOException("stream is already closed");
+		}
+
+		int offset = off;
+		int remaining = len;
+
+		while (remaining > 0) {
+
+			if (currentBuffer == null) {
+
+				currentBuffer = takeEmptyBuffer();
+			}
+
+			final int length = Math.min(remaining, currentBuffer.remaining());
+
+			currentBuffer.put(b, offset, length);
+
+			offset += length;
+			remaining -= length;
+
+			if (!currentBuffer.hasRemaining()) {
+
+				handOver();
+			}
+		}
+	}
+
+	/**
+	 * note: the content will only be compressed completely at {@link #close()}
+	 */
+	@Override
+	public void flush() throws IOException {
+
+		if (currentBuffer != null && currentBuffer.position() > 0) {
+
+			handOver();
+		}
+	}
+
+	/**
+	 * hands over the remaining content to the compressor and waits until the compressed content was written completely
+	 */
+	@Override
+	public void close() throws IOException {
+
+		if (closed) {
+
+			return;
+		}
+
+		try {
+
+			flush();
+		} finally {
+
+			closed = true;
+
+			putFullBuffer(END_OF_STREAM);
+		}
+
+		try {
+
+			compressor.get();
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("interrupted while waiting for the compressor");
+		} catch (final ExecutionException e) {
+
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+
+				throw (IOException) cause;
+			}
+
+			throw new IOException("something went wrong at compression", cause);
+		}
+	}
+
+	private void compress(final OutputStream outputStream, final int level) throws IOException, InterruptedException {
+
+		try (final OutputStream gzipOutputStream = new GZIPOutputStream(new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE),
+				OUTPUT_BUFFER_SIZE) {
+
+			{
+				def.setLevel(level);
+			}
+		}) {
+
+			while (true) {
+
+				final ByteBuffer buffer = fullBuffers.take();
+
+				if (buffer == END_OF_STREAM) {
+
+					break;
+				}
+
+				gzipOutputStream.write(buffer.array(), 0, buffer.limit());
+
+				buffer.clear();
+				emptyBuffers.put(buffer);
+			}
+		} catch (final IOException | RuntimeException e) {
+
+			// release a waiting writer
+			emptyBuffers.clear();
+			emptyBuffers.offer(ByteBuffer.allocate(0));
+
+			throw e;
+		}
+	}
+
+	private void handOver() throws IOException {
+
+		currentBuffer.flip();
+
+		putFullBuffer(currentBuffer);
+
+		currentBuffer = null;
+	}
+
+	private ByteBuffer takeEmptyBuffer() throws IOException {
+
+		final ByteBuffer buffer;
+
+		try {
+
+			buffer = emptyBuffers.take();
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("interrupted while waiting for an empty buffer");
+		}
+
+		if (buffer.capacity() == 0) {
+
+			// the compressor failed
+			close();
+
+			throw new IOException("compressor failed");
+		}
+
+		return buffer;
+	}
+
+	private void putFullBuffer(final ByteBuffer buffer) throws IOException {
+
+		try {
+
+			fullBuffers.put(buffer);
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("interrupted while handing over a buffer to the compressor");
+		}
+	}
+}
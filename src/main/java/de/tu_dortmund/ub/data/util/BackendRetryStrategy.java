@@ -0,0 +1,333 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLException;
+
+import de.tu_dortmund.ub.data.dswarm.DswarmBackendStatics;
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The retry policy of the shared HTTP client, i.e., requests that failed because of an I/O error (e.g. connection reset) or that were rejected
+ * by the d:swarm backend (429, 502, 503, 504) will be retried with exponential backoff (incl. full jitter) or after the time given by the
+ * 'Retry-After' header of the response.<br/>
+ * Idempotent requests (GET, HEAD, OPTIONS, PUT, DELETE) will be retried up to {@link TPUStatics#ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER} times
+ * (can be overridden per endpoint, see {@link DswarmBackendStatics#ENDPOINTS}); POST requests will only be retried, if it's configured for their
+ * endpoint (see {@link TPUStatics#ENGINE_HTTP_RETRY_POST_IDENTIFIER}). Requests with a non-repeatable entity (e.g. a streamed upload) won't be
+ * retried at all.<br/>
+ * The decisions are also available without waiting (see {@link #determineRetry(HttpRequest, IOException, int, boolean)} and
+ * {@link #determineRetry(HttpRequest, HttpResponse, int)}), so that the asynchronous HTTP client can schedule its retries.
+ *
+ * @author tgaengler
+ */
+public class BackendRetryStrategy implements HttpRequestRetryHandler, ServiceUnavailableRetryStrategy {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BackendRetryStrategy.class);
+
+	public static final int  DEFAULT_MAX_RETRIES     = 3;
+	public static final long DEFAULT_INITIAL_BACKOFF = 500;
+	public static final long DEFAULT_MAX_BACKOFF     = 30000;
+	// upper bound for the time given by a 'Retry-After' header
+	public static final long MAX_RETRY_AFTER         = 300000;
+
+	private static final String POST_METHOD = "POST";
+	private static final String SLASH       = "/";
+
+	private final Properties config;
+	private final int        defaultMaxRetries;
+	private final long       initialBackoff;
+	private final long       maxBackoff;
+
+	private final AtomicLong retries = new AtomicLong();
+
+	// the retry interval that was determined by the last call of retryRequest(HttpResponse, ...) of the current thread
+	private final ThreadLocal<Long> retryInterval = ThreadLocal.withInitial(() -> 0L);
+
+	public BackendRetryStrategy(final Properties config) {
+
+		this.config = config;
+
+		defaultMaxRetries = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER, config).orElse(DEFAULT_MAX_RETRIES);
+		initialBackoff = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_RETRY_INITIAL_BACKOFF_IDENTIFIER, config).orElse(DEFAULT_INITIAL_BACKOFF);
+		maxBackoff = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_RETRY_MAX_BACKOFF_IDENTIFIER, config).orElse(DEFAULT_MAX_BACKOFF);
+	}
+
+	/**
+	 * retries requests that failed because of an I/O error (the backoff happens in the calling thread)
+	 */
+	@Override
+	public boolean retryRequest(final IOException exception, final int executionCount, final HttpContext context) {
+
+		TPUHttpClient.recordOutcome(true);
+
+		final HttpClientContext clientContext = HttpClientContext.adapt(context);
+
+		// note: requests that weren't sent completely (e.g. because of a stale connection) can be retried regardless of their method
+		final Optional<Long> optionalBackoff = determineRetry(clientContext.getRequest(), exception, executionCount, clientContext.isRequestSent());
+
+		if (!optionalBackoff.isPresent()) {
+
+			return false;
+		}
+
+		try {
+
+			Thread.sleep(optionalBackoff.get());
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * retries requests that were rejected by the backend (429, 502, 503, 504)
+	 */
+	@Override
+	public boolean retryRequest(final HttpResponse response, final int executionCount, final HttpContext context) {
+
+		final Optional<Long> optionalBackoff = determineRetry(HttpCoreContext.adapt(context).getRequest(), response, executionCount);
+
+		if (!optionalBackoff.isPresent()) {
+
+			return false;
+		}
+
+		retryInterval.set(optionalBackoff.get());
+
+		return true;
+	}
+
+	/**
+	 * decides whether a request that failed because of the given I/O error should be retried (without waiting), e.g., for the asynchronous HTTP
+	 * client
+	 *
+	 * @param request        the failed request
+	 * @param exception      the I/O error
+	 * @param executionCount the number of executions of the request so far
+	 * @param requestSent    false, if the request wasn't sent completely
+	 * @return the time in milliseconds to wait before the retry, or empty, if the request shouldn't be retried
+	 */
+	public Optional<Long> determineRetry(final HttpRequest request, final IOException exception, final int executionCount,
+	                                     final boolean requestSent) {
+
+		if (exception instanceof InterruptedIOException && !(exception instanceof ConnectTimeoutException)) {
+
+			// e.g. socket timeout: the request might still be in progress at the backend
+			return Optional.empty();
+		}
+
+		if (exception instanceof UnknownHostException || exception instanceof SSLException) {
+
+			return Optional.empty();
+		}
+
+		if (!isRetryable(request, executionCount, !requestSent)) {
+
+			return Optional.empty();
+		}
+
+		final long backoff = determineBackoff(executionCount);
+
+		LOG.warn("{} failed ('{}'); retry '{}' in '{}' ms", request.getRequestLine(), exception.getMessage(), executionCount, backoff);
+
+		retries.incrementAndGet();
+
+		return Optional.of(backoff);
+	}
+
+	/**
+	 * decides whether a request that was rejected by the backend (429, 502, 503, 504) should be retried (without waiting), e.g., for the
+	 * asynchronous HTTP client
+	 *
+	 * @param request        the rejected request
+	 * @param response       the response of the backend
+	 * @param executionCount the number of executions of the request so far
+	 * @return the time in milliseconds to wait before the retry (backoff or 'Retry-After'), or empty, if the request shouldn't be retried
+	 */
+	public Optional<Long> determineRetry(final HttpRequest request, final HttpResponse response, final int executionCount) {
+
+		final int statusCode = response.getStatusLine().getStatusCode();
+
+		if (statusCode != HttpStatus.SC_SERVICE_UNAVAILABLE && statusCode != HttpStatus.SC_BAD_GATEWAY
+				&& statusCode != HttpStatus.SC_GATEWAY_TIMEOUT && statusCode != TPUHttpClient.TOO_MANY_REQUESTS) {
+
+			return Optional.empty();
+		}
+
+		if (!isRetryable(request, executionCount, false)) {
+
+			return Optional.empty();
+		}
+
+		final long backoff = determineRetryAfter(response).orElseGet(() -> determineBackoff(executionCount));
+
+		LOG.warn("{} was rejected ('{}'); retry '{}' in '{}' ms", request.getRequestLine(), response.getStatusLine(), executionCount, backoff);
+
+		retries.incrementAndGet();
+
+		return Optional.of(backoff);
+	}
+
+	@Override
+	public long getRetryInterval() {
+
+		return retryInterval.get();
+	}
+
+	/**
+	 * @return the number of retried requests
+	 */
+	public long getRetries() {
+
+		return retries.get();
+	}
+
+	private boolean isRetryable(final HttpRequest request, final int executionCount, final boolean notSent) {
+
+		if (request == null) {
+
+			return false;
+		}
+
+		if (request instanceof HttpEntityEnclosingRequest) {
+
+			final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+
+			if (entity != null && !entity.isRepeatable()) {
+
+				return false;
+			}
+		}
+
+		return executionCount <= (notSent ? defaultMaxRetries : determineMaxRetries(request));
+	}
+
+	/**
+	 * determines the max. number of retries for the given request, i.e. (for idempotent requests) the endpoint-specific or default max. retries or
+	 * (for POST requests) the endpoint-specific max. retries (default: 0)
+	 */
+	private int determineMaxRetries(final HttpRequest request) {
+
+		final String method = request.getRequestLine().getMethod().toUpperCase(Locale.ENGLISH);
+		final Optional<String> optionalEndpoint = determineEndpoint(request.getRequestLine().getUri());
+
+		if (POST_METHOD.equals(method)) {
+
+			return optionalEndpoint
+					.flatMap(endpoint -> TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_RETRY_POST_IDENTIFIER + TPUUtil.DOT + endpoint, config))
+					.orElse(0);
+		}
+
+		return optionalEndpoint
+				.flatMap(endpoint -> TPUUtil
+						.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER + TPUUtil.DOT + endpoint, config))
+				.orElse(defaultMaxRetries);
+	}
+
+	/**
+	 * @return the first path segment of the given request URI that is a d:swarm backend endpoint
+	 */
+	static Optional<String> determineEndpoint(final String uri) {
+
+		final int queryStart = uri.indexOf('?');
+		final String path = queryStart >= 0 ? uri.substring(0, queryStart) : uri;
+
+		for (final String segment : path.split(SLASH)) {
+
+			if (DswarmBackendStatics.ENDPOINTS.contains(segment)) {
+
+				return Optional.of(segment);
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	/**
+	 * exponential backoff with full jitter, i.e., a random time between 0 and min(max. backoff, initial backoff * 2^(retry - 1))
+	 */
+	private long determineBackoff(final int executionCount) {
+
+		final long exponentialBackoff = initialBackoff << Math.min(executionCount - 1, 30);
+		final long backoff = Math.min(maxBackoff, exponentialBackoff > 0 ? exponentialBackoff : maxBackoff);
+
+		return ThreadLocalRandom.current().nextLong(backoff + 1);
+	}
+
+	/**
+	 * @return the time in milliseconds given by the 'Retry-After' header of the response (delay in seconds or HTTP date), if available
+	 */
+	static Optional<Long> determineRetryAfter(final HttpResponse response) {
+
+		final Header retryAfterHeader = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+
+		if (retryAfterHeader == null || retryAfterHeader.getValue() == null) {
+
+			return Optional.empty();
+		}
+
+		final String retryAfter = retryAfterHeader.getValue().trim();
+
+		long retryAfterTime;
+
+		try {
+
+			retryAfterTime = Long.parseLong(retryAfter) * 1000;
+		} catch (final NumberFormatException e) {
+
+			final Date retryAfterDate = DateUtils.parseDate(retryAfter);
+
+			if (retryAfterDate == null) {
+
+				return Optional.empty();
+			}
+
+			retryAfterTime = retryAfterDate.getTime() - System.currentTimeMillis();
+		}
+
+		return Optional.of(Math.min(MAX_RETRY_AFTER, Math.max(0, retryAfterTime)));
+	}
+}
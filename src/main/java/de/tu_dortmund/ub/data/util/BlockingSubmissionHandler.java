@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Lets the submitting thread wait until there's space in the (bounded) queue of the executor (instead of rejecting the submission), i.e., the
+ * submitter is back-pressured by the executor.
+ *
+ * @author tgaengler
+ */
+public final class BlockingSubmissionHandler implements RejectedExecutionHandler {
+
+	@Override
+	public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor) {
+
+		if (executor.isShutdown()) {
+
+			throw new RejectedExecutionException("executor was already shut down");
+		}
+
+		try {
+
+			executor.getQueue().put(runnable);
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new RejectedExecutionException("interrupted while waiting for space in executor queue", e);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.InterruptedIOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pauses the submission of requests to the d:swarm backend, if the failure rate of the last requests (i.e. of a window of a fixed number of
+ * request outcomes) exceeds a threshold (open state). After a while, exactly one request will be let through as probe (half-open state); all
+ * other requests stay paused until the next outcome (i.e. the one of the probe or of a request that was still in flight) decides whether the
+ * circuit breaker will be closed or opened again. If there's no outcome within the open duration (e.g. because the probe failed before it was
+ * sent), another probe will be let through.
+ *
+ * @author tgaengler
+ */
+public class CircuitBreaker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	// the interval in milliseconds non-blocking callers should check again for permission, while the probe is in flight
+	static final long HALF_OPEN_CHECK_INTERVAL = 100;
+
+	private final int  failureRate;
+	private final long openDuration;
+
+	// the last request outcomes (true = failure), as ring buffer
+	private final boolean[] outcomes;
+
+	private int     outcomesCount = 0;
+	private int     nextOutcome   = 0;
+	private int     failures      = 0;
+	private long    openUntil     = 0;
+	private boolean halfOpen      = false;
+	private long    probeStarted  = 0;
+	private long    openings      = 0;
+
+	/**
+	 * @param failureRate  the failure rate (in percent) that opens the circuit breaker
+	 * @param window       the number of the last request outcomes that will be considered for the failure rate
+	 * @param openDuration the time in milliseconds requests will be paused, when the circuit breaker was opened
+	 */
+	public CircuitBreaker(final int failureRate, final int window, final long openDuration) {
+
+		this.failureRate = failureRate;
+		this.openDuration = openDuration;
+
+		outcomes = new boolean[Math.max(1, window)];
+	}
+
+	/**
+	 * waits until requests can be submitted (i.e. while the circuit breaker is open or the probe of the half-open state is in flight)
+	 *
+	 * @throws InterruptedIOException if the thread was interrupted while waiting
+	 */
+	public synchronized void awaitPermission() throws InterruptedIOException {
+
+		long waitTime;
+
+		while ((waitTime = tryAcquirePermission()) > 0) {
+
+			try {
+
+				// note: will be notified about the outcome of the probe
+				wait(waitTime);
+			} catch (final InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+
+				throw new InterruptedIOException("interrupted while waiting for the circuit breaker");
+			}
+		}
+	}
+
+	/**
+	 * checks (without waiting) whether a request can be submitted, e.g., for the asynchronous HTTP client; in half-open state, only the first
+	 * caller gets the permission (i.e. submits the probe)
+	 *
+	 * @return 0, if a request can be submitted; otherwise, the time in milliseconds after which the caller should check again
+	 */
+	public synchronized long tryAcquirePermission() {
+
+		final long now = System.currentTimeMillis();
+
+		if (openUntil > 0) {
+
+			final long waitTime = openUntil - now;
+
+			if (waitTime > 0) {
+
+				return waitTime;
+			}
+
+			openUntil = 0;
+			halfOpen = true;
+			probeStarted = now;
+
+			LOG.info("circuit breaker is half-open; let one request through as probe");
+
+			return 0;
+		}
+
+		if (halfOpen) {
+
+			final long probeWaitTime = probeStarted + openDuration - now;
+
+			if (probeWaitTime > 0) {
+
+				return Math.min(probeWaitTime, HALF_OPEN_CHECK_INTERVAL);
+			}
+
+			probeStarted = now;
+
+			LOG.warn("circuit breaker got no outcome of the probe within '{}' ms; let another request through as probe", openDuration);
+
+			return 0;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * records the outcome of a request
+	 *
+	 * @param failure true, if the request failed (e.g. connection reset or server error)
+	 */
+	public synchronized void record(final boolean failure) {
+
+		if (halfOpen) {
+
+			halfOpen = false;
+			probeStarted = 0;
+
+			if (failure) {
+
+				open("request failed in half-open state");
+			} else {
+
+				LOG.info("circuit breaker is closed again");
+			}
+
+			// the waiting requests will check again
+			notifyAll();
+
+			return;
+		}
+
+		if (openUntil > 0) {
+
+			// outcome of a request that was submitted before the circuit breaker was opened
+			return;
+		}
+
+		if (outcomesCount == outcomes.length && outcomes[nextOutcome]) {
+
+			failures--;
+		}
+
+		outcomes[nextOutcome] = failure;
+		nextOutcome = (nextOutcome + 1) % outcomes.length;
+		outcomesCount = Math.min(outcomesCount + 1, outcomes.length);
+
+		if (failure) {
+
+			failures++;
+		}
+
+		if (outcomesCount == outcomes.length && failures * 100 >= failureRate * outcomes.length) {
+
+			open(String.format("'%d' of the last '%d' requests failed", failures, outcomesCount));
+		}
+	}
+
+	/**
+	 * @return the number of times the circuit breaker was opened
+	 */
+	public synchronized long getOpenings() {
+
+		return openings;
+	}
+
+	private void open(final String reason) {
+
+		openings++;
+		openUntil = System.currentTimeMillis() + openDuration;
+
+		outcomesCount = 0;
+		nextOutcome = 0;
+		failures = 0;
+
+		LOG.warn("circuit breaker opened ({}); pause requests to the d:swarm backend for '{}' ms", reason, openDuration);
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file while it's still being written by a producer (e.g. the XML enhancer), i.e., it waits for further content until the producer is
+ * done. The end of the stream is reached, when the producer is done and the file was read completely. A failure of the producer will be
+ * re-thrown as {@link IOException}.
+ *
+ * @author tgaengler
+ */
+public class GrowingFileInputStream extends InputStream {
+
+	// in ms
+	private static final long POLL_INTERVAL = 10;
+
+	private final Path      file;
+	private final Future<?> producer;
+
+	private FileChannel fileChannel;
+
+	/**
+	 * @param file     the file that is (or will be) written by the producer
+	 * @param producer the producer of the file
+	 */
+	public GrowingFileInputStream(final Path file, final Future<?> producer) {
+
+		this.file = file;
+		this.producer = producer;
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		final byte[] buffer = new byte[1];
+
+		final int read = read(buffer, 0, 1);
+
+		return read == -1 ? -1 : buffer[0] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+
+		if (len == 0) {
+
+			return 0;
+		}
+
+		while (true) {
+
+			// note: the state of the producer needs to be determined before reading, otherwise the last content might be missed
+			final boolean producerDone = producer.isDone();
+
+			if (producerDone) {
+
+				checkProducer();
+			}
+
+			if (fileChannel == null && Files.exists(file)) {
+
+				fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+			}
+
+			if (fileChannel != null) {
+
+				final int read = fileChannel.read(ByteBuffer.wrap(b, off, len));
+
+				if (read > 0) {
+
+					return read;
+				}
+			}
+
+			if (producerDone) {
+
+				if (fileChannel == null) {
+
+					throw new IOException(String.format("file '%s' wasn't produced", file));
+				}
+
+				return -1;
+			}
+
+			try {
+
+				Thread.sleep(POLL_INTERVAL);
+			} catch (final InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+
+				throw new InterruptedIOException(String.format("interrupted while waiting for content of file '%s'", file));
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		// stop the producer, if the file won't be read completely
+		producer.cancel(true);
+
+		if (fileChannel != null) {
+
+			fileChannel.close();
+			fileChannel = null;
+		}
+	}
+
+	private void checkProducer() throws IOException {
+
+		try {
+
+			producer.get();
+		} catch (final InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException(String.format("interrupted while waiting for the producer of file '%s'", file));
+		} catch (final ExecutionException e) {
+
+			throw new IOException(String.format("couldn't produce file '%s'", file), e.getCause());
+		} catch (final CancellationException e) {
+
+			throw new IOException(String.format("production of file '%s' was cancelled", file), e);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compresses the content of a request entity (e.g. a multipart upload) with gzip while it's written, i.e., the request will be sent chunked with
+ * 'Content-Encoding: gzip'. The number of uncompressed and compressed bytes will be logged and added to the transfer statistics of
+ * {@link TPUHttpClient} (only once per entity, i.e., a retried request won't be counted twice).<br/>
+ * note: the native memory of the deflater will be released after each write (and not only at its finalization)
+ *
+ * @author tgaengler
+ */
+public class GzipRequestEntity extends HttpEntityWrapper {
+
+	private static final Logger LOG = LoggerFactory.getLogger(GzipRequestEntity.class);
+
+	public static final String GZIP_CONTENT_ENCODING = "gzip";
+
+	private static final int BUFFER_SIZE = 65536;
+
+	// magic number, compression method (deflate), no flags, no modification time, no extra flags, unknown OS
+	private static final byte[] GZIP_HEADER = { (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final String TEMP_FILE_PREFIX = "tpu-gzip-";
+
+	private final String requestLine;
+
+	private final AtomicBoolean recorded = new AtomicBoolean();
+
+	/**
+	 * @param wrappedEntity the (uncompressed) request entity
+	 * @param requestLine   the request line (for logging)
+	 */
+	public GzipRequestEntity(final HttpEntity wrappedEntity, final String requestLine) {
+
+		super(wrappedEntity);
+
+		this.requestLine = requestLine;
+	}
+
+	/**
+	 * compresses the content of the given request entity into the given file, e.g., for the asynchronous HTTP client (its I/O threads shouldn't
+	 * compress while sending); the number of uncompressed and compressed bytes will be logged and added to the transfer statistics
+	 *
+	 * @param entity      the (uncompressed) request entity
+	 * @param file        the file for the compressed content
+	 * @param requestLine the request line (for logging)
+	 * @throws IOException
+	 */
+	public static void compressToFile(final HttpEntity entity, final Path file, final String requestLine) throws IOException {
+
+		try (final OutputStream outputStream = Files.newOutputStream(file)) {
+
+			new GzipRequestEntity(entity, requestLine).writeTo(outputStream);
+		}
+	}
+
+	@Override
+	public Header getContentEncoding() {
+
+		return new BasicHeader(HTTP.CONTENT_ENCODING, GZIP_CONTENT_ENCODING);
+	}
+
+	@Override
+	public long getContentLength() {
+
+		return -1;
+	}
+
+	@Override
+	public boolean isChunked() {
+
+		return true;
+	}
+
+	/**
+	 * note: the compressed content will be buffered in a temp file, which will be removed when the returned stream will be closed
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+
+		final Path tempFile = Files.createTempFile(TEMP_FILE_PREFIX, ".gz");
+
+		try {
+
+			try (final OutputStream outputStream = Files.newOutputStream(tempFile)) {
+
+				compress(outputStream);
+			}
+
+			return Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (final IOException | RuntimeException e) {
+
+			Files.deleteIfExists(tempFile);
+
+			throw e;
+		}
+	}
+
+	@Override
+	public void writeTo(final OutputStream outStream) throws IOException {
+
+		final long[] byteCounts = compress(outStream);
+		final long uncompressedBytes = byteCounts[0];
+		final long compressedBytes = byteCounts[1];
+
+		if (!recorded.compareAndSet(false, true)) {
+
+			LOG.info("{} : re-sent '{}' bytes gzip-compressed as '{}' bytes", requestLine, uncompressedBytes, compressedBytes);
+
+			return;
+		}
+
+		TPUHttpClient.recordUpload(uncompressedBytes, compressedBytes);
+
+		LOG.info("{} : sent '{}' bytes gzip-compressed as '{}' bytes ({})", requestLine, uncompressedBytes, compressedBytes,
+				TPUHttpClient.formatSavings(uncompressedBytes, compressedBytes));
+	}
+
+	/**
+	 * writes the content of the wrapped entity gzip-compressed to the given stream
+	 *
+	 * @return the number of uncompressed and compressed bytes
+	 */
+	private long[] compress(final OutputStream outStream) throws IOException {
+
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+		try {
+
+			final CountingOutputStream compressedOutputStream = new CountingOutputStream(outStream);
+			final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(compressedOutputStream, deflater, BUFFER_SIZE);
+			final CRC32 crc = new CRC32();
+			final CountingOutputStream uncompressedOutputStream = new CountingOutputStream(new CheckedOutputStream(deflaterOutputStream, crc));
+
+			compressedOutputStream.write(GZIP_HEADER);
+
+			wrappedEntity.writeTo(uncompressedOutputStream);
+
+			// note: the underlying stream will be closed by the HTTP client
+			deflaterOutputStream.finish();
+
+			final long uncompressedBytes = uncompressedOutputStream.getByteCount();
+
+			writeIntLE(compressedOutputStream, crc.getValue());
+			// the size of the uncompressed content modulo 2^32
+			writeIntLE(compressedOutputStream, uncompressedBytes);
+			compressedOutputStream.flush();
+
+			return new long[] { uncompressedBytes, compressedOutputStream.getByteCount() };
+		} finally {
+
+			deflater.end();
+		}
+	}
+
+	private static void writeIntLE(final OutputStream outputStream, final long value) throws IOException {
+
+		outputStream.write((int) (value & 0xff));
+		outputStream.write((int) ((value >> 8) & 0xff));
+		outputStream.write((int) ((value >> 16) & 0xff));
+		outputStream.write((int) ((value >> 24) & 0xff));
+	}
+}
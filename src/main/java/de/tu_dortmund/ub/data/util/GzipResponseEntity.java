@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decompresses the content of a gzip-encoded response entity while it's read (streaming), i.e., callers get the uncompressed content. The number
+ * of compressed and uncompressed bytes will be logged and added to the transfer statistics of {@link TPUHttpClient}, when the content stream is
+ * closed.
+ *
+ * @author tgaengler
+ */
+public class GzipResponseEntity extends HttpEntityWrapper {
+
+	private static final Logger LOG = LoggerFactory.getLogger(GzipResponseEntity.class);
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final String requestLine;
+
+	private InputStream content;
+
+	/**
+	 * @param wrappedEntity the (gzip-encoded) response entity
+	 * @param requestLine   the request line of the related request (for logging)
+	 */
+	public GzipResponseEntity(final HttpEntity wrappedEntity, final String requestLine) {
+
+		super(wrappedEntity);
+
+		this.requestLine = requestLine;
+	}
+
+	@Override
+	public Header getContentEncoding() {
+
+		return null;
+	}
+
+	@Override
+	public long getContentLength() {
+
+		return -1;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+
+		if (content == null) {
+
+			final CountingInputStream compressedInputStream = new CountingInputStream(wrappedEntity.getContent());
+			final CountingInputStream uncompressedInputStream = new CountingInputStream(new GZIPInputStream(compressedInputStream, BUFFER_SIZE));
+
+			content = new FilterInputStream(uncompressedInputStream) {
+
+				private boolean closed = false;
+
+				@Override
+				public void close() throws IOException {
+
+					if (closed) {
+
+						return;
+					}
+
+					closed = true;
+
+					final long compressedBytes = compressedInputStream.getByteCount();
+					final long uncompressedBytes = uncompressedInputStream.getByteCount();
+
+					TPUHttpClient.recordDownload(uncompressedBytes, compressedBytes);
+
+					LOG.info("{} : received '{}' bytes gzip-compressed as '{}' bytes ({})", requestLine, uncompressedBytes, compressedBytes,
+							TPUHttpClient.formatSavings(uncompressedBytes, compressedBytes));
+
+					super.close();
+				}
+			};
+		}
+
+		return content;
+	}
+
+	@Override
+	public void writeTo(final OutputStream outStream) throws IOException {
+
+		try (final InputStream inputStream = getContent()) {
+
+			IOUtils.copyLarge(inputStream, outStream);
+		}
+	}
+
+	@Override
+	public boolean isStreaming() {
+
+		return true;
+	}
+}
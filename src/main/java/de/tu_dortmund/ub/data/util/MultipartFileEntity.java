@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * A multipart/form-data entity that consists of some text parts and one file part, which can be utilised by blocking and non-blocking HTTP
+ * clients. The file content will be streamed (i.e. it's never loaded completely into memory); non-blocking clients will transfer it directly from
+ * the file channel, if possible.<br/>
+ * Note: the parts are serialised in the same way as {@link org.apache.http.entity.mime.MultipartEntityBuilder} (strict mode) does it.
+ *
+ * @author tgaengler
+ */
+public class MultipartFileEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+	private static final String CRLF                  = "\r\n";
+	private static final String DASHES                = "--";
+	private static final String MULTIPART_FORM_DATA   = "multipart/form-data";
+	private static final String BOUNDARY_PARAMETER    = "boundary";
+	private static final String OCTET_STREAM_MIMETYPE = ContentType.DEFAULT_BINARY.getMimeType();
+	private static final int    BUFFER_SIZE           = 65536;
+
+	private final File   file;
+	private final byte[] head;
+	private final byte[] tail;
+
+	private ByteBuffer  headBuffer;
+	private ByteBuffer  tailBuffer;
+	private ByteBuffer  fileBuffer;
+	private FileChannel fileChannel;
+	private long        filePosition;
+
+	/**
+	 * @param textParts     the text parts (name -> value) in the order they should be serialised
+	 * @param fileFieldName the (form field) name of the file part
+	 * @param file          the file that should be uploaded
+	 */
+	public MultipartFileEntity(final Map<String, String> textParts, final String fileFieldName, final File file) {
+
+		this.file = file;
+
+		final String boundary = UUID.randomUUID().toString();
+
+		setContentType(createContentType(boundary));
+		setChunked(false);
+
+		head = createHead(boundary, textParts, fileFieldName, file.getName());
+		tail = createTail(boundary);
+	}
+
+	/**
+	 * convenience factory method for the common case of d:swarm resource uploads (name + description + file)
+	 */
+	public static MultipartFileEntity create(final String nameFieldName, final String name, final String descriptionFieldName,
+	                                         final String description, final String fileFieldName, final File file) {
+
+		final Map<String, String> textParts = new LinkedHashMap<>();
+		textParts.put(nameFieldName, name);
+		textParts.put(descriptionFieldName, description);
+
+		return new MultipartFileEntity(Collections.unmodifiableMap(textParts), fileFieldName, file);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+
+		return head.length + file.length() + tail.length;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+
+		return new SequenceInputStream(new SequenceInputStream(new ByteArrayInputStream(head), Files.newInputStream(file.toPath())),
+				new ByteArrayInputStream(tail));
+	}
+
+	@Override
+	public void writeTo(final OutputStream outStream) throws IOException {
+
+		outStream.write(head);
+		Files.copy(file.toPath(), outStream);
+		outStream.write(tail);
+		outStream.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+
+		return false;
+	}
+
+	@Override
+	public void produceContent(final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+
+		if (headBuffer == null) {
+
+			headBuffer = ByteBuffer.wrap(head);
+			tailBuffer = ByteBuffer.wrap(tail);
+			fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			filePosition = 0;
+		}
+
+		if (headBuffer.hasRemaining()) {
+
+			encoder.write(headBuffer);
+
+			if (headBuffer.hasRemaining()) {
+
+				return;
+			}
+		}
+
+		final long fileSize = fileChannel.size();
+
+		if (encoder instanceof FileContentEncoder) {
+
+			// zero-copy transfer from the file
+			if (filePosition < fileSize) {
+
+				filePosition += ((FileContentEncoder) encoder).transfer(fileChannel, filePosition, fileSize - filePosition);
+
+				if (filePosition < fileSize) {
+
+					return;
+				}
+			}
+		} else {
+
+			if (fileBuffer == null) {
+
+				fileBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+				fileBuffer.flip();
+			}
+
+			if (!fileBuffer.hasRemaining() && filePosition < fileSize) {
+
+				fileBuffer.clear();
+
+				final int read = fileChannel.read(fileBuffer, filePosition);
+
+				if (read > 0) {
+
+					filePosition += read;
+				}
+
+				fileBuffer.flip();
+			}
+
+			if (fileBuffer.hasRemaining()) {
+
+				encoder.write(fileBuffer);
+			}
+
+			if (fileBuffer.hasRemaining() || filePosition < fileSize) {
+
+				return;
+			}
+		}
+
+		encoder.write(tailBuffer);
+
+		if (!tailBuffer.hasRemaining()) {
+
+			encoder.complete();
+
+			close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		headBuffer = null;
+		tailBuffer = null;
+		fileBuffer = null;
+		filePosition = 0;
+
+		if (fileChannel != null) {
+
+			fileChannel.close();
+			fileChannel = null;
+		}
+	}
+
+	/**
+	 * @return the multipart/form-data content type with the given boundary
+	 */
+	static String createContentType(final String boundary) {
+
+		return ContentType.create(MULTIPART_FORM_DATA).withParameters(new BasicNameValuePair(BOUNDARY_PARAMETER, boundary)).toString();
+	}
+
+	/**
+	 * @return the serialised text parts + the header of the file part
+	 */
+	static byte[] createHead(final String boundary, final Map<String, String> textParts, final String fileFieldName, final String fileName) {
+
+		final ByteArrayOutputStream headStream = new ByteArrayOutputStream();
+		final Charset textCharset = ContentType.TEXT_PLAIN.getCharset();
+
+		for (final Map.Entry<String, String> textPart : textParts.entrySet()) {
+
+			writeLine(headStream, DASHES + boundary);
+			writeLine(headStream, "Content-Disposition: form-data; name=\"" + textPart.getKey() + "\"");
+			writeLine(headStream, "Content-Type: " + ContentType.TEXT_PLAIN);
+			writeLine(headStream, "Content-Transfer-Encoding: 8bit");
+			writeLine(headStream, "");
+			write(headStream, textPart.getValue().getBytes(textCharset));
+			writeLine(headStream, "");
+		}
+
+		writeLine(headStream, DASHES + boundary);
+		writeLine(headStream, "Content-Disposition: form-data; name=\"" + fileFieldName + "\"; filename=\"" + fileName + "\"");
+		writeLine(headStream, "Content-Type: " + OCTET_STREAM_MIMETYPE);
+		writeLine(headStream, "Content-Transfer-Encoding: binary");
+		writeLine(headStream, "");
+
+		return headStream.toByteArray();
+	}
+
+	/**
+	 * @return the closing boundary
+	 */
+	static byte[] createTail(final String boundary) {
+
+		return (CRLF + DASHES + boundary + DASHES + CRLF).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static void writeLine(final ByteArrayOutputStream stream, final String line) {
+
+		write(stream, (line + CRLF).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static void write(final ByteArrayOutputStream stream, final byte[] bytes) {
+
+		stream.write(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * A multipart/form-data entity (see {@link MultipartFileEntity}) whose file part will be read from an input stream, i.e., the file content can be
+ * uploaded while it's still being produced (e.g. enhanced). The entity will be transferred chunked (since the content length is not known in
+ * advance) and can only be written once.
+ *
+ * @author tgaengler
+ */
+public class MultipartStreamEntity extends AbstractHttpEntity {
+
+	private final InputStream fileStream;
+	private final byte[]      head;
+	private final byte[]      tail;
+
+	private boolean consumed = false;
+
+	/**
+	 * @param textParts     the text parts (name -> value) in the order they should be serialised
+	 * @param fileFieldName the (form field) name of the file part
+	 * @param fileName      the file name of the file part
+	 * @param fileStream    the content of the file part
+	 */
+	public MultipartStreamEntity(final Map<String, String> textParts, final String fileFieldName, final String fileName,
+	                             final InputStream fileStream) {
+
+		this.fileStream = fileStream;
+
+		final String boundary = UUID.randomUUID().toString();
+
+		setContentType(MultipartFileEntity.createContentType(boundary));
+		setChunked(true);
+
+		head = MultipartFileEntity.createHead(boundary, textParts, fileFieldName, fileName);
+		tail = MultipartFileEntity.createTail(boundary);
+	}
+
+	/**
+	 * convenience factory method for the common case of d:swarm resource uploads (name + description + file)
+	 */
+	public static MultipartStreamEntity create(final String nameFieldName, final String name, final String descriptionFieldName,
+	                                           final String description, final String fileFieldName, final String fileName,
+	                                           final InputStream fileStream) {
+
+		final Map<String, String> textParts = new LinkedHashMap<>();
+		textParts.put(nameFieldName, name);
+		textParts.put(descriptionFieldName, description);
+
+		return new MultipartStreamEntity(Collections.unmodifiableMap(textParts), fileFieldName, fileName, fileStream);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+
+		return false;
+	}
+
+	@Override
+	public long getContentLength() {
+
+		return -1;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+
+		checkConsumed();
+
+		return new SequenceInputStream(new SequenceInputStream(new ByteArrayInputStream(head), fileStream), new ByteArrayInputStream(tail));
+	}
+
+	@Override
+	public void writeTo(final OutputStream outStream) throws IOException {
+
+		checkConsumed();
+
+		outStream.write(head);
+		IOUtils.copyLarge(fileStream, outStream);
+		outStream.write(tail);
+		outStream.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+
+		return !consumed;
+	}
+
+	private void checkConsumed() {
+
+		if (consumed) {
+
+			throw new IllegalStateException("multipart stream entity content was already consumed");
+		}
+
+		consumed = true;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import de.tu_dortmund.ub.data.TPUException;
+
+/**
+ * Checks the first bytes of a result (while it's streamed into the result file) for an error message of the d:swarm backend (i.e. a result that
+ * starts with {@link TPUUtil#ERROR_MESSAGE_START}), i.e., the result file doesn't need to be read again for this check. The error message will
+ * be kept (up to {@link TPUUtil#MAX_BUFFER_LENGTH} bytes).
+ *
+ * @author tgaengler
+ */
+public class ResultErrorDetector {
+
+	private static final byte[] ERROR_MESSAGE_START_BYTES = TPUUtil.ERROR_MESSAGE_START.getBytes(StandardCharsets.UTF_8);
+
+	private final ByteArrayOutputStream errorMessage = new ByteArrayOutputStream();
+
+	// the number of bytes that matched the start of an error message so far
+	private int     matched = 0;
+	private boolean decided = false;
+	private boolean error   = false;
+
+	/**
+	 * observes the next bytes of the result
+	 *
+	 * @param bytes  the bytes
+	 * @param offset the offset of the next bytes
+	 * @param length the number of the next bytes
+	 */
+	public void update(final byte[] bytes, final int offset, final int length) {
+
+		if (decided && !error) {
+
+			return;
+		}
+
+		final int end = offset + length;
+
+		int i = offset;
+
+		while (!decided && i < end) {
+
+			if (bytes[i] != ERROR_MESSAGE_START_BYTES[matched]) {
+
+				decided = true;
+
+				return;
+			}
+
+			matched++;
+			i++;
+
+			if (matched == ERROR_MESSAGE_START_BYTES.length) {
+
+				decided = true;
+				error = true;
+
+				errorMessage.write(ERROR_MESSAGE_START_BYTES, 0, ERROR_MESSAGE_START_BYTES.length);
+			}
+		}
+
+		if (error) {
+
+			final int errorMessageLength = Math.min(end - i, TPUUtil.MAX_BUFFER_LENGTH - errorMessage.size());
+
+			if (errorMessageLength > 0) {
+
+				errorMessage.write(bytes, i, errorMessageLength);
+			}
+		}
+	}
+
+	/**
+	 * @return true, if it's already known, whether the result is an error message or not (i.e. the further bytes of a successful result don't
+	 * need to be observed anymore)
+	 */
+	public boolean isDecided() {
+
+		return decided;
+	}
+
+	/**
+	 * @return true, if the result is an error message
+	 */
+	public boolean isError() {
+
+		return error;
+	}
+
+	/**
+	 * @throws TPUException if the result is an error message
+	 */
+	public void check() throws TPUException {
+
+		if (error) {
+
+			throw new TPUException(new String(errorMessage.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import de.tu_dortmund.ub.data.TPUException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.FileContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A non-blocking response consumer that writes the content of a successful response directly into a (result) file. The content of any other
+ * response will be kept in memory (up to a certain length), so that it can be utilised for error reporting.<br/>
+ * The resulting response carries the (error) content as entity; if the content was written to the result file, the response carries no entity.
+ * The first bytes of the result file content will be checked for an error message of the d:swarm backend (see {@link ResultErrorDetector}),
+ * before the remaining content will be transferred zero-copy (if possible).<br/>
+ * If the content should be compressed, it will be handed over to an {@link AsyncGzipOutputStream}, i.e., the compression happens on a separate
+ * thread; the I/O dispatcher thread will only wait for it, if all buffers of that stream are full (backpressure).
+ *
+ * @author tgaengler
+ */
+public class ResultFileConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+	public static final int MAX_ERROR_CONTENT_LENGTH = 1048576;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final Optional<Path>    optionalResultFile;
+	private final int               successStatusCode;
+	private final Optional<Integer> optionalCompressionLevel;
+
+	private HttpResponse          response;
+	private ContentType           contentType;
+	private FileChannel           fileChannel;
+	private OutputStream          compressedOutputStream;
+	private long                  filePosition;
+	private ByteArrayOutputStream errorContent;
+	private ByteBuffer            buffer;
+	private ResultErrorDetector   errorDetector;
+
+	/**
+	 * @param optionalResultFile the file where the content of a successful response should be written to (if empty, the content will be discarded)
+	 * @param successStatusCode  the status code of a successful response
+	 */
+	public ResultFileConsumer(final Optional<Path> optionalResultFile, final int successStatusCode) {
+
+		this(optionalResultFile, successStatusCode, Optional.empty());
+	}
+
+	/**
+	 * @param optionalResultFile       the file where the content of a successful response should be written to (if empty, the content will be
+	 *                                 discarded)
+	 * @param successStatusCode        the status code of a successful response
+	 * @param optionalCompressionLevel the gzip compression level, if the content of a successful response should be compressed
+	 */
+	public ResultFileConsumer(final Optional<Path> optionalResultFile, final int successStatusCode,
+			final Optional<Integer> optionalCompressionLevel) {
+
+		this.optionalResultFile = optionalResultFile;
+		this.successStatusCode = successStatusCode;
+		this.optionalCompressionLevel = optionalCompressionLevel;
+	}
+
+	@Override
+	protected void onResponseReceived(final HttpResponse response) {
+
+		this.response = response;
+	}
+
+	@Override
+	protected void onEntityEnclosed(final HttpEntity entity, final ContentType contentType) throws IOException {
+
+		this.contentType = contentType;
+
+		if (response.getStatusLine().getStatusCode() == successStatusCode) {
+
+			if (optionalResultFile.isPresent() && optionalCompressionLevel.isPresent()) {
+
+				compressedOutputStream = new AsyncGzipOutputStream(Files.newOutputStream(optionalResultFile.get()), optionalCompressionLevel.get());
+				errorDetector = new ResultErrorDetector();
+			} else if (optionalResultFile.isPresent()) {
+
+				fileChannel = FileChannel.open(optionalResultFile.get(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+				filePosition = 0;
+				errorDetector = new ResultErrorDetector();
+			}
+		} else {
+
+			errorContent = new ByteArrayOutputStream();
+		}
+	}
+
+	@Override
+	protected void onContentReceived(final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+
+		if (fileChannel != null && errorDetector.isDecided() && !errorDetector.isError() && decoder instanceof FileContentDecoder) {
+
+			// zero-copy transfer into the result file
+			final long transferred = ((FileContentDecoder) decoder).transfer(fileChannel, filePosition, Integer.MAX_VALUE);
+
+			if (transferred > 0) {
+
+				filePosition += transferred;
+			}
+
+			return;
+		}
+
+		if (buffer == null) {
+
+			buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		}
+
+		buffer.clear();
+
+		final int read = decoder.read(buffer);
+
+		if (read <= 0) {
+
+			return;
+		}
+
+		buffer.flip();
+
+		if (compressedOutputStream != null) {
+
+			errorDetector.update(buffer.array(), 0, read);
+			compressedOutputStream.write(buffer.array(), 0, read);
+		} else if (fileChannel != null) {
+
+			errorDetector.update(buffer.array(), 0, read);
+
+			while (buffer.hasRemaining()) {
+
+				filePosition += fileChannel.write(buffer, filePosition);
+			}
+		} else if (errorContent != null && errorContent.size() < MAX_ERROR_CONTENT_LENGTH) {
+
+			final int length = Math.min(read, MAX_ERROR_CONTENT_LENGTH - errorContent.size());
+
+			errorContent.write(buffer.array(), 0, length);
+		}
+	}
+
+	@Override
+	protected HttpResponse buildResult(final HttpContext context) throws IOException, TPUException {
+
+		if (compressedOutputStream != null) {
+
+			// waits for the compression of the remaining content
+			final OutputStream outputStream = compressedOutputStream;
+			compressedOutputStream = null;
+			outputStream.close();
+		}
+
+		if (errorDetector != null) {
+
+			// the content of the result file is an error message
+			errorDetector.check();
+		}
+
+		if (errorContent != null) {
+
+			response.setEntity(new ByteArrayEntity(errorContent.toByteArray(), contentType));
+		} else {
+
+			response.setEntity(null);
+		}
+
+		return response;
+	}
+
+	@Override
+	protected void releaseResources() {
+
+		if (fileChannel != null) {
+
+			try {
+
+				fileChannel.close();
+			} catch (final IOException ignore) {
+
+				// nothing to do here
+			}
+
+			fileChannel = null;
+		}
+
+		if (compressedOutputStream != null) {
+
+			try {
+
+				compressedOutputStream.close();
+			} catch (final IOException ignore) {
+
+				// nothing to do here
+			}
+
+			compressedOutputStream = null;
+		}
+
+		buffer = null;
+	}
+}
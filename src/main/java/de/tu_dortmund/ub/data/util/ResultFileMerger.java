@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concatenates the XML result files of the chunks of a split input file (in the given order) into one XML result file, i.e., the root element of the
+ * first result file contains the content of the root elements of all result files. Compressed (gzip) XML result files will be decompressed for
+ * merging and the merged result file will be compressed again.<br/>
+ * Note: other formats can't be merged, e.g., concatenated JSON documents wouldn't be valid JSON anymore (see
+ * {@link de.tu_dortmund.ub.data.dswarm.TPUChunkedTask#determineRecordTag}).
+ *
+ * @author tgaengler
+ */
+public final class ResultFileMerger {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResultFileMerger.class);
+
+	private static final String XML_FILE_ENDING    = ".xml";
+	private static final String XML_GZ_FILE_ENDING = XML_FILE_ENDING + TPUUtil.GZIP_FILE_ENDING;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private ResultFileMerger() {
+
+	}
+
+	/**
+	 * @param resultFiles the result files (in order)
+	 * @param targetFile  the merged result file (.xml or .xml.gz)
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the target file is not an XML file
+	 */
+	public static void merge(final List<Path> resultFiles, final Path targetFile) throws IOException {
+
+		final String targetFileName = targetFile.getFileName().toString();
+
+		if (!isMergeable(targetFileName)) {
+
+			throw new IllegalArgumentException(String.format("can't merge result files into '%s'; only XML result files can be merged", targetFile));
+		}
+
+		LOG.info("merge '{}' result files into '{}'", resultFiles.size(), targetFile);
+
+		mergeXML(resultFiles, targetFile, targetFileName.endsWith(XML_GZ_FILE_ENDING));
+	}
+
+	/**
+	 * @param resultFileName the name of a (merged) result file
+	 * @return true, if result files with the given name can be merged (i.e. XML result files)
+	 */
+	public static boolean isMergeable(final String resultFileName) {
+
+		return resultFileName.endsWith(XML_FILE_ENDING) || resultFileName.endsWith(XML_GZ_FILE_ENDING);
+	}
+
+	private static void mergeXML(final List<Path> resultFiles, final Path targetFile, final boolean compressed) throws IOException {
+
+		try (final OutputStream outputStream = compressed ?
+				new GZIPOutputStream(Files.newOutputStream(targetFile), BUFFER_SIZE) :
+				new BufferedOutputStream(Files.newOutputStream(targetFile), BUFFER_SIZE)) {
+
+			final XMLEventWriter writer = XMLRecordSplitter.createXMLEventWriter(outputStream);
+
+			EndElement rootEnd = null;
+
+			for (int i = 0; i < resultFiles.size(); i++) {
+
+				final boolean first = i == 0;
+
+				try (final InputStream inputStream = compressed ?
+						new GZIPInputStream(Files.newInputStream(resultFiles.get(i)), BUFFER_SIZE) :
+						new BufferedInputStream(Files.newInputStream(resultFiles.get(i)), BUFFER_SIZE)) {
+
+					final XMLEventReader reader = XMLRecordSplitter.createXMLEventReader(inputStream);
+
+					int depth = 0;
+
+					while (reader.hasNext()) {
+
+						final XMLEvent event = reader.nextEvent();
+
+						if (event.isStartDocument() || event.isEndDocument()) {
+
+							if (first && event.isStartDocument()) {
+
+								writer.add(event);
+							}
+
+							continue;
+						}
+
+						if (event.isStartElement()) {
+
+							depth++;
+
+							if (depth == 1) {
+
+								// root element
+								if (first) {
+
+									writer.add(event);
+								}
+
+								continue;
+							}
+						} else if (event.isEndElement()) {
+
+							depth--;
+
+							if (depth == 0) {
+
+								rootEnd = event.asEndElement();
+
+								continue;
+							}
+						} else if (depth == 0) {
+
+							// e.g. comments or whitespace outside of the root element
+							continue;
+						}
+
+						writer.add(event);
+					}
+
+					reader.close();
+				}
+			}
+
+			if (rootEnd != null) {
+
+				writer.add(rootEnd);
+			}
+
+			writer.flush();
+			writer.close();
+		} catch (final XMLStreamException e) {
+
+			throw new IOException(String.format("couldn't merge result files into '%s'", targetFile), e);
+		}
+	}
+}
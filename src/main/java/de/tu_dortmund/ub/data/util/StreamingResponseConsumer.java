@@ -0,0 +1,323 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A non-blocking response consumer that hands over the response as soon as its head was received (see {@link #getResponseFuture()}); its content
+ * can then be read (streaming) from the response entity, while it is received. The content will be kept in a bounded buffer, i.e., the I/O
+ * dispatcher thread suspends the input of the connection, if the buffer is full, and resumes it, when the content was read (backpressure).<br/>
+ * Note: the response entity must be read on another thread than the I/O dispatcher thread and it must be consumed or closed (the remaining content
+ * will then be discarded), so that the connection can be returned to the pool.
+ *
+ * @author tgaengler
+ */
+public class StreamingResponseConsumer implements HttpAsyncResponseConsumer<HttpResponse> {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final CompletableFuture<HttpResponse> responseFuture = new CompletableFuture<>();
+	private final ReentrantLock                   lock           = new ReentrantLock();
+	private final Condition                       condition      = lock.newCondition();
+
+	// note: always in write mode
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private volatile HttpResponse response;
+	private volatile boolean      done;
+	private volatile Exception    exception;
+	private IOControl             suspendedIOControl;
+	private boolean               endOfStream;
+	private boolean               discard;
+
+	/**
+	 * @return a future of the response (incl. the streaming entity), which will be completed as soon as the response head was received
+	 */
+	public CompletableFuture<HttpResponse> getResponseFuture() {
+
+		return responseFuture;
+	}
+
+	@Override
+	public void responseReceived(final HttpResponse response) {
+
+		final HttpEntity entity = response.getEntity();
+
+		if (entity != null) {
+
+			final BasicHttpEntity streamingEntity = new BasicHttpEntity();
+			streamingEntity.setContentType(entity.getContentType());
+			streamingEntity.setContentEncoding(entity.getContentEncoding());
+			streamingEntity.setContentLength(entity.getContentLength());
+			streamingEntity.setChunked(entity.isChunked());
+			streamingEntity.setContent(new ContentStream());
+
+			response.setEntity(streamingEntity);
+		} else {
+
+			endOfStream = true;
+		}
+
+		this.response = response;
+
+		responseFuture.complete(response);
+	}
+
+	@Override
+	public void consumeContent(final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+
+		lock.lock();
+
+		try {
+
+			if (discard) {
+
+				buffer.clear();
+
+				while (decoder.read(buffer) > 0) {
+
+					buffer.clear();
+				}
+
+				buffer.clear();
+
+				return;
+			}
+
+			int read = 0;
+
+			while (buffer.hasRemaining() && (read = decoder.read(buffer)) > 0) {
+
+				// read as much as possible
+			}
+
+			if (read == -1 || decoder.isCompleted()) {
+
+				endOfStream = true;
+			} else if (!buffer.hasRemaining()) {
+
+				// will be resumed by the reader
+				suspendedIOControl = ioctrl;
+				ioctrl.suspendInput();
+			}
+
+			condition.signalAll();
+		} finally {
+
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void responseCompleted(final HttpContext context) {
+
+		lock.lock();
+
+		try {
+
+			endOfStream = true;
+			done = true;
+
+			condition.signalAll();
+		} finally {
+
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void failed(final Exception ex) {
+
+		lock.lock();
+
+		try {
+
+			if (done) {
+
+				return;
+			}
+
+			exception = ex;
+			done = true;
+
+			condition.signalAll();
+		} finally {
+
+			lock.unlock();
+		}
+
+		responseFuture.completeExceptionally(ex);
+	}
+
+	@Override
+	public Exception getException() {
+
+		return exception;
+	}
+
+	@Override
+	public HttpResponse getResult() {
+
+		return response;
+	}
+
+	@Override
+	public boolean isDone() {
+
+		return done;
+	}
+
+	@Override
+	public boolean cancel() {
+
+		failed(new InterruptedIOException("response consumption was cancelled"));
+
+		return true;
+	}
+
+	@Override
+	public void close() {
+
+		// note: the content that wasn't read yet must remain available for the response entity
+	}
+
+	/**
+	 * reads the content from the buffer, i.e., waits until content is available (or the content was received completely)
+	 */
+	private final class ContentStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+
+			final byte[] bytes = new byte[1];
+
+			return read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+
+			if (length == 0) {
+
+				return 0;
+			}
+
+			lock.lock();
+
+			try {
+
+				while (buffer.position() == 0 && !endOfStream && exception == null && !discard) {
+
+					resumeInput();
+
+					try {
+
+						condition.await();
+					} catch (final InterruptedException e) {
+
+						Thread.currentThread().interrupt();
+
+						throw new InterruptedIOException("interrupted while waiting for the response content");
+					}
+				}
+
+				if (exception != null) {
+
+					throw new IOException("couldn't receive the response content", exception);
+				}
+
+				if (buffer.position() == 0 || discard) {
+
+					return -1;
+				}
+
+				buffer.flip();
+
+				final int read = Math.min(length, buffer.remaining());
+
+				buffer.get(bytes, offset, read);
+				buffer.compact();
+
+				resumeInput();
+
+				return read;
+			} finally {
+
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int available() {
+
+			lock.lock();
+
+			try {
+
+				return discard ? 0 : buffer.position();
+			} finally {
+
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * discards the remaining content
+		 */
+		@Override
+		public void close() {
+
+			lock.lock();
+
+			try {
+
+				discard = true;
+				buffer.clear();
+
+				resumeInput();
+
+				condition.signalAll();
+			} finally {
+
+				lock.unlock();
+			}
+		}
+
+		private void resumeInput() {
+
+			if (suspendedIOControl != null) {
+
+				suspendedIOControl.requestInput();
+				suspendedIOControl = null;
+			}
+		}
+	}
+}
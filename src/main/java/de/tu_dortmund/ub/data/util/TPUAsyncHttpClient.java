@@ -0,0 +1,455 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide, non-blocking HTTP client for the asynchronous execution mode (engine.mode=async) of the TPU, i.e., a small, fixed number of I/O
+ * threads can keep many requests to the d:swarm backend in flight. Failed or rejected requests will be retried with the retry policy of the
+ * blocking HTTP client and are subject to its circuit breaker (see {@link TPUHttpClient}).<br/>
+ * Streamed responses can be requested gzip-compressed (they will be decompressed while they are read); task execution results will be requested
+ * uncompressed, since they will be written zero-copy into the result file. Uploads can be compressed beforehand (see
+ * {@link #isCompressUploads()}).<br/>
+ * Note: the client is shared, i.e., callers must not close it.
+ *
+ * @author tgaengler
+ */
+public final class TPUAsyncHttpClient {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUAsyncHttpClient.class);
+
+	public static final int DEFAULT_IO_THREADS = 2;
+	public static final int DEFAULT_MAX_TASKS  = 100;
+
+	private static final TPUHttpClient.GzipResponseInterceptor GZIP_RESPONSE_INTERCEPTOR = new TPUHttpClient.GzipResponseInterceptor();
+
+	private static PoolingNHttpClientConnectionManager connectionManager;
+	private static CloseableHttpAsyncClient           httpClient;
+	private static ScheduledExecutorService           scheduler;
+	private static volatile boolean                   acceptGzip;
+	private static volatile boolean                   compressUploads;
+
+	private TPUAsyncHttpClient() {
+
+	}
+
+	/**
+	 * (re-)initialises (and starts) the shared asynchronous HTTP client with the settings of the given TPU configuration, i.e., a previously
+	 * initialised client will be shut down.
+	 *
+	 * @param config the TPU configuration
+	 * @throws IOReactorException
+	 */
+	public static synchronized void init(final Properties config) throws IOReactorException {
+
+		if (httpClient != null) {
+
+			LOG.debug("shut down previously initialised asynchronous HTTP client");
+
+			shutdown();
+		}
+
+		final int ioThreads = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_ASYNC_IO_THREADS_IDENTIFIER, config).orElse(DEFAULT_IO_THREADS);
+		final int maxTasks = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_ASYNC_MAX_TASKS_IDENTIFIER, config).orElse(DEFAULT_MAX_TASKS);
+		final int maxConnectionsPerRoute = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_MAX_CONNECTIONS_PER_ROUTE_IDENTIFIER, config)
+				.orElse(maxTasks);
+		final int maxConnections = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_MAX_CONNECTIONS_IDENTIFIER, config)
+				.orElse(maxConnectionsPerRoute * TPUHttpClient.ROUTES_FACTOR);
+		final int connectTimeout = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_CONNECT_TIMEOUT_IDENTIFIER, config)
+				.orElse(TPUHttpClient.DEFAULT_CONNECT_TIMEOUT);
+		final int socketTimeout = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_SOCKET_TIMEOUT_IDENTIFIER, config)
+				.orElse(TPUHttpClient.DEFAULT_SOCKET_TIMEOUT);
+		final long keepAlive = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_KEEP_ALIVE_IDENTIFIER, config)
+				.orElse(TPUHttpClient.DEFAULT_KEEP_ALIVE);
+		final long idleTimeout = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_IDLE_TIMEOUT_IDENTIFIER, config)
+				.orElse(TPUHttpClient.DEFAULT_IDLE_TIMEOUT);
+		final boolean newAcceptGzip = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_HTTP_ACCEPT_GZIP_IDENTIFIER, config).orElse(true);
+		final boolean newCompressUploads = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_HTTP_COMPRESS_UPLOADS_IDENTIFIER, config).orElse(false);
+
+		LOG.info("initialise asynchronous HTTP client with '{}' I/O threads, max. '{}' connections (max. '{}' per route), connect timeout = '{}' ms, "
+						+ "socket timeout = '{}' ms, keep-alive = '{}' ms, idle timeout = '{}' ms, accept gzip = '{}' (except for task execution results), "
+						+ "compress uploads = '{}'", ioThreads, maxConnections, maxConnectionsPerRoute, connectTimeout, socketTimeout, keepAlive, idleTimeout,
+				newAcceptGzip, newCompressUploads);
+
+		final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+				.setIoThreadCount(ioThreads)
+				.setConnectTimeout(connectTimeout)
+				.setSoTimeout(socketTimeout)
+				.build();
+
+		final PoolingNHttpClientConnectionManager newConnectionManager = new PoolingNHttpClientConnectionManager(
+				new DefaultConnectingIOReactor(ioReactorConfig));
+		newConnectionManager.setMaxTotal(maxConnections);
+		newConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+		final RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(socketTimeout)
+				.build();
+
+		final CloseableHttpAsyncClient newHttpClient = HttpAsyncClients.custom()
+				.setConnectionManager(newConnectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(new TPUHttpClient.KeepAliveStrategy(keepAlive))
+				.build();
+
+		newHttpClient.start();
+
+		// the non-blocking connection manager doesn't evict idle connections by itself; the scheduler also delays the retries of requests
+		final ScheduledExecutorService newScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+			final Thread thread = new Thread(runnable, "async HTTP client scheduler");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		newScheduler.scheduleWithFixedDelay(() -> {
+
+			newConnectionManager.closeExpiredConnections();
+			newConnectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+		}, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+
+		connectionManager = newConnectionManager;
+		httpClient = newHttpClient;
+		scheduler = newScheduler;
+		acceptGzip = newAcceptGzip;
+		compressUploads = newCompressUploads;
+	}
+
+	/**
+	 * delivers the shared asynchronous HTTP client; if it wasn't initialised before, it will be initialised with the default settings
+	 *
+	 * @return the shared asynchronous HTTP client
+	 * @throws IOReactorException
+	 */
+	public static synchronized CloseableHttpAsyncClient getHttpClient() throws IOReactorException {
+
+		if (httpClient == null) {
+
+			LOG.debug("asynchronous HTTP client wasn't initialised before; initialise it with default settings");
+
+			init(new Properties());
+		}
+
+		return httpClient;
+	}
+
+	/**
+	 * executes the given request; the response will be delivered as soon as its head was received, i.e., its content will be streamed (see
+	 * {@link StreamingResponseConsumer}). Hence, the response entity must be read on another thread than the one that completes the future (an I/O
+	 * dispatcher thread) and it must be consumed or closed.
+	 *
+	 * @param request the request that should be executed
+	 * @return a future of the response
+	 */
+	public static CompletableFuture<HttpResponse> executeStreaming(final HttpUriRequest request) {
+
+		final boolean currentAcceptGzip = acceptGzip;
+
+		if (currentAcceptGzip && !request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, GzipRequestEntity.GZIP_CONTENT_ENCODING);
+		}
+
+		final CompletableFuture<HttpResponse> responseFuture = executeWithRetries(request, requestProducer -> {
+
+			final StreamingResponseConsumer responseConsumer = new StreamingResponseConsumer();
+
+			// note: the response consumer will also be notified about failures
+			execute(requestProducer, responseConsumer);
+
+			return responseConsumer.getResponseFuture();
+		});
+
+		if (!currentAcceptGzip) {
+
+			return responseFuture;
+		}
+
+		// note: the content will be decompressed while it's read (i.e. not at the I/O dispatcher thread)
+		return responseFuture.thenApply(response -> {
+
+			final HttpCoreContext context = HttpCoreContext.create();
+			context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+
+			GZIP_RESPONSE_INTERCEPTOR.process(response, context);
+
+			return response;
+		});
+	}
+
+	/**
+	 * @return true, if uploads should be sent gzip-compressed; since the I/O threads shouldn't compress while sending, the upload needs to be
+	 * compressed beforehand (see {@link GzipRequestEntity#compressToFile(org.apache.http.HttpEntity, java.nio.file.Path, String)})
+	 */
+	public static boolean isCompressUploads() {
+
+		return compressUploads;
+	}
+
+	/**
+	 * executes the given request and processes the response with a response consumer of the given supplier (i.e. a new one per execution).
+	 * Like the blocking HTTP client, failed or rejected requests will be retried (see {@link BackendRetryStrategy}) and requests will be paused,
+	 * while the circuit breaker is open (see {@link CircuitBreaker}); the waiting times will be scheduled, i.e., no thread will be blocked.
+	 *
+	 * @param request                  the request that should be executed
+	 * @param responseConsumerSupplier the supplier of the consumers that should process the response
+	 * @return a future of the response
+	 */
+	public static CompletableFuture<HttpResponse> execute(final HttpUriRequest request,
+	                                                      final Supplier<? extends HttpAsyncResponseConsumer<HttpResponse>> responseConsumerSupplier) {
+
+		return executeWithRetries(request, requestProducer -> execute(requestProducer, responseConsumerSupplier.get()));
+	}
+
+	private static CompletableFuture<HttpResponse> executeWithRetries(final HttpUriRequest request,
+	                                                                  final Function<HttpAsyncRequestProducer, CompletableFuture<HttpResponse>> attempt) {
+
+		final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+
+		executeAttempt(request, attempt, 1, future);
+
+		return future;
+	}
+
+	private static void executeAttempt(final HttpUriRequest request, final Function<HttpAsyncRequestProducer, CompletableFuture<HttpResponse>> attempt,
+	                                   final int executionCount, final CompletableFuture<HttpResponse> future) {
+
+		if (future.isDone()) {
+
+			// e.g. cancelled while waiting
+			return;
+		}
+
+		final Optional<CircuitBreaker> optionalCircuitBreaker = TPUHttpClient.getCircuitBreaker();
+
+		if (optionalCircuitBreaker.isPresent()) {
+
+			final long waitTime = optionalCircuitBreaker.get().tryAcquirePermission();
+
+			if (waitTime > 0) {
+
+				schedule(() -> executeAttempt(request, attempt, executionCount, future), waitTime, future);
+
+				return;
+			}
+		}
+
+		// note: the request entity will be reset by closing the previous request producer
+		attempt.apply(HttpAsyncMethods.create(request)).whenComplete((response, throwable) -> {
+
+			final BackendRetryStrategy retryStrategy = TPUHttpClient.getRetryStrategy();
+			final Optional<Long> optionalBackoff;
+
+			if (throwable != null) {
+
+				if (!(throwable instanceof IOException)) {
+
+					future.completeExceptionally(throwable);
+
+					return;
+				}
+
+				TPUHttpClient.recordOutcome(true);
+
+				// note: the asynchronous HTTP client doesn't record whether the request was sent, i.e., only a request without connection wasn't sent
+				final boolean requestSent = !(throwable instanceof ConnectException || throwable instanceof ConnectTimeoutException);
+
+				optionalBackoff = retryStrategy.determineRetry(request, (IOException) throwable, executionCount, requestSent);
+
+				if (!optionalBackoff.isPresent()) {
+
+					future.completeExceptionally(throwable);
+
+					return;
+				}
+			} else {
+
+				TPUHttpClient.recordOutcome(TPUHttpClient.isBackendFailure(response.getStatusLine().getStatusCode()));
+
+				optionalBackoff = retryStrategy.determineRetry(request, response, executionCount);
+
+				if (!optionalBackoff.isPresent()) {
+
+					future.complete(response);
+
+					return;
+				}
+
+				// discard the content of the rejected response
+				EntityUtils.consumeQuietly(response.getEntity());
+			}
+
+			schedule(() -> executeAttempt(request, attempt, executionCount + 1, future), optionalBackoff.get(), future);
+		});
+	}
+
+	private static void schedule(final Runnable runnable, final long delay, final CompletableFuture<?> future) {
+
+		final ScheduledExecutorService currentScheduler;
+
+		synchronized (TPUAsyncHttpClient.class) {
+
+			currentScheduler = scheduler;
+		}
+
+		if (currentScheduler == null) {
+
+			future.completeExceptionally(new IOException("asynchronous HTTP client was shut down"));
+
+			return;
+		}
+
+		try {
+
+			currentScheduler.schedule(() -> {
+
+				try {
+
+					runnable.run();
+				} catch (final RuntimeException e) {
+
+					future.completeExceptionally(e);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (final RejectedExecutionException e) {
+
+			future.completeExceptionally(new IOException("asynchronous HTTP client was shut down", e));
+		}
+	}
+
+	/**
+	 * executes a request with the given request producer and processes the response with the given response consumer (once, i.e. without
+	 * retries)
+	 */
+	private static <T> CompletableFuture<T> execute(final HttpAsyncRequestProducer requestProducer,
+	                                                final HttpAsyncResponseConsumer<T> responseConsumer) {
+
+		final CompletableFuture<T> future = new CompletableFuture<>();
+
+		try {
+
+			getHttpClient().execute(requestProducer, responseConsumer, new FutureCallback<T>() {
+
+				@Override
+				public void completed(final T result) {
+
+					future.complete(result);
+				}
+
+				@Override
+				public void failed(final Exception e) {
+
+					future.completeExceptionally(e);
+				}
+
+				@Override
+				public void cancelled() {
+
+					future.cancel(false);
+				}
+			});
+		} catch (final IOReactorException e) {
+
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	/**
+	 * @return the current statistics of the connection pool (total + per route)
+	 */
+	public static synchronized String getPoolStatistics() {
+
+		if (connectionManager == null) {
+
+			return "[no asynchronous HTTP connection pool available]";
+		}
+
+		final StringBuilder sb = new StringBuilder();
+
+		sb.append("total = ").append(connectionManager.getTotalStats());
+
+		for (final HttpRoute route : connectionManager.getRoutes()) {
+
+			final PoolStats routeStats = connectionManager.getStats(route);
+
+			sb.append("\n\troute '").append(route.getTargetHost()).append("' = ").append(routeStats);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * shuts down the shared asynchronous HTTP client (incl. its connection pool and I/O threads)
+	 */
+	public static synchronized void shutdown() {
+
+		if (httpClient == null) {
+
+			return;
+		}
+
+		try {
+
+			scheduler.shutdownNow();
+			httpClient.close();
+		} catch (final IOException e) {
+
+			LOG.error("something went wrong at shutting down the asynchronous HTTP client", e);
+		} finally {
+
+			httpClient = null;
+			connectionManager = null;
+			scheduler = null;
+		}
+	}
+}
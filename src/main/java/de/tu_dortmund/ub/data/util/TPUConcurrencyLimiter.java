@@ -0,0 +1,413 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run-scoped, adaptive limit of the task executions (POST tasks) that are in flight at the d:swarm backend at the same time (gradient-based,
+ * similar to Netflix' concurrency-limits):<br/>
+ * - the limit grows, while the latency of the task executions stays flat (compared to the lowest latency, i.e. the latency without queueing at
+ * the backend)<br/>
+ * - the latency of a task execution mostly depends on the size of its input, i.e., the latencies will be compared per MB of input (inputs
+ * smaller than 1 MB count as 1 MB, since each task execution has a fixed overhead; latencies of task executions with unknown input size, e.g.
+ * transformations of existing data models, will be compared as they are)<br/>
+ * - the limit shrinks proportionally, when the latency rises, and multiplicatively, when task executions fail because of the backend (e.g. 5xx,
+ * 429 or I/O errors)<br/>
+ * The limit is bounded by engine.concurrency.min_limit and engine.concurrency.max_limit (default: the number of threads/tasks of the engine
+ * mode). If the limiter is disabled (default), all permits will be granted immediately.
+ *
+ * @author tgaengler
+ */
+public final class TPUConcurrencyLimiter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUConcurrencyLimiter.class);
+
+	public static final int DEFAULT_MIN_LIMIT     = 1;
+	public static final int DEFAULT_INITIAL_LIMIT = 4;
+
+	// latency increase that is still tolerated as 'flat' (i.e. latency / lowest latency)
+	private static final double TOLERANCE      = 1.5;
+	private static final double MIN_GRADIENT   = 0.5;
+	// smoothing of limit changes (0 - 1)
+	private static final double SMOOTHING      = 0.2;
+	// weight of a new sample in the long-term average latency (~ last 20 samples)
+	private static final double LONG_RTT_ALPHA = 2.0 / 21;
+	// number of samples after which the lowest latency will be determined anew (e.g. if the backend got slower in general)
+	private static final long   MIN_RTT_RESET  = 500;
+	// multiplicative decrease on failures
+	private static final double BACKOFF_RATIO  = 0.9;
+	// latencies will be normalised to this input size (in bytes)
+	private static final long   SAMPLE_SIZE    = 1024 * 1024;
+
+	private static final Permit NO_OP_PERMIT = new Permit(0, 0, 0) {
+
+		@Override
+		public void onSuccess() {
+
+		}
+
+		@Override
+		public void onError() {
+
+		}
+
+		@Override
+		public void close() {
+
+		}
+	};
+
+	private static final Queue<Waiter> WAITERS = new ArrayDeque<>();
+
+	private static volatile boolean enabled = false;
+
+	// in ns
+	private static volatile LongSupplier clock = System::nanoTime;
+
+	private static int    minLimit;
+	private static int    maxLimit;
+	private static double limit;
+	private static int    inFlight;
+	private static double longRtt;
+	private static long   minRtt;
+	private static long   samples;
+	private static long   errors;
+	private static int    lowestLimit;
+	private static int    highestLimit;
+
+	private TPUConcurrencyLimiter() {
+
+	}
+
+	/**
+	 * (re-)initialises the limiter for a new run
+	 *
+	 * @param config       the TPU configuration
+	 * @param defaultLimit the max. limit, if engine.concurrency.max_limit is not configured (i.e. the number of threads/tasks of the engine mode)
+	 */
+	public static synchronized void init(final Properties config, final int defaultLimit) {
+
+		enabled = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_CONCURRENCY_ADAPTIVE_IDENTIFIER, config).orElse(false);
+
+		minLimit = Math.max(1, TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_CONCURRENCY_MIN_LIMIT_IDENTIFIER, config).orElse(DEFAULT_MIN_LIMIT));
+		maxLimit = Math.max(minLimit, TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_CONCURRENCY_MAX_LIMIT_IDENTIFIER, config).orElse(defaultLimit));
+		limit = Math.max(minLimit, Math.min(maxLimit,
+				TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_CONCURRENCY_INITIAL_LIMIT_IDENTIFIER, config).orElse(DEFAULT_INITIAL_LIMIT)));
+		inFlight = 0;
+		longRtt = 0;
+		minRtt = 0;
+		samples = 0;
+		errors = 0;
+		lowestLimit = (int) limit;
+		highestLimit = (int) limit;
+
+		WAITERS.clear();
+
+		if (enabled) {
+
+			LOG.info("initialise adaptive concurrency limit with initial limit = '{}', min. limit = '{}', max. limit = '{}'", (int) limit, minLimit,
+					maxLimit);
+		}
+	}
+
+	/**
+	 * @return true, if the adaptive concurrency limit is enabled for the current run
+	 */
+	public static boolean isEnabled() {
+
+		return enabled;
+	}
+
+	/**
+	 * waits until a task execution can be started (i.e. the number of task executions in flight is below the current limit)
+	 *
+	 * @param inputSize the size of the input of the task execution in bytes (or 0, if unknown)
+	 * @return the permit, which needs to be closed after the task execution (incl. its outcome)
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public static Permit acquire(final long inputSize) throws InterruptedException {
+
+		if (!enabled) {
+
+			return NO_OP_PERMIT;
+		}
+
+		final CompletableFuture<Permit> futurePermit = acquireAsync(inputSize);
+
+		try {
+
+			return futurePermit.get();
+		} catch (final InterruptedException e) {
+
+			if (!futurePermit.cancel(false)) {
+
+				// the permit was granted in the meantime
+				futurePermit.join().close();
+			}
+
+			throw e;
+		} catch (final ExecutionException e) {
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @param inputSize the size of the input of the task execution in bytes (or 0, if unknown)
+	 * @return a future of the permit that will be completed, when a task execution can be started (i.e. the calling thread won't be blocked);
+	 * the permit needs to be closed after the task execution (incl. its outcome)
+	 */
+	public static CompletableFuture<Permit> acquireAsync(final long inputSize) {
+
+		if (!enabled) {
+
+			return CompletableFuture.completedFuture(NO_OP_PERMIT);
+		}
+
+		synchronized (TPUConcurrencyLimiter.class) {
+
+			if (inFlight < (int) limit) {
+
+				inFlight++;
+
+				return CompletableFuture.completedFuture(new Permit(clock.getAsLong(), inFlight, inputSize));
+			}
+
+			final CompletableFuture<Permit> futurePermit = new CompletableFuture<>();
+
+			WAITERS.add(new Waiter(futurePermit, inputSize));
+
+			return futurePermit;
+		}
+	}
+
+	/**
+	 * @return the current limit
+	 */
+	public static synchronized int getLimit() {
+
+		return (int) limit;
+	}
+
+	/**
+	 * replaces the clock of the limiter (e.g. for tests)
+	 *
+	 * @param newClock a clock in ns
+	 */
+	static void setClock(final LongSupplier newClock) {
+
+		clock = newClock;
+	}
+
+	/**
+	 * @return the current statistics of the limiter (limit, in flight, samples, errors, lowest + highest limit, latencies per MB of input)
+	 */
+	public static synchronized String getStatistics() {
+
+		if (!enabled) {
+
+			return "[adaptive concurrency limit is disabled]";
+		}
+
+		return String.format("limit = %d, in flight = %d, waiting = %d, samples = %d, errors = %d, lowest limit = %d, highest limit = %d, "
+				+ "avg. latency = %d ms/MB, lowest latency = %d ms/MB", (int) limit, inFlight, WAITERS.size(), samples, errors, lowestLimit, highestLimit,
+				(long) (longRtt / 1000000), minRtt / 1000000);
+	}
+
+	private static void release(final Permit permit, final boolean sample, final boolean error) {
+
+		final List<Waiter> grantedWaiters = new ArrayList<>();
+
+		synchronized (TPUConcurrencyLimiter.class) {
+
+			inFlight = Math.max(0, inFlight - 1);
+
+			if (error) {
+
+				onError();
+			} else if (sample) {
+
+				onSample(normalise(clock.getAsLong() - permit.start, permit.inputSize), permit.inFlight);
+			}
+
+			while (inFlight < (int) limit && !WAITERS.isEmpty()) {
+
+				grantedWaiters.add(WAITERS.poll());
+				inFlight++;
+			}
+		}
+
+		// note: the waiters will be completed outside of the lock, since their callbacks might be executed in this thread
+		for (final Waiter grantedWaiter : grantedWaiters) {
+
+			final Permit grantedPermit;
+
+			synchronized (TPUConcurrencyLimiter.class) {
+
+				grantedPermit = new Permit(clock.getAsLong(), inFlight, grantedWaiter.inputSize);
+			}
+
+			if (!grantedWaiter.futurePermit.complete(grantedPermit)) {
+
+				// the waiter was cancelled in the meantime
+				release(grantedPermit, false, false);
+			}
+		}
+	}
+
+	/**
+	 * @return the latency per MB of input (or the latency itself, if the input size is unknown)
+	 */
+	private static long normalise(final long rtt, final long inputSize) {
+
+		if (inputSize <= 0) {
+
+			return rtt;
+		}
+
+		return (long) (rtt * ((double) SAMPLE_SIZE / Math.max(SAMPLE_SIZE, inputSize)));
+	}
+
+	private static void onSample(final long rtt, final int inFlightAtStart) {
+
+		samples++;
+
+		longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) * LONG_RTT_ALPHA;
+
+		if (minRtt == 0 || rtt < minRtt || samples % MIN_RTT_RESET == 0) {
+
+			minRtt = Math.max(1, rtt);
+
+			return;
+		}
+
+		if (inFlightAtStart < limit / 2) {
+
+			// the limit wasn't utilised, i.e., the latency doesn't tell anything about a higher limit
+			return;
+		}
+
+		final double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * minRtt / rtt));
+		final double queueSize = Math.sqrt(limit);
+		final double newLimit = limit * gradient + queueSize;
+
+		updateLimit(limit * (1 - SMOOTHING) + newLimit * SMOOTHING, rtt);
+	}
+
+	private static void onError() {
+
+		errors++;
+
+		updateLimit(limit * BACKOFF_RATIO, -1);
+	}
+
+	private static void updateLimit(final double newLimit, final long rtt) {
+
+		final int previousLimit = (int) limit;
+
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+		final int currentLimit = (int) limit;
+
+		if (currentLimit != previousLimit) {
+
+			lowestLimit = Math.min(lowestLimit, currentLimit);
+			highestLimit = Math.max(highestLimit, currentLimit);
+
+			if (rtt >= 0) {
+
+				LOG.debug("adaptive concurrency limit changed from '{}' to '{}' (latency = '{}' ms/MB, lowest latency = '{}' ms/MB)", previousLimit,
+						currentLimit, rtt / 1000000, minRtt / 1000000);
+			} else {
+
+				LOG.info("adaptive concurrency limit changed from '{}' to '{}' (task execution failed)", previousLimit, currentLimit);
+			}
+		}
+	}
+
+	/**
+	 * A permit for one task execution. The outcome of the task execution should be reported via {@link #onSuccess()} (the latency will be
+	 * measured) or {@link #onError()} (the backend couldn't handle the task execution, e.g., 5xx, 429 or I/O error). Closing a permit without
+	 * outcome releases it without influencing the limit (e.g. for client-side failures).
+	 */
+	public static class Permit implements AutoCloseable {
+
+		private final long start;
+		private final int  inFlight;
+		private final long inputSize;
+
+		private boolean released = false;
+
+		private Permit(final long start, final int inFlight, final long inputSize) {
+
+			this.start = start;
+			this.inFlight = inFlight;
+			this.inputSize = inputSize;
+		}
+
+		public void onSuccess() {
+
+			release(true, false);
+		}
+
+		public void onError() {
+
+			release(false, true);
+		}
+
+		@Override
+		public void close() {
+
+			release(false, false);
+		}
+
+		private synchronized void release(final boolean sample, final boolean error) {
+
+			if (released) {
+
+				return;
+			}
+
+			released = true;
+
+			TPUConcurrencyLimiter.release(this, sample, error);
+		}
+	}
+
+	private static class Waiter {
+
+		private final CompletableFuture<Permit> futurePermit;
+		private final long                      inputSize;
+
+		private Waiter(final CompletableFuture<Permit> futurePermit, final long inputSize) {
+
+			this.futurePermit = futurePermit;
+			this.inputSize = inputSize;
+		}
+	}
+}
@@ -0,0 +1,531 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide, pooled (keep-alive) HTTP client for all d:swarm backend (and graph extension) calls.<br/>
+ * Note: the client is shared, i.e., callers must not close it; they only need to close (or consume) their responses, so that the
+ * connection can be returned to the pool.<br/>
+ * Responses can be requested gzip-compressed (they will be decompressed transparently while they are read) and multipart uploads can be sent
+ * gzip-compressed; the saved bandwidth will be logged per request and summed up in the transfer statistics.<br/>
+ * Failed or rejected requests will be retried (see {@link BackendRetryStrategy}) and requests will be paused, if the failure rate of the d:swarm
+ * backend spikes (see {@link CircuitBreaker}).
+ *
+ * @author tgaengler
+ */
+public final class TPUHttpClient {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUHttpClient.class);
+
+	public static final int  DEFAULT_ENGINE_THREADS            = 1;
+	public static final int  DEFAULT_CLEANUP_THREADS           = 1;
+	public static final int  DEFAULT_CONNECT_TIMEOUT           = 60000;
+	// note: task executions can take a while, i.e., no socket timeout by default
+	public static final int  DEFAULT_SOCKET_TIMEOUT            = 0;
+	public static final long DEFAULT_KEEP_ALIVE                = 60000;
+	public static final long DEFAULT_IDLE_TIMEOUT              = 30000;
+	public static final int  DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+	// usually, we have two routes (d:swarm backend + graph extension)
+	public static final int  ROUTES_FACTOR                     = 2;
+	public static final int  DEFAULT_FAILURE_RATE              = 50;
+	public static final int  DEFAULT_FAILURE_WINDOW            = 20;
+	public static final long DEFAULT_OPEN_DURATION             = 30000;
+	// note: not available in HttpStatus
+	public static final int  TOO_MANY_REQUESTS                 = 429;
+
+	private static final String MULTIPART_MIMETYPE_PREFIX = "multipart/";
+
+	private static final AtomicLong UPLOADS                        = new AtomicLong();
+	private static final AtomicLong UPLOADED_UNCOMPRESSED_BYTES    = new AtomicLong();
+	private static final AtomicLong UPLOADED_COMPRESSED_BYTES      = new AtomicLong();
+	private static final AtomicLong DOWNLOADS                      = new AtomicLong();
+	private static final AtomicLong DOWNLOADED_UNCOMPRESSED_BYTES  = new AtomicLong();
+	private static final AtomicLong DOWNLOADED_COMPRESSED_BYTES    = new AtomicLong();
+
+	private static PoolingHttpClientConnectionManager connectionManager;
+	private static CloseableHttpClient                httpClient;
+	private static BackendRetryStrategy               retryStrategy;
+	private static volatile Optional<CircuitBreaker>  optionalCircuitBreaker = Optional.empty();
+
+	private TPUHttpClient() {
+
+	}
+
+	/**
+	 * (re-)initialises the shared HTTP client with the settings of the given TPU configuration, i.e., a previously initialised client will be
+	 * shut down.
+	 *
+	 * @param config the TPU configuration
+	 */
+	public static synchronized void init(final Properties config) {
+
+		if (httpClient != null) {
+
+			LOG.debug("shut down previously initialised HTTP client");
+
+			shutdown();
+		}
+
+		final int requestThreads = determineRequestThreads(config);
+		final int maxConnectionsPerRoute = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_MAX_CONNECTIONS_PER_ROUTE_IDENTIFIER, config)
+				.orElse(requestThreads * ROUTES_FACTOR);
+		final int maxConnections = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_MAX_CONNECTIONS_IDENTIFIER, config)
+				.orElse(maxConnectionsPerRoute * ROUTES_FACTOR);
+		final int connectTimeout = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_CONNECT_TIMEOUT_IDENTIFIER, config)
+				.orElse(DEFAULT_CONNECT_TIMEOUT);
+		final int socketTimeout = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_SOCKET_TIMEOUT_IDENTIFIER, config)
+				.orElse(DEFAULT_SOCKET_TIMEOUT);
+		final long keepAlive = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_KEEP_ALIVE_IDENTIFIER, config).orElse(DEFAULT_KEEP_ALIVE);
+		final long idleTimeout = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_IDLE_TIMEOUT_IDENTIFIER, config).orElse(DEFAULT_IDLE_TIMEOUT);
+		final boolean acceptGzip = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_HTTP_ACCEPT_GZIP_IDENTIFIER, config).orElse(true);
+		final boolean compressUploads = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_HTTP_COMPRESS_UPLOADS_IDENTIFIER, config).orElse(false);
+
+		final boolean circuitBreaker = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_HTTP_CIRCUIT_BREAKER_IDENTIFIER, config).orElse(true);
+
+		resetTransferStatistics();
+
+		retryStrategy = new BackendRetryStrategy(config);
+
+		if (circuitBreaker) {
+
+			final int failureRate = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_CIRCUIT_BREAKER_FAILURE_RATE_IDENTIFIER, config)
+					.orElse(DEFAULT_FAILURE_RATE);
+			final int failureWindow = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_HTTP_CIRCUIT_BREAKER_WINDOW_IDENTIFIER, config)
+					.orElse(DEFAULT_FAILURE_WINDOW);
+			final long openDuration = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_HTTP_CIRCUIT_BREAKER_OPEN_DURATION_IDENTIFIER, config)
+					.orElse(DEFAULT_OPEN_DURATION);
+
+			optionalCircuitBreaker = Optional.of(new CircuitBreaker(failureRate, failureWindow, openDuration));
+		} else {
+
+			optionalCircuitBreaker = Optional.empty();
+		}
+
+		create(maxConnections, maxConnectionsPerRoute, connectTimeout, socketTimeout, keepAlive, idleTimeout, acceptGzip, compressUploads);
+	}
+
+	/**
+	 * delivers the shared HTTP client; if it wasn't initialised before, it will be initialised with the default settings
+	 *
+	 * @return the shared HTTP client
+	 */
+	public static synchronized CloseableHttpClient getHttpClient() {
+
+		if (httpClient == null) {
+
+			LOG.debug("HTTP client wasn't initialised before; initialise it with default settings");
+
+			init(new Properties());
+		}
+
+		return httpClient;
+	}
+
+	/**
+	 * @return the current statistics of the connection pool (total + per route)
+	 */
+	public static synchronized String getPoolStatistics() {
+
+		if (connectionManager == null) {
+
+			return "[no HTTP connection pool available]";
+		}
+
+		final StringBuilder sb = new StringBuilder();
+
+		sb.append("total = ").append(connectionManager.getTotalStats());
+
+		for (final HttpRoute route : connectionManager.getRoutes()) {
+
+			final PoolStats routeStats = connectionManager.getStats(route);
+
+			sb.append("\n\troute '").append(route.getTargetHost()).append("' = ").append(routeStats);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * @return the current statistics of the gzip-compressed uploads and downloads (i.e. the saved bandwidth)
+	 */
+	public static String getTransferStatistics() {
+
+		final long uploadedUncompressedBytes = UPLOADED_UNCOMPRESSED_BYTES.get();
+		final long uploadedCompressedBytes = UPLOADED_COMPRESSED_BYTES.get();
+		final long downloadedUncompressedBytes = DOWNLOADED_UNCOMPRESSED_BYTES.get();
+		final long downloadedCompressedBytes = DOWNLOADED_COMPRESSED_BYTES.get();
+
+		return String.format("compressed uploads = '%d' ('%d' bytes sent as '%d' bytes, %s), compressed downloads = '%d' ('%d' bytes received as "
+						+ "'%d' bytes, %s)", UPLOADS.get(), uploadedUncompressedBytes, uploadedCompressedBytes,
+				formatSavings(uploadedUncompressedBytes, uploadedCompressedBytes), DOWNLOADS.get(), downloadedUncompressedBytes,
+				downloadedCompressedBytes, formatSavings(downloadedUncompressedBytes, downloadedCompressedBytes));
+	}
+
+	/**
+	 * @return the number of retried requests and how often the circuit breaker was opened
+	 */
+	public static synchronized String getRetryStatistics() {
+
+		if (retryStrategy == null) {
+
+			return "[no HTTP client available]";
+		}
+
+		return String.format("retries = '%d', circuit breaker openings = '%s'", retryStrategy.getRetries(),
+				optionalCircuitBreaker.map(circuitBreaker -> String.valueOf(circuitBreaker.getOpenings())).orElse("[disabled]"));
+	}
+
+	/**
+	 * records the outcome of a request for the circuit breaker (if enabled)
+	 *
+	 * @param failure true, if the request failed
+	 */
+	static void recordOutcome(final boolean failure) {
+
+		optionalCircuitBreaker.ifPresent(circuitBreaker -> circuitBreaker.record(failure));
+	}
+
+	/**
+	 * @return true, if a response with the given status code should be considered as failure of the d:swarm backend (5xx, 429)
+	 */
+	static boolean isBackendFailure(final int statusCode) {
+
+		return statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR || statusCode == TOO_MANY_REQUESTS;
+	}
+
+	/**
+	 * @return the retry policy of this TPU run (shared with the asynchronous HTTP client)
+	 */
+	static synchronized BackendRetryStrategy getRetryStrategy() {
+
+		if (retryStrategy == null) {
+
+			retryStrategy = new BackendRetryStrategy(new Properties());
+		}
+
+		return retryStrategy;
+	}
+
+	/**
+	 * @return the circuit breaker of this TPU run (shared with the asynchronous HTTP client), if enabled
+	 */
+	static Optional<CircuitBreaker> getCircuitBreaker() {
+
+		return optionalCircuitBreaker;
+	}
+
+	static void recordUpload(final long uncompressedBytes, final long compressedBytes) {
+
+		UPLOADS.incrementAndGet();
+		UPLOADED_UNCOMPRESSED_BYTES.addAndGet(uncompressedBytes);
+		UPLOADED_COMPRESSED_BYTES.addAndGet(compressedBytes);
+	}
+
+	static void recordDownload(final long uncompressedBytes, final long compressedBytes) {
+
+		DOWNLOADS.incrementAndGet();
+		DOWNLOADED_UNCOMPRESSED_BYTES.addAndGet(uncompressedBytes);
+		DOWNLOADED_COMPRESSED_BYTES.addAndGet(compressedBytes);
+	}
+
+	static String formatSavings(final long uncompressedBytes, final long compressedBytes) {
+
+		if (uncompressedBytes <= 0) {
+
+			return "saved '0' bytes";
+		}
+
+		return String.format("saved '%d' bytes = %.1f %%", uncompressedBytes - compressedBytes,
+				(uncompressedBytes - compressedBytes) * 100.0 / uncompressedBytes);
+	}
+
+	private static void resetTransferStatistics() {
+
+		UPLOADS.set(0);
+		UPLOADED_UNCOMPRESSED_BYTES.set(0);
+		UPLOADED_COMPRESSED_BYTES.set(0);
+		DOWNLOADS.set(0);
+		DOWNLOADED_UNCOMPRESSED_BYTES.set(0);
+		DOWNLOADED_COMPRESSED_BYTES.set(0);
+	}
+
+	/**
+	 * shuts down the shared HTTP client (incl. its connection pool)
+	 */
+	public static synchronized void shutdown() {
+
+		if (httpClient == null) {
+
+			return;
+		}
+
+		try {
+
+			httpClient.close();
+		} catch (final IOException e) {
+
+			LOG.error("something went wrong at shutting down the HTTP client", e);
+		} finally {
+
+			httpClient = null;
+			connectionManager = null;
+		}
+	}
+
+	/**
+	 * determines the number of threads that can execute requests at the same time, i.e., engine.threads or, in pipeline mode, the sum of the threads
+	 * of the init, transform and clean-up stages
+	 */
+	private static int determineRequestThreads(final Properties config) {
+
+		final int engineThreads = TPUUtil.getIntegerConfigValue(TPUStatics.ENGINE_THREADS_IDENTIFIER, config).orElse(DEFAULT_ENGINE_THREADS);
+
+		if (!TPUStatics.PIPELINE_ENGINE_MODE.equals(config.getProperty(TPUStatics.ENGINE_MODE_IDENTIFIER))) {
+
+			return engineThreads;
+		}
+
+		return TPUUtil.getIntegerConfigValue(TPUStatics.INIT_THREADS_IDENTIFIER, config).orElse(engineThreads)
+				+ TPUUtil.getIntegerConfigValue(TPUStatics.TRANSFORM_THREADS_IDENTIFIER, config).orElse(engineThreads)
+				+ TPUUtil.getIntegerConfigValue(TPUStatics.CLEANUP_THREADS_IDENTIFIER, config).orElse(DEFAULT_CLEANUP_THREADS);
+	}
+
+	private static void create(final int maxConnections, final int maxConnectionsPerRoute, final int connectTimeout, final int socketTimeout,
+	                           final long keepAlive, final long idleTimeout, final boolean acceptGzip, final boolean compressUploads) {
+
+		LOG.info("initialise HTTP client with max. '{}' connections (max. '{}' per route), connect timeout = '{}' ms, socket timeout = '{}' ms, "
+						+ "keep-alive = '{}' ms, idle timeout = '{}' ms, accept gzip = '{}', compress uploads = '{}'", maxConnections,
+				maxConnectionsPerRoute, connectTimeout, socketTimeout, keepAlive, idleTimeout, acceptGzip, compressUploads);
+
+		final PoolingHttpClientConnectionManager newConnectionManager = new PoolingHttpClientConnectionManager();
+		newConnectionManager.setMaxTotal(maxConnections);
+		newConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		newConnectionManager.setValidateAfterInactivity(DEFAULT_VALIDATE_AFTER_INACTIVITY);
+
+		final RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(socketTimeout)
+				.build();
+
+		// note: the built-in content compression handling will be replaced by the (counting) gzip interceptors
+		final HttpClientBuilder httpClientBuilder = HttpClients.custom()
+				.setConnectionManager(newConnectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(new KeepAliveStrategy(keepAlive))
+				.evictExpiredConnections()
+				.evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+				.disableContentCompression()
+				.setRetryHandler(retryStrategy)
+				.setServiceUnavailableRetryStrategy(retryStrategy)
+				.addInterceptorFirst(new CircuitBreakerRequestInterceptor())
+				.addInterceptorFirst(new CircuitBreakerResponseInterceptor());
+
+		if (acceptGzip) {
+
+			httpClientBuilder.addInterceptorLast(new AcceptGzipInterceptor());
+			httpClientBuilder.addInterceptorFirst(new GzipResponseInterceptor());
+		}
+
+		if (compressUploads) {
+
+			// note: needs to be executed before the standard interceptors (e.g. the one that sets the content headers)
+			httpClientBuilder.addInterceptorFirst(new GzipUploadInterceptor());
+		}
+
+		connectionManager = newConnectionManager;
+		httpClient = httpClientBuilder.build();
+	}
+
+	private static String getRequestLine(final HttpContext context) {
+
+		final HttpRequest request = HttpCoreContext.adapt(context).getRequest();
+
+		return request != null ? request.getRequestLine().toString() : "[no request line available]";
+	}
+
+	/**
+	 * pauses requests while the circuit breaker is open
+	 */
+	static final class CircuitBreakerRequestInterceptor implements HttpRequestInterceptor {
+
+		@Override
+		public void process(final HttpRequest request, final HttpContext context) throws IOException {
+
+			final Optional<CircuitBreaker> currentCircuitBreaker = optionalCircuitBreaker;
+
+			if (currentCircuitBreaker.isPresent()) {
+
+				currentCircuitBreaker.get().awaitPermission();
+			}
+		}
+	}
+
+	/**
+	 * records the outcome of requests for the circuit breaker, i.e., server errors and rejected requests (429) are failures
+	 */
+	static final class CircuitBreakerResponseInterceptor implements HttpResponseInterceptor {
+
+		@Override
+		public void process(final HttpResponse response, final HttpContext context) {
+
+			final int statusCode = response.getStatusLine().getStatusCode();
+
+			recordOutcome(isBackendFailure(statusCode));
+		}
+	}
+
+	/**
+	 * requests gzip-compressed responses
+	 */
+	static final class AcceptGzipInterceptor implements HttpRequestInterceptor {
+
+		@Override
+		public void process(final HttpRequest request, final HttpContext context) {
+
+			if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+
+				request.addHeader(HttpHeaders.ACCEPT_ENCODING, GzipRequestEntity.GZIP_CONTENT_ENCODING);
+			}
+		}
+	}
+
+	/**
+	 * decompresses gzip-encoded responses transparently while they are read
+	 */
+	static final class GzipResponseInterceptor implements HttpResponseInterceptor {
+
+		@Override
+		public void process(final HttpResponse response, final HttpContext context) {
+
+			final HttpEntity entity = response.getEntity();
+
+			if (entity == null || entity.getContentLength() == 0) {
+
+				return;
+			}
+
+			final Header contentEncoding = entity.getContentEncoding();
+
+			if (contentEncoding == null || !GzipRequestEntity.GZIP_CONTENT_ENCODING.equalsIgnoreCase(contentEncoding.getValue().trim())) {
+
+				return;
+			}
+
+			response.setEntity(new GzipResponseEntity(entity, getRequestLine(context)));
+			response.removeHeaders(HTTP.CONTENT_LEN);
+			response.removeHeaders(HTTP.CONTENT_ENCODING);
+			response.removeHeaders(HttpHeaders.CONTENT_MD5);
+		}
+	}
+
+	/**
+	 * compresses multipart uploads (i.e. file uploads) with gzip
+	 */
+	static final class GzipUploadInterceptor implements HttpRequestInterceptor {
+
+		@Override
+		public void process(final HttpRequest request, final HttpContext context) {
+
+			if (!(request instanceof HttpEntityEnclosingRequest)) {
+
+				return;
+			}
+
+			final HttpEntityEnclosingRequest entityEnclosingRequest = (HttpEntityEnclosingRequest) request;
+			final HttpEntity entity = entityEnclosingRequest.getEntity();
+
+			if (entity == null || entity instanceof GzipRequestEntity || entity.getContentEncoding() != null || entity.getContentType() == null
+					|| !entity.getContentType().getValue().startsWith(MULTIPART_MIMETYPE_PREFIX)) {
+
+				return;
+			}
+
+			entityEnclosingRequest.setEntity(new GzipRequestEntity(entity, request.getRequestLine().toString()));
+		}
+	}
+
+	/**
+	 * utilises the keep-alive timeout of the server response (if available); otherwise, the configured keep-alive timeout
+	 */
+	static final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+		private final long defaultKeepAlive;
+
+		KeepAliveStrategy(final long defaultKeepAlive) {
+
+			this.defaultKeepAlive = defaultKeepAlive;
+		}
+
+		@Override
+		public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+
+			final HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+
+			while (it.hasNext()) {
+
+				final HeaderElement headerElement = it.nextElement();
+				final String param = headerElement.getName();
+				final String value = headerElement.getValue();
+
+				if (value != null && "timeout".equalsIgnoreCase(param)) {
+
+					try {
+
+						return Long.parseLong(value) * 1000;
+					} catch (final NumberFormatException ignore) {
+
+						// utilise default keep-alive timeout
+					}
+				}
+			}
+
+			return defaultKeepAlive;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run-scoped cache for metadata that is identical for all TPU tasks of a run (e.g. project mappings, output data model, skip filter, input
+ * schema, schema indices initialisation).<br/>
+ * Concurrent lookups of the same key are coalesced, i.e., only the first caller retrieves the value, while all others wait for (and share) its
+ * result. Failed retrievals won't be cached. Entries can optionally expire (engine.metadata_cache.ttl), e.g., for long running TPU processes.
+ *
+ * @author tgaengler
+ */
+public final class TPUMetadataCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPUMetadataCache.class);
+
+	// 0 = entries don't expire (within a run)
+	public static final long   DEFAULT_TTL   = 0;
+	// separates the request URI from the cached part of the response, e.g., '.../projects/{id}#mappings'
+	public static final String KEY_SEPARATOR = "#";
+
+	private static final ConcurrentMap<String, CacheEntry> CACHE  = new ConcurrentHashMap<>();
+	private static final AtomicLong                        HITS   = new AtomicLong();
+	private static final AtomicLong                        MISSES = new AtomicLong();
+
+	private static volatile long ttl = DEFAULT_TTL;
+
+	private TPUMetadataCache() {
+
+	}
+
+	/**
+	 * (re-)initialises the cache for a new run, i.e., all entries and counters will be reset
+	 *
+	 * @param config the TPU configuration
+	 */
+	public static synchronized void init(final Properties config) {
+
+		clear();
+
+		ttl = TPUUtil.getLongConfigValue(TPUStatics.ENGINE_METADATA_CACHE_TTL_IDENTIFIER, config).orElse(DEFAULT_TTL);
+
+		LOG.info("initialise metadata cache with ttl = '{}' ms", ttl);
+	}
+
+	/**
+	 * delivers the cached value for the given key or retrieves it (in the calling thread) with the given loader
+	 *
+	 * @param key    the cache key (e.g. the request URI)
+	 * @param loader retrieves the value, if it's not cached yet
+	 * @param <T>    the type of the value
+	 * @return the (cached) value
+	 * @throws Exception the failure of the retrieval
+	 */
+	public static <T> T get(final String key, final Callable<T> loader) throws Exception {
+
+		final CacheEntry newEntry = new CacheEntry();
+		final CacheEntry entry = lookup(key, newEntry);
+
+		if (entry == newEntry) {
+
+			try {
+
+				final T value = loader.call();
+
+				newEntry.future.complete(value);
+
+				return value;
+			} catch (final Throwable e) {
+
+				// note: also errors (e.g. OutOfMemoryError), so that waiting threads won't wait forever
+				CACHE.remove(key, newEntry);
+				newEntry.future.completeExceptionally(e);
+
+				throw e;
+			}
+		}
+
+		try {
+
+			return getValue(entry);
+		} catch (final CompletionException e) {
+
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof Exception) {
+
+				throw (Exception) cause;
+			}
+
+			if (cause instanceof Error) {
+
+				throw (Error) cause;
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * delivers the cached value for the given key or retrieves it with the given (asynchronous) loader
+	 *
+	 * @param key    the cache key (e.g. the request URI)
+	 * @param loader retrieves the value, if it's not cached yet
+	 * @param <T>    the type of the value
+	 * @return a future of the (cached) value
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompletableFuture<T> getAsync(final String key, final Supplier<CompletableFuture<T>> loader) {
+
+		final CacheEntry newEntry = new CacheEntry();
+		final CacheEntry entry = lookup(key, newEntry);
+
+		if (entry == newEntry) {
+
+			final CompletableFuture<T> loadingFuture;
+
+			try {
+
+				loadingFuture = loader.get();
+			} catch (final Throwable e) {
+
+				CACHE.remove(key, newEntry);
+				newEntry.future.completeExceptionally(e);
+
+				throw e;
+			}
+
+			loadingFuture.whenComplete((value, throwable) -> {
+
+				if (throwable != null) {
+
+					CACHE.remove(key, newEntry);
+					newEntry.future.completeExceptionally(throwable);
+				} else {
+
+					newEntry.future.complete(value);
+				}
+			});
+		}
+
+		return (CompletableFuture<T>) (CompletableFuture<?>) entry.future;
+	}
+
+	/**
+	 * @return the current statistics of the cache (entries, hits, misses)
+	 */
+	public static String getStatistics() {
+
+		return String.format("entries = %d, hits = %d, misses = %d", CACHE.size(), HITS.get(), MISSES.get());
+	}
+
+	/**
+	 * removes all entries and resets the counters
+	 */
+	public static void clear() {
+
+		CACHE.clear();
+		HITS.set(0);
+		MISSES.set(0);
+	}
+
+	private static CacheEntry lookup(final String key, final CacheEntry newEntry) {
+
+		final long now = System.currentTimeMillis();
+		final CacheEntry entry = CACHE.compute(key, (k, existingEntry) -> {
+
+			if (existingEntry == null || existingEntry.isExpired(now)) {
+
+				return newEntry;
+			}
+
+			return existingEntry;
+		});
+
+		if (entry == newEntry) {
+
+			MISSES.incrementAndGet();
+
+			LOG.debug("metadata cache miss for '{}'", key);
+		} else {
+
+			HITS.incrementAndGet();
+
+			LOG.debug("metadata cache hit for '{}'", key);
+		}
+
+		return entry;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getValue(final CacheEntry entry) {
+
+		return (T) entry.future.join();
+	}
+
+	private static final class CacheEntry {
+
+		private final CompletableFuture<Object> future  = new CompletableFuture<>();
+		private final long                      created = System.currentTimeMillis();
+
+		private boolean isExpired(final long now) {
+
+			// note: in-flight retrievals never expire
+			return ttl > 0 && future.isDone() && now - created > ttl;
+		}
+	}
+}
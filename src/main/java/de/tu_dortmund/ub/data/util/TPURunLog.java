@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the results of the TPU tasks of a run in completion order, whereby only a bounded window of pending results is kept, i.e., the
+ * submitting thread waits for the next completed result, if the window is full. Each result is written to the log (and, optionally, to a run log
+ * file (engine.run_log)) as soon as it's available, instead of accumulating all results in memory.<br/>
+ * As before, a failed TPU task doesn't stop the others (its failure will be logged immediately); the failure of the first failed TPU task will be
+ * thrown at the end of the run. With engine.fail_fast=true, the first failure aborts the run, i.e., no further TPU tasks should be submitted (see
+ * {@link #isAborted()}) and the TPU tasks of a pool that haven't been started yet will be skipped (TPU tasks that are already running will be
+ * finished, incl. their clean-up; {@link #finish()} waits for them).
+ *
+ * @author tgaengler
+ */
+public final class TPURunLog implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TPURunLog.class);
+
+	private final String                        serviceName;
+	private final int                           window;
+	private final Optional<BufferedWriter>      optionalWriter;
+	private final boolean                       failFast;
+	// note: will only be accessed by the submitting thread
+	private final Set<Future<String>>           pendingResults   = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final BlockingQueue<Future<String>> completedResults = new LinkedBlockingQueue<>();
+
+	private ExecutionException firstFailure;
+	private long               succeeded;
+	private long               failed;
+	private long               cancelled;
+	private volatile boolean   aborted;
+
+	private TPURunLog(final String serviceName, final int window, final Optional<BufferedWriter> optionalWriter, final boolean failFast) {
+
+		this.serviceName = serviceName;
+		this.window = window;
+		this.optionalWriter = optionalWriter;
+		this.failFast = failFast;
+	}
+
+	/**
+	 * @param config      the TPU configuration
+	 * @param serviceName the name of the TPU service
+	 * @param window      the max. number of pending results
+	 * @return a new run log
+	 * @throws IOException
+	 */
+	public static TPURunLog open(final Properties config, final String serviceName, final int window) throws IOException {
+
+		final boolean failFast = TPUUtil.getBooleanConfigValue(TPUStatics.ENGINE_FAIL_FAST_IDENTIFIER, config).orElse(Boolean.FALSE);
+		final Optional<String> optionalRunLogFile = TPUUtil.getStringConfigValue(TPUStatics.ENGINE_RUN_LOG_IDENTIFIER, config);
+
+		if (!optionalRunLogFile.isPresent()) {
+
+			return new TPURunLog(serviceName, window, Optional.empty(), failFast);
+		}
+
+		LOG.info("[{}] write TPU task results to run log '{}'", serviceName, optionalRunLogFile.get());
+
+		final BufferedWriter writer = Files.newBufferedWriter(Paths.get(optionalRunLogFile.get()), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+
+		return new TPURunLog(serviceName, window, Optional.of(writer), failFast);
+	}
+
+	/**
+	 * @param executor the pool that should execute the TPU tasks
+	 * @return a completion service that reports the results of the TPU tasks (submitted via this completion service) to this run log; TPU tasks
+	 * that will be started after the run was aborted will be skipped
+	 */
+	public CompletionService<String> newCompletionService(final Executor executor) {
+
+		final ExecutorCompletionService<String> completionService = new ExecutorCompletionService<>(executor, completedResults);
+
+		return new CompletionService<String>() {
+
+			@Override
+			public Future<String> submit(final Callable<String> task) {
+
+				return completionService.submit(skipIfAborted(task));
+			}
+
+			@Override
+			public Future<String> submit(final Runnable task, final String result) {
+
+				return completionService.submit(skipIfAborted(Executors.callable(task, result)));
+			}
+
+			@Override
+			public Future<String> take() throws InterruptedException {
+
+				return completionService.take();
+			}
+
+			@Override
+			public Future<String> poll() {
+
+				return completionService.poll();
+			}
+
+			@Override
+			public Future<String> poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+
+				return completionService.poll(timeout, unit);
+			}
+		};
+	}
+
+	/**
+	 * adds the result of the next TPU task; waits for the next completed result, if the window of pending results is full
+	 *
+	 * @param result the (future) result of a TPU task, i.e., a result of a completion service of this run log or a {@link CompletableFuture}
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public void add(final Future<String> result) throws InterruptedException, IOException {
+
+		pendingResults.add(result);
+
+		if (result instanceof CompletableFuture) {
+
+			((CompletableFuture<String>) result).whenComplete((message, throwable) -> completedResults.add(result));
+		}
+
+		// report the results that are already available
+		Future<String> completedResult;
+
+		while ((completedResult = completedResults.poll()) != null) {
+
+			collect(completedResult);
+		}
+
+		while (pendingResults.size() > window) {
+
+			collect(completedResults.take());
+		}
+	}
+
+	/**
+	 * waits for all pending results
+	 *
+	 * @return a summary of the run
+	 * @throws ExecutionException the failure of the first failed TPU task
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public String finish() throws ExecutionException, InterruptedException, IOException {
+
+		while (!pendingResults.isEmpty()) {
+
+			collect(completedResults.take());
+		}
+
+		if (firstFailure != null) {
+
+			if (aborted) {
+
+				LOG.error("[{}] TPU run aborted after first failure; '{}' TPU tasks succeeded, '{}' failed, '{}' cancelled", serviceName, succeeded,
+						failed, cancelled);
+			}
+
+			throw firstFailure;
+		}
+
+		return String.format("[%s] '%d' TPU tasks executed successfully", serviceName, succeeded);
+	}
+
+	/**
+	 * @return true, if the run was aborted after the first failure (engine.fail_fast), i.e., no further TPU tasks should be submitted
+	 */
+	public boolean isAborted() {
+
+		return aborted;
+	}
+
+	/**
+	 * @return the number of successfully executed TPU tasks so far
+	 */
+	public long getSucceeded() {
+
+		return succeeded;
+	}
+
+	/**
+	 * @return the number of failed TPU tasks so far
+	 */
+	public long getFailed() {
+
+		return failed;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (optionalWriter.isPresent()) {
+
+			optionalWriter.get().close();
+		}
+	}
+
+	private void collect(final Future<String> result) throws InterruptedException, IOException {
+
+		if (!pendingResults.remove(result)) {
+
+			// e.g. reported twice
+			return;
+		}
+
+		try {
+
+			final String message = result.get();
+
+			succeeded++;
+
+			LOG.info(message);
+
+			write(message);
+		} catch (final ExecutionException e) {
+
+			if (e.getCause() instanceof CancellationException) {
+
+				// skipped after the run was aborted
+				cancelled++;
+
+				return;
+			}
+
+			failed++;
+
+			final String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+
+			LOG.error("[{}] {}", serviceName, message, e.getCause());
+
+			write("FAILED: " + message);
+
+			if (firstFailure == null) {
+
+				firstFailure = e;
+
+				if (failFast) {
+
+					abort();
+				}
+			}
+		}
+	}
+
+	private void abort() {
+
+		aborted = true;
+
+		LOG.error("[{}] fail fast: abort TPU run after first failure; skip the pending TPU tasks that haven't been started yet ('{}' pending)",
+				serviceName, pendingResults.size());
+	}
+
+	/**
+	 * note: a TPU task is never interrupted or cancelled while it's running (i.e. its clean-up will always be executed and it always reports its
+	 * result); TPU tasks of the non-blocking flows ({@link CompletableFuture}s) will be finished, since their clean-up is part of their flow
+	 *
+	 * @param task a TPU task that won't be submitted via a completion service of this run log, e.g., a chunk TPU task, whose result will be
+	 *             reported by the TPU task of its source file
+	 * @return the given TPU task, which will be skipped (with a {@link CancellationException}), if it will be started after the run was aborted
+	 */
+	public Callable<String> skipIfAborted(final Callable<String> task) {
+
+		return () -> {
+
+			if (aborted) {
+
+				throw new CancellationException("TPU run was aborted");
+			}
+
+			try {
+
+				return task.call();
+			} catch (final Exception e) {
+
+				if (failFast) {
+
+					// skip the waiting TPU tasks right away (i.e. not only after the failure was collected)
+					aborted = true;
+				}
+
+				throw e;
+			}
+		};
+	}
+
+	private void write(final String message) throws IOException {
+
+		if (!optionalWriter.isPresent()) {
+
+			return;
+		}
+
+		final BufferedWriter writer = optionalWriter.get();
+
+		writer.write(message);
+		writer.newLine();
+		writer.flush();
+	}
+}
@@ -20,30 +20,41 @@ import de.tu_dortmund.ub.data.dswarm.APIStatics;
 import de.tu_dortmund.ub.data.dswarm.DswarmBackendStatics;
 import de.tu_dortmund.ub.data.dswarm.Init;
 import de.tu_dortmund.ub.data.dswarm.TPUStatics;
-import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Consts;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
+import javax.json.stream.JsonParser;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.zip.Deflater;
 
 /**
  * @author tgaengler
@@ -52,14 +63,21 @@ public final class TPUUtil {
 
 	private static final Logger LOG = LoggerFactory.getLogger(TPUUtil.class);
 
-	public static final String EXPORT_FILE_NAME_PREFIX = "export-of-";
-	public static final String DOT                     = ".";
-	public static final String UTF_8                   = "UTF-8";
-	public static final String MAINTAIN_ENDPOINT       = "maintain";
-	public static final String SCHEMA_INDICES_ENDPOINT = "schemaindices";
-	public static final String TEXT_PLAIN_MIMETYPE     = "text/plain";
-	public static final int    MAX_BUFFER_LENGTH       = 10000;
-	public static final String ERROR_MESSAGE_START     = "{\"error\":{\"message";
+	public static final String EXPORT_FILE_NAME_PREFIX  = "export-of-";
+	public static final String DOT                      = ".";
+	public static final String UTF_8                    = "UTF-8";
+	public static final String MAINTAIN_ENDPOINT        = "maintain";
+	public static final String SCHEMA_INDICES_ENDPOINT  = "schemaindices";
+	public static final String TEXT_PLAIN_MIMETYPE      = "text/plain";
+	public static final int    MAX_BUFFER_LENGTH        = 10000;
+	// max. number of characters of an error response body that will be read (e.g. for the error message of an exception)
+	public static final int    MAX_ERROR_MESSAGE_LENGTH = 65536;
+	public static final String ERROR_MESSAGE_START      = "{\"error\":{\"message";
+	public static final String GZIP_FILE_ENDING         = ".gz";
+
+	private static final String HASH_ALGORITHM     = "SHA-256";
+	private static final int    DIGEST_BUFFER_SIZE = 1024 * 1024;
+	private static final int    WRITE_BUFFER_SIZE  = 1024 * 1024;
 
 	public static Optional<Boolean> getBooleanConfigValue(final String configKey, final Properties config) {
 
@@ -95,6 +113,40 @@ public final class TPUUtil {
 		return optionalConfigValue;
 	}
 
+	public static Optional<Integer> getIntegerConfigValue(final String configKey, final Properties config) {
+
+		final String configValue = config.getProperty(configKey);
+
+		final Optional<Integer> optionalConfigValue;
+
+		if (configValue != null && !configValue.trim().isEmpty()) {
+
+			optionalConfigValue = Optional.of(Integer.valueOf(configValue.trim()));
+		} else {
+
+			optionalConfigValue = Optional.empty();
+		}
+
+		return optionalConfigValue;
+	}
+
+	public static Optional<Long> getLongConfigValue(final String configKey, final Properties config) {
+
+		final String configValue = config.getProperty(configKey);
+
+		final Optional<Long> optionalConfigValue;
+
+		if (configValue != null && !configValue.trim().isEmpty()) {
+
+			optionalConfigValue = Optional.of(Long.valueOf(configValue.trim()));
+		} else {
+
+			optionalConfigValue = Optional.empty();
+		}
+
+		return optionalConfigValue;
+	}
+
 	public static String writeResultToFile(final CloseableHttpResponse httpResponse,
 	                                       final Properties config,
 	                                       final String exportDataModelID,
@@ -110,26 +162,13 @@ public final class TPUUtil {
 
 		if (persistInFolder) {
 
-			final InputStream responseStream = entity.getContent();
-			final BufferedInputStream bis = new BufferedInputStream(responseStream, 1024);
-
-			final String resultsFolder = config.getProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER);
-			fileName = resultsFolder + File.separatorChar + EXPORT_FILE_NAME_PREFIX + exportDataModelID + DOT + fileEnding;
+			fileName = getResultFileName(config, exportDataModelID, fileEnding);
 
 			LOG.info(String.format("start writing result to file '%s'", fileName));
 
-			final FileOutputStream outputStream = new FileOutputStream(fileName);
-			final BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream);
+			final long bytes = writeEntityToFile(entity, Paths.get(fileName), getResultsCompressionLevel(config));
 
-			IOUtils.copy(bis, bufferedOutputStream);
-			bufferedOutputStream.flush();
-			outputStream.flush();
-			bis.close();
-			responseStream.close();
-			bufferedOutputStream.close();
-			outputStream.close();
-
-			checkResultForError(fileName);
+			LOG.info(String.format("finished writing result ('%d' bytes) to file '%s'", bytes, fileName));
 		} else {
 
 			fileName = "[no file name available]";
@@ -140,39 +179,148 @@ public final class TPUUtil {
 		return fileName;
 	}
 
-	private static void checkResultForError(final String fileName) throws IOException, TPUException {
+	static long writeEntityToFile(final HttpEntity entity, final Path resultFile) throws IOException, TPUException {
 
-		final Path filePath = Paths.get(fileName);
-		final char[] buffer = new char[MAX_BUFFER_LENGTH];
-		BufferedReader bufferedReader = Files.newBufferedReader(filePath, Charsets.UTF_8);
-		final int readCharacters = bufferedReader.read(buffer, 0, MAX_BUFFER_LENGTH);
+		return writeEntityToFile(entity, resultFile, Optional.empty());
+	}
 
-		if (readCharacters <= -1) {
+	/**
+	 * writes the content of the given entity into the given file, whereby the first bytes will be checked for an error message while writing (see
+	 * {@link ResultErrorDetector}); the content will be written via a large buffer
+	 *
+	 * @param entity                   the (result) entity
+	 * @param resultFile               the result file
+	 * @param optionalCompressionLevel the gzip compression level, if the content should be compressed (see {@link AsyncGzipOutputStream})
+	 * @return the number of written (uncompressed) bytes
+	 * @throws IOException
+	 * @throws TPUException if the content is an error message
+	 */
+	static long writeEntityToFile(final HttpEntity entity, final Path resultFile, final Optional<Integer> optionalCompressionLevel)
+			throws IOException, TPUException {
 
-			LOG.debug("couldn't check file for errors; no file content in file '{}'", fileName);
+		final ResultErrorDetector errorDetector = new ResultErrorDetector();
+		final byte[] buffer = new byte[WRITE_BUFFER_SIZE];
 
-			bufferedReader.close();
+		if (optionalCompressionLevel.isPresent()) {
 
-			return;
+			// the error check happens on the uncompressed content; the compression will be done by a separate thread
+			long written = 0;
+
+			try (final InputStream responseStream = entity.getContent();
+			     final OutputStream outputStream = new AsyncGzipOutputStream(Files.newOutputStream(resultFile),
+					     optionalCompressionLevel.get())) {
+
+				int read;
+
+				while ((read = responseStream.read(buffer)) != -1) {
+
+					errorDetector.update(buffer, 0, read);
+					outputStream.write(buffer, 0, read);
+
+					written += read;
+				}
+			}
+
+			errorDetector.check();
+
+			return written;
+		}
+
+		long position = 0;
+
+		try (final InputStream responseStream = entity.getContent();
+		     final FileChannel fileChannel = FileChannel
+				     .open(resultFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			int read;
+
+			while ((read = responseStream.read(buffer)) != -1) {
+
+				errorDetector.update(buffer, 0, read);
+				position = write(fileChannel, buffer, read, position);
+			}
+		}
+
+		errorDetector.check();
+
+		return position;
+	}
+
+	private static long write(final FileChannel fileChannel, final byte[] buffer, final int length, final long position) throws IOException {
+
+		final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+
+		long newPosition = position;
+
+		while (byteBuffer.hasRemaining()) {
+
+			newPosition += fileChannel.write(byteBuffer, newPosition);
+		}
+
+		return newPosition;
+	}
+
+	public static String getResultFileName(final Properties config, final String exportDataModelID, final String fileEnding) {
+
+		final String resultsFolder = config.getProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER);
+		final String compressionFileEnding = getResultsCompressionLevel(config).isPresent() ? GZIP_FILE_ENDING : "";
+
+		return resultsFolder + File.separatorChar + EXPORT_FILE_NAME_PREFIX + exportDataModelID + DOT + fileEnding + compressionFileEnding;
+	}
+
+	/**
+	 * determines, whether the results should be compressed (see {@link TPUStatics#RESULTS_COMPRESSION_IDENTIFIER}); currently, only gzip is
+	 * supported
+	 *
+	 * @param config the configuration
+	 * @return the gzip compression level (1 - 9 or -1 for the default level), if the results should be compressed
+	 */
+	public static Optional<Integer> getResultsCompressionLevel(final Properties config) {
+
+		final String compression = getStringConfigValue(TPUStatics.RESULTS_COMPRESSION_IDENTIFIER, config)
+				.orElse(TPUStatics.NO_RESULTS_COMPRESSION).trim().toLowerCase(Locale.ENGLISH);
+
+		if (TPUStatics.NO_RESULTS_COMPRESSION.equals(compression)) {
+
+			return Optional.empty();
+		}
+
+		if (!TPUStatics.GZIP_RESULTS_COMPRESSION.equals(compression)) {
+
+			LOG.warn("unsupported results compression '{}'; results won't be compressed", compression);
+
+			return Optional.empty();
 		}
 
-		final String bufferString = String.valueOf(buffer);
+		final int level = getIntegerConfigValue(TPUStatics.RESULTS_COMPRESSION_LEVEL_IDENTIFIER, config).orElse(Deflater.DEFAULT_COMPRESSION);
 
-		if (bufferString.startsWith(ERROR_MESSAGE_START)) {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
 
-			bufferedReader.close();
+			LOG.warn("unsupported results compression level '{}'; the default level will be utilised", level);
 
-			throw new TPUException(bufferString);
+			return Optional.of(Deflater.DEFAULT_COMPRESSION);
 		}
+
+		return Optional.of(level);
 	}
 
 	public static JsonObject doInit(final String resourceWatchFolder, final String initResourceFileName, final String serviceName,
-			final Integer engineThreads, final Properties config, final int cnt)
+			final Properties config, final int cnt)
+			throws Exception {
+
+		return doInit(resourceWatchFolder, initResourceFileName, Optional.empty(), serviceName, config, cnt);
+	}
+
+	/**
+	 * @param optionalPreparedInputResourceFile the input data resource file, if it was already prepared (e.g. enhanced) before
+	 */
+	public static JsonObject doInit(final String resourceWatchFolder, final String initResourceFileName,
+			final Optional<String> optionalPreparedInputResourceFile, final String serviceName, final Properties config, final int cnt)
 			throws Exception {
 
 		final String initResourceFile = resourceWatchFolder + File.separatorChar + initResourceFileName;
 
-		final String initResultJSONString = TPUUtil.executeInit(initResourceFile, serviceName, engineThreads, config, cnt);
+		final String initResultJSONString = TPUUtil.executeInit(initResourceFile, optionalPreparedInputResourceFile, serviceName, config, cnt);
 
 		if (initResultJSONString == null) {
 
@@ -183,8 +331,7 @@ public final class TPUUtil {
 			throw new Exception(message);
 		}
 
-		final JsonReader initResultJsonReader = Json.createReader(IOUtils.toInputStream(initResultJSONString, UTF_8));
-		final JsonObject initResultJSON = initResultJsonReader.readObject();
+		final JsonObject initResultJSON = getJsonObject(initResultJSONString);
 
 		if (initResultJSON == null) {
 
@@ -198,108 +345,400 @@ public final class TPUUtil {
 		return initResultJSON;
 	}
 
-	public static String executeInit(final String initResourceFile, final String serviceName, final Integer engineThreads, final Properties config,
-			final int cnt)
+	/**
+	 * executes the init task in the calling thread (the calling thread is usually already a worker of the TPU engine, so that there is no need for
+	 * an extra thread pool per init task)
+	 */
+	public static String executeInit(final String initResourceFile, final Optional<String> optionalPreparedInputResourceFile,
+			final String serviceName, final Properties config, final int cnt)
 			throws Exception {
 
-		// create job
-		final Callable<String> initTask = new Init(initResourceFile, config, cnt);
+		final Init initTask = new Init(initResourceFile, optionalPreparedInputResourceFile, config, cnt);
 
-		// work on jobs
-		final ThreadPoolExecutor pool = new ThreadPoolExecutor(engineThreads, engineThreads, 0L, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<>());
+		try {
+
+			final String initResult = initTask.call();
+
+			final String message1 = String.format("[%s][%d] initResult = '%s'", serviceName, cnt, initResult);
+
+			LOG.info(message1);
+
+			return initResult;
+		} catch (final Exception e) {
+
+			LOG.error("[{}][{}] something went wrong at init part execution", serviceName, cnt, e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * inits schema indices or ensures that they are there<br/>
+	 * this (idempotent) maintenance call will only be executed once per TPU run and graph endpoint, i.e., concurrent callers wait for the same
+	 * initialisation; set engine.dswarm.graph.schema_indices.force_refresh=true to execute it on every call
+	 *
+	 * @param serviceName
+	 * @throws Exception
+	 */
+	public static String initSchemaIndices(final String serviceName, final Properties config) throws Exception {
+
+		final String uri = getSchemaIndicesURI(config);
+
+		if (forceSchemaIndicesRefresh(config)) {
+
+			return executeSchemaIndicesInitialisation(uri, serviceName);
+		}
+
+		return TPUMetadataCache.get(uri, () -> executeSchemaIndicesInitialisation(uri, serviceName));
+	}
+
+	public static String getSchemaIndicesURI(final Properties config) {
+
+		final String engineDswarmGraphAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_GRAPH_API_IDENTIFIER);
+
+		return engineDswarmGraphAPI + MAINTAIN_ENDPOINT + APIStatics.SLASH + SCHEMA_INDICES_ENDPOINT;
+	}
+
+	public static boolean forceSchemaIndicesRefresh(final Properties config) {
+
+		return getBooleanConfigValue(TPUStatics.ENGINE_DSWARM_GRAPH_SCHEMA_INDICES_FORCE_REFRESH_IDENTIFIER, config).orElse(Boolean.FALSE);
+	}
+
+	private static String executeSchemaIndicesInitialisation(final String uri, final String serviceName) throws Exception {
+
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
+
+		final HttpPost httpPost = new HttpPost(uri);
+		final StringEntity reqEntity = new StringEntity("", ContentType.create(TEXT_PLAIN_MIMETYPE, Consts.UTF_8));
+
+		httpPost.setEntity(reqEntity);
+
+		LOG.info(String.format("[%s] request : '%s'", serviceName, httpPost.getRequestLine()));
+
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+			final String message = String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine()
+					.getReasonPhrase());
+
+			switch (statusCode) {
+
+				case 200: {
+
+					final String response = TPUUtil.getResponseMessage(httpResponse);
+
+					LOG.info(message);
+
+					LOG.info(String.format("[%s] response : '%s'", serviceName, response));
+
+					return response;
+				}
+				default: {
+
+					final String response = TPUUtil.getErrorMessage(httpResponse);
+
+					LOG.error(message);
+
+					throw new Exception("something went wrong at schema indices initialisation: " + message + " " + response);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param resourceWatchFolder the resource watch folder
+	 * @param watchFolderFile     the source file (in the resource watch folder)
+	 * @return the size of the source file in bytes or 0, if it couldn't be determined
+	 */
+	public static long determineFileSize(final String resourceWatchFolder, final String watchFolderFile) {
 
 		try {
 
-			final List<Callable<String>> tasks = new LinkedList<>();
-			tasks.add(initTask);
+			return Files.size(Paths.get(resourceWatchFolder, watchFolderFile));
+		} catch (final IOException e) {
 
-			final List<Future<String>> futureList = pool.invokeAll(tasks);
-			final Iterator<Future<String>> iterator = futureList.iterator();
+			LOG.debug("couldn't determine size of source file '{}'", watchFolderFile, e);
 
-			if (iterator.hasNext()) {
+			return 0;
+		}
+	}
 
-				final Future<String> f = iterator.next();
+	/**
+	 * @param file the file
+	 * @return the (hex-encoded) SHA-256 digest of the content of the given file
+	 * @throws IOException
+	 */
+	public static String digest(final Path file) throws IOException {
 
-				final String initResult = f.get();
+		final MessageDigest messageDigest = createMessageDigest();
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE);
 
-				final String message1 = String.format("[%s][%d] initResult = '%s'", serviceName, cnt, initResult);
+		try (final FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
 
-				LOG.info(message1);
+			while (fileChannel.read(buffer) != -1) {
 
-				return initResult;
+				buffer.flip();
+				messageDigest.update(buffer);
+				buffer.clear();
 			}
+		}
 
-		} catch (final Exception e) {
+		return toHex(messageDigest.digest());
+	}
 
-			LOG.error("[{]][{}] something went wrong at init part execution", serviceName, cnt, e);
+	public static MessageDigest createMessageDigest() {
 
-			throw e;
+		try {
+
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (final NoSuchAlgorithmException e) {
+
+			// SHA-256 is available at every JVM
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String toHex(final byte[] digest) {
+
+		final StringBuilder sb = new StringBuilder();
+
+		for (final byte b : digest) {
+
+			sb.append(String.format("%02x", b));
+		}
+
+		return sb.toString();
+	}
+
+	public static JsonObject getJsonObject(final String jsonString) throws IOException {
+
+		final JsonReader jsonReader = Json.createReader(new StringReader(jsonString));
+		final JsonObject jsonObject = jsonReader.readObject();
+
+		jsonReader.close();
+
+		return jsonObject;
+	}
+
+	/**
+	 * parses the JSON object directly from the content of the given (response) entity, i.e., the content won't be copied into a string before;
+	 * the entity will be consumed afterwards
+	 *
+	 * @param httpEntity the (response) entity
+	 * @return the JSON object or null, if the entity is empty
+	 * @throws IOException
+	 */
+	public static JsonObject getJsonObject(final HttpEntity httpEntity) throws IOException {
+
+		if (httpEntity == null) {
+
+			return null;
+		}
+
+		try (final JsonReader jsonReader = Json.createReader(new InputStreamReader(httpEntity.getContent(), getCharset(httpEntity)))) {
+
+			return jsonReader.readObject();
+		} catch (final JsonException e) {
+
+			throw new IOException("couldn't parse JSON response", e);
 		} finally {
 
-			pool.shutdown();
+			EntityUtils.consumeQuietly(httpEntity);
 		}
+	}
+
+	private static Charset getCharset(final HttpEntity httpEntity) {
 
-		return null;
+		final Charset charset = ContentType.getOrDefault(httpEntity).getCharset();
+
+		return charset != null ? charset : StandardCharsets.UTF_8;
 	}
 
 	/**
-	 * inits schema indices or ensures that they are there
+	 * extracts an array of a top-level field of a JSON object while parsing it (streaming), i.e., only the array will be built (all other values
+	 * will be skipped); parsing stops after the array
 	 *
-	 * @param serviceName
-	 * @throws Exception
+	 * @param reader    the JSON object
+	 * @param fieldName the name of the top-level field
+	 * @return the array or nothing, if the JSON object has no such field (or the field isn't an array)
+	 * @throws IOException
 	 */
-	public static String initSchemaIndices(final String serviceName, final Properties config) throws Exception {
+	public static Optional<JsonArray> readJsonArray(final Reader reader, final String fieldName) throws IOException {
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		try (final JsonParser parser = Json.createParser(reader)) {
 
-			final String engineDswarmGraphAPI = config.getProperty(TPUStatics.ENGINE_DSWARM_GRAPH_API_IDENTIFIER);
+			if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT) {
 
-			final HttpPost httpPost = new HttpPost(engineDswarmGraphAPI + MAINTAIN_ENDPOINT + APIStatics.SLASH + SCHEMA_INDICES_ENDPOINT);
-			final StringEntity reqEntity = new StringEntity("", ContentType.create(TEXT_PLAIN_MIMETYPE, Consts.UTF_8));
+				throw new IOException("JSON object expected");
+			}
 
-			httpPost.setEntity(reqEntity);
+			int depth = 1;
 
-			LOG.info(String.format("[%s] request : '%s'", serviceName, httpPost.getRequestLine()));
+			while (parser.hasNext()) {
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpPost)) {
+				final JsonParser.Event event = parser.next();
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+				switch (event) {
 
-				final String message = String.format("[%s] %d : %s", serviceName, statusCode, httpResponse.getStatusLine()
-						.getReasonPhrase());
+					case KEY_NAME:
 
-				final String response = TPUUtil.getResponseMessage(httpResponse);
+						if (depth == 1 && fieldName.equals(parser.getString())) {
 
-				switch (statusCode) {
+							if (parser.next() != JsonParser.Event.START_ARRAY) {
 
-					case 200: {
+								return Optional.empty();
+							}
 
-						LOG.info(message);
+							return Optional.of(readJsonArray(parser));
+						}
 
-						LOG.info(String.format("[%s] response : '%s'", serviceName, response));
+						break;
+					case START_OBJECT:
+					case START_ARRAY:
 
-						return response;
-					}
-					default: {
+						depth++;
 
-						LOG.error(message);
+						break;
+					case END_OBJECT:
+					case END_ARRAY:
 
-						throw new Exception("something went wrong at schema indices initialisation: " + message + " " + response);
-					}
+						depth--;
+
+						break;
+					default:
+
+						// a value that isn't part of the array
 				}
 			}
+
+			return Optional.empty();
+		} catch (final RuntimeException e) {
+
+			// e.g. JsonParsingException
+			throw new IOException("couldn't parse JSON: " + e.getMessage(), e);
 		}
 	}
 
-	public static JsonObject getJsonObject(final String jsonString) throws IOException {
+	/**
+	 * builds the array that was started by the last event of the given parser
+	 */
+	private static JsonArray readJsonArray(final JsonParser parser) {
 
-		final JsonReader jsonReader = Json.createReader(IOUtils.toInputStream(jsonString, APIStatics.UTF_8));
-		final JsonObject jsonObject = jsonReader.readObject();
+		final JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
 
-		jsonReader.close();
+		JsonParser.Event event;
 
-		return jsonObject;
+		while ((event = parser.next()) != JsonParser.Event.END_ARRAY) {
+
+			switch (event) {
+
+				case START_OBJECT:
+
+					arrayBuilder.add(readJsonObject(parser));
+
+					break;
+				case START_ARRAY:
+
+					arrayBuilder.add(readJsonArray(parser));
+
+					break;
+				case VALUE_STRING:
+
+					arrayBuilder.add(parser.getString());
+
+					break;
+				case VALUE_NUMBER:
+
+					if (parser.isIntegralNumber()) {
+
+						arrayBuilder.add(parser.getBigDecimal().toBigInteger());
+					} else {
+
+						arrayBuilder.add(parser.getBigDecimal());
+					}
+
+					break;
+				case VALUE_TRUE:
+
+					arrayBuilder.add(true);
+
+					break;
+				case VALUE_FALSE:
+
+					arrayBuilder.add(false);
+
+					break;
+				default:
+
+					arrayBuilder.addNull();
+			}
+		}
+
+		return arrayBuilder.build();
+	}
+
+	/**
+	 * builds the object that was started by the last event of the given parser
+	 */
+	private static JsonObject readJsonObject(final JsonParser parser) {
+
+		final JsonObjectBuilder objectBuilder = Json.createObjectBuilder();
+
+		JsonParser.Event event;
+
+		while ((event = parser.next()) != JsonParser.Event.END_OBJECT) {
+
+			// note: event is KEY_NAME
+			final String key = parser.getString();
+
+			event = parser.next();
+
+			switch (event) {
+
+				case START_OBJECT:
+
+					objectBuilder.add(key, readJsonObject(parser));
+
+					break;
+				case START_ARRAY:
+
+					objectBuilder.add(key, readJsonArray(parser));
+
+					break;
+				case VALUE_STRING:
+
+					objectBuilder.add(key, parser.getString());
+
+					break;
+				case VALUE_NUMBER:
+
+					if (parser.isIntegralNumber()) {
+
+						objectBuilder.add(key, parser.getBigDecimal().toBigInteger());
+					} else {
+
+						objectBuilder.add(key, parser.getBigDecimal());
+					}
+
+					break;
+				case VALUE_TRUE:
+
+					objectBuilder.add(key, true);
+
+					break;
+				case VALUE_FALSE:
+
+					objectBuilder.add(key, false);
+
+					break;
+				default:
+
+					objectBuilder.addNull(key);
+			}
+		}
+
+		return objectBuilder.build();
 	}
 
 	public static String getResponseMessage(final CloseableHttpResponse httpResponse) throws IOException {
@@ -313,6 +752,44 @@ public final class TPUUtil {
 		return response;
 	}
 
+	/**
+	 * reads at most {@link #MAX_ERROR_MESSAGE_LENGTH} characters of the (error) response body, i.e., a huge error response won't be loaded into
+	 * memory; the remaining content won't be consumed (i.e. the connection will be discarded, when the response will be closed)
+	 *
+	 * @param httpResponse the (error) response
+	 * @return the (truncated) response body
+	 * @throws IOException
+	 */
+	public static String getErrorMessage(final HttpResponse httpResponse) throws IOException {
+
+		final HttpEntity httpEntity = httpResponse.getEntity();
+
+		if (httpEntity == null) {
+
+			return "";
+		}
+
+		final Reader reader = new InputStreamReader(httpEntity.getContent(), getCharset(httpEntity));
+		final char[] buffer = new char[MAX_ERROR_MESSAGE_LENGTH];
+
+		int length = 0;
+		int read;
+
+		while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) != -1) {
+
+			length += read;
+		}
+
+		if (length == buffer.length && reader.read() != -1) {
+
+			return String.valueOf(buffer, 0, length) + "... (truncated after " + MAX_ERROR_MESSAGE_LENGTH + " characters)";
+		}
+
+		reader.close();
+
+		return String.valueOf(buffer, 0, length);
+	}
+
 	public static String getResponseMessage(final HttpEntity httpEntity) throws IOException {
 
 		final StringWriter writer = new StringWriter();
@@ -367,33 +844,32 @@ public final class TPUUtil {
 
 		LOG.debug("try to clean-up metadata repository from temp {}: id = '{}'", objectType, objectId);
 
-		try (final CloseableHttpClient httpclient = HttpClients.createDefault()) {
+		final CloseableHttpClient httpclient = TPUHttpClient.getHttpClient();
 
-			final HttpDelete httpDelete = new HttpDelete(engineDswarmAPI + objectType + APIStatics.SLASH + objectId);
+		final HttpDelete httpDelete = new HttpDelete(engineDswarmAPI + objectType + APIStatics.SLASH + objectId);
 
-			LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpDelete.getRequestLine()));
+		LOG.info(String.format("[%s][%d] request : %s", serviceName, cnt, httpDelete.getRequestLine()));
 
-			try (final CloseableHttpResponse httpResponse = httpclient.execute(httpDelete)) {
+		try (final CloseableHttpResponse httpResponse = httpclient.execute(httpDelete)) {
 
-				final int statusCode = httpResponse.getStatusLine().getStatusCode();
+			final int statusCode = httpResponse.getStatusLine().getStatusCode();
 
-				final String message = String
-						.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase());
+			final String message = String
+					.format("[%s][%d] %d : %s", serviceName, cnt, statusCode, httpResponse.getStatusLine().getReasonPhrase());
 
-				switch (statusCode) {
+			switch (statusCode) {
 
-					case 204: {
+				case 204: {
 
-						LOG.info(message);
+					LOG.info(message);
 
-						LOG.debug("finished cleaning-up metadata repository from temp {}: id = '{}'", objectType, objectId);
+					LOG.debug("finished cleaning-up metadata repository from temp {}: id = '{}'", objectType, objectId);
 
-						return;
-					}
-					default: {
+					return;
+				}
+				default: {
 
-						LOG.error("something went wrong at metadata repository clean-up: {}", message);
-					}
+					LOG.error("something went wrong at metadata repository clean-up: {}", message);
 				}
 			}
 		}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonWriter;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * A task (request) entity that will be written directly to the connection, which can be utilised by blocking and non-blocking HTTP clients.
+ * The parts of the task JSON that are identical for all TPU tasks of a run (mappings, output data model, skip filter etc.) are serialised only once
+ * per run (see {@link Template}); only the job UUID and the input data model are serialised per TPU task.
+ *
+ * @author tgaengler
+ */
+public class TaskRequestEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+	private final Template   template;
+	private final JsonObject inputDataModel;
+	private final byte[]     jobUUID;
+
+	private ByteBuffer[] buffers;
+	private int          bufferIndex;
+
+	/**
+	 * @param template       the pre-serialised task JSON of the run
+	 * @param inputDataModel the input data model of the TPU task
+	 */
+	public TaskRequestEntity(final Template template, final JsonObject inputDataModel) {
+
+		this.template = template;
+		this.inputDataModel = inputDataModel;
+
+		// note: the job UUID is fixed per entity, i.e., a retried request will be the same
+		jobUUID = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+		setContentType(ContentType.APPLICATION_JSON.toString());
+		setChunked(true);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+
+		return -1;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+
+		final ByteArrayOutputStream contentStream = new ByteArrayOutputStream();
+
+		writeTo(contentStream);
+
+		return new ByteArrayInputStream(contentStream.toByteArray());
+	}
+
+	@Override
+	public void writeTo(final OutputStream outStream) throws IOException {
+
+		outStream.write(template.head);
+		outStream.write(jobUUID);
+
+		boolean first = true;
+
+		for (final byte[] segment : template.segments) {
+
+			if (!first) {
+
+				writeInputDataModel(outStream);
+			}
+
+			outStream.write(segment);
+
+			first = false;
+		}
+
+		outStream.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+
+		return false;
+	}
+
+	@Override
+	public void produceContent(final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+
+		if (buffers == null) {
+
+			// the input data model will be serialised only once per request (not per template segment)
+			final ByteArrayOutputStream inputDataModelStream = new ByteArrayOutputStream();
+
+			writeInputDataModel(inputDataModelStream);
+
+			final byte[] serialisedInputDataModel = inputDataModelStream.toByteArray();
+			final List<ByteBuffer> bufferList = new ArrayList<>();
+
+			bufferList.add(ByteBuffer.wrap(template.head));
+			bufferList.add(ByteBuffer.wrap(jobUUID));
+
+			boolean first = true;
+
+			for (final byte[] segment : template.segments) {
+
+				if (!first) {
+
+					bufferList.add(ByteBuffer.wrap(serialisedInputDataModel));
+				}
+
+				bufferList.add(ByteBuffer.wrap(segment));
+
+				first = false;
+			}
+
+			buffers = bufferList.toArray(new ByteBuffer[bufferList.size()]);
+			bufferIndex = 0;
+		}
+
+		while (bufferIndex < buffers.length) {
+
+			final ByteBuffer buffer = buffers[bufferIndex];
+
+			encoder.write(buffer);
+
+			if (buffer.hasRemaining()) {
+
+				// wait until the channel is writable again
+				return;
+			}
+
+			bufferIndex++;
+		}
+
+		encoder.complete();
+
+		close();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		buffers = null;
+		bufferIndex = 0;
+	}
+
+	private void writeInputDataModel(final OutputStream outStream) {
+
+		// note: the writer must not close the connection stream
+		try (final JsonWriter jsonWriter = Json.createWriter(new CloseShieldOutputStream(outStream))) {
+
+			jsonWriter.writeObject(inputDataModel);
+		}
+	}
+
+	/**
+	 * The task JSON of a run split at the job UUID and the input data model (incl. the output data model, if it's the same as the input data
+	 * model), i.e., the remaining parts are already serialised.
+	 */
+	public static final class Template {
+
+		private final byte[]       head;
+		private final List<byte[]> segments;
+
+		private Template(final byte[] head, final List<byte[]> segments) {
+
+			this.head = head;
+			this.segments = segments;
+		}
+
+		/**
+		 * @param taskJSON             the task JSON with placeholders for the job UUID and the input data model
+		 * @param jobUUIDMarker        the placeholder of the job UUID (i.e. the job UUID value)
+		 * @param inputDataModelMarker the placeholder of the input data model (i.e. a JSON string value)
+		 * @return the template of the task JSON
+		 */
+		public static Template create(final String taskJSON, final String jobUUIDMarker, final String inputDataModelMarker) {
+
+			final int jobUUIDIndex = taskJSON.indexOf(jobUUIDMarker);
+
+			if (jobUUIDIndex < 0) {
+
+				throw new IllegalArgumentException("couldn't find job UUID placeholder in task JSON");
+			}
+
+			final String quotedInputDataModelMarker = "\"" + inputDataModelMarker + "\"";
+			final List<byte[]> segments = new ArrayList<>();
+
+			int segmentStart = jobUUIDIndex + jobUUIDMarker.length();
+			int markerIndex;
+
+			while ((markerIndex = taskJSON.indexOf(quotedInputDataModelMarker, segmentStart)) >= 0) {
+
+				segments.add(taskJSON.substring(segmentStart, markerIndex).getBytes(StandardCharsets.UTF_8));
+
+				segmentStart = markerIndex + quotedInputDataModelMarker.length();
+			}
+
+			if (segments.isEmpty()) {
+
+				throw new IllegalArgumentException("couldn't find input data model placeholder in task JSON");
+			}
+
+			segments.add(taskJSON.substring(segmentStart).getBytes(StandardCharsets.UTF_8));
+
+			return new Template(taskJSON.substring(0, jobUUIDIndex).getBytes(StandardCharsets.UTF_8), Collections.unmodifiableList(segments));
+		}
+
+		/**
+		 * @return the size of the pre-serialised parts in bytes
+		 */
+		public long size() {
+
+			long size = head.length;
+
+			for (final byte[] segment : segments) {
+
+				size += segment.length;
+			}
+
+			return size;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The file names of a resource watch folder, read via a {@link DirectoryStream}, i.e., without loading the whole folder at once.<br/>
+ * A sorted (or otherwise ordered) watch folder needs to read all file names upfront (but nothing else); an unsorted watch folder delivers the file names lazily (in
+ * directory order) and can only be iterated once.
+ *
+ * @author tgaengler
+ */
+public final class WatchFolder implements Iterable<String>, Closeable {
+
+	private final Optional<List<String>>          optionalSortedFileNames;
+	private final Optional<DirectoryStream<Path>> optionalDirectoryStream;
+
+	private WatchFolder(final Optional<List<String>> optionalSortedFileNames, final Optional<DirectoryStream<Path>> optionalDirectoryStream) {
+
+		this.optionalSortedFileNames = optionalSortedFileNames;
+		this.optionalDirectoryStream = optionalDirectoryStream;
+	}
+
+	/**
+	 * @param resourceWatchFolder the resource watch folder
+	 * @param sorted              true, if the file names should be delivered in (lexicographical) order
+	 * @return the file names of the resource watch folder
+	 * @throws IOException
+	 */
+	public static WatchFolder open(final Path resourceWatchFolder, final boolean sorted) throws IOException {
+
+		if (!sorted) {
+
+			return new WatchFolder(Optional.empty(), Optional.of(Files.newDirectoryStream(resourceWatchFolder)));
+		}
+
+		return open(resourceWatchFolder, Comparator.naturalOrder());
+	}
+
+	/**
+	 * @param resourceWatchFolder the resource watch folder
+	 * @param order               the order in which the file names should be delivered
+	 * @return the file names of the resource watch folder
+	 * @throws IOException
+	 */
+	public static WatchFolder open(final Path resourceWatchFolder, final Comparator<String> order) throws IOException {
+
+		final List<String> fileNames = new ArrayList<>();
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(resourceWatchFolder)) {
+
+			for (final Path path : directoryStream) {
+
+				fileNames.add(path.getFileName().toString());
+			}
+		}
+
+		fileNames.sort(order);
+
+		return new WatchFolder(Optional.of(fileNames), Optional.empty());
+	}
+
+	/**
+	 * @param resourceWatchFolder the resource watch folder
+	 * @return the name of the first file of the resource watch folder (in directory order), if there is any
+	 * @throws IOException
+	 */
+	public static Optional<String> getAnyFileName(final Path resourceWatchFolder) throws IOException {
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(resourceWatchFolder)) {
+
+			final Iterator<Path> iterator = directoryStream.iterator();
+
+			if (!iterator.hasNext()) {
+
+				return Optional.empty();
+			}
+
+			return Optional.of(iterator.next().getFileName().toString());
+		}
+	}
+
+	/**
+	 * @return the number of files, if it's known upfront (i.e. for sorted or otherwise ordered watch folders)
+	 */
+	public Optional<Integer> getSize() {
+
+		return optionalSortedFileNames.map(List::size);
+	}
+
+	/**
+	 * @return all file names of the watch folder (note: this materialises the complete file list)
+	 */
+	public String[] toArray() {
+
+		final List<String> fileNames = new ArrayList<>();
+
+		forEach(fileNames::add);
+
+		return fileNames.toArray(new String[fileNames.size()]);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+
+		if (optionalSortedFileNames.isPresent()) {
+
+			return optionalSortedFileNames.get().iterator();
+		}
+
+		final Iterator<Path> pathIterator = optionalDirectoryStream.get().iterator();
+
+		return new Iterator<String>() {
+
+			@Override
+			public boolean hasNext() {
+
+				return pathIterator.hasNext();
+			}
+
+			@Override
+			public String next() {
+
+				return pathIterator.next().getFileName().toString();
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (optionalDirectoryStream.isPresent()) {
+
+			optionalDirectoryStream.get().close();
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a (huge) XML file into record-aligned chunk files via StAX (i.e. without building a DOM), whereby a chunk contains at most the given
+ * number of records or (approx.) bytes. The ancestor elements of the records (e.g. 'collection' or 'OAI-PMH' + 'ListRecords') will be repeated
+ * in each chunk; content outside of the records will be dropped.<br/>
+ * The chunks will be written lazily, i.e., one chunk per {@link #next()} call.
+ *
+ * @author tgaengler
+ */
+public final class XMLRecordSplitter implements Iterator<Path>, Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(XMLRecordSplitter.class);
+
+	private static final XMLInputFactory  INPUT_FACTORY  = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static final XMLEventFactory  EVENT_FACTORY  = XMLEventFactory.newInstance();
+
+	static {
+
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		OUTPUT_FACTORY.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.TRUE);
+	}
+
+	private final Path           inputFile;
+	private final Path           chunkFolder;
+	private final String         recordTag;
+	private final long           maxRecords;
+	private final long           maxBytes;
+	private final InputStream    inputStream;
+	private final XMLEventReader reader;
+
+	// the (open) ancestor elements of the next record
+	private final Deque<StartElement> ancestors = new ArrayDeque<>();
+
+	private StartElement nextRecordStart;
+	private int          chunkCounter = 0;
+
+	/**
+	 * @param inputFile   the XML file that should be split
+	 * @param chunkFolder the folder for the chunk files
+	 * @param recordTag   the (local) name of the record element
+	 * @param maxRecords  the max. number of records per chunk (<= 0 = unlimited)
+	 * @param maxBytes    the (approx.) max. size of a chunk in bytes (<= 0 = unlimited)
+	 * @throws IOException
+	 */
+	public XMLRecordSplitter(final Path inputFile, final Path chunkFolder, final String recordTag, final long maxRecords, final long maxBytes)
+			throws IOException {
+
+		this.inputFile = inputFile;
+		this.chunkFolder = chunkFolder;
+		this.recordTag = recordTag;
+		this.maxRecords = maxRecords;
+		this.maxBytes = maxBytes;
+
+		inputStream = new BufferedInputStream(Files.newInputStream(inputFile));
+
+		try {
+
+			reader = INPUT_FACTORY.createXMLEventReader(inputStream);
+		} catch (final XMLStreamException e) {
+
+			inputStream.close();
+
+			throw new IOException(String.format("couldn't read XML file '%s'", inputFile), e);
+		}
+	}
+
+	/**
+	 * @return the number of chunks that were written so far
+	 */
+	public int getChunkCount() {
+
+		return chunkCounter;
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		if (nextRecordStart != null) {
+
+			return true;
+		}
+
+		try {
+
+			// move to the start of the next record (and keep track of its ancestors)
+			while (reader.hasNext()) {
+
+				final XMLEvent event = reader.nextEvent();
+
+				if (event.isStartElement()) {
+
+					final StartElement startElement = event.asStartElement();
+
+					if (recordTag.equals(startElement.getName().getLocalPart())) {
+
+						nextRecordStart = startElement;
+
+						return true;
+					}
+
+					ancestors.push(startElement);
+				} else if (event.isEndElement() && !ancestors.isEmpty()) {
+
+					ancestors.pop();
+				}
+			}
+
+			return false;
+		} catch (final XMLStreamException e) {
+
+			throw new IllegalStateException(String.format("couldn't read XML file '%s'", inputFile), e);
+		}
+	}
+
+	@Override
+	public Path next() {
+
+		if (!hasNext()) {
+
+			throw new NoSuchElementException();
+		}
+
+		chunkCounter++;
+
+		final Path chunkFile = chunkFolder.resolve(String.format("%s.chunk-%05d.xml", inputFile.getFileName().toString(), chunkCounter));
+
+		try (final CountingOutputStream countingOutputStream = new CountingOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(chunkFile)))) {
+
+			writeChunk(countingOutputStream);
+		} catch (final IOException | XMLStreamException e) {
+
+			throw new IllegalStateException(String.format("couldn't write chunk '%s' of XML file '%s'", chunkFile, inputFile), e);
+		}
+
+		LOG.debug("wrote chunk '{}' of XML file '{}'", chunkFile, inputFile);
+
+		return chunkFile;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+
+			reader.close();
+		} catch (final XMLStreamException e) {
+
+			LOG.debug("couldn't close XML reader for '{}'", inputFile, e);
+		} finally {
+
+			inputStream.close();
+		}
+	}
+
+	private void writeChunk(final CountingOutputStream outputStream) throws XMLStreamException {
+
+		final XMLEventWriter writer = createXMLEventWriter(outputStream);
+
+		writer.add(EVENT_FACTORY.createStartDocument(StandardCharsets.UTF_8.name(), "1.0"));
+
+		// note: the ancestors of the next record might change while reading further records
+		final List<StartElement> chunkAncestors = new ArrayList<>(ancestors);
+
+		// outermost ancestor first
+		for (int i = chunkAncestors.size() - 1; i >= 0; i--) {
+
+			writer.add(chunkAncestors.get(i));
+		}
+
+		long records = 0;
+
+		// a chunk only contains records with the same ancestors
+		while (hasNext() && chunkAncestors.equals(new ArrayList<>(ancestors))) {
+
+			writeRecord(writer);
+
+			records++;
+
+			writer.flush();
+
+			if ((maxRecords > 0 && records >= maxRecords) || (maxBytes > 0 && outputStream.getByteCount() >= maxBytes)) {
+
+				break;
+			}
+		}
+
+		for (final StartElement ancestor : chunkAncestors) {
+
+			writer.add(EVENT_FACTORY.createEndElement(ancestor.getName(), null));
+		}
+
+		writer.add(EVENT_FACTORY.createEndDocument());
+		writer.flush();
+		writer.close();
+	}
+
+	private void writeRecord(final XMLEventWriter writer) throws XMLStreamException {
+
+		writer.add(nextRecordStart);
+
+		nextRecordStart = null;
+
+		int depth = 1;
+
+		while (depth > 0 && reader.hasNext()) {
+
+			final XMLEvent event = reader.nextEvent();
+
+			if (event.isStartElement()) {
+
+				depth++;
+			} else if (event.isEndElement()) {
+
+				depth--;
+			}
+
+			writer.add(event);
+		}
+	}
+
+	/**
+	 * @param outputStream the output stream
+	 * @return an XML event writer for the given output stream (UTF-8)
+	 * @throws XMLStreamException
+	 */
+	static XMLEventWriter createXMLEventWriter(final OutputStream outputStream) throws XMLStreamException {
+
+		return OUTPUT_FACTORY.createXMLEventWriter(outputStream, StandardCharsets.UTF_8.name());
+	}
+
+	/**
+	 * @param inputStream the input stream
+	 * @return an XML event reader for the given input stream
+	 * @throws XMLStreamException
+	 */
+	static XMLEventReader createXMLEventReader(final InputStream inputStream) throws XMLStreamException {
+
+		return INPUT_FACTORY.createXMLEventReader(inputStream);
+	}
+}
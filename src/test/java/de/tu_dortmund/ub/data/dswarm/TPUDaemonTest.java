@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.tu_dortmund.ub.data.util.TPUHttpClient;
+
+/**
+ * Tests that the TPU task executions of multiple daemon batches, which recycle the same slot (i.e. the same input data model), write to
+ * different result files.
+ *
+ * @author tgaengler
+ */
+public class TPUDaemonTest {
+
+	private static final String SERVICE_NAME          = "TPUDaemonTest";
+	private static final String OUTPUT_DATA_MODEL_ID  = "output-data-model";
+	private static final String EXPORT_FILE_EXTENSION = "xml";
+	private static final long   BATCH_TIMEOUT         = 30;
+
+	// the slot of an earlier TPU task
+	private static final JsonObject SLOT = Json.createObjectBuilder()
+			.add(Init.DATA_MODEL_ID, "slot-data-model")
+			.add(Init.RESOURCE_ID, "slot-resource")
+			.add(Init.CONFIGURATION_ID, "slot-configuration")
+			.build();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private HttpServer      backend;
+	private ExecutorService daemonExecutor;
+	private Path            resourceWatchFolderPath;
+	private Properties      config;
+
+	@Before
+	public void setUp() throws Exception {
+
+		// resource re-uploads + slot clean-ups are always successful
+		backend = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		backend.createContext("/", exchange -> {
+
+			if ("DELETE".equals(exchange.getRequestMethod())) {
+
+				exchange.sendResponseHeaders(204, -1);
+				exchange.close();
+
+				return;
+			}
+
+			final byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+
+			exchange.sendResponseHeaders(200, response.length);
+			exchange.getResponseBody().write(response);
+			exchange.close();
+		});
+		backend.start();
+
+		resourceWatchFolderPath = temporaryFolder.newFolder("watch").toPath();
+
+		final Path configurationFile = temporaryFolder.newFile("configuration.json").toPath();
+		Files.write(configurationFile, "{}".getBytes(StandardCharsets.UTF_8));
+
+		config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER, "http://localhost:" + backend.getAddress().getPort() + "/dmp/");
+		config.setProperty(TPUStatics.INIT_SLOT_POOL_SIZE_IDENTIFIER, "1");
+		config.setProperty(TPUStatics.DO_INITIAL_DATA_MODEL_INGEST_IDENTIFIER, "false");
+		config.setProperty(TPUStatics.ENGINE_DAEMON_DEBOUNCE_IDENTIFIER, "50");
+		config.setProperty(TPUStatics.CONFIGURATION_NAME_IDENTIFIER, configurationFile.toString());
+		config.setProperty(TPUStatics.PERSIST_IN_FOLDER_IDENTIFIER, "true");
+		config.setProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER, temporaryFolder.newFolder("results").toString());
+
+		TPUHttpClient.init(config);
+
+		daemonExecutor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() {
+
+		daemonExecutor.shutdownNow();
+		TPUHttpClient.shutdown();
+		backend.stop(0);
+	}
+
+	@Test
+	public void testResultFileNamesOfRecycledSlotAcrossBatches() throws Exception {
+
+		final BlockingQueue<List<String>> batchResultFileNames = new LinkedBlockingQueue<>();
+		final List<String> slotDataModelIDs = new ArrayList<>();
+
+		// acquires the slot for each file of the batch like a TPU task and determines the result file name of the task execution
+		final TPUDaemon daemon = new TPUDaemon(config, resourceWatchFolderPath, SERVICE_NAME, (watchFolderFiles, optionalSlotPool, taskCounter) -> {
+
+			final TPUSlotPool slotPool = optionalSlotPool.get();
+
+			if (slotDataModelIDs.isEmpty()) {
+
+				slotPool.release(SLOT, 0);
+			}
+
+			final List<String> resultFileNames = new ArrayList<>();
+
+			for (final String watchFolderFile : watchFolderFiles) {
+
+				final int cnt = taskCounter.incrementAndGet();
+				final JsonObject slot = slotPool.acquire(resourceWatchFolderPath.toString(), watchFolderFile, cnt);
+				final String inputDataModelID = slot.getString(Init.DATA_MODEL_ID);
+
+				slotDataModelIDs.add(inputDataModelID);
+				resultFileNames.add(Transform.determineResultFileName(config, inputDataModelID, OUTPUT_DATA_MODEL_ID,
+						Optional.of(EXPORT_FILE_EXTENSION), cnt).get());
+
+				slotPool.release(slot, cnt);
+			}
+
+			batchResultFileNames.add(resultFileNames);
+
+			return "batch of " + watchFolderFiles.size() + " files";
+		});
+
+		final Future<String> daemonRun = daemonExecutor.submit(daemon::run);
+
+		try {
+
+			Files.write(resourceWatchFolderPath.resolve("first.xml"), "<records/>".getBytes(StandardCharsets.UTF_8));
+
+			final List<String> firstBatch = batchResultFileNames.poll(BATCH_TIMEOUT, TimeUnit.SECONDS);
+
+			Assert.assertNotNull("first batch wasn't processed", firstBatch);
+
+			Files.write(resourceWatchFolderPath.resolve("second.xml"), "<records/>".getBytes(StandardCharsets.UTF_8));
+
+			final List<String> secondBatch = batchResultFileNames.poll(BATCH_TIMEOUT, TimeUnit.SECONDS);
+
+			Assert.assertNotNull("second batch wasn't processed", secondBatch);
+
+			Assert.assertEquals(1, firstBatch.size());
+			Assert.assertEquals(1, secondBatch.size());
+
+			// both batches went through the same slot ...
+			Assert.assertEquals(2, slotDataModelIDs.size());
+			Assert.assertEquals(SLOT.getString(Init.DATA_MODEL_ID), slotDataModelIDs.get(0));
+			Assert.assertEquals(slotDataModelIDs.get(0), slotDataModelIDs.get(1));
+
+			// ... but the second result doesn't overwrite the first one
+			Assert.assertNotEquals(firstBatch.get(0), secondBatch.get(0));
+		} finally {
+
+			daemon.stop();
+		}
+
+		Assert.assertNotNull(daemonRun.get(BATCH_TIMEOUT, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that cached enhanced input data resources, which are in use, survive the eviction of their entries.
+ *
+ * @author tgaengler
+ */
+public class TPUEnhancementCacheTest {
+
+	private static final String SERVICE_NAME     = "TPUEnhancementCacheTest";
+	private static final String ENHANCED_CONTENT = "<records><record/></records>";
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path cacheFolder;
+
+	@Before
+	public void setUp() throws Exception {
+
+		cacheFolder = temporaryFolder.newFolder("cache").toPath();
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE_CACHE_IDENTIFIER, cacheFolder.toString());
+		// every new entry evicts all other entries
+		config.setProperty(TPUStatics.ENHANCE_INPUT_DATA_RESOURCE_CACHE_MAX_SIZE_IDENTIFIER, "1");
+
+		TPUEnhancementCache.init(config, SERVICE_NAME);
+	}
+
+	@After
+	public void tearDown() {
+
+		TPUEnhancementCache.close();
+	}
+
+	@Test
+	public void testPinnedEntrySurvivesEviction() throws Exception {
+
+		final Path inputFile1 = createInputFile("input1.xml");
+		final Path inputFile2 = createInputFile("input2.xml");
+
+		final Path pinnedFile1 = put(inputFile1);
+
+		Assert.assertTrue(TPUEnhancementCache.isPinned(pinnedFile1));
+
+		final Optional<Path> optionalPinnedFile1 = TPUEnhancementCache.get(inputFile1);
+
+		Assert.assertTrue(optionalPinnedFile1.isPresent());
+		Assert.assertNotEquals(pinnedFile1, optionalPinnedFile1.get());
+
+		// evicts the entry of the first input file
+		TPUEnhancementCache.release(put(inputFile2));
+
+		Assert.assertFalse(TPUEnhancementCache.contains(inputFile1));
+		Assert.assertEquals(ENHANCED_CONTENT, new String(Files.readAllBytes(pinnedFile1), StandardCharsets.UTF_8));
+		Assert.assertEquals(ENHANCED_CONTENT, new String(Files.readAllBytes(optionalPinnedFile1.get()), StandardCharsets.UTF_8));
+
+		TPUEnhancementCache.release(pinnedFile1);
+		TPUEnhancementCache.release(optionalPinnedFile1.get());
+
+		Assert.assertFalse(Files.exists(pinnedFile1.getParent()));
+		Assert.assertFalse(Files.exists(optionalPinnedFile1.get().getParent()));
+		Assert.assertFalse(TPUEnhancementCache.get(inputFile1).isPresent());
+	}
+
+	@Test
+	public void testReleaseKeepsEntry() throws Exception {
+
+		final Path inputFile = createInputFile("input.xml");
+
+		TPUEnhancementCache.release(put(inputFile));
+
+		final Optional<Path> optionalPinnedFile = TPUEnhancementCache.get(inputFile);
+
+		Assert.assertTrue(optionalPinnedFile.isPresent());
+
+		TPUEnhancementCache.release(optionalPinnedFile.get());
+
+		Assert.assertTrue(TPUEnhancementCache.contains(inputFile));
+	}
+
+	private Path createInputFile(final String fileName) throws Exception {
+
+		return Files.write(temporaryFolder.getRoot().toPath().resolve(fileName), fileName.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Path put(final Path inputFile) throws Exception {
+
+		final Path tempFolder = TPUEnhancementCache.createTempFolder();
+
+		Files.write(tempFolder.resolve(inputFile.getFileName().toString()), ENHANCED_CONTENT.getBytes(StandardCharsets.UTF_8));
+
+		return TPUEnhancementCache.put(inputFile, tempFolder);
+	}
+}
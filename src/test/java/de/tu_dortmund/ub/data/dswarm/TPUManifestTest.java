@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.tu_dortmund.ub.data.util.TPUMetadataCache;
+
+/**
+ * Tests which source files the {@link TPUManifest} considers as up-to-date (i.e. skips) after they were recorded: changes of size, content
+ * (digest) or fingerprint (configuration + mappings) and a missing result file cause a re-processing, while a touched file with the same
+ * content doesn't.
+ *
+ * @author tgaengler
+ */
+public class TPUManifestTest {
+
+	private static final String SERVICE_NAME       = "TPUManifestTest";
+	private static final String ENGINE_DSWARM_API  = "http://localhost/dmp/";
+	private static final String PROJECT_ID         = "project";
+	private static final String SOURCE_FILE        = "source.xml";
+	private static final String SOURCE_CONTENT     = "<records><record>a</record></records>";
+	private static final String CHANGED_CONTENT    = "<records><record>b</record></records>";
+	private static final long   LAST_MODIFIED_DIFF = 60 * 1000;
+
+	private static final JsonArray MAPPINGS = Json.createArrayBuilder().add(Json.createObjectBuilder().add("uuid", "mapping")).build();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Properties config;
+	private Path       resourceWatchFolder;
+	private Path       sourceFile;
+	private Path       resultFile;
+
+	@Before
+	public void setUp() throws Exception {
+
+		resourceWatchFolder = temporaryFolder.newFolder("source").toPath();
+		sourceFile = Files.write(resourceWatchFolder.resolve(SOURCE_FILE), SOURCE_CONTENT.getBytes(StandardCharsets.UTF_8));
+
+		final Path resultsFolder = temporaryFolder.newFolder("results").toPath();
+		resultFile = Files.write(resultsFolder.resolve("export-of-" + SOURCE_FILE), SOURCE_CONTENT.getBytes(StandardCharsets.UTF_8));
+
+		config = new Properties();
+		config.setProperty(TPUStatics.RESULTS_MANIFEST_IDENTIFIER, Boolean.TRUE.toString());
+		config.setProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER, resultsFolder.toString());
+		config.setProperty(TPUStatics.ENGINE_DSWARM_API_IDENTIFIER, ENGINE_DSWARM_API);
+		config.setProperty(TPUStatics.PROTOTYPE_PROJECT_ID_INDENTIFIER, PROJECT_ID);
+
+		init(MAPPINGS);
+
+		TPUManifest.record(resourceWatchFolder.toString(), SOURCE_FILE, Optional.of(resultFile.toString()));
+
+		// the next TPU run
+		init(MAPPINGS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		TPUManifest.close();
+		TPUMetadataCache.clear();
+	}
+
+	@Test
+	public void testUnchangedFileIsSkipped() {
+
+		Assert.assertTrue(filter().isEmpty());
+	}
+
+	@Test
+	public void testChangedSizeIsProcessed() throws Exception {
+
+		Files.write(sourceFile, (SOURCE_CONTENT + "\n").getBytes(StandardCharsets.UTF_8));
+
+		Assert.assertEquals(Collections.singletonList(SOURCE_FILE), filter());
+	}
+
+	@Test
+	public void testTouchedFileWithSameContentIsSkipped() throws Exception {
+
+		touch();
+
+		Assert.assertTrue(filter().isEmpty());
+		// the new modification time was remembered
+		Assert.assertTrue(filter().isEmpty());
+	}
+
+	@Test
+	public void testChangedContentIsProcessed() throws Exception {
+
+		// same size, but different content (digest)
+		Files.write(sourceFile, CHANGED_CONTENT.getBytes(StandardCharsets.UTF_8));
+		touch();
+
+		Assert.assertEquals(Collections.singletonList(SOURCE_FILE), filter());
+	}
+
+	@Test
+	public void testChangedConfigurationIsProcessed() throws Exception {
+
+		config.setProperty(TPUStatics.EXPORT_MIME_TYPE, "application/json");
+
+		init(MAPPINGS);
+
+		Assert.assertEquals(Collections.singletonList(SOURCE_FILE), filter());
+	}
+
+	@Test
+	public void testChangedMappingsAreProcessed() throws Exception {
+
+		init(Json.createArrayBuilder().add(Json.createObjectBuilder().add("uuid", "changed-mapping")).build());
+
+		Assert.assertEquals(Collections.singletonList(SOURCE_FILE), filter());
+	}
+
+	@Test
+	public void testMissingResultFileIsProcessed() throws Exception {
+
+		Files.delete(resultFile);
+
+		Assert.assertEquals(Collections.singletonList(SOURCE_FILE), filter());
+	}
+
+	/**
+	 * (re-)initialises the manifest with the given mappings (note: the mappings will be delivered by the metadata cache, i.e., without backend)
+	 */
+	private void init(final JsonArray mappings) throws Exception {
+
+		TPUMetadataCache.init(config);
+		TPUMetadataCache.get(Transform.determineMappingsKey(Transform.determineProjectIDs(config), ENGINE_DSWARM_API), () -> mappings);
+
+		TPUManifest.init(config, SERVICE_NAME);
+	}
+
+	private void touch() throws Exception {
+
+		Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(Files.getLastModifiedTime(sourceFile).toMillis() + LAST_MODIFIED_DIFF));
+	}
+
+	private List<String> filter() {
+
+		final List<String> files = new ArrayList<>();
+
+		TPUManifest.filter(Collections.singletonList(SOURCE_FILE), resourceWatchFolder.toString()).forEach(files::add);
+
+		return files;
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import javax.json.Json;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the order of the source files according to the schedule policies of {@link TPUSchedule}, i.e., lexicographical order, largest file
+ * first and longest predicted duration first (from the schedule history).
+ *
+ * @author tgaengler
+ */
+public class TPUScheduleTest {
+
+	private static final String SERVICE_NAME = "TPUScheduleTest";
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path resourceWatchFolder;
+	private Path resultsFolder;
+
+	@Before
+	public void setUp() throws Exception {
+
+		resourceWatchFolder = temporaryFolder.newFolder("source").toPath();
+		resultsFolder = temporaryFolder.newFolder("results").toPath();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		TPUSchedule.close();
+	}
+
+	@Test
+	public void testNameOrderByDefault() throws Exception {
+
+		createFile("b.xml", 10);
+		createFile("a.xml", 1000);
+		createFile("c.xml", 100);
+
+		init(null);
+
+		Assert.assertFalse(TPUSchedule.isEnabled());
+		Assert.assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml"), sort("b.xml", "c.xml", "a.xml"));
+	}
+
+	@Test
+	public void testSizeOrder() throws Exception {
+
+		createFile("a.xml", 10);
+		createFile("b.xml", 1000);
+		createFile("c.xml", 100);
+		createFile("d.xml", 100);
+
+		init(TPUStatics.SIZE_SCHEDULE);
+
+		// largest file first, same sizes in lexicographical order, files without size last
+		Assert.assertEquals(Arrays.asList("b.xml", "c.xml", "d.xml", "a.xml", "missing.xml"),
+				sort("missing.xml", "a.xml", "d.xml", "c.xml", "b.xml"));
+	}
+
+	@Test
+	public void testPredictedOrderWithoutHistoryIsSizeOrder() throws Exception {
+
+		createFile("a.xml", 10);
+		createFile("b.xml", 1000);
+		createFile("c.xml", 100);
+
+		init(TPUStatics.PREDICTED_SCHEDULE);
+
+		Assert.assertEquals(Arrays.asList("b.xml", "c.xml", "a.xml"), sort("a.xml", "b.xml", "c.xml"));
+	}
+
+	@Test
+	public void testPredictedOrder() throws Exception {
+
+		// csv: 0.01 bytes/ms, xml: 10 bytes/ms, all: ~0.11 bytes/ms
+		Files.write(resultsFolder.resolve(TPUSchedule.HISTORY_FILE_NAME), Arrays.asList(
+				historyEntry("slow.csv", 100, 10000),
+				historyEntry("fast.xml", 1000, 100)));
+
+		// predicted: 10000 ms (same file)
+		createFile("slow.csv", 100);
+		// predicted: 100 ms (same file)
+		createFile("fast.xml", 1000);
+		// predicted: 5000 ms (csv throughput)
+		createFile("new.csv", 50);
+		// predicted: 200 ms (xml throughput)
+		createFile("new.xml", 2000);
+		// predicted: ~9174 ms (overall throughput)
+		createFile("new.json", 1000);
+
+		init(TPUStatics.PREDICTED_SCHEDULE);
+
+		Assert.assertEquals(Arrays.asList("slow.csv", "new.json", "new.csv", "new.xml", "fast.xml"),
+				sort("fast.xml", "new.csv", "new.json", "new.xml", "slow.csv"));
+	}
+
+	private void init(final String policy) throws Exception {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.RESULTS_FOLDER_IDENTIFIER, resultsFolder.toString());
+
+		if (policy != null) {
+
+			config.setProperty(TPUStatics.RESOURCE_WATCHFOLDER_SCHEDULE_IDENTIFIER, policy);
+		}
+
+		TPUSchedule.init(config, SERVICE_NAME);
+	}
+
+	private void createFile(final String fileName, final int size) throws Exception {
+
+		Files.write(resourceWatchFolder.resolve(fileName), new byte[size]);
+	}
+
+	private List<String> sort(final String... watchFolderFiles) {
+
+		return Arrays.stream(watchFolderFiles).sorted(TPUSchedule.comparator(resourceWatchFolder)).collect(Collectors.toList());
+	}
+
+	private static String historyEntry(final String fileName, final long size, final long duration) {
+
+		return Json.createObjectBuilder().add("file", fileName).add("size", size).add("duration", duration).build().toString();
+	}
+}
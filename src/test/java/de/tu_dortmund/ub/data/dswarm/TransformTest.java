@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.dswarm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.stream.JsonGenerator;
+
+import org.apache.http.nio.ContentEncoder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.tu_dortmund.ub.data.util.TPUMetadataCache;
+import de.tu_dortmund.ub.data.util.TaskRequestEntity;
+
+/**
+ * Tests that a task request, which is spliced from the task template of a run and the input data model of a task, is byte-identical to the
+ * task JSON as it was built completely per task before.
+ *
+ * @author tgaengler
+ */
+public class TransformTest {
+
+	private static final Pattern JOB_UUID_PATTERN = Pattern
+			.compile("\"" + DswarmBackendStatics.JOB_IDENTIFIER + "\":\\{\"" + DswarmBackendStatics.UUID_IDENTIFIER + "\":\"([^\"]+)\"");
+
+	private static final JsonArray MAPPINGS = Json.createArrayBuilder()
+			.add(Json.createObjectBuilder()
+					.add("uuid", "mapping-1")
+					.add("name", "title mapping \"quoted\" äöü")
+					.add("input_attribute_paths", Json.createArrayBuilder().add("dc:title").add("dc:creator"))
+					.add("weight", 1.5)
+					.addNull("transformation"))
+			.add(Json.createObjectBuilder()
+					.add("uuid", "mapping-2")
+					.add("name", "☃ \\ / \n tab\t"))
+			.build();
+
+	private static final JsonObject INPUT_DATA_MODEL = Json.createObjectBuilder()
+			.add("uuid", "input-data-model")
+			.add("name", "input \"data\" model ß")
+			.add("data_resource", Json.createObjectBuilder().add("uuid", "resource-1").add("size", 42))
+			.add("configuration", Json.createObjectBuilder().add("parameters", Json.createObjectBuilder().add("storage_type", "xml")))
+			.build();
+
+	private static final JsonObject OUTPUT_DATA_MODEL = Json.createObjectBuilder()
+			.add("uuid", "output-data-model")
+			.add("name", "output data model")
+			.add("schema", Json.createObjectBuilder().add("uuid", "schema-1"))
+			.build();
+
+	private static final JsonObject SKIP_FILTER = Json.createObjectBuilder()
+			.add("uuid", "skip-filter")
+			.add("expression", "[{\"type\":\"dc:type\"}]")
+			.build();
+
+	@After
+	public void tearDown() {
+
+		TPUMetadataCache.clear();
+	}
+
+	@Test
+	public void testTaskWithOutputDataModel() throws Exception {
+
+		assertTaskEquivalence(false, Optional.empty(), Optional.empty(), OUTPUT_DATA_MODEL, Optional.empty());
+	}
+
+	@Test
+	public void testTaskWithOutputDataModelEqualsInputDataModel() throws Exception {
+
+		assertTaskEquivalence(false, Optional.empty(), Optional.empty(), INPUT_DATA_MODEL, Optional.empty());
+	}
+
+	@Test
+	public void testTaskWithSkipFilterAndOnTheFlyFlags() throws Exception {
+
+		assertTaskEquivalence(true, Optional.of(true), Optional.of(false), OUTPUT_DATA_MODEL, Optional.of(SKIP_FILTER));
+		assertTaskEquivalence(true, Optional.of(false), Optional.of(true), INPUT_DATA_MODEL, Optional.of(SKIP_FILTER));
+	}
+
+	@Test
+	public void testTemplateIsSharedBetweenTasks() throws Exception {
+
+		final String templateKey = UUID.randomUUID().toString();
+
+		final TaskRequestEntity.Template template = Transform.getTaskTemplate(false, Optional.empty(), Optional.empty(), MAPPINGS,
+				Optional.empty(), Optional.empty(), templateKey, "test", 1);
+
+		Assert.assertSame(template, Transform.getTaskTemplate(false, Optional.empty(), Optional.empty(), MAPPINGS, Optional.empty(),
+				Optional.empty(), templateKey, "test", 2));
+
+		final JsonObject otherInputDataModel = Json.createObjectBuilder().add("uuid", "other-input-data-model").build();
+
+		final String task = writeTo(new TaskRequestEntity(template, INPUT_DATA_MODEL));
+		final String otherTask = writeTo(new TaskRequestEntity(template, otherInputDataModel));
+
+		Assert.assertEquals(createOldTaskJSON(false, Optional.empty(), Optional.empty(), determineJobUUID(task), MAPPINGS, INPUT_DATA_MODEL,
+				INPUT_DATA_MODEL, Optional.empty()), task);
+		Assert.assertEquals(createOldTaskJSON(false, Optional.empty(), Optional.empty(), determineJobUUID(otherTask), MAPPINGS,
+				otherInputDataModel, otherInputDataModel, Optional.empty()), otherTask);
+		Assert.assertNotEquals(determineJobUUID(task), determineJobUUID(otherTask));
+	}
+
+	private static void assertTaskEquivalence(final boolean persist,
+	                                          final Optional<Boolean> optionalDoIngestOnTheFly,
+	                                          final Optional<Boolean> optionalDoExportOnTheFly,
+	                                          final JsonObject outputDataModel,
+	                                          final Optional<JsonObject> optionalSkipFilter) throws Exception {
+
+		final Optional<JsonObject> optionalOutputDataModel = outputDataModel == INPUT_DATA_MODEL ? Optional.empty() : Optional.of(outputDataModel);
+
+		final TaskRequestEntity.Template template = Transform.getTaskTemplate(persist, optionalDoIngestOnTheFly, optionalDoExportOnTheFly,
+				MAPPINGS, optionalOutputDataModel, optionalSkipFilter, UUID.randomUUID().toString(), "test", 1);
+		final TaskRequestEntity taskRequestEntity = new TaskRequestEntity(template, INPUT_DATA_MODEL);
+
+		final String task = writeTo(taskRequestEntity);
+		final String expectedTask = createOldTaskJSON(persist, optionalDoIngestOnTheFly, optionalDoExportOnTheFly, determineJobUUID(task),
+				MAPPINGS, INPUT_DATA_MODEL, outputDataModel, optionalSkipFilter);
+
+		Assert.assertEquals(expectedTask, task);
+		Assert.assertArrayEquals(expectedTask.getBytes(StandardCharsets.UTF_8), task.getBytes(StandardCharsets.UTF_8));
+
+		// a repeated request (e.g. a retry) will be the same
+		Assert.assertEquals(expectedTask, writeTo(taskRequestEntity));
+
+		// the non-blocking client might only be able to write a few bytes at once
+		Assert.assertEquals(expectedTask, produceContent(taskRequestEntity, 7));
+		Assert.assertEquals(expectedTask, produceContent(taskRequestEntity, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * the task JSON as it was built per task (i.e. without template) before, except for the (otherwise random) job UUID
+	 */
+	private static String createOldTaskJSON(final boolean persist,
+	                                        final Optional<Boolean> optionalDoIngestOnTheFly,
+	                                        final Optional<Boolean> optionalDoExportOnTheFly,
+	                                        final String jobUUID,
+	                                        final JsonArray mappings,
+	                                        final JsonObject inputDataModel,
+	                                        final JsonObject outputDataModel,
+	                                        final Optional<JsonObject> optionalSkipFilter) {
+
+		final StringWriter stringWriter = new StringWriter();
+		final JsonGenerator jp = Json.createGenerator(stringWriter);
+
+		jp.writeStartObject();
+		jp.write(DswarmBackendStatics.PERSIST_IDENTIFIER, persist);
+		jp.write(DswarmBackendStatics.DO_NOT_RETURN_DATA_IDENTIFIER, true);
+		jp.write(DswarmBackendStatics.UTILISE_EXISTING_INPUT_IDENTIFIER, true);
+
+		if (optionalDoIngestOnTheFly.isPresent()) {
+
+			jp.write(DswarmBackendStatics.DO_INGEST_ON_THE_FLY, optionalDoIngestOnTheFly.get());
+		}
+
+		if (optionalDoExportOnTheFly.isPresent()) {
+
+			jp.write(DswarmBackendStatics.DO_EXPORT_ON_THE_FLY, optionalDoExportOnTheFly.get());
+		}
+
+		jp.write(DswarmBackendStatics.DO_VERSIONING_ON_RESULT_IDENTIFIER, false);
+
+		// task
+		jp.writeStartObject(DswarmBackendStatics.TASK_IDENTIFIER);
+		jp.write(DswarmBackendStatics.NAME_IDENTIFIER, "Task Batch-Prozess 'CrossRef'");
+		jp.write(DswarmBackendStatics.DESCRIPTION_IDENTIFIER, "Task Batch-Prozess 'CrossRef' zum InputDataModel 'inputDataModelID '");
+
+		// job
+		jp.writeStartObject(DswarmBackendStatics.JOB_IDENTIFIER);
+		jp.write(DswarmBackendStatics.UUID_IDENTIFIER, jobUUID);
+		jp.write(DswarmBackendStatics.MAPPINGS_IDENTIFIER, mappings);
+
+		if (optionalSkipFilter.isPresent()) {
+
+			jp.write(DswarmBackendStatics.SKIP_FILTER_IDENTIFIER, optionalSkipFilter.get());
+		}
+
+		jp.writeEnd();
+
+		jp.write(DswarmBackendStatics.INPUT_DATA_MODEL_IDENTIFIER, inputDataModel);
+		jp.write(DswarmBackendStatics.OUTPUT_DATA_MODEL_IDENTIFIER, outputDataModel);
+
+		// end task
+		jp.writeEnd();
+
+		// end request
+		jp.writeEnd();
+
+		jp.flush();
+		jp.close();
+
+		return stringWriter.toString();
+	}
+
+	private static String determineJobUUID(final String task) {
+
+		final Matcher matcher = JOB_UUID_PATTERN.matcher(task);
+
+		Assert.assertTrue("couldn't find job UUID in task " + task, matcher.find());
+
+		return matcher.group(1);
+	}
+
+	private static String writeTo(final TaskRequestEntity taskRequestEntity) throws IOException {
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		taskRequestEntity.writeTo(outputStream);
+
+		return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * produces the content of the given entity as the non-blocking HTTP client would do, i.e., with at most the given number of bytes per write
+	 */
+	private static String produceContent(final TaskRequestEntity taskRequestEntity, final int maxBytesPerWrite) throws IOException {
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final LimitedContentEncoder encoder = new LimitedContentEncoder(outputStream, maxBytesPerWrite);
+
+		while (!encoder.isCompleted()) {
+
+			taskRequestEntity.produceContent(encoder, null);
+		}
+
+		return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static final class LimitedContentEncoder implements ContentEncoder {
+
+		private final ByteArrayOutputStream outputStream;
+		private final int                   maxBytesPerWrite;
+
+		private boolean completed;
+
+		private LimitedContentEncoder(final ByteArrayOutputStream outputStream, final int maxBytesPerWrite) {
+
+			this.outputStream = outputStream;
+			this.maxBytesPerWrite = maxBytesPerWrite;
+		}
+
+		@Override
+		public int write(final ByteBuffer src) {
+
+			final int length = Math.min(src.remaining(), maxBytesPerWrite);
+
+			for (int i = 0; i < length; i++) {
+
+				outputStream.write(src.get());
+			}
+
+			return length;
+		}
+
+		@Override
+		public void complete() {
+
+			completed = true;
+		}
+
+		@Override
+		public boolean isCompleted() {
+
+			return completed;
+		}
+	}
+}
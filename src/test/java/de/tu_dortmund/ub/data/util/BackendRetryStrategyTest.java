@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Properties;
+
+import de.tu_dortmund.ub.data.dswarm.DswarmBackendStatics;
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the retry decisions of the {@link BackendRetryStrategy}, i.e., endpoint determination, 'Retry-After' handling and the retry policy per
+ * method + endpoint.
+ *
+ * @author tgaengler
+ */
+public class BackendRetryStrategyTest {
+
+	private static final String API = "http://localhost:8087/dmp/";
+
+	@Test
+	public void testDetermineEndpoint() {
+
+		Assert.assertEquals(Optional.of(DswarmBackendStatics.DATAMODELS_ENDPOINT),
+				BackendRetryStrategy.determineEndpoint(API + "datamodels/a4b5c6?format=json"));
+		Assert.assertEquals(Optional.of(DswarmBackendStatics.TASKS_ENDPOINT), BackendRetryStrategy.determineEndpoint(API + "tasks/"));
+		Assert.assertEquals(Optional.of(DswarmBackendStatics.PROJECTS_ENDPOINT), BackendRetryStrategy.determineEndpoint("/dmp/projects/123"));
+		Assert.assertEquals(Optional.of(DswarmBackendStatics.DATAMODELS_ENDPOINT),
+				BackendRetryStrategy.determineEndpoint(API + "datamodels?doIngest=false"));
+	}
+
+	@Test
+	public void testDetermineEndpointIgnoresQueryAndUnknownSegments() {
+
+		Assert.assertEquals(Optional.empty(), BackendRetryStrategy.determineEndpoint(API + "unknown/123"));
+		Assert.assertEquals(Optional.empty(), BackendRetryStrategy.determineEndpoint(API + "unknown?redirect=/dmp/tasks/"));
+		Assert.assertEquals(Optional.empty(), BackendRetryStrategy.determineEndpoint(API + "datamodelsx/123"));
+		Assert.assertEquals(Optional.empty(), BackendRetryStrategy.determineEndpoint(""));
+	}
+
+	@Test
+	public void testDetermineRetryAfterSeconds() {
+
+		Assert.assertEquals(Optional.of(5000L), BackendRetryStrategy.determineRetryAfter(createResponse(503, " 5 ")));
+		Assert.assertEquals(Optional.of(0L), BackendRetryStrategy.determineRetryAfter(createResponse(503, "0")));
+		Assert.assertEquals(Optional.of(0L), BackendRetryStrategy.determineRetryAfter(createResponse(503, "-10")));
+		Assert.assertEquals(Optional.of(BackendRetryStrategy.MAX_RETRY_AFTER),
+				BackendRetryStrategy.determineRetryAfter(createResponse(503, "86400")));
+	}
+
+	@Test
+	public void testDetermineRetryAfterDate() {
+
+		final String inTenSeconds = DateUtils.formatDate(new Date(System.currentTimeMillis() + 10000));
+		final long retryAfter = BackendRetryStrategy.determineRetryAfter(createResponse(503, inTenSeconds)).get();
+
+		// note: HTTP dates have a precision of seconds
+		Assert.assertTrue(String.valueOf(retryAfter), retryAfter > 8000 && retryAfter <= 10000);
+
+		final String past = DateUtils.formatDate(new Date(System.currentTimeMillis() - 60000));
+
+		Assert.assertEquals(Optional.of(0L), BackendRetryStrategy.determineRetryAfter(createResponse(503, past)));
+	}
+
+	@Test
+	public void testDetermineRetryAfterWithoutValidHeader() {
+
+		Assert.assertEquals(Optional.empty(), BackendRetryStrategy.determineRetryAfter(createResponse(503, null)));
+		Assert.assertEquals(Optional.empty(), BackendRetryStrategy.determineRetryAfter(createResponse(503, "soon")));
+	}
+
+	@Test
+	public void testRetryAfterIsUtilisedAsBackoff() {
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(new Properties());
+
+		Assert.assertEquals(Optional.of(3000L), retryStrategy.determineRetry(new HttpGet(API + "datamodels/1"), createResponse(503, "3"), 1));
+		Assert.assertEquals(Optional.of(0L), retryStrategy.determineRetry(new HttpGet(API + "datamodels/1"), createResponse(429, "0"), 1));
+	}
+
+	@Test
+	public void testOnlyRejectionsAreRetried() {
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(new Properties());
+		final HttpGet request = new HttpGet(API + "datamodels/1");
+
+		for (final int statusCode : new int[] { 502, 503, 504, 429 }) {
+
+			Assert.assertTrue(String.valueOf(statusCode), retryStrategy.determineRetry(request, createResponse(statusCode, null), 1).isPresent());
+		}
+
+		for (final int statusCode : new int[] { 200, 201, 204, 400, 404, 500 }) {
+
+			Assert.assertFalse(String.valueOf(statusCode), retryStrategy.determineRetry(request, createResponse(statusCode, null), 1).isPresent());
+		}
+	}
+
+	@Test
+	public void testIdempotentRequestsAreRetriedUpToMaxRetries() {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER, "2");
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER + TPUUtil.DOT + DswarmBackendStatics.SCHEMAS_ENDPOINT, "4");
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(config);
+
+		assertMaxRetries(retryStrategy, new HttpGet(API + "datamodels/1"), 2);
+		// endpoint-specific max. retries
+		assertMaxRetries(retryStrategy, new HttpGet(API + "schemas/1"), 4);
+
+		Assert.assertEquals(2 + 4, retryStrategy.getRetries());
+	}
+
+	@Test
+	public void testPostRequestsAreNotRetriedByDefault() {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER, "3");
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(config);
+
+		assertMaxRetries(retryStrategy, createPost(API + "tasks/"), 0);
+		assertMaxRetries(retryStrategy, createPost(API + "datamodels"), 0);
+	}
+
+	@Test
+	public void testPostRequestsAreRetriedPerEndpointOptIn() {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_POST_IDENTIFIER + TPUUtil.DOT + DswarmBackendStatics.TASKS_ENDPOINT, "2");
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(config);
+
+		assertMaxRetries(retryStrategy, createPost(API + "tasks/"), 2);
+		// the opt-in is only valid for the configured endpoint
+		assertMaxRetries(retryStrategy, createPost(API + "resources/"), 0);
+	}
+
+	@Test
+	public void testNonRepeatableEntitiesAreNotRetried() {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_POST_IDENTIFIER + TPUUtil.DOT + DswarmBackendStatics.RESOURCES_ENDPOINT, "3");
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(config);
+		final HttpPost request = new HttpPost(API + "resources/");
+		request.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[] { 1, 2, 3 })));
+
+		assertMaxRetries(retryStrategy, request, 0);
+	}
+
+	@Test
+	public void testIOErrors() {
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(new Properties());
+		final HttpGet get = new HttpGet(API + "datamodels/1");
+		final HttpPost post = createPost(API + "tasks/");
+
+		Assert.assertTrue(retryStrategy.determineRetry(get, new IOException("connection reset"), 1, true).isPresent());
+		// the request might still be in progress at the backend
+		Assert.assertFalse(retryStrategy.determineRetry(get, new SocketTimeoutException("read timed out"), 1, true).isPresent());
+		// POST requests that were sent won't be retried, but the ones that weren't sent (with the default max. retries)
+		Assert.assertFalse(retryStrategy.determineRetry(post, new IOException("connection reset"), 1, true).isPresent());
+		Assert.assertTrue(retryStrategy.determineRetry(post, new ConnectException("connection refused"), 1, false).isPresent());
+		Assert.assertFalse(retryStrategy.determineRetry(post, new ConnectException("connection refused"), BackendRetryStrategy.DEFAULT_MAX_RETRIES + 1,
+				false).isPresent());
+	}
+
+	@Test
+	public void testBackoffIsBoundedByMaxBackoff() {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_MAX_RETRIES_IDENTIFIER, "100");
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_INITIAL_BACKOFF_IDENTIFIER, "10");
+		config.setProperty(TPUStatics.ENGINE_HTTP_RETRY_MAX_BACKOFF_IDENTIFIER, "50");
+
+		final BackendRetryStrategy retryStrategy = new BackendRetryStrategy(config);
+		final HttpGet request = new HttpGet(API + "datamodels/1");
+
+		for (int executionCount = 1; executionCount <= 100; executionCount++) {
+
+			final long backoff = retryStrategy.determineRetry(request, createResponse(503, null), executionCount).get();
+
+			Assert.assertTrue(String.valueOf(backoff), backoff >= 0 && backoff <= 50);
+		}
+	}
+
+	private static void assertMaxRetries(final BackendRetryStrategy retryStrategy, final HttpRequest request, final int maxRetries) {
+
+		for (int executionCount = 1; executionCount <= maxRetries; executionCount++) {
+
+			Assert.assertTrue(request.getRequestLine() + " retry " + executionCount,
+					retryStrategy.determineRetry(request, createResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, "0"), executionCount).isPresent());
+		}
+
+		Assert.assertFalse(request.getRequestLine() + " retry " + (maxRetries + 1),
+				retryStrategy.determineRetry(request, createResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, "0"), maxRetries + 1).isPresent());
+	}
+
+	private static HttpPost createPost(final String uri) {
+
+		final HttpPost request = new HttpPost(uri);
+		request.setEntity(new StringEntity("{}", ContentType.APPLICATION_JSON));
+
+		return request;
+	}
+
+	private static HttpResponse createResponse(final int statusCode, final String retryAfter) {
+
+		final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+
+		if (retryAfter != null) {
+
+			response.addHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+		}
+
+		return response;
+	}
+}
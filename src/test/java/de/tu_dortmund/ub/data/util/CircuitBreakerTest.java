@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the state transitions of the {@link CircuitBreaker}, i.e., closed -> open -> half-open (one probe) -> closed or open again.
+ *
+ * @author tgaengler
+ */
+public class CircuitBreakerTest {
+
+	private static final int  FAILURE_RATE  = 50;
+	private static final int  WINDOW        = 4;
+	private static final long OPEN_DURATION = 200;
+
+	@Test
+	public void testClosedByDefault() {
+
+		final CircuitBreaker circuitBreaker = new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertEquals(0, circuitBreaker.getOpenings());
+	}
+
+	@Test
+	public void testStaysClosedUntilWindowIsFull() {
+
+		final CircuitBreaker circuitBreaker = new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION);
+
+		for (int i = 0; i < WINDOW - 1; i++) {
+
+			circuitBreaker.record(true);
+		}
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertEquals(0, circuitBreaker.getOpenings());
+	}
+
+	@Test
+	public void testStaysClosedBelowFailureRate() {
+
+		final CircuitBreaker circuitBreaker = new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION);
+
+		// 1 of 4 failed, and the older failures will be pushed out of the window
+		circuitBreaker.record(true);
+		circuitBreaker.record(false);
+		circuitBreaker.record(false);
+		circuitBreaker.record(false);
+		circuitBreaker.record(true);
+		circuitBreaker.record(false);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertEquals(0, circuitBreaker.getOpenings());
+	}
+
+	@Test
+	public void testOpensAtFailureRate() {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		Assert.assertEquals(1, circuitBreaker.getOpenings());
+
+		final long waitTime = circuitBreaker.tryAcquirePermission();
+
+		Assert.assertTrue(waitTime > 0);
+		Assert.assertTrue(waitTime <= OPEN_DURATION);
+	}
+
+	@Test
+	public void testIgnoresOutcomesWhileOpen() {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		// outcomes of requests that were submitted before the circuit breaker was opened
+		circuitBreaker.record(false);
+		circuitBreaker.record(true);
+
+		Assert.assertTrue(circuitBreaker.tryAcquirePermission() > 0);
+		Assert.assertEquals(1, circuitBreaker.getOpenings());
+	}
+
+	@Test
+	public void testHalfOpenLetsOnlyOneProbeThrough() throws InterruptedException {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		Thread.sleep(OPEN_DURATION + 20);
+
+		Assert.assertEquals("the probe should be let through", 0, circuitBreaker.tryAcquirePermission());
+
+		for (int i = 0; i < 10; i++) {
+
+			final long waitTime = circuitBreaker.tryAcquirePermission();
+
+			Assert.assertTrue("other requests should stay paused while the probe is in flight", waitTime > 0);
+			Assert.assertTrue(waitTime <= CircuitBreaker.HALF_OPEN_CHECK_INTERVAL);
+		}
+	}
+
+	@Test
+	public void testSuccessfulProbeClosesCircuitBreaker() throws InterruptedException {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		Thread.sleep(OPEN_DURATION + 20);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+
+		circuitBreaker.record(false);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertEquals(1, circuitBreaker.getOpenings());
+
+		// the window starts from scratch
+		for (int i = 0; i < WINDOW - 1; i++) {
+
+			circuitBreaker.record(true);
+		}
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testFailedProbeOpensCircuitBreakerAgain() throws InterruptedException {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		Thread.sleep(OPEN_DURATION + 20);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+
+		circuitBreaker.record(true);
+
+		Assert.assertEquals(2, circuitBreaker.getOpenings());
+		Assert.assertTrue(circuitBreaker.tryAcquirePermission() > CircuitBreaker.HALF_OPEN_CHECK_INTERVAL);
+	}
+
+	@Test
+	public void testProbeWithoutOutcomeIsReplacedAfterOpenDuration() throws InterruptedException {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		Thread.sleep(OPEN_DURATION + 20);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+		Assert.assertTrue(circuitBreaker.tryAcquirePermission() > 0);
+
+		Thread.sleep(OPEN_DURATION + 20);
+
+		Assert.assertEquals("another probe should be let through", 0, circuitBreaker.tryAcquirePermission());
+		Assert.assertTrue(circuitBreaker.tryAcquirePermission() > 0);
+	}
+
+	@Test
+	public void testAwaitPermissionWaitsForProbe() throws Exception {
+
+		final CircuitBreaker circuitBreaker = open(new CircuitBreaker(FAILURE_RATE, WINDOW, OPEN_DURATION));
+
+		Thread.sleep(OPEN_DURATION + 20);
+
+		Assert.assertEquals(0, circuitBreaker.tryAcquirePermission());
+
+		final CountDownLatch permitted = new CountDownLatch(1);
+		final Thread waitingThread = new Thread(() -> {
+
+			try {
+
+				circuitBreaker.awaitPermission();
+
+				permitted.countDown();
+			} catch (final Exception e) {
+
+				// the latch won't be counted down
+			}
+		});
+		waitingThread.start();
+
+		Assert.assertFalse("should wait while the probe is in flight", permitted.await(OPEN_DURATION / 2, TimeUnit.MILLISECONDS));
+
+		circuitBreaker.record(false);
+
+		Assert.assertTrue("should be notified about the successful probe", permitted.await(OPEN_DURATION, TimeUnit.MILLISECONDS));
+
+		waitingThread.join();
+	}
+
+	private static CircuitBreaker open(final CircuitBreaker circuitBreaker) {
+
+		circuitBreaker.record(false);
+		circuitBreaker.record(true);
+		circuitBreaker.record(false);
+		circuitBreaker.record(true);
+
+		return circuitBreaker;
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the {@link GzipRequestEntity} writes valid gzip content (also via {@link GzipRequestEntity#getContent()}) and that a re-sent entity
+ * will only be counted once in the transfer statistics.
+ *
+ * @author tgaengler
+ */
+public class GzipRequestEntityTest {
+
+	private static final String REQUEST_LINE = "POST /resources HTTP/1.1";
+
+	private static final String CONTENT = new String(new char[10000]).replace("\0", "<record>content</record>");
+
+	@Before
+	public void setUp() {
+
+		// resets the transfer statistics
+		TPUHttpClient.init(new Properties());
+	}
+
+	@After
+	public void tearDown() {
+
+		TPUHttpClient.shutdown();
+	}
+
+	@Test
+	public void testWriteTo() throws Exception {
+
+		final GzipRequestEntity entity = createEntity();
+		final byte[] compressed = write(entity);
+
+		Assert.assertTrue(compressed.length < CONTENT.length());
+		Assert.assertEquals(CONTENT, decompress(compressed));
+	}
+
+	@Test
+	public void testGetContent() throws Exception {
+
+		try (final InputStream content = createEntity().getContent()) {
+
+			Assert.assertEquals(CONTENT, decompress(IOUtils.toByteArray(content)));
+		}
+
+		Assert.assertTrue(TPUHttpClient.getTransferStatistics().startsWith("compressed uploads = '0'"));
+	}
+
+	@Test
+	public void testRetriedUploadIsCountedOnce() throws Exception {
+
+		final GzipRequestEntity entity = createEntity();
+
+		final byte[] compressed = write(entity);
+		final byte[] recompressed = write(entity);
+
+		Assert.assertArrayEquals(compressed, recompressed);
+		Assert.assertTrue(TPUHttpClient.getTransferStatistics(),
+				TPUHttpClient.getTransferStatistics().startsWith(String.format("compressed uploads = '1' ('%d' bytes sent as '%d' bytes",
+						CONTENT.length(), compressed.length)));
+	}
+
+	private static GzipRequestEntity createEntity() {
+
+		return new GzipRequestEntity(new StringEntity(CONTENT, ContentType.APPLICATION_XML), REQUEST_LINE);
+	}
+
+	private static byte[] write(final GzipRequestEntity entity) throws IOException {
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		entity.writeTo(outputStream);
+
+		return outputStream.toByteArray();
+	}
+
+	private static String decompress(final byte[] compressed) throws IOException {
+
+		try (final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+
+			return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+
+/**
+ * Tests the merging of (chunk) result files with the {@link ResultFileMerger}, i.e., XML merges (plain + gzip compressed) and the rejection of
+ * all other formats.
+ *
+ * @author tgaengler
+ */
+public class ResultFileMergerTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testXMLMerge() throws Exception {
+
+		final List<Path> resultFiles = Arrays.asList(
+				write("result-1.xml", createXMLResult("first", "1", "2"), false),
+				write("result-2.xml", createXMLResult("second", "3"), false),
+				write("result-3.xml", createXMLResult("third", "4", "5"), false));
+
+		final Path targetFile = temporaryFolder.getRoot().toPath().resolve("result.xml");
+
+		ResultFileMerger.merge(resultFiles, targetFile);
+
+		final Element root = XMLRecordSplitterTest.parse(targetFile);
+
+		// the root element of the first result file will be kept
+		Assert.assertEquals("collection", root.getLocalName());
+		Assert.assertEquals("first", root.getAttribute("name"));
+		Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5"), XMLRecordSplitterTest.getIds(root));
+		Assert.assertEquals(5, XMLRecordSplitterTest.getChildElements(root).size());
+	}
+
+	@Test
+	public void testXMLGzipMerge() throws Exception {
+
+		final List<Path> resultFiles = Arrays.asList(
+				write("result-1.xml.gz", createXMLResult("first", "1"), true),
+				write("result-2.xml.gz", createXMLResult("second", "2", "3"), true));
+
+		final Path targetFile = temporaryFolder.getRoot().toPath().resolve("result.xml.gz");
+
+		ResultFileMerger.merge(resultFiles, targetFile);
+
+		final Path decompressedTargetFile = temporaryFolder.getRoot().toPath().resolve("result-decompressed.xml");
+		Files.write(decompressedTargetFile, readGzip(targetFile));
+
+		final Element root = XMLRecordSplitterTest.parse(decompressedTargetFile);
+
+		Assert.assertEquals("first", root.getAttribute("name"));
+		Assert.assertEquals(Arrays.asList("1", "2", "3"), XMLRecordSplitterTest.getIds(root));
+	}
+
+	@Test
+	public void testXMLMergeOfSingleResultFile() throws Exception {
+
+		final Path resultFile = write("result-1.xml", createXMLResult("first", "1", "2"), false);
+		final Path targetFile = temporaryFolder.getRoot().toPath().resolve("result.xml");
+
+		ResultFileMerger.merge(Collections.singletonList(resultFile), targetFile);
+
+		final Element root = XMLRecordSplitterTest.parse(targetFile);
+
+		Assert.assertEquals(Arrays.asList("1", "2"), XMLRecordSplitterTest.getIds(root));
+	}
+
+	@Test
+	public void testNonXMLMergeIsRejected() throws Exception {
+
+		final List<Path> resultFiles = Arrays.asList(write("result-1.json", "{\"id\":1}", false), write("result-2.json", "{\"id\":2}", false));
+		final Path targetFile = temporaryFolder.getRoot().toPath().resolve("result.json");
+
+		try {
+
+			ResultFileMerger.merge(resultFiles, targetFile);
+
+			Assert.fail("expected IllegalArgumentException");
+		} catch (final IllegalArgumentException e) {
+
+			// concatenated JSON documents wouldn't be valid JSON
+			Assert.assertFalse(Files.exists(targetFile));
+		}
+	}
+
+	@Test
+	public void testIsMergeable() {
+
+		Assert.assertTrue(ResultFileMerger.isMergeable("export-result.xml"));
+		Assert.assertTrue(ResultFileMerger.isMergeable("export-result.xml.gz"));
+		Assert.assertFalse(ResultFileMerger.isMergeable("export-result.json"));
+		Assert.assertFalse(ResultFileMerger.isMergeable("export-result.nt.gz"));
+	}
+
+	private static String createXMLResult(final String name, final String... ids) {
+
+		final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<!-- result ").append(name).append(" -->\n");
+		sb.append("<collection name=\"").append(name).append("\">\n");
+
+		for (final String id : ids) {
+
+			sb.append("<record id=\"").append(id).append("\"><title>").append(name).append("</title></record>\n");
+		}
+
+		return sb.append("</collection>\n").toString();
+	}
+
+	private Path write(final String fileName, final String content, final boolean compressed) throws IOException {
+
+		final Path file = temporaryFolder.getRoot().toPath().resolve(fileName);
+		final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+		if (!compressed) {
+
+			return Files.write(file, bytes);
+		}
+
+		try (final OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+
+			outputStream.write(bytes);
+		}
+
+		return file;
+	}
+
+	private static byte[] readGzip(final Path file) throws IOException {
+
+		try (final InputStream inputStream = new GZIPInputStream(Files.newInputStream(file))) {
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+			IOUtils.copy(inputStream, outputStream);
+
+			return outputStream.toByteArray();
+		}
+	}
+}
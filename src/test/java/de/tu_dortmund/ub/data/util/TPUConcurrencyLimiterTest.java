@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+
+/**
+ * Tests the adaptation of the {@link TPUConcurrencyLimiter} (growing on flat latencies per MB of input, shrinking on rising latencies per MB and
+ * on failures) and that cancelled waiters don't leak permits. The latencies will be simulated with a manual clock.
+ *
+ * @author tgaengler
+ */
+public class TPUConcurrencyLimiterTest {
+
+	private static final int  MAX_LIMIT = 20;
+	private static final long MB        = 1024 * 1024;
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@After
+	public void tearDown() {
+
+		TPUConcurrencyLimiter.setClock(System::nanoTime);
+		TPUConcurrencyLimiter.init(new Properties(), 1);
+	}
+
+	@Test
+	public void testLimitGrowsOnFlatLatency() {
+
+		init(2);
+
+		for (int i = 0; i < 10; i++) {
+
+			executeRound(100, MB);
+		}
+
+		Assert.assertTrue(TPUConcurrencyLimiter.getStatistics(), TPUConcurrencyLimiter.getLimit() > 2);
+	}
+
+	@Test
+	public void testLimitShrinksOnRisingLatency() {
+
+		init(8);
+
+		executeRound(100, MB);
+
+		for (int i = 0; i < 5; i++) {
+
+			executeRound(1000, MB);
+		}
+
+		Assert.assertTrue(TPUConcurrencyLimiter.getStatistics(), TPUConcurrencyLimiter.getLimit() < 8);
+	}
+
+	@Test
+	public void testLargerInputIsNoCongestion() {
+
+		init(2);
+
+		executeRound(100, MB);
+
+		// the same latency per MB
+		for (int i = 0; i < 10; i++) {
+
+			executeRound(1000, 10 * MB);
+		}
+
+		Assert.assertTrue(TPUConcurrencyLimiter.getStatistics(), TPUConcurrencyLimiter.getLimit() > 2);
+	}
+
+	@Test
+	public void testLimitShrinksOnError() throws Exception {
+
+		init(10);
+
+		TPUConcurrencyLimiter.acquire(MB).onError();
+
+		Assert.assertEquals(9, TPUConcurrencyLimiter.getLimit());
+	}
+
+	@Test
+	public void testCancelledWaiterReleasesItsPermit() {
+
+		init(1);
+
+		final TPUConcurrencyLimiter.Permit permit = TPUConcurrencyLimiter.acquireAsync(MB).join();
+		final CompletableFuture<TPUConcurrencyLimiter.Permit> futurePermit = TPUConcurrencyLimiter.acquireAsync(MB);
+
+		Assert.assertFalse(futurePermit.isDone());
+
+		futurePermit.cancel(false);
+		permit.close();
+
+		Assert.assertTrue(TPUConcurrencyLimiter.getStatistics(), TPUConcurrencyLimiter.getStatistics().contains("in flight = 0, waiting = 0"));
+		Assert.assertTrue(TPUConcurrencyLimiter.acquireAsync(MB).isDone());
+	}
+
+	private void init(final int initialLimit) {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_CONCURRENCY_ADAPTIVE_IDENTIFIER, Boolean.TRUE.toString());
+		config.setProperty(TPUStatics.ENGINE_CONCURRENCY_INITIAL_LIMIT_IDENTIFIER, String.valueOf(initialLimit));
+
+		TPUConcurrencyLimiter.setClock(clock::get);
+		TPUConcurrencyLimiter.init(config, MAX_LIMIT);
+	}
+
+	/**
+	 * executes as many task executions at the same time as the current limit permits
+	 */
+	private void executeRound(final long latency, final long inputSize) {
+
+		final List<TPUConcurrencyLimiter.Permit> permits = new ArrayList<>();
+		final int limit = TPUConcurrencyLimiter.getLimit();
+
+		for (int i = 0; i < limit; i++) {
+
+			permits.add(TPUConcurrencyLimiter.acquireAsync(inputSize).join());
+		}
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latency));
+
+		permits.forEach(TPUConcurrencyLimiter.Permit::onSuccess);
+	}
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+
+/**
+ * Tests that the {@link TPUMetadataCache} shares concurrent retrievals of the same key (single-flight), doesn't cache failed retrievals and
+ * expires entries after their ttl.
+ *
+ * @author tgaengler
+ */
+public class TPUMetadataCacheTest {
+
+	private static final String KEY     = "http://localhost/dmp/projects/1" + TPUMetadataCache.KEY_SEPARATOR + "mappings";
+	private static final String VALUE   = "mappings";
+	private static final long   TTL     = 100;
+	private static final long   TIMEOUT = 10;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+
+		TPUMetadataCache.init(new Properties());
+
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() {
+
+		executor.shutdownNow();
+
+		TPUMetadataCache.clear();
+	}
+
+	@Test
+	public void testConcurrentLookupsShareOneRetrieval() throws Exception {
+
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch loaded = new CountDownLatch(1);
+
+		final Future<String> firstLookup = executor.submit(() -> TPUMetadataCache.get(KEY, () -> {
+
+			loading.countDown();
+			loaded.await(TIMEOUT, TimeUnit.SECONDS);
+
+			return load();
+		}));
+
+		Assert.assertTrue(loading.await(TIMEOUT, TimeUnit.SECONDS));
+
+		// the second lookup waits for the retrieval of the first lookup
+		final CompletableFuture<String> secondLookup = CompletableFuture.supplyAsync(() -> {
+
+			try {
+
+				return TPUMetadataCache.get(KEY, this::load);
+			} catch (final Exception e) {
+
+				throw new IllegalStateException(e);
+			}
+		});
+
+		loaded.countDown();
+
+		Assert.assertEquals(VALUE, firstLookup.get(TIMEOUT, TimeUnit.SECONDS));
+		Assert.assertEquals(VALUE, secondLookup.get(TIMEOUT, TimeUnit.SECONDS));
+		Assert.assertEquals(1, loads.get());
+		Assert.assertEquals("entries = 1, hits = 1, misses = 1", TPUMetadataCache.getStatistics());
+	}
+
+	@Test
+	public void testConcurrentAsyncLookupsShareOneRetrieval() throws Exception {
+
+		final CompletableFuture<String> retrieval = new CompletableFuture<>();
+
+		final CompletableFuture<String> firstLookup = TPUMetadataCache.getAsync(KEY, () -> {
+
+			loads.incrementAndGet();
+
+			return retrieval;
+		});
+		final CompletableFuture<String> secondLookup = TPUMetadataCache.getAsync(KEY, () -> CompletableFuture.completedFuture(load()));
+
+		Assert.assertFalse(secondLookup.isDone());
+
+		retrieval.complete(VALUE);
+
+		Assert.assertEquals(VALUE, firstLookup.get(TIMEOUT, TimeUnit.SECONDS));
+		Assert.assertEquals(VALUE, secondLookup.get(TIMEOUT, TimeUnit.SECONDS));
+		Assert.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testFailedRetrievalIsNotCached() throws Exception {
+
+		try {
+
+			TPUMetadataCache.get(KEY, () -> {
+
+				throw new IOException("backend not available");
+			});
+
+			Assert.fail("the failure of the retrieval should be thrown");
+		} catch (final IOException e) {
+
+			Assert.assertEquals("backend not available", e.getMessage());
+		}
+
+		Assert.assertEquals(VALUE, TPUMetadataCache.get(KEY, this::load));
+		Assert.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testFailedAsyncRetrievalIsNotCached() throws Exception {
+
+		final CompletableFuture<String> failedRetrieval = new CompletableFuture<>();
+		failedRetrieval.completeExceptionally(new IOException("backend not available"));
+
+		try {
+
+			TPUMetadataCache.getAsync(KEY, () -> failedRetrieval).get(TIMEOUT, TimeUnit.SECONDS);
+
+			Assert.fail("the failure of the retrieval should be thrown");
+		} catch (final ExecutionException e) {
+
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		}
+
+		Assert.assertEquals(VALUE, TPUMetadataCache.getAsync(KEY, () -> CompletableFuture.completedFuture(load())).get(TIMEOUT, TimeUnit.SECONDS));
+		Assert.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testEntriesDontExpireByDefault() throws Exception {
+
+		TPUMetadataCache.get(KEY, this::load);
+
+		Thread.sleep(2 * TTL);
+
+		TPUMetadataCache.get(KEY, this::load);
+
+		Assert.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testEntriesExpireAfterTTL() throws Exception {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_METADATA_CACHE_TTL_IDENTIFIER, String.valueOf(TTL));
+
+		TPUMetadataCache.init(config);
+
+		TPUMetadataCache.get(KEY, this::load);
+		TPUMetadataCache.get(KEY, this::load);
+
+		Assert.assertEquals(1, loads.get());
+
+		Thread.sleep(2 * TTL);
+
+		TPUMetadataCache.get(KEY, this::load);
+
+		Assert.assertEquals(2, loads.get());
+	}
+
+	private String load() {
+
+		loads.incrementAndGet();
+
+		return VALUE;
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.tu_dortmund.ub.data.dswarm.TPUStatics;
+
+/**
+ * Tests that the {@link TPURunLog} throws the first failure at the end of a run (after all TPU tasks were executed), skips the TPU tasks that
+ * haven't been started yet after the first failure (engine.fail_fast) and bounds the window of pending results.
+ *
+ * @author tgaengler
+ */
+public class TPURunLogTest {
+
+	private static final String SERVICE_NAME = "TPURunLogTest";
+	private static final long   TIMEOUT      = 10;
+	private static final long   BLOCK_CHECK  = 200;
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	private ExecutorService pool;
+
+	@Before
+	public void setUp() {
+
+		// TPU tasks will be executed in submission order
+		pool = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() {
+
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testFirstFailureIsThrownAfterAllTasks() throws Exception {
+
+		final Path runLogFile = temporaryFolder.getRoot().toPath().resolve("run.log");
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_RUN_LOG_IDENTIFIER, runLogFile.toString());
+
+		try (final TPURunLog runLog = TPURunLog.open(config, SERVICE_NAME, 10)) {
+
+			final CompletionService<String> completionService = runLog.newCompletionService(pool);
+
+			runLog.add(completionService.submit(() -> succeed("task 1")));
+			runLog.add(completionService.submit(() -> fail("task 2")));
+			runLog.add(completionService.submit(() -> succeed("task 3")));
+			runLog.add(completionService.submit(() -> fail("task 4")));
+
+			try {
+
+				runLog.finish();
+
+				Assert.fail("the first failure should be thrown");
+			} catch (final ExecutionException e) {
+
+				Assert.assertEquals("task 2", e.getCause().getMessage());
+			}
+
+			Assert.assertFalse(runLog.isAborted());
+			Assert.assertEquals(4, executions.get());
+			Assert.assertEquals(2, runLog.getSucceeded());
+			Assert.assertEquals(2, runLog.getFailed());
+		}
+
+		Assert.assertEquals(Arrays.asList("task 1", "FAILED: task 2", "task 3", "FAILED: task 4"),
+				Files.readAllLines(runLogFile, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFailFastSkipsWaitingTasks() throws Exception {
+
+		final Properties config = new Properties();
+		config.setProperty(TPUStatics.ENGINE_FAIL_FAST_IDENTIFIER, Boolean.TRUE.toString());
+
+		final CountDownLatch failing = new CountDownLatch(1);
+
+		try (final TPURunLog runLog = TPURunLog.open(config, SERVICE_NAME, 10)) {
+
+			final CompletionService<String> completionService = runLog.newCompletionService(pool);
+
+			runLog.add(completionService.submit(() -> {
+
+				failing.await(TIMEOUT, TimeUnit.SECONDS);
+
+				return fail("task 1");
+			}));
+			// waiting in the queue of the pool
+			runLog.add(completionService.submit(() -> succeed("task 2")));
+			runLog.add(completionService.submit(() -> succeed("task 3")));
+
+			failing.countDown();
+
+			try {
+
+				runLog.finish();
+
+				Assert.fail("the first failure should be thrown");
+			} catch (final ExecutionException e) {
+
+				Assert.assertEquals("task 1", e.getCause().getMessage());
+			}
+
+			Assert.assertTrue(runLog.isAborted());
+			Assert.assertEquals(1, executions.get());
+			Assert.assertEquals(0, runLog.getSucceeded());
+			Assert.assertEquals(1, runLog.getFailed());
+		}
+	}
+
+	@Test
+	public void testWindowBoundsPendingResults() throws Exception {
+
+		final CompletableFuture<String> result1 = new CompletableFuture<>();
+		final CompletableFuture<String> result2 = new CompletableFuture<>();
+		final CompletableFuture<String> result3 = new CompletableFuture<>();
+
+		try (final TPURunLog runLog = TPURunLog.open(new Properties(), SERVICE_NAME, 2)) {
+
+			final ExecutorService submitter = Executors.newSingleThreadExecutor();
+
+			try {
+
+				final CompletableFuture<Void> submission = CompletableFuture.runAsync(() -> {
+
+					try {
+
+						runLog.add(result1);
+						runLog.add(result2);
+						// the window is full, i.e., waits for the next completed result
+						runLog.add(result3);
+					} catch (final InterruptedException | IOException e) {
+
+						throw new IllegalStateException(e);
+					}
+				}, submitter);
+
+				Thread.sleep(BLOCK_CHECK);
+
+				Assert.assertFalse(submission.isDone());
+
+				result2.complete("task 2");
+
+				submission.get(TIMEOUT, TimeUnit.SECONDS);
+
+				Assert.assertEquals(1, runLog.getSucceeded());
+
+				result1.complete("task 1");
+				result3.complete("task 3");
+
+				Assert.assertEquals(String.format("[%s] '3' TPU tasks executed successfully", SERVICE_NAME),
+						submitter.submit(runLog::finish).get(TIMEOUT, TimeUnit.SECONDS));
+			} finally {
+
+				submitter.shutdownNow();
+			}
+		}
+	}
+
+	private String succeed(final String message) {
+
+		executions.incrementAndGet();
+
+		return message;
+	}
+
+	private String fail(final String message) throws IOException {
+
+		executions.incrementAndGet();
+
+		throw new IOException(message);
+	}
+}
@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2015 – 2016 Dortmund University Library, SLUB Dresden & Avantgarde Labs GmbH (<code@dswarm.org>)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tu_dortmund.ub.data.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Tests the record-aligned splitting of XML files with the {@link XMLRecordSplitter}, i.e., ancestor repetition, ancestor changes, record + byte
+ * limits and nested elements with the same name as the record element.
+ *
+ * @author tgaengler
+ */
+public class XMLRecordSplitterTest {
+
+	private static final String OAI_PMH_NAMESPACE = "http://www.openarchives.org/OAI/2.0/";
+	private static final String RECORD_TAG        = "record";
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path chunkFolder;
+
+	@Before
+	public void setUp() throws IOException {
+
+		chunkFolder = temporaryFolder.newFolder("chunks").toPath();
+	}
+
+	@Test
+	public void testAncestorsAreRepeatedInEachChunk() throws Exception {
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<OAI-PMH xmlns=\"").append(OAI_PMH_NAMESPACE).append("\">\n");
+		sb.append("<responseDate>2016-01-01T00:00:00Z</responseDate>\n");
+		sb.append("<ListRecords>\n");
+
+		for (int i = 1; i <= 5; i++) {
+
+			sb.append("<record><header><identifier>").append(i).append("</identifier></header></record>\n");
+		}
+
+		sb.append("<resumptionToken>token</resumptionToken>\n");
+		sb.append("</ListRecords>\n");
+		sb.append("</OAI-PMH>\n");
+
+		final List<Path> chunks = split(write("oai-pmh.xml", sb.toString()), 2, 0);
+
+		Assert.assertEquals(3, chunks.size());
+		Assert.assertEquals(Arrays.asList("1", "2"), getIdentifiers(chunks.get(0)));
+		Assert.assertEquals(Arrays.asList("3", "4"), getIdentifiers(chunks.get(1)));
+		Assert.assertEquals(Collections.singletonList("5"), getIdentifiers(chunks.get(2)));
+
+		for (final Path chunk : chunks) {
+
+			final Element root = parse(chunk);
+
+			Assert.assertEquals("OAI-PMH", root.getLocalName());
+			Assert.assertEquals(OAI_PMH_NAMESPACE, root.getNamespaceURI());
+
+			final List<Element> rootChildren = getChildElements(root);
+
+			// content outside of the records will be dropped
+			Assert.assertEquals(1, rootChildren.size());
+			Assert.assertEquals("ListRecords", rootChildren.get(0).getLocalName());
+
+			for (final Element record : getChildElements(rootChildren.get(0))) {
+
+				Assert.assertEquals(RECORD_TAG, record.getLocalName());
+				Assert.assertEquals(OAI_PMH_NAMESPACE, record.getNamespaceURI());
+			}
+		}
+	}
+
+	@Test
+	public void testAncestorsChangeMidFile() throws Exception {
+
+		final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<root>"
+				+ "<set name=\"a\"><record id=\"1\"/><record id=\"2\"/></set>"
+				+ "<set name=\"b\"><record id=\"3\"/></set>"
+				+ "<record id=\"4\"/>"
+				+ "</root>";
+
+		final List<Path> chunks = split(write("sets.xml", xml), 10, 0);
+
+		// a chunk only contains records with the same ancestors
+		Assert.assertEquals(3, chunks.size());
+
+		final Element firstSet = getChildElements(parse(chunks.get(0))).get(0);
+
+		Assert.assertEquals("a", firstSet.getAttribute("name"));
+		Assert.assertEquals(Arrays.asList("1", "2"), getIds(firstSet));
+
+		final Element secondSet = getChildElements(parse(chunks.get(1))).get(0);
+
+		Assert.assertEquals("b", secondSet.getAttribute("name"));
+		Assert.assertEquals(Collections.singletonList("3"), getIds(secondSet));
+
+		final Element thirdRoot = parse(chunks.get(2));
+
+		Assert.assertEquals("root", thirdRoot.getLocalName());
+		Assert.assertEquals(Collections.singletonList("4"), getIds(thirdRoot));
+	}
+
+	@Test
+	public void testRecordLimit() throws Exception {
+
+		final List<Path> chunks = split(write("records.xml", createRecords(10, 0)), 3, 0);
+
+		Assert.assertEquals(4, chunks.size());
+		Assert.assertEquals(Arrays.asList("1", "2", "3"), getIds(parse(chunks.get(0))));
+		Assert.assertEquals(Arrays.asList("10"), getIds(parse(chunks.get(3))));
+		Assert.assertEquals(createIds(10), getAllIds(chunks));
+	}
+
+	@Test
+	public void testByteLimit() throws Exception {
+
+		final int recordPadding = 200;
+		final long maxBytes = 1000;
+
+		final List<Path> chunks = split(write("records.xml", createRecords(20, recordPadding)), 0, maxBytes);
+
+		Assert.assertTrue(chunks.size() > 1);
+		Assert.assertEquals(createIds(20), getAllIds(chunks));
+
+		for (int i = 0; i < chunks.size(); i++) {
+
+			final long size = Files.size(chunks.get(i));
+
+			// a chunk will be closed after the record that reached the limit
+			Assert.assertTrue(chunks.get(i) + " = " + size, size < maxBytes + 2 * recordPadding);
+
+			if (i < chunks.size() - 1) {
+
+				Assert.assertTrue(chunks.get(i) + " = " + size, size >= maxBytes);
+				Assert.assertTrue(getIds(parse(chunks.get(i))).size() > 1);
+			}
+		}
+	}
+
+	@Test
+	public void testRecordAndByteLimit() throws Exception {
+
+		// the record limit applies first
+		List<Path> chunks = split(write("records.xml", createRecords(6, 10)), 2, 1000000);
+
+		Assert.assertEquals(3, chunks.size());
+
+		// the byte limit applies first
+		chunks = split(write("records2.xml", createRecords(6, 500)), 100, 1000);
+
+		Assert.assertEquals(3, chunks.size());
+		Assert.assertEquals(createIds(6), getAllIds(chunks));
+	}
+
+	@Test
+	public void testUnlimited() throws Exception {
+
+		final List<Path> chunks = split(write("records.xml", createRecords(25, 0)), 0, 0);
+
+		Assert.assertEquals(1, chunks.size());
+		Assert.assertEquals(createIds(25), getIds(parse(chunks.get(0))));
+	}
+
+	@Test
+	public void testNestedElementsWithRecordName() throws Exception {
+
+		final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<collection>"
+				+ "<record id=\"1\"><record id=\"1.1\"><record id=\"1.1.1\">deep</record></record><title>one</title></record>"
+				+ "<record id=\"2\"><title>two</title></record>"
+				+ "</collection>";
+
+		final List<Path> chunks = split(write("nested.xml", xml), 1, 0);
+
+		// nested record elements are part of their (outer) record
+		Assert.assertEquals(2, chunks.size());
+
+		final Element firstRoot = parse(chunks.get(0));
+
+		Assert.assertEquals(Collections.singletonList("1"), getIds(firstRoot));
+
+		final Element firstRecord = getChildElements(firstRoot).get(0);
+		final List<Element> firstRecordChildren = getChildElements(firstRecord);
+
+		Assert.assertEquals(2, firstRecordChildren.size());
+		Assert.assertEquals("1.1", firstRecordChildren.get(0).getAttribute("id"));
+		Assert.assertEquals("1.1.1", getChildElements(firstRecordChildren.get(0)).get(0).getAttribute("id"));
+		Assert.assertEquals("one", firstRecordChildren.get(1).getTextContent());
+
+		Assert.assertEquals(Collections.singletonList("2"), getIds(parse(chunks.get(1))));
+	}
+
+	@Test
+	public void testNoRecords() throws Exception {
+
+		try (final XMLRecordSplitter splitter = new XMLRecordSplitter(write("empty.xml", "<root><other/></root>"), chunkFolder, RECORD_TAG, 10,
+				0)) {
+
+			Assert.assertFalse(splitter.hasNext());
+			Assert.assertEquals(0, splitter.getChunkCount());
+
+			try {
+
+				splitter.next();
+
+				Assert.fail("expected NoSuchElementException");
+			} catch (final NoSuchElementException e) {
+
+				// expected
+			}
+		}
+	}
+
+	private List<Path> split(final Path inputFile, final long maxRecords, final long maxBytes) throws IOException {
+
+		final List<Path> chunks = new ArrayList<>();
+
+		try (final XMLRecordSplitter splitter = new XMLRecordSplitter(inputFile, chunkFolder, RECORD_TAG, maxRecords, maxBytes)) {
+
+			while (splitter.hasNext()) {
+
+				chunks.add(splitter.next());
+			}
+
+			Assert.assertEquals(chunks.size(), splitter.getChunkCount());
+		}
+
+		return chunks;
+	}
+
+	private Path write(final String fileName, final String content) throws IOException {
+
+		return Files.write(temporaryFolder.getRoot().toPath().resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String createRecords(final int count, final int padding) {
+
+		final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><collection>");
+
+		for (int i = 1; i <= count; i++) {
+
+			sb.append("<record id=\"").append(i).append("\"><title>");
+
+			for (int j = 0; j < padding; j++) {
+
+				sb.append('x');
+			}
+
+			sb.append("</title></record>\n");
+		}
+
+		return sb.append("</collection>").toString();
+	}
+
+	private static List<String> createIds(final int count) {
+
+		final List<String> ids = new ArrayList<>();
+
+		for (int i = 1; i <= count; i++) {
+
+			ids.add(String.valueOf(i));
+		}
+
+		return ids;
+	}
+
+	static Element parse(final Path file) throws Exception {
+
+		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+
+		return documentBuilderFactory.newDocumentBuilder().parse(file.toFile()).getDocumentElement();
+	}
+
+	static List<Element> getChildElements(final Element element) {
+
+		final List<Element> childElements = new ArrayList<>();
+
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+
+				childElements.add((Element) child);
+			}
+		}
+
+		return childElements;
+	}
+
+	/**
+	 * @return the ids of the record children of the given element
+	 */
+	static List<String> getIds(final Element element) {
+
+		final List<String> ids = new ArrayList<>();
+
+		for (final Element child : getChildElements(element)) {
+
+			if (RECORD_TAG.equals(child.getLocalName())) {
+
+				ids.add(child.getAttribute("id"));
+			}
+		}
+
+		return ids;
+	}
+
+	private static List<String> getAllIds(final List<Path> chunks) throws Exception {
+
+		final List<String> ids = new ArrayList<>();
+
+		for (final Path chunk : chunks) {
+
+			ids.addAll(getIds(parse(chunk)));
+		}
+
+		return ids;
+	}
+
+	private static List<String> getIdentifiers(final Path chunk) throws Exception {
+
+		final List<String> identifiers = new ArrayList<>();
+		final Element listRecords = getChildElements(parse(chunk)).get(0);
+
+		for (final Element record : getChildElements(listRecords)) {
+
+			identifiers.add(record.getElementsByTagNameNS(OAI_PMH_NAMESPACE, "identifier").item(0).getTextContent());
+		}
+
+		return identifiers;
+	}
+}